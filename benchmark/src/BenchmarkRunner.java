@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the calculator's micro-benchmarks and reports throughput and allocation for each.
+ * Every benchmark gets warmup iterations followed by measured iterations of a fixed length, and the bytes allocated by the
+ * benchmark thread and the number of collections are recorded for each measured iteration (the same numbers JMH's GC profiler reports).
+ * <p>
+ * Like JMH's forks, each benchmark is run in a fresh JVM (started with the same JVM options and class path), so the code the
+ * JIT compiled and the profiles it gathered for one benchmark can't slow down or speed up the next, and the results don't
+ * depend on which benchmarks ran before. Each fork prints its own line.
+ * <p>
+ * Usage: BenchmarkRunner [-wi warmup iterations] [-i measured iterations] [-t iteration time in ms]
+ * [-f forks per benchmark (0 to run every benchmark in this JVM, one after another)] [name regex]
+ */
+public class BenchmarkRunner {
+    /**
+     * A single benchmarked operation. The returned value is consumed so the JIT can't remove the work.
+     */
+    @FunctionalInterface
+    public interface Operation {
+        /**
+         * Runs the operation once.
+         * @return any value derived from the work done
+         */
+        long run();
+    }
+
+    /**
+     * The number of operations run between checks of the clock (unless a benchmark gives its own).
+     */
+    private static final int BATCH_SIZE = 1024;
+    /**
+     * The option that makes the runner a fork, running the single benchmark whose index follows it (the index rather than the
+     * name, which may not survive the command line's encoding).
+     */
+    private static final String FORKED_OPTION = "-forked";
+
+    /**
+     * The names of the registered benchmarks.
+     */
+    private final List<String> names = new ArrayList<>();
+    /**
+     * The registered benchmarks.
+     */
+    private final List<Operation> operations = new ArrayList<>();
+    /**
+     * The number of operations each registered benchmark runs between checks of the clock.
+     */
+    private final List<Integer> batchSizes = new ArrayList<>();
+    /**
+     * The number of warmup iterations.
+     */
+    private int warmupIterations = 3;
+    /**
+     * The number of measured iterations.
+     */
+    private int measuredIterations = 5;
+    /**
+     * The length of each iteration in milliseconds.
+     */
+    private long iterationMillis = 1000;
+    /**
+     * The number of fresh JVMs each benchmark is run in (0 to run them all in this one).
+     */
+    private int forks = 1;
+    /**
+     * Collects the results of every operation so they are never dead code.
+     */
+    private long sink;
+
+    /**
+     * Registers a benchmark.
+     * @param name the name of the benchmark
+     * @param operation the operation to measure
+     */
+    public void add(String name, Operation operation) {
+        add(name, BATCH_SIZE, operation);
+    }
+
+    /**
+     * Registers a benchmark whose operations are long enough to need fewer of them between checks of the clock.
+     * @param name the name of the benchmark
+     * @param batchSize the number of operations run between checks of the clock
+     * @param operation the operation to measure
+     */
+    public void add(String name, int batchSize, Operation operation) {
+        names.add(name);
+        operations.add(operation);
+        batchSizes.add(batchSize);
+    }
+
+    /**
+     * Runs every registered benchmark whose name matches a filter and prints the results.
+     * @param filter the pattern benchmark names must contain a match for
+     * @return true if every benchmark ran, false if a fork failed
+     */
+    public boolean run(Pattern filter) {
+        System.out.printf("%-52s %16s %10s %12s %12s %8s%n", "Benchmark", "ops/s", "error", "B/op", "MB/s alloc", "GCs");
+
+        boolean succeeded = true;
+        for (int i = 0; i < names.size(); i++) {
+            if (filter.matcher(names.get(i)).find()) {
+                if (forks == 0) {
+                    measure(names.get(i), operations.get(i), batchSizes.get(i));
+                }
+                for (int fork = 0; fork < forks; fork++) {
+                    succeeded &= fork(i);
+                }
+            }
+        }
+
+        //Print the sink so the results can't be optimized away
+        if (sink == 42) {
+            System.out.println();
+        }
+        return succeeded;
+    }
+
+    /**
+     * Runs a single benchmark in this JVM (as a fork).
+     * @param index the index of the benchmark, in the order they were registered
+     * @return true if the benchmark exists
+     */
+    private boolean runForked(int index) {
+        if (index < 0 || index >= names.size()) {
+            System.err.println("No benchmark number " + index);
+            return false;
+        }
+
+        measure(names.get(index), operations.get(index), batchSizes.get(index));
+        if (sink == 42) {
+            System.out.println();
+        }
+        return true;
+    }
+
+    /**
+     * Runs a single benchmark in a fresh JVM, which prints its result to this one's output. The fork registers the same
+     * benchmarks in the same order, so the index picks out the same one.
+     * @param index the index of the benchmark
+     * @return true if the fork ran the benchmark
+     */
+    private boolean fork(int index) {
+        String name = names.get(index);
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(BenchmarkRunner.class.getName());
+        command.addAll(List.of("-wi", String.valueOf(warmupIterations), "-i", String.valueOf(measuredIterations),
+                "-t", String.valueOf(iterationMillis), FORKED_OPTION, String.valueOf(index)));
+
+        try {
+            Process process = new ProcessBuilder(command).inheritIO().start();
+            int status = process.waitFor();
+            if (status != 0) {
+                System.err.println(name + ": the fork exited with status " + status);
+            }
+            return status == 0;
+        } catch (IOException e) {
+            System.err.println(name + ": couldn't start a fork: " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Measures a single benchmark.
+     * @param name the name of the benchmark
+     * @param operation the operation to measure
+     * @param batchSize the number of operations run between checks of the clock
+     */
+    private void measure(String name, Operation operation, int batchSize) {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(operation, batchSize);
+        }
+
+        double[] throughput = new double[measuredIterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        long totalNanos = 0;
+        long totalCollections = 0;
+
+        for (int i = 0; i < measuredIterations; i++) {
+            long collections = collectionCount();
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+
+            long ops = iteration(operation, batchSize);
+
+            long nanos = System.nanoTime() - start;
+            totalBytes += allocatedBytes() - bytes;
+            totalCollections += collectionCount() - collections;
+            totalOps += ops;
+            totalNanos += nanos;
+            throughput[i] = ops * 1e9 / nanos;
+        }
+
+        double mean = 0;
+        for (double t : throughput) {
+            mean += t;
+        }
+        mean /= throughput.length;
+
+        double variance = 0;
+        for (double t : throughput) {
+            variance += (t - mean) * (t - mean);
+        }
+        double error = throughput.length > 1 ? Math.sqrt(variance / (throughput.length - 1)) : 0;
+
+        System.out.printf(Locale.ROOT, "%-52s %16.0f %10.0f %12.1f %12.1f %8d%n", name, mean, error,
+                (double) totalBytes / totalOps, totalBytes * 1e3 / totalNanos, totalCollections);
+    }
+
+    /**
+     * Runs an operation repeatedly for one iteration.
+     * @param operation the operation to run
+     * @param batchSize the number of operations run between checks of the clock
+     * @return the number of times the operation was run
+     */
+    private long iteration(Operation operation, int batchSize) {
+        long deadline = System.nanoTime() + iterationMillis * 1_000_000;
+        long ops = 0;
+        long result = 0;
+
+        do {
+            for (int i = 0; i < batchSize; i++) {
+                result += operation.run();
+            }
+            ops += batchSize;
+        } while (System.nanoTime() < deadline);
+
+        sink += result;
+        return ops;
+    }
+
+    /**
+     * Gets the number of bytes allocated by the current thread so far.
+     * @return the allocated bytes
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Gets the number of garbage collections so far.
+     * @return the collection count over all collectors
+     */
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Runs the benchmarks from the command line.
+     * @param args the options and an optional name filter
+     */
+    public static void main(String[] args) {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        String filter = "";
+        int forked = -1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi":
+                    runner.warmupIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    runner.measuredIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    runner.iterationMillis = Long.parseLong(args[++i]);
+                    break;
+                case "-f":
+                    runner.forks = Integer.parseInt(args[++i]);
+                    break;
+                case FORKED_OPTION:
+                    forked = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    filter = args[i];
+            }
+        }
+
+        ModelBenchmarks.register(runner);
+        CalculationBenchmarks.register(runner);
+        FormatterBenchmarks.register(runner);
+        ControllerBenchmarks.register(runner);
+        ExpressionBenchmarks.register(runner);
+        ColumnBenchmarks.register(runner);
+        ScientificBenchmarks.register(runner);
+        StreamingBenchmarks.register(runner);
+        ConversionBenchmarks.register(runner);
+        RendererBenchmarks.register(runner);
+
+        boolean succeeded = forked >= 0 ? runner.runForked(forked) : runner.run(Pattern.compile(filter));
+        if (!succeeded) {
+            System.exit(1);
+        }
+    }
+}
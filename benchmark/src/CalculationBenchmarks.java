@@ -0,0 +1,68 @@
+import java.math.MathContext;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks for performing calculations, including the error paths.
+ */
+public final class CalculationBenchmarks {
+    /**
+     * The operators of the calculator.
+     */
+    private static final char[] OPERATORS = {'+', '-', '×', '÷'};
+
+    private CalculationBenchmarks() {
+    }
+
+    /**
+     * Registers the benchmarks for every model implementation.
+     * @param runner the runner to register with
+     */
+    public static void register(BenchmarkRunner runner) {
+        register(runner, "CalculatorModel", CalculatorModel::new);
+        register(runner, "PrimitiveCalculatorModel", PrimitiveCalculatorModel::new);
+        register(runner, "DecimalCalculatorModel", DecimalCalculatorModel::new);
+        //16 digits fit in a long, so quotients that don't terminate are rounded without BigDecimal
+        register(runner, "DecimalCalculatorModel DECIMAL64", () -> new DecimalCalculatorModel(MathContext.DECIMAL64));
+
+        CalculatorModel model = new CalculatorModel();
+        for (char operator : OPERATORS) {
+            runner.add("CalculatorModel.calculateResult " + operator, () -> model.calculateResult(1234.5, 67.89, operator).length());
+        }
+    }
+
+    /**
+     * Registers the benchmarks for one model implementation.
+     * @param runner the runner to register with
+     * @param name the name of the model implementation
+     * @param factory creates the model
+     */
+    private static void register(BenchmarkRunner runner, String name, Supplier<CalculatorModel> factory) {
+        for (char operator : OPERATORS) {
+            runner.add(name + ".calculate " + operator, calculation(factory.get(), "1234.5", String.valueOf(operator), "67.89"));
+        }
+
+        runner.add(name + ".calculate divide by zero", calculation(factory.get(), "1234.5", "÷", "0"));
+        runner.add(name + ".calculate overflow", calculation(factory.get(), "9999999999999999999999", "×", "9999999999999999999999"));
+        runner.add(name + ".calculate after infinity", calculation(factory.get(),
+                ResultFormatter.getInstance().format(Double.POSITIVE_INFINITY), "+", "1"));
+    }
+
+    /**
+     * Creates an operation that sets up the model's fields and performs a calculation.
+     * @param model the model to use
+     * @param first the first operand
+     * @param operation the operation
+     * @param second the second operand
+     * @return the benchmarked operation
+     */
+    private static BenchmarkRunner.Operation calculation(CalculatorModel model, String first, String operation, String second) {
+        return () -> {
+            model.reset();
+            model.setPrevResultField(first);
+            model.setCurrentResultField(second);
+            model.setOperationField(operation);
+            model.calculate();
+            return 1;
+        };
+    }
+}
@@ -0,0 +1,155 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A loopback load test for CalculatorServer. Opens many concurrent connections (each on its own virtual thread and with its
+ * own session), waits until all of them are connected, and then has every client send calculations and check the results,
+ * reporting the throughput and the latency distribution of the requests.
+ * Each connection uses two file handles when the server runs in the same process, so the open file limit (ulimit -n) may have to be raised.
+ * <p>
+ * Usage: CalculatorServerLoadTest [clients] [requests per client] [port of a running server (an in-process one is started if not given)]
+ */
+public class CalculatorServerLoadTest {
+    /**
+     * Runs the load test.
+     * @param args the command line arguments
+     * @throws Exception if the test can't be run
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        CalculatorServer server = null;
+        int port;
+        if (args.length > 2) {
+            port = Integer.parseInt(args[2]);
+        } else {
+            server = new CalculatorServer(0, CalculatorServer.DEFAULT_IDLE_TIMEOUT_MILLIS, CalculatorModel::new);
+            server.start();
+            port = server.getPort();
+        }
+
+        CountDownLatch connected = new CountDownLatch(clients);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<long[]>> results = new ArrayList<>(clients);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                int client = i;
+                results.add(executor.submit(() -> runClient(port, client, requests, connected, go, failures)));
+            }
+
+            connected.await();
+            System.out.printf("%d clients connected%s%n", clients, server == null ? "" : ", " + server.getSessionCount() + " sessions");
+
+            long start = System.nanoTime();
+            go.countDown();
+
+            long[] latencies = new long[clients * requests];
+            int count = 0;
+            for (Future<long[]> result : results) {
+                long[] clientLatencies = result.get();
+                System.arraycopy(clientLatencies, 0, latencies, count, clientLatencies.length);
+                count += clientLatencies.length;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies, 0, count);
+            System.out.printf(Locale.ROOT, "%d requests in %.2f s (%.0f requests/s), %d failed%n",
+                    count, elapsed / 1e9, count / (elapsed / 1e9), failures.get());
+            System.out.printf(Locale.ROOT, "latency us: p50 %.0f, p90 %.0f, p99 %.0f, p99.9 %.0f, max %.0f%n",
+                    percentile(latencies, count, 0.5), percentile(latencies, count, 0.9), percentile(latencies, count, 0.99),
+                    percentile(latencies, count, 0.999), percentile(latencies, count, 1.0));
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Runs one client: connects, starts its own session, then sends calculations once every client is connected.
+     * @param port the server's port
+     * @param client the client's number
+     * @param requests the number of calculations to send
+     * @param connected counted down once the client has its session
+     * @param go released once every client is connected
+     * @param failures counts wrong or failed replies
+     * @return the latency of every request in nanoseconds
+     * @throws IOException if the connection fails
+     * @throws InterruptedException if interrupted while waiting to start
+     */
+    private static long[] runClient(int port, int client, int requests, CountDownLatch connected, CountDownLatch go,
+                                    AtomicInteger failures) throws IOException, InterruptedException {
+        long[] latencies = new long[requests];
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 256);
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            socket.setTcpNoDelay(true);
+
+            try {
+                out.write("NEW\n");
+                out.flush();
+                String reply = in.readLine();
+                if (reply == null || !reply.startsWith("OK ")) {
+                    failures.incrementAndGet();
+                }
+            } finally {
+                connected.countDown();
+            }
+            go.await();
+
+            for (int i = 0; i < requests; i++) {
+                int a = client + i;
+                int b = i * 7;
+                long start = System.nanoTime();
+
+                out.write("KEYS c" + a + "+" + b + "=\n");
+                out.flush();
+                String reply = in.readLine();
+                latencies[i] = System.nanoTime() - start;
+
+                if (reply == null || !reply.equals("RESULT " + (a + b) + " ")) {
+                    failures.incrementAndGet();
+                }
+            }
+
+            out.write("END\nQUIT\n");
+            out.flush();
+        }
+
+        return latencies;
+    }
+
+    /**
+     * Gets a percentile of sorted latencies.
+     * @param sorted the sorted latencies in nanoseconds
+     * @param count the number of latencies
+     * @param fraction the percentile as a fraction (eg. 0.99)
+     * @return the latency in microseconds
+     */
+    private static double percentile(long[] sorted, int count, double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(count - 1, Math.ceil(fraction * count) - 1);
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+}
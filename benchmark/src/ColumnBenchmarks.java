@@ -0,0 +1,76 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+/**
+ * Benchmarks for column-wise arithmetic. Each operation processes a whole column of a million elements, so ops/s times
+ * COLUMN_LENGTH is the number of elements per second (and times 24 bytes, the memory bandwidth used).
+ */
+public final class ColumnBenchmarks {
+    /**
+     * The number of elements in each column.
+     */
+    private static final int COLUMN_LENGTH = 1 << 20;
+    /**
+     * The operators of the calculator.
+     */
+    private static final char[] OPERATORS = {'+', '-', '×', '÷'};
+
+    private ColumnBenchmarks() {
+    }
+
+    /**
+     * Registers the column benchmarks.
+     * @param runner the runner to register with
+     */
+    public static void register(BenchmarkRunner runner) {
+        Random random = new Random(42);
+        double[] first = new double[COLUMN_LENGTH];
+        double[] second = new double[COLUMN_LENGTH];
+        for (int i = 0; i < COLUMN_LENGTH; i++) {
+            first[i] = random.nextDouble() * 1e6;
+            //About one divisor in a thousand is zero
+            second[i] = random.nextInt(1000) == 0 ? 0 : random.nextDouble() * 1e3;
+        }
+
+        double[] result = new double[COLUMN_LENGTH];
+        long[] errors = ColumnArithmetic.newErrorMask(COLUMN_LENGTH);
+
+        DoubleBuffer directFirst = directCopy(first);
+        DoubleBuffer directSecond = directCopy(second);
+        DoubleBuffer directResult = directCopy(result);
+
+        for (char operator : OPERATORS) {
+            runner.add("ColumnArithmetic " + operator + " double[] (1M elements)", 1,
+                    () -> ColumnArithmetic.apply(first, second, operator, result, errors));
+        }
+        runner.add("ColumnArithmetic ÷ constant double[] (1M elements)", 1,
+                () -> ColumnArithmetic.apply(first, 7.0, '÷', result, errors));
+        runner.add("ColumnArithmetic ÷ direct DoubleBuffer (1M elements)", 1,
+                () -> ColumnArithmetic.apply(directFirst, directSecond, '÷', directResult, errors));
+
+        //The old way: one element at a time, through the model's operator switch
+        runner.add("applyOperation per element ÷ (1M elements)", 1, () -> {
+            int errorCount = 0;
+            for (int i = 0; i < COLUMN_LENGTH; i++) {
+                result[i] = CalculatorModel.applyOperation(first[i], second[i], '÷');
+                if (result[i] != result[i]) {
+                    errorCount++;
+                }
+            }
+            return errorCount;
+        });
+    }
+
+    /**
+     * Copies a column into a direct (off-heap) buffer.
+     * @param column the column
+     * @return the buffer
+     */
+    private static DoubleBuffer directCopy(double[] column) {
+        DoubleBuffer buffer = ByteBuffer.allocateDirect(column.length * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        buffer.put(column).flip();
+        return buffer;
+    }
+}
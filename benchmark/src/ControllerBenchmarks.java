@@ -0,0 +1,32 @@
+import java.awt.event.KeyEvent;
+
+/**
+ * Benchmarks for dispatching key presses through the controller (using a headless stub view).
+ */
+public final class ControllerBenchmarks {
+    private ControllerBenchmarks() {
+    }
+
+    /**
+     * Registers the controller benchmarks.
+     * @param runner the runner to register with
+     */
+    public static void register(BenchmarkRunner runner) {
+        HeadlessCalculatorView view = new HeadlessCalculatorView();
+        CalculatorController controller = new CalculatorController(new CalculatorModel(), view, false);
+
+        //A typical calculation, typed one key at a time
+        String keys = "12.5*4=c";
+        KeyEvent[] events = new KeyEvent[keys.length()];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new KeyEvent(view.getResultArea(), KeyEvent.KEY_TYPED, 0, 0, KeyEvent.VK_UNDEFINED, keys.charAt(i));
+        }
+
+        int[] index = new int[1];
+        runner.add("CalculatorController.keyTyped", () -> {
+            controller.keyTyped(events[index[0]]);
+            index[0] = (index[0] + 1) % events.length;
+            return 1;
+        });
+    }
+}
@@ -0,0 +1,70 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks for looking up conversion rates in a table of 5,000 units and 20,000 rates.
+ */
+public final class ConversionBenchmarks {
+    /**
+     * The number of units in the table.
+     */
+    private static final int UNIT_COUNT = 5_000;
+    /**
+     * The number of rates in the table.
+     */
+    private static final int RATE_COUNT = 20_000;
+
+    private ConversionBenchmarks() {
+    }
+
+    /**
+     * Registers the conversion benchmarks.
+     * @param runner the runner to register with
+     */
+    public static void register(BenchmarkRunner runner) {
+        Random random = new Random(42);
+        String[] from = new String[RATE_COUNT];
+        String[] to = new String[RATE_COUNT];
+        Map<String, Double> pairs = new HashMap<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < RATE_COUNT; i++) {
+            from[i] = "unit" + random.nextInt(UNIT_COUNT);
+            to[i] = "unit" + random.nextInt(UNIT_COUNT);
+            double rate = 0.001 + random.nextDouble() * 1000;
+            text.append(from[i]).append(' ').append(to[i]).append(' ').append(rate).append('\n');
+            pairs.put(from[i] + " " + to[i], rate);
+        }
+
+        ConversionTable table;
+        try {
+            Path file = Files.createTempFile("rates", ".txt");
+            Files.writeString(file, text);
+            table = ConversionTable.load(file);
+            Files.delete(file);
+            Files.delete(ConversionTable.getCompiledPath(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int[] next = new int[1];
+        runner.add("ConversionTable.getRate (mapped, 20k rates)", () -> {
+            int i = next[0]++ % RATE_COUNT;
+            return Double.doubleToRawLongBits(table.getRate(from[i], to[i]));
+        });
+        runner.add("ConversionTable.getRate the other way", () -> {
+            int i = next[0]++ % RATE_COUNT;
+            return Double.doubleToRawLongBits(table.getRate(to[i], from[i]));
+        });
+
+        //A HashMap keyed by the pair, for comparison (it has to build the key for every lookup)
+        runner.add("HashMap.get of \"from to\" (20k rates)", () -> {
+            int i = next[0]++ % RATE_COUNT;
+            return Double.doubleToRawLongBits(pairs.get(from[i] + " " + to[i]));
+        });
+    }
+}
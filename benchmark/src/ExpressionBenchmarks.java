@@ -0,0 +1,27 @@
+/**
+ * Benchmarks for compiling and evaluating infix expressions.
+ */
+public final class ExpressionBenchmarks {
+    /**
+     * A typical formula with variables.
+     */
+    private static final String FORMULA = "(price - discount) * (1 + tax%) / quantity";
+
+    private ExpressionBenchmarks() {
+    }
+
+    /**
+     * Registers the expression benchmarks.
+     * @param runner the runner to register with
+     */
+    public static void register(BenchmarkRunner runner) {
+        ExpressionCache cache = new ExpressionCache(ExpressionCache.DEFAULT_CAPACITY);
+        double[] values = {120.5, 20, 13, 4};
+
+        runner.add("ExpressionParser.compile + evaluate", () -> (long) ExpressionParser.compile(FORMULA).evaluate(values));
+        runner.add("ExpressionCache.evaluate (cached)", () -> (long) cache.evaluate(FORMULA, values));
+
+        Expression compiled = ExpressionParser.compile(FORMULA);
+        runner.add("Expression.evaluate (precompiled)", () -> (long) compiled.evaluate(values));
+    }
+}
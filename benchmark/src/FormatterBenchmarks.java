@@ -0,0 +1,39 @@
+import java.text.DecimalFormat;
+
+/**
+ * Benchmarks for formatting results.
+ */
+public final class FormatterBenchmarks {
+    /**
+     * A mix of typical results.
+     */
+    private static final double[] VALUES = {0, 42, -7.5, 1234.56789, 0.333333333, 1e15, -0.000001, 98765.4321};
+
+    /**
+     * A mix of typical programmer mode results.
+     */
+    private static final long[] WORDS = {0, 42, -1, 0xCAFEBABEL, 255, Long.MIN_VALUE, 1L << 40, -123456789};
+
+    private FormatterBenchmarks() {
+    }
+
+    /**
+     * Registers the formatter benchmarks.
+     * @param runner the runner to register with
+     */
+    public static void register(BenchmarkRunner runner) {
+        ResultFormatter formatter = ResultFormatter.getInstance();
+        char[] buffer = new char[ResultFormatter.MAX_LENGTH];
+        int[] index = new int[1];
+
+        runner.add("ResultFormatter.format into buffer", () -> formatter.format(VALUES[index[0]++ & 7], buffer, 0));
+        runner.add("ResultFormatter.format to String", () -> formatter.format(VALUES[index[0]++ & 7]).length());
+        runner.add("new DecimalFormat per call (old path)", () -> new DecimalFormat(ResultFormatter.PATTERN).format(VALUES[index[0]++ & 7]).length());
+
+        char[] radixBuffer = new char[RadixFormatter.MAX_LENGTH];
+        runner.add("RadixFormatter.format hex into buffer", () -> RadixFormatter.format(WORDS[index[0]++ & 7], 16, 64, radixBuffer, 0));
+        runner.add("Long.toHexString", () -> Long.toHexString(WORDS[index[0]++ & 7]).length());
+        runner.add("RadixFormatter.format decimal into buffer", () -> RadixFormatter.format(WORDS[index[0]++ & 7], 10, 64, radixBuffer, 0));
+        runner.add("Long.toString", () -> Long.toString(WORDS[index[0]++ & 7]).length());
+    }
+}
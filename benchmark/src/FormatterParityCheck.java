@@ -0,0 +1,132 @@
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Checks that ResultFormatter gives exactly the output of new DecimalFormat(ResultFormatter.PATTERN) in several locales, over
+ * edge cases and millions of random values: uniform fractions, values on or next to a rounding tie at the fifth fraction digit,
+ * large magnitudes around 2^32, 2^53 and beyond, random bit patterns and values spread over many orders of magnitude. Both
+ * format(double) and format(double, char[], int) are checked.
+ * <p>
+ * Prints the first few mismatches of each locale and exits with status 1 if there were any.
+ * <p>
+ * Usage: FormatterParityCheck [values per locale] [locale tags (en-US, de-DE, ar-EG, fa-IR, hi-IN-u-nu-deva and sv-SE if not given)]
+ */
+public final class FormatterParityCheck {
+    /**
+     * The locales checked when none are given: grouping and decimal separators, Arabic, Persian and Devanagari digits, and
+     * the minus sign U+2212.
+     */
+    private static final String[] DEFAULT_LOCALES = {"en-US", "de-DE", "ar-EG", "fa-IR", "hi-IN-u-nu-deva", "sv-SE"};
+    /**
+     * The number of mismatches printed for each locale.
+     */
+    private static final int MAX_REPORTED = 10;
+    /**
+     * Values that are checked first in every locale.
+     */
+    private static final double[] EDGE_CASES = {
+            0.0, -0.0, 0.5, -0.5, 1, -1, 0.000005, -0.000005, 0.000015, 0.000025, 0.000004999999, 0.0000050000001, 1.000005,
+            2.5, 99999.999995, -99999.999995, 0.1 + 0.2, 1e-5, 1e-6, 4294967295.99999, 4294967295.999995, 0x1p32 - 0.5, 0x1p32,
+            0x1p53 - 1, 0x1p53, 0x1p53 + 2, 1e21, 1e22, 1e23, Long.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+            Double.MIN_VALUE, -Double.MIN_VALUE, Double.MIN_NORMAL, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    private FormatterParityCheck() {
+    }
+
+    /**
+     * Runs the check.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        long count = args.length > 0 ? Long.parseLong(args[0]) : 6_000_000;
+        String[] tags = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : DEFAULT_LOCALES;
+
+        long mismatches = 0;
+        for (String tag : tags) {
+            mismatches += check(Locale.forLanguageTag(tag), count);
+        }
+
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Checks a locale.
+     * @param locale the locale
+     * @param count the number of values to check
+     * @return the number of mismatches
+     */
+    private static long check(Locale locale, long count) {
+        ResultFormatter formatter = new ResultFormatter(locale);
+        DecimalFormat expected = new DecimalFormat(ResultFormatter.PATTERN, DecimalFormatSymbols.getInstance(locale));
+        char[] buffer = new char[ResultFormatter.MAX_LENGTH];
+        Random random = new Random(7);
+
+        long mismatches = 0;
+        long start = System.nanoTime();
+        for (long i = 0; i < count; i++) {
+            double value = i < EDGE_CASES.length ? EDGE_CASES[(int) i] : randomValue(random, (int) (i % 8));
+
+            String wanted = expected.format(value);
+            String formatted = formatter.format(value);
+            String buffered = new String(buffer, 0, formatter.format(value, buffer, 0));
+            if (!formatted.equals(wanted) || !buffered.equals(wanted)) {
+                if (mismatches++ < MAX_REPORTED) {
+                    System.out.printf("%s: %s (%s) formatted as \"%s\" and \"%s\", DecimalFormat gives \"%s\"%n", locale.toLanguageTag(),
+                            value, Double.toHexString(value), formatted, buffered, wanted);
+                }
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%s: %d values checked in %.1f s, %d mismatches%n", locale.toLanguageTag(), count,
+                (System.nanoTime() - start) / 1e9, mismatches);
+        return mismatches;
+    }
+
+    /**
+     * Picks a random value of one of the kinds checked.
+     * @param random the random numbers
+     * @param kind the kind of value (0 to 7)
+     * @return the value
+     */
+    private static double randomValue(Random random, int kind) {
+        switch (kind) {
+            //Uniform fractions
+            case 0:
+                return random.nextDouble();
+
+            //Five fraction digits, half of them with a tie added at the sixth
+            case 1:
+                return (random.nextLong() % 10_000_000_000L) / 1e5 + (random.nextBoolean() ? 0.000005 : 0);
+
+            //Six fraction digits
+            case 2:
+                return (random.nextInt(2_000_001) - 1_000_000) / 1e6;
+
+            //Any bit pattern (including subnormals, infinities and NaNs)
+            case 3:
+                return Double.longBitsToDouble(random.nextLong());
+
+            //Binary fractions of large magnitudes, which are exact ties far more often than decimal ones
+            case 4:
+                return random.nextLong() / (double) (1L << random.nextInt(63));
+
+            //Large integers, around and above 2^32 and 2^53
+            case 5:
+                return (double) (random.nextLong() >>> random.nextInt(64)) * (random.nextBoolean() ? 1 : -1);
+
+            //Values spread over many orders of magnitude
+            case 6:
+                return random.nextGaussian() * Math.pow(10, random.nextInt(30) - 12);
+
+            //Odd multiples of 0.000005 (the closest doubles to ties), at several magnitudes
+            default:
+                return (random.nextInt(200_000) * 2 + 1) * 5 / 1e6 * Math.pow(10, random.nextInt(6));
+        }
+    }
+}
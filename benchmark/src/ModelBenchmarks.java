@@ -0,0 +1,54 @@
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks for entering numbers into the model.
+ */
+public final class ModelBenchmarks {
+    private ModelBenchmarks() {
+    }
+
+    /**
+     * Registers the benchmarks for the model implementations.
+     * @param runner the runner to register with
+     */
+    public static void register(BenchmarkRunner runner) {
+        register(runner, "CalculatorModel", CalculatorModel::new);
+        register(runner, "PrimitiveCalculatorModel", PrimitiveCalculatorModel::new);
+        register(runner, "ProgrammerCalculatorModel", ProgrammerCalculatorModel::new);
+    }
+
+    /**
+     * Registers the benchmarks for one model implementation.
+     * @param runner the runner to register with
+     * @param name the name of the model implementation
+     * @param factory creates the model
+     */
+    private static void register(BenchmarkRunner runner, String name, Supplier<CalculatorModel> factory) {
+        //Type digits until the field is full (the last ones are rejected by the maxDigits check)
+        CalculatorModel entry = factory.get();
+        runner.add(name + ".changeResultField x maxDigits", () -> {
+            entry.reset();
+            for (int i = 0; i < 24; i++) {
+                entry.changeResultField(i % 10);
+            }
+            return 1;
+        });
+
+        CalculatorModel percent = factory.get();
+        runner.add(name + ".changeToPercent", () -> {
+            percent.reset();
+            percent.changeResultField(4);
+            percent.changeResultField(2);
+            percent.changeToPercent();
+            return 1;
+        });
+
+        CalculatorModel sign = factory.get();
+        sign.changeResultField(4);
+        sign.changeResultField(2);
+        runner.add(name + ".changeSign", () -> {
+            sign.changeSign();
+            return 1;
+        });
+    }
+}
@@ -0,0 +1,76 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Benchmarks for showing a 50,000-digit result: the ResultRenderer against the JTextField it replaced, each painting the
+ * window-sized slice at the end of the number (as the display does) into an image.
+ */
+public final class RendererBenchmarks {
+    /**
+     * The number of digits in the result shown.
+     */
+    private static final int DIGITS = 50_000;
+    /**
+     * The width of the visible slice, in pixels.
+     */
+    private static final int WIDTH = 270;
+    /**
+     * The height of the visible slice, in pixels.
+     */
+    private static final int HEIGHT = 60;
+
+    private RendererBenchmarks() {
+    }
+
+    /**
+     * Registers the renderer benchmarks.
+     * @param runner the runner to register with
+     */
+    public static void register(BenchmarkRunner runner) {
+        //Two results that differ in their last digit, so every setText changes the text
+        String[] results = {"9".repeat(DIGITS), "9".repeat(DIGITS - 1) + "8"};
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+        ResultRenderer renderer = new ResultRenderer();
+        renderer.setText(results[0]);
+        renderer.setSize(renderer.getPreferredSize().width, HEIGHT);
+        JTextField field = new JTextField(results[0]);
+        field.setSize(field.getPreferredSize().width, HEIGHT);
+
+        int[] next = new int[1];
+        runner.add("ResultRenderer.setText (50k digits)", () -> {
+            renderer.setText(results[next[0]++ & 1]);
+            return renderer.getText().length();
+        });
+        runner.add("ResultRenderer.paint (end of 50k digits)", () -> {
+            paintEnd(renderer, image);
+            return 1;
+        });
+        runner.add("JTextField.setText (50k digits)", () -> {
+            field.setText(results[next[0]++ & 1]);
+            return field.getDocument().getLength();
+        });
+        runner.add("JTextField.paint (end of 50k digits)", () -> {
+            paintEnd(field, image);
+            return 1;
+        });
+    }
+
+    /**
+     * Paints the last WIDTH pixels of a component into an image.
+     * @param component the component
+     * @param image the image
+     */
+    private static void paintEnd(JComponent component, BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        try {
+            int x = component.getWidth() - WIDTH;
+            g.translate(-x, 0);
+            g.setClip(x, 0, WIDTH, HEIGHT);
+            component.paint(g);
+        } finally {
+            g.dispose();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.Random;
+
+/**
+ * Benchmarks for the scientific operations, each one at STRICT accuracy (the Math functions) and at FAST accuracy (the FastMath
+ * approximations), called through OperationRegistry.apply() like the models do. Each operation applies the function to the
+ * next of a fixed set of random arguments, so the results can't be folded into constants.
+ */
+public final class ScientificBenchmarks {
+    /**
+     * The number of arguments cycled through (a power of two).
+     */
+    private static final int ARGUMENTS = 1024;
+
+    private ScientificBenchmarks() {
+    }
+
+    /**
+     * Registers the scientific benchmarks.
+     * @param runner the runner to register with
+     */
+    public static void register(BenchmarkRunner runner) {
+        Random random = new Random(42);
+        double[] magnitudes = new double[ARGUMENTS];
+        double[] powers = new double[ARGUMENTS];
+        double[] angles = new double[ARGUMENTS];
+        double[] bases = new double[ARGUMENTS];
+        double[] exponents = new double[ARGUMENTS];
+        double[] wholeExponents = new double[ARGUMENTS];
+
+        for (int i = 0; i < ARGUMENTS; i++) {
+            magnitudes[i] = Math.pow(10, random.nextDouble() * 9 - 3);
+            powers[i] = random.nextDouble() * 40 - 20;
+            angles[i] = random.nextDouble() * 20 - 10;
+            bases[i] = Math.pow(10, random.nextDouble() * 3 - 1);
+            exponents[i] = random.nextDouble() * 6 - 3;
+            wholeExponents[i] = random.nextInt(7) - 3;
+        }
+
+        for (OperationRegistry.Accuracy accuracy : OperationRegistry.Accuracy.values()) {
+            OperationRegistry registry = OperationRegistry.load(accuracy);
+            String suffix = " " + accuracy.name().toLowerCase();
+
+            runner.add("Scientific √" + suffix, function(registry.get("√"), magnitudes, magnitudes));
+            runner.add("Scientific ^" + suffix, function(registry.get("^"), bases, exponents));
+            runner.add("Scientific ^ whole exponent" + suffix, function(registry.get("^"), bases, wholeExponents));
+            runner.add("Scientific exp" + suffix, function(registry.get("exp"), powers, powers));
+            runner.add("Scientific ln" + suffix, function(registry.get("ln"), magnitudes, magnitudes));
+            runner.add("Scientific log" + suffix, function(registry.get("log"), magnitudes, magnitudes));
+            runner.add("Scientific sin" + suffix, function(registry.get("sin"), angles, angles));
+            runner.add("Scientific cos" + suffix, function(registry.get("cos"), angles, angles));
+            runner.add("Scientific tan" + suffix, function(registry.get("tan"), angles, angles));
+        }
+    }
+
+    /**
+     * Creates an operation that applies a scientific operation to the next pair of arguments.
+     * @param operation the scientific operation
+     * @param firsts the first arguments
+     * @param seconds the second arguments (ignored by unary operations)
+     * @return the benchmarked operation
+     */
+    private static BenchmarkRunner.Operation function(CalculatorOperation operation, double[] firsts, double[] seconds) {
+        int[] next = new int[1];
+        return () -> {
+            int i = next[0]++ & (ARGUMENTS - 1);
+            return Double.doubleToRawLongBits(OperationRegistry.apply(operation, firsts[i], seconds[i]));
+        };
+    }
+}
@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Checks which lines StatisticsAggregator accepts: numbers surrounded by ASCII whitespace are counted, while lines holding any
+ * other character (such as the minus sign U+2212, a currency sign or a no-break space) are rejected rather than having it
+ * stripped as if it were whitespace. The lines are repeated over several blocks and chunks, and the file is aggregated with
+ * one thread and with several.
+ * <p>
+ * Prints the statistics that differ from those expected and exits with status 1 if there were any.
+ * <p>
+ * Usage: StatisticsInputCheck [repeats of the lines]
+ */
+public final class StatisticsInputCheck {
+    /**
+     * The lines written, repeated (the last one without a newline).
+     */
+    private static final String[] LINES = {"10", "  7\r", "\t-2.5 ", "−5", "5€", "€5", " 5", ""};
+    /**
+     * The number of lines of LINES counted.
+     */
+    private static final long COUNTED = 3;
+    /**
+     * The number of lines of LINES rejected.
+     */
+    private static final long REJECTED = 4;
+    /**
+     * The sum of the lines of LINES counted.
+     */
+    private static final double SUM = 14.5;
+
+    private StatisticsInputCheck() {
+    }
+
+    /**
+     * Runs the check.
+     * @param args the command line arguments
+     * @throws IOException if the input file can't be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int repeats = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < repeats; i++) {
+            for (String line : LINES) {
+                text.append(line).append('\n');
+            }
+        }
+        text.setLength(text.length() - 1);
+
+        Path file = Files.createTempFile("statistics", ".txt");
+        int mismatches = 0;
+        try {
+            Files.writeString(file, text, StandardCharsets.UTF_8);
+
+            for (int parallelism : new int[] {1, 4}) {
+                //Small chunks too, so lines are cut by chunk and block boundaries
+                for (int chunkSize : new int[] {MappedChunkReader.DEFAULT_CHUNK_SIZE, StatisticsAggregator.BLOCK_SIZE}) {
+                    StatisticsAccumulator statistics = new StatisticsAggregator(parallelism, chunkSize).aggregate(file);
+                    String run = parallelism + " threads, " + chunkSize + " byte chunks: ";
+
+                    mismatches += check(run + "count", statistics.getCount(), COUNTED * repeats);
+                    mismatches += check(run + "rejected", statistics.getRejectedCount(), REJECTED * repeats);
+                    mismatches += check(run + "sum", statistics.getSum(), SUM * repeats);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        System.out.println(mismatches + " mismatches");
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compares a statistic with the value expected, printing it if they differ.
+     * @param name the statistic's name
+     * @param actual the value computed
+     * @param expected the value expected
+     * @return 1 if they differ, 0 otherwise
+     */
+    private static int check(String name, double actual, double expected) {
+        if (actual == expected) {
+            return 0;
+        }
+
+        System.out.println(name + " is " + actual + ", expected " + expected);
+        return 1;
+    }
+}
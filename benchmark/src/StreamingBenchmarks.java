@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Benchmarks for the streaming mode. Each operation streams the same megabyte of tokens from memory into a calculator that
+ * throws its results away, so ops/s times TOKEN_COUNT is the number of tokens per second.
+ */
+public final class StreamingBenchmarks {
+    /**
+     * A line of tokens, repeated to fill the input.
+     */
+    private static final String LINE = "1.5 + 2.25 × 3 = C 9 √ 0.1 + 12 ÷ 4 =\n";
+    /**
+     * The number of times the line is repeated.
+     */
+    private static final int LINES = (1 << 20) / LINE.length();
+    /**
+     * The number of tokens in the input.
+     */
+    private static final int TOKEN_COUNT = LINES * LINE.split("\\s+").length;
+
+    private StreamingBenchmarks() {
+    }
+
+    /**
+     * Registers the streaming benchmarks.
+     * @param runner the runner to register with
+     */
+    public static void register(BenchmarkRunner runner) {
+        byte[] input = LINE.repeat(LINES).getBytes(StandardCharsets.UTF_8);
+        String name = String.format("StreamingCalculator (%,d tokens)", TOKEN_COUNT);
+
+        StreamingCalculator calculator = new StreamingCalculator(new DiscardingChannel(), StreamingCalculator.DEFAULT_BATCH_SIZE, 0);
+        runner.add(name, 1, () -> {
+            try {
+                calculator.run(new ArrayChannel(input));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return calculator.getResultCount();
+        });
+    }
+
+    /**
+     * A channel that reads from an array (without allocating for each read, unlike Channels.newChannel()).
+     */
+    private static final class ArrayChannel implements ReadableByteChannel {
+        /**
+         * The bytes to read.
+         */
+        private final byte[] bytes;
+        /**
+         * The index of the next byte to read.
+         */
+        private int position;
+
+        /**
+         * Creates a channel.
+         * @param bytes the bytes to read
+         */
+        private ArrayChannel(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) {
+            if (position == bytes.length) {
+                return -1;
+            }
+            int length = Math.min(destination.remaining(), bytes.length - position);
+            destination.put(bytes, position, length);
+            position += length;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * A channel that throws away everything written to it.
+     */
+    private static final class DiscardingChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer source) {
+            int length = source.remaining();
+            source.position(source.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
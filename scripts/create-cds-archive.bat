@@ -0,0 +1,21 @@
+@echo off
+rem Creates a class-data-sharing (CDS) archive for the calculator jar, so later starts can map the classes startup needs
+rem straight from the archive instead of loading and verifying them one by one.
+rem Build the Calculator:jar artifact first, then run this script from the project directory.
+rem Usage: scripts\create-cds-archive.bat [jar] [archive]
+
+set JAR=%~1
+if "%JAR%"=="" set JAR=out\artifacts\Calculator_jar\Calculator.jar
+set ARCHIVE=%~2
+if "%ARCHIVE%"=="" set ARCHIVE=%JAR:.jar=.jsa%
+
+if not exist "%JAR%" (
+    echo Missing %JAR% ^(build the Calculator:jar artifact first^) 1>&2
+    exit /b 1
+)
+
+rem Starts the calculator once and exits as soon as the first frame is painted, archiving every class loaded on the way
+java -XX:ArchiveClassesAtExit="%ARCHIVE%" -jar "%JAR%" --fast-start --exit-after-first-frame || exit /b 1
+
+echo Created %ARCHIVE%. Start the calculator with:
+echo   java -XX:SharedArchiveFile=%ARCHIVE% -jar %JAR% --fast-start
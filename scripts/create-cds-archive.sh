@@ -0,0 +1,19 @@
+#!/bin/sh
+# Creates a class-data-sharing (CDS) archive for the calculator jar, so later starts can map the classes startup needs
+# straight from the archive instead of loading and verifying them one by one.
+# Build the Calculator:jar artifact first, then run this script from the project directory.
+# Usage: scripts/create-cds-archive.sh [jar] [archive]
+
+JAR="${1:-out/artifacts/Calculator_jar/Calculator.jar}"
+ARCHIVE="${2:-${JAR%.jar}.jsa}"
+
+if [ ! -f "$JAR" ]; then
+    echo "Missing $JAR (build the Calculator:jar artifact first)" >&2
+    exit 1
+fi
+
+# Starts the calculator once and exits as soon as the first frame is painted, archiving every class loaded on the way
+java -XX:ArchiveClassesAtExit="$ARCHIVE" -jar "$JAR" --fast-start --exit-after-first-frame || exit 1
+
+echo "Created $ARCHIVE. Start the calculator with:"
+echo "  java -XX:SharedArchiveFile=$ARCHIVE -jar $JAR --fast-start"
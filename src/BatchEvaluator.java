@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates a file of calculation sequences headlessly (without creating a CalculatorView).
+ * Every line of the input file is one calculation sequence (see KeystrokeInterpreter for the keys understood), and is evaluated
+ * on a freshly reset model. The final value of the result field for each line is written to the output file, in the same order.
+ * The input is streamed through memory-mapped chunks, and each chunk is split into shards that are evaluated in parallel,
+ * with every worker thread owning its own model.
+ */
+public class BatchEvaluator {
+    /**
+     * The number of worker threads.
+     */
+    private final int workers;
+    /**
+     * The size of each mapped input chunk in bytes.
+     */
+    private final int chunkSize;
+    /**
+     * Each worker thread's own model.
+     */
+    private final ThreadLocal<CalculatorModel> models;
+
+    /**
+     * Creates a batch evaluator using all available cores and the default model.
+     */
+    public BatchEvaluator() {
+        this(Runtime.getRuntime().availableProcessors(), MappedChunkReader.DEFAULT_CHUNK_SIZE, CalculatorModel::new);
+    }
+
+    /**
+     * Creates a batch evaluator.
+     * @param workers the number of worker threads
+     * @param chunkSize the size of each mapped input chunk in bytes
+     * @param modelFactory creates the model owned by each worker thread
+     */
+    public BatchEvaluator(int workers, int chunkSize, Supplier<? extends CalculatorModel> modelFactory) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("There must be at least one worker.");
+        }
+
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+        this.models = ThreadLocal.withInitial(modelFactory);
+    }
+
+    /**
+     * Evaluates every line of the input file and writes the results to the output file (one per line, in input order).
+     * @param input the file of calculation sequences
+     * @param output the file to write the results to (replaced if it already exists)
+     * @throws IOException if either file cannot be read or written
+     */
+    public void evaluate(Path input, Path output) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+
+        try (MappedChunkReader reader = new MappedChunkReader(input, chunkSize);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            List<Future<ByteBuffer>> pending = new ArrayList<>();
+            ByteBuffer chunk;
+
+            while ((chunk = reader.nextChunk()) != null) {
+                //Submit the next chunk before writing the previous one, so the workers are never idle while we write
+                List<Future<ByteBuffer>> submitted = submitChunk(executor, chunk);
+                writeResults(pending, out);
+                pending = submitted;
+            }
+            writeResults(pending, out);
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits a chunk into one shard per worker (on line boundaries) and submits them for evaluation.
+     * @param executor the executor running the workers
+     * @param chunk the chunk to evaluate
+     * @return the results of each shard, in order
+     */
+    private List<Future<ByteBuffer>> submitChunk(ExecutorService executor, ByteBuffer chunk) {
+        List<Future<ByteBuffer>> shards = new ArrayList<>(workers);
+        int limit = chunk.limit();
+        int shardSize = Math.max(1, limit / workers);
+        int start = 0;
+
+        while (start < limit) {
+            int end = Math.min(start + shardSize, limit);
+
+            //Extend the shard to the end of the line it stops in
+            while (end < limit && chunk.get(end - 1) != '\n') {
+                end++;
+            }
+
+            int shardStart = start;
+            int shardEnd = end;
+            shards.add(executor.submit(() -> evaluateShard(chunk, shardStart, shardEnd)));
+            start = end;
+        }
+
+        return shards;
+    }
+
+    /**
+     * Evaluates every line in a shard using the current worker's model.
+     * @param chunk the chunk holding the shard
+     * @param start the index of the start of the shard (inclusive)
+     * @param end the index of the end of the shard (exclusive)
+     * @return the results, one per line
+     */
+    private ByteBuffer evaluateShard(ByteBuffer chunk, int start, int end) {
+        CalculatorModel model = models.get();
+        StringBuilder results = new StringBuilder((end - start) / 2);
+        int lineStart = start;
+
+        for (int i = start; i < end; i++) {
+            if (chunk.get(i) == '\n') {
+                evaluateLine(model, chunk, lineStart, i, results);
+                lineStart = i + 1;
+            }
+        }
+
+        //The last line of the file might not end with a newline
+        if (lineStart < end) {
+            evaluateLine(model, chunk, lineStart, end, results);
+        }
+
+        return StandardCharsets.UTF_8.encode(results.toString());
+    }
+
+    /**
+     * Evaluates a single line and appends its result.
+     * @param model the model to use
+     * @param chunk the chunk holding the line
+     * @param start the index of the start of the line (inclusive)
+     * @param end the index of the end of the line (exclusive, not including the newline)
+     * @param results where the result is appended to
+     */
+    private void evaluateLine(CalculatorModel model, ByteBuffer chunk, int start, int end, StringBuilder results) {
+        model.reset();
+        KeystrokeInterpreter.apply(model, chunk, start, end);
+        results.append(model.getCurrentResultField()).append('\n');
+    }
+
+    /**
+     * Waits for the results of each shard and writes them in order.
+     * @param shards the results of each shard
+     * @param out the channel to write to
+     * @throws IOException if writing fails or a shard could not be evaluated
+     */
+    private void writeResults(List<Future<ByteBuffer>> shards, FileChannel out) throws IOException {
+        for (Future<ByteBuffer> shard : shards) {
+            ByteBuffer results;
+
+            try {
+                results = shard.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while evaluating.", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to evaluate a shard.", e.getCause());
+            }
+
+            while (results.hasRemaining()) {
+                out.write(results);
+            }
+        }
+    }
+
+    /**
+     * Runs the batch evaluator from the command line.
+     * @param args the input file and the output file, optionally preceded by --primitive or --decimal to choose the model
+     * @throws IOException if either file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Supplier<CalculatorModel> modelFactory = CalculatorModel::new;
+        int first = 0;
+
+        if (args.length > 0 && args[0].equals("--primitive")) {
+            modelFactory = PrimitiveCalculatorModel::new;
+            first = 1;
+        } else if (args.length > 0 && args[0].equals("--decimal")) {
+            modelFactory = DecimalCalculatorModel::new;
+            first = 1;
+        }
+
+        if (args.length - first != 2) {
+            System.err.println("Usage: --batch [--primitive | --decimal] <input file> <output file>");
+            System.exit(1);
+        }
+
+        new BatchEvaluator(Runtime.getRuntime().availableProcessors(), MappedChunkReader.DEFAULT_CHUNK_SIZE, modelFactory)
+                .evaluate(Path.of(args[first]), Path.of(args[first + 1]));
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * Listens for the calculations performed by a CalculatorModel.
+ */
+@FunctionalInterface
+public interface CalculationListener {
+    /**
+     * Called after an operation has been applied to two operands.
+     * @param firstOperand the text of the first operand
+     * @param operation the operation (+ - × or ÷)
+     * @param secondOperand the text of the second operand
+     * @param result the text shown as the result (an error message such as "ERROR" if the calculation failed)
+     */
+    void calculated(String firstOperand, char operation, String secondOperand, String result);
+}
@@ -0,0 +1,358 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * A persistent record of every calculation (its operands, operator and result), written to a memory-mapped, append-only
+ * binary file. Attach it to a model with setCalculationListener(), and read it back with CalculationTapeReader.
+ * <p>
+ * The file starts with a HEADER_SIZE byte header, followed by RECORD_SIZE byte records. After every CHECKPOINT_INTERVAL
+ * entries a checkpoint record is written holding the number of entries so far and a CRC32C checksum of the entries since the
+ * previous checkpoint, so a reader can jump straight to any checkpoint and detect damaged or altered entries. Appending only
+ * copies a record into the mapping (the operating system writes it out), so it doesn't slow calculations down; call force()
+ * to make sure everything has reached the disk.
+ * <p>
+ * Texts are stored as UTF-8, so results such as "∞" and localized digits are kept as they were shown (ASCII text is stored one
+ * byte per character, as before).
+ */
+public class CalculationTape implements CalculationListener, Closeable {
+    /**
+     * Identifies tape files ("CTAP").
+     */
+    public static final int MAGIC = 0x43544150;
+    /**
+     * The version of the file format.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The size of the file header in bytes.
+     */
+    public static final int HEADER_SIZE = 64;
+    /**
+     * The size of each record in bytes.
+     */
+    public static final int RECORD_SIZE = 128;
+    /**
+     * The number of entries between two checkpoints.
+     */
+    public static final int CHECKPOINT_INTERVAL = 1024;
+    /**
+     * The most bytes stored for each operand and the result, as UTF-8 (longer texts are cut short, between two characters).
+     */
+    public static final int MAX_TEXT_LENGTH = 37;
+    /**
+     * The kind of record holding a calculation.
+     */
+    public static final byte ENTRY = 1;
+    /**
+     * The kind of record holding a checkpoint.
+     */
+    public static final byte CHECKPOINT = 2;
+
+    /**
+     * The offset in the header of the number of records written.
+     */
+    static final int HEADER_RECORD_COUNT = 16;
+    /**
+     * The offset in a record of its timestamp (epoch milliseconds).
+     */
+    static final int TIMESTAMP = 0;
+    /**
+     * The offset in a record of the operator (a char).
+     */
+    static final int OPERATION = 8;
+    /**
+     * The offset in a record of its kind.
+     */
+    static final int KIND = 10;
+    /**
+     * The offset in a record of the lengths of its three texts in bytes (one byte each).
+     */
+    static final int LENGTHS = 11;
+    /**
+     * The offset in an entry record of the first operand's text.
+     */
+    static final int FIRST_OPERAND = 16;
+    /**
+     * The offset in an entry record of the second operand's text.
+     */
+    static final int SECOND_OPERAND = FIRST_OPERAND + MAX_TEXT_LENGTH;
+    /**
+     * The offset in an entry record of the result's text.
+     */
+    static final int RESULT = SECOND_OPERAND + MAX_TEXT_LENGTH;
+    /**
+     * The offset in a checkpoint record of the number of entries before it.
+     */
+    static final int CHECKPOINT_ENTRY_COUNT = 16;
+    /**
+     * The offset in a checkpoint record of the checksum of the entries since the previous checkpoint.
+     */
+    static final int CHECKPOINT_CHECKSUM = 24;
+    /**
+     * The size of each mapped region of records in bytes (a multiple of RECORD_SIZE).
+     */
+    static final int SEGMENT_SIZE = 1 << 24;
+
+    /**
+     * The tape file.
+     */
+    private final FileChannel channel;
+    /**
+     * The mapped header.
+     */
+    private final MappedByteBuffer header;
+    /**
+     * The mapped region records are currently appended to.
+     */
+    private MappedByteBuffer segment;
+    /**
+     * The index of the mapped region.
+     */
+    private long segmentIndex = -1;
+    /**
+     * The number of records written (entries and checkpoints).
+     */
+    private long recordCount;
+    /**
+     * The number of entries written.
+     */
+    private long entryCount;
+    /**
+     * The checksum of the entries since the last checkpoint.
+     */
+    private final CRC32C checksum = new CRC32C();
+    /**
+     * The record being built.
+     */
+    private final byte[] record = new byte[RECORD_SIZE];
+
+    /**
+     * Opens a tape, creating it if it doesn't exist. New calculations are appended after any already on it.
+     * @param path the tape file
+     * @throws IOException if the file can't be opened, or isn't a tape
+     */
+    public CalculationTape(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+        if (created) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, RECORD_SIZE);
+            header.putInt(12, CHECKPOINT_INTERVAL);
+            header.putLong(HEADER_RECORD_COUNT, 0);
+        } else {
+            checkHeader(header, path);
+            recordCount = header.getLong(HEADER_RECORD_COUNT);
+
+            //Pick up the checksum of the entries written since the last checkpoint
+            long records = recordCount % (CHECKPOINT_INTERVAL + 1);
+            entryCount = recordCount / (CHECKPOINT_INTERVAL + 1) * CHECKPOINT_INTERVAL + records;
+            for (long i = recordCount - records; i < recordCount; i++) {
+                mapSegment(i);
+                segment.get((int) (i * RECORD_SIZE % SEGMENT_SIZE), record);
+                checksum.update(record);
+            }
+        }
+    }
+
+    /**
+     * Checks that a header belongs to a tape this version can read.
+     * @param header the mapped header
+     * @param path the tape file (for error messages)
+     * @throws IOException if it isn't a tape, or is of a different version
+     */
+    static void checkHeader(MappedByteBuffer header, Path path) throws IOException {
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a calculation tape.");
+        }
+        if (header.getInt(4) != VERSION || header.getInt(8) != RECORD_SIZE || header.getInt(12) != CHECKPOINT_INTERVAL) {
+            throw new IOException(path + " was written by an unsupported version.");
+        }
+    }
+
+    @Override
+    public void calculated(String firstOperand, char operation, String secondOperand, String result) {
+        append(System.currentTimeMillis(), firstOperand, operation, secondOperand, result);
+    }
+
+    /**
+     * Appends an entry to the tape, followed by a checkpoint if one is due.
+     * @param timestamp when the calculation was performed (epoch milliseconds)
+     * @param firstOperand the text of the first operand
+     * @param operation the operation
+     * @param secondOperand the text of the second operand
+     * @param result the text of the result
+     */
+    public synchronized void append(long timestamp, String firstOperand, char operation, String secondOperand, String result) {
+        putLong(TIMESTAMP, timestamp);
+        record[OPERATION] = (byte) (operation >>> 8);
+        record[OPERATION + 1] = (byte) operation;
+        record[KIND] = ENTRY;
+        record[LENGTHS] = (byte) putText(FIRST_OPERAND, firstOperand);
+        record[LENGTHS + 1] = (byte) putText(SECOND_OPERAND, secondOperand);
+        record[LENGTHS + 2] = (byte) putText(RESULT, result);
+
+        checksum.update(record);
+        writeRecord();
+        entryCount++;
+
+        if (entryCount % CHECKPOINT_INTERVAL == 0) {
+            writeCheckpoint(timestamp);
+        }
+    }
+
+    /**
+     * Gets the number of entries on the tape.
+     * @return the number of entries
+     */
+    public synchronized long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Writes everything appended so far out to the disk.
+     */
+    public synchronized void force() {
+        if (segment != null) {
+            segment.force();
+        }
+        header.force();
+    }
+
+    /**
+     * Writes everything out to the disk and closes the tape.
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * Writes a checkpoint record for the entries since the previous one, and starts a new checksum.
+     * @param timestamp the time of the last entry
+     */
+    private void writeCheckpoint(long timestamp) {
+        Arrays.fill(record, (byte) 0);
+        putLong(TIMESTAMP, timestamp);
+        record[KIND] = CHECKPOINT;
+        putLong(CHECKPOINT_ENTRY_COUNT, entryCount);
+        putLong(CHECKPOINT_CHECKSUM, checksum.getValue());
+
+        writeRecord();
+        checksum.reset();
+    }
+
+    /**
+     * Copies the record being built into the mapping and counts it in the header.
+     */
+    private void writeRecord() {
+        mapSegment(recordCount);
+        segment.put((int) (recordCount * RECORD_SIZE % SEGMENT_SIZE), record);
+
+        //The count is only updated once the record is in place, so readers never see a partial record
+        recordCount++;
+        header.putLong(HEADER_RECORD_COUNT, recordCount);
+    }
+
+    /**
+     * Makes sure the region holding a record is mapped, growing the file if needed.
+     * @param recordIndex the index of the record
+     */
+    private void mapSegment(long recordIndex) {
+        long index = recordIndex * RECORD_SIZE / SEGMENT_SIZE;
+        if (index != segmentIndex) {
+            try {
+                if (segment != null) {
+                    segment.force();
+                }
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + index * SEGMENT_SIZE, SEGMENT_SIZE);
+                segment.order(ByteOrder.BIG_ENDIAN);
+                segmentIndex = index;
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to extend the calculation tape.", e);
+            }
+        }
+    }
+
+    /**
+     * Stores a long in the record being built (big-endian, like ByteBuffer).
+     * @param offset the offset in the record
+     * @param value the value
+     */
+    private void putLong(int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            record[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * Stores text in the record being built, zero filling the rest of its field.
+     * @param offset the offset of the field in the record
+     * @param text the text
+     * @return the number of bytes stored
+     */
+    private int putText(int offset, String text) {
+        int length = encodeText(text, record, offset);
+        for (int i = length; i < MAX_TEXT_LENGTH; i++) {
+            record[offset + i] = 0;
+        }
+        return length;
+    }
+
+    /**
+     * Encodes as much of some text as fits in a field (MAX_TEXT_LENGTH bytes) as UTF-8, without splitting a character. Unpaired
+     * surrogates are encoded as '?', like String.getBytes() does.
+     * @param text the text
+     * @param bytes the array to encode into
+     * @param offset the offset of the field in the array
+     * @return the number of bytes encoded
+     */
+    static int encodeText(String text, byte[] bytes, int offset) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int c = text.charAt(i);
+            int size;
+            if (c < 0x80) {
+                size = 1;
+            } else if (c < 0x800) {
+                size = 2;
+            } else if (!Character.isSurrogate((char) c)) {
+                size = 3;
+            } else if (Character.isHighSurrogate((char) c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, text.charAt(++i));
+                size = 4;
+            } else {
+                c = '?';
+                size = 1;
+            }
+
+            if (length + size > MAX_TEXT_LENGTH) {
+                break;
+            }
+
+            if (size == 1) {
+                bytes[offset + length] = (byte) c;
+            } else {
+                //The lead byte has as many high bits set as there are bytes, each continuation byte holds 6 bits
+                bytes[offset + length] = (byte) ((0xF00 >> size) | (c >>> (6 * (size - 1))));
+                for (int j = 1; j < size; j++) {
+                    bytes[offset + length + j] = (byte) (0x80 | ((c >>> (6 * (size - 1 - j))) & 0x3F));
+                }
+            }
+            length += size;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,300 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads a tape written by CalculationTape, one entry at a time. Reading can start at any checkpoint, and the checksum stored in
+ * every checkpoint passed is verified. Entries can also be replayed into a model, recalculating each one and comparing the result
+ * with the one recorded.
+ */
+public class CalculationTapeReader implements Closeable {
+    /**
+     * The tape file.
+     */
+    private final FileChannel channel;
+    /**
+     * The tape file's path (for error messages).
+     */
+    private final Path path;
+    /**
+     * The number of records on the tape when it was opened (entries and checkpoints).
+     */
+    private final long recordCount;
+    /**
+     * The mapped region holding the record being read.
+     */
+    private MappedByteBuffer segment;
+    /**
+     * The index of the mapped region.
+     */
+    private long segmentIndex = -1;
+    /**
+     * The index of the next record to read.
+     */
+    private long position;
+    /**
+     * The index of the current entry (counting entries only), or -1 before the first one is read.
+     */
+    private long entryIndex = -1;
+    /**
+     * The checksum of the entries read since the last checkpoint.
+     */
+    private final CRC32C checksum = new CRC32C();
+    /**
+     * The current entry's record.
+     */
+    private final byte[] record = new byte[CalculationTape.RECORD_SIZE];
+    /**
+     * Holds a recalculated result encoded like the tape's texts, to compare it with the recorded one.
+     */
+    private final byte[] encoded = new byte[CalculationTape.MAX_TEXT_LENGTH];
+
+    /**
+     * Opens a tape for reading, positioned at its start.
+     * @param path the tape file
+     * @throws IOException if the file can't be opened, or isn't a tape
+     */
+    public CalculationTapeReader(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        if (channel.size() < CalculationTape.HEADER_SIZE) {
+            channel.close();
+            throw new IOException(path + " is not a calculation tape.");
+        }
+
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, CalculationTape.HEADER_SIZE);
+        try {
+            CalculationTape.checkHeader(header, path);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.recordCount = header.getLong(CalculationTape.HEADER_RECORD_COUNT);
+    }
+
+    /**
+     * Gets the number of entries on the tape.
+     * @return the number of entries
+     */
+    public long getEntryCount() {
+        return recordCount - getCheckpointCount();
+    }
+
+    /**
+     * Gets the number of checkpoints on the tape.
+     * @return the number of checkpoints
+     */
+    public long getCheckpointCount() {
+        return recordCount / (CalculationTape.CHECKPOINT_INTERVAL + 1);
+    }
+
+    /**
+     * Moves to a checkpoint, so the next entry read is the first one after it.
+     * @param checkpoint the checkpoint's number (0 for the start of the tape, n for the n-th checkpoint)
+     * @throws IllegalArgumentException if there is no such checkpoint
+     */
+    public void seek(long checkpoint) throws IllegalArgumentException {
+        if (checkpoint < 0 || checkpoint > getCheckpointCount()) {
+            throw new IllegalArgumentException("The tape has no checkpoint " + checkpoint + ".");
+        }
+
+        position = checkpoint * (CalculationTape.CHECKPOINT_INTERVAL + 1);
+        entryIndex = checkpoint * CalculationTape.CHECKPOINT_INTERVAL - 1;
+        checksum.reset();
+    }
+
+    /**
+     * Moves to the next entry, verifying any checkpoint passed on the way.
+     * @return true if there is a next entry, false at the end of the tape
+     * @throws IOException if the tape can't be read, or a checkpoint's checksum doesn't match the entries before it
+     */
+    public boolean next() throws IOException {
+        while (position < recordCount) {
+            readRecord(position++);
+
+            if (record[CalculationTape.KIND] == CalculationTape.ENTRY) {
+                checksum.update(record);
+                entryIndex++;
+                return true;
+            }
+
+            if (record[CalculationTape.KIND] != CalculationTape.CHECKPOINT) {
+                throw new IOException(path + " is damaged: unknown record at index " + (position - 1) + ".");
+            }
+            if (getLong(CalculationTape.CHECKPOINT_CHECKSUM) != checksum.getValue()) {
+                throw new IOException(path + " is damaged: the entries before entry " + getLong(CalculationTape.CHECKPOINT_ENTRY_COUNT)
+                        + " don't match their checkpoint.");
+            }
+            checksum.reset();
+        }
+
+        return false;
+    }
+
+    /**
+     * Replays the rest of the tape into a model: it is reset, and then each entry's operands and operator are entered and calculated.
+     * Reading continues from the current position, so seek() first to replay from a checkpoint.
+     * @param model the model to replay into
+     * @return the number of entries whose recalculated result is different from the one recorded
+     * @throws IOException if the tape can't be read or is damaged
+     */
+    public long replay(CalculatorModel model) throws IOException {
+        long mismatches = 0;
+        model.reset();
+
+        while (next()) {
+            //Each entry starts from a cleared model, so an ERROR in one doesn't block the next
+            model.clearResultField();
+            model.setPrevResultField(getFirstOperand());
+            model.setCurrentResultField(getSecondOperand());
+            model.setOperationField(String.valueOf(getOperation()));
+            model.calculate();
+
+            if (!resultEquals(model.getCurrentResultField())) {
+                mismatches++;
+            }
+        }
+
+        return mismatches;
+    }
+
+    /**
+     * Gets the index of the current entry (counting entries only, from 0).
+     * @return the index of the current entry
+     */
+    public long getEntryIndex() {
+        return entryIndex;
+    }
+
+    /**
+     * Gets when the current entry's calculation was performed.
+     * @return the time in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return getLong(CalculationTape.TIMESTAMP);
+    }
+
+    /**
+     * Gets the current entry's first operand.
+     * @return the text of the first operand
+     */
+    public String getFirstOperand() {
+        return getText(CalculationTape.FIRST_OPERAND, 0);
+    }
+
+    /**
+     * Gets the current entry's operation.
+     * @return the operation
+     */
+    public char getOperation() {
+        return (char) (((record[CalculationTape.OPERATION] & 0xFF) << 8) | (record[CalculationTape.OPERATION + 1] & 0xFF));
+    }
+
+    /**
+     * Gets the current entry's second operand.
+     * @return the text of the second operand
+     */
+    public String getSecondOperand() {
+        return getText(CalculationTape.SECOND_OPERAND, 1);
+    }
+
+    /**
+     * Gets the current entry's result.
+     * @return the text of the result
+     */
+    public String getResult() {
+        return getText(CalculationTape.RESULT, 2);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Checks whether the current entry's result is some text, without creating a String for the result.
+     * @param text the text to compare with
+     * @return true if they are the same
+     */
+    private boolean resultEquals(String text) {
+        //Encoded the way the tape stores it, so a text that was cut short is cut at the same place
+        int length = CalculationTape.encodeText(text, encoded, 0);
+        return length == record[CalculationTape.LENGTHS + 2]
+                && Arrays.equals(encoded, 0, length, record, CalculationTape.RESULT, CalculationTape.RESULT + length);
+    }
+
+    /**
+     * Reads a record into the record buffer.
+     * @param index the index of the record
+     * @throws IOException if the region holding it can't be mapped
+     */
+    private void readRecord(long index) throws IOException {
+        long offset = index * CalculationTape.RECORD_SIZE;
+        long segmentNumber = offset / CalculationTape.SEGMENT_SIZE;
+
+        if (segmentNumber != segmentIndex) {
+            long start = CalculationTape.HEADER_SIZE + segmentNumber * CalculationTape.SEGMENT_SIZE;
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CalculationTape.SEGMENT_SIZE, channel.size() - start));
+            segmentIndex = segmentNumber;
+        }
+
+        segment.get((int) (offset % CalculationTape.SEGMENT_SIZE), record);
+    }
+
+    /**
+     * Reads a big-endian long from the current record.
+     * @param offset the offset in the record
+     * @return the value
+     */
+    private long getLong(int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (record[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Reads one of the current record's texts.
+     * @param offset the offset of the text in the record
+     * @param field which text it is (0 to 2), to find its length
+     * @return the text
+     */
+    private String getText(int offset, int field) {
+        return new String(record, offset, record[CalculationTape.LENGTHS + field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replays a tape into a fresh model and reports how many entries it holds and how many replayed differently.
+     * Usage: --replay &lt;tape file&gt; [checkpoint]
+     * @param args the command line arguments
+     * @throws IOException if the tape can't be read or is damaged
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: --replay <tape file> [checkpoint]");
+            System.exit(1);
+        }
+
+        try (CalculationTapeReader reader = new CalculationTapeReader(Path.of(args[0]))) {
+            long checkpoint = args.length > 1 ? Long.parseLong(args[1]) : 0;
+            reader.seek(checkpoint);
+
+            long start = System.nanoTime();
+            long mismatches = reader.replay(new CalculatorModel());
+            long elapsed = System.nanoTime() - start;
+            long replayed = reader.getEntryIndex() + 1 - checkpoint * CalculationTape.CHECKPOINT_INTERVAL;
+
+            System.out.printf("Replayed %d of %d entries from checkpoint %d in %d ms (%d entries/s), %d mismatched%n",
+                    replayed, reader.getEntryCount(), checkpoint, elapsed / 1_000_000,
+                    elapsed == 0 ? 0 : replayed * 1_000_000_000L / elapsed, mismatches);
+        }
+    }
+}
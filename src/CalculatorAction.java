@@ -0,0 +1,30 @@
+/**
+ * The actions keys can be bound to in a KeyMap.
+ */
+public enum CalculatorAction {
+    //Digits
+    DIGIT_0, DIGIT_1, DIGIT_2, DIGIT_3, DIGIT_4, DIGIT_5, DIGIT_6, DIGIT_7, DIGIT_8, DIGIT_9,
+
+    //Operations
+    ADD, SUBTRACT, MULTIPLY, DIVIDE,
+
+    //Misc
+    CLEAR, SIGN, PERCENT, DECIMAL, EQUALS,
+
+    //Editing
+    PASTE, UNDO, REDO,
+
+    //Statistics
+    STAT_ADD, STAT_SHOW, STAT_CLEAR,
+
+    //Scientific
+    SQRT, POWER, EXP, LN, LOG10, SIN, COS, TAN,
+
+    //Programmer
+    HEX_A, HEX_B, HEX_C, HEX_D, HEX_E, HEX_F,
+    AND, OR, XOR, NOT, SHIFT_LEFT, SHIFT_RIGHT, ROTATE_LEFT, ROTATE_RIGHT,
+    RADIX_BIN, RADIX_OCT, RADIX_DEC, RADIX_HEX, WORD_SIZE,
+
+    //Windows
+    NEW_WINDOW
+}
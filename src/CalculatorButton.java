@@ -1,19 +1,89 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 
 /**
  * A custom JButton class to change the colour of the button when clicked.
+ * The button's normal and pressed appearances are each rendered once into a cached image (compatible with the screen), which is
+ * all that is drawn on later repaints. The images are thrown away whenever the button's size, scale, colours, font, text or
+ * look and feel change.
  */
 public class CalculatorButton extends JButton {
     private Color backgroundColorClicked;
+    /**
+     * The cached appearances, indexed by whether the button is pressed (0 for normal, 1 for pressed). Not serialized, as
+     * they are rendered again anyway.
+     */
+    private transient BufferedImage[] surfaces = new BufferedImage[2];
+    /**
+     * The width in pixels the cached images were rendered for.
+     */
+    private int surfaceWidth;
+    /**
+     * The height in pixels the cached images were rendered for.
+     */
+    private int surfaceHeight;
+    /**
+     * Whether the cached images were rendered with the button enabled.
+     */
+    private boolean surfaceEnabled;
 
     public CalculatorButton(String text) {
         super(text);
         super.setContentAreaFilled(false);
+
+        //Any change to a property that affects the appearance (font, colours, text, enabled, look and feel...) invalidates the cache
+        addPropertyChangeListener(_ -> invalidateSurfaces());
     }
 
     @Override
     protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        AffineTransform transform = g2.getTransform();
+        int width = (int) Math.ceil(getWidth() * transform.getScaleX());
+        int height = (int) Math.ceil(getHeight() * transform.getScaleY());
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+
+        //Nothing to cache for (eg. when printing or not shown yet)
+        if (configuration == null || width <= 0 || height <= 0 || transform.getShearX() != 0 || transform.getShearY() != 0) {
+            paintSurface(g);
+            return;
+        }
+
+        if (width != surfaceWidth || height != surfaceHeight || isEnabled() != surfaceEnabled) {
+            surfaces[0] = null;
+            surfaces[1] = null;
+            surfaceWidth = width;
+            surfaceHeight = height;
+            surfaceEnabled = isEnabled();
+        }
+
+        int state = getModel().isPressed() ? 1 : 0;
+        if (surfaces[state] == null) {
+            BufferedImage surface = configuration.createCompatibleImage(width, height, isOpaque() ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+            Graphics2D surfaceGraphics = surface.createGraphics();
+            try {
+                surfaceGraphics.setRenderingHints(g2.getRenderingHints());
+                surfaceGraphics.scale(transform.getScaleX(), transform.getScaleY());
+                surfaceGraphics.setFont(getFont());
+                paintSurface(surfaceGraphics);
+            } finally {
+                surfaceGraphics.dispose();
+            }
+            surfaces[state] = surface;
+        }
+
+        g.drawImage(surfaces[state], 0, 0, getWidth(), getHeight(), null);
+    }
+
+    /**
+     * Paints the button's background and text for its current state.
+     * @param g the graphics to paint with
+     */
+    private void paintSurface(Graphics g) {
         if (getModel().isPressed()) {
             g.setColor(backgroundColorClicked);
         } else {
@@ -21,7 +91,42 @@ public class CalculatorButton extends JButton {
         }
 
         g.fillRect(0, 0, getWidth(), getHeight());
-        super.paintComponent(g);
+
+        //Paints the text without going through update(), which would clear the background again when the button is opaque
+        if (ui != null) {
+            ui.paint(g, this);
+        }
+    }
+
+    /**
+     * Throws away the cached appearances so they are rendered again on the next paint.
+     */
+    private void invalidateSurfaces() {
+        surfaces[0] = null;
+        surfaces[1] = null;
+        repaint();
+    }
+
+    /**
+     * Restores a serialized button, with no cached appearances.
+     * @param in the stream to read from
+     * @throws IOException if the stream can't be read
+     * @throws ClassNotFoundException if the class of a serialized object can't be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        surfaces = new BufferedImage[2];
+    }
+
+    /**
+     * The button fills its whole area, so (unless its colours are translucent) nothing behind it has to be repainted when it changes.
+     * @return true if both background colours are opaque
+     */
+    @Override
+    public boolean isOpaque() {
+        Color background = getBackground();
+        return background != null && background.getAlpha() == 255
+                && (backgroundColorClicked == null || backgroundColorClicked.getAlpha() == 255);
     }
 
     @Override
@@ -41,6 +146,8 @@ public class CalculatorButton extends JButton {
      * @param backgroundColorClicked the new Color to be set
      */
     public void setBackgroundColorClicked(Color backgroundColorClicked) {
+        Color old = this.backgroundColorClicked;
         this.backgroundColorClicked = backgroundColorClicked;
+        firePropertyChange("backgroundColorClicked", old, backgroundColorClicked);
     }
 }
@@ -1,5 +1,11 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * The controller class for the MVC calculator.
@@ -12,35 +18,105 @@ public class CalculatorController implements KeyListener {
     /**
      * The view in the MVC pattern.
      */
-    private final CalculatorView view;
+    private final CalculatorDisplay view;
+    /**
+     * Coalesces view updates into at most one per display frame.
+     */
+    private final ViewUpdateScheduler updateScheduler;
+    /**
+     * The result text last shown in the view.
+     */
+    private String shownResult;
+    /**
+     * The operation text last shown in the view.
+     */
+    private String shownOperation;
+    /**
+     * Whether pasted keystrokes are being applied to the model in the background (all other input is ignored until they are done).
+     */
+    private boolean pasting;
+    /**
+     * The model's undo/redo history.
+     */
+    private final CalculatorHistory history = new CalculatorHistory();
+    /**
+     * Resolves key events to actions.
+     */
+    private final KeyDispatcher keyDispatcher = new KeyDispatcher(KeyMap.getDefault());
+    /**
+     * The runtime metrics the handlers are counted in.
+     */
+    private final CalculatorMetrics metrics = CalculatorMetrics.getInstance();
+    /**
+     * System.nanoTime() when the key event being handled arrived (0 when no key event is being handled).
+     */
+    private long keyNanos;
+    /**
+     * System.nanoTime() when the earliest key event whose result hasn't been shown yet arrived (0 if there is none).
+     */
+    private long unshownKeyNanos;
+    /**
+     * The statistics of the values added in statistics mode (they aren't part of the undo history).
+     */
+    private final StatisticsAccumulator statistics = new StatisticsAccumulator();
+    /**
+     * The labels of the statistics, in the order STAT_SHOW cycles through them.
+     */
+    private static final String[] STATISTIC_LABELS = {"n", "sum", "avg", "sd", "min", "max", "p50", "p90", "p99"};
+    /**
+     * The index in STATISTIC_LABELS of the statistic being shown (-1 if none is).
+     */
+    private int shownStatistic = -1;
+    /**
+     * Records every action performed (null if they aren't being recorded).
+     */
+    private KeystrokeRecorder recorder;
+    /**
+     * Opens a new calculator window (null if new windows can't be opened from this one).
+     */
+    private Runnable windowOpener;
 
     /**
      * Creates an instance of the CalculatorController
      * @param model the calculator's model
      * @param view the calculator's view
      */
-    public CalculatorController(CalculatorModel model, CalculatorView view) {
+    public CalculatorController(CalculatorModel model, CalculatorDisplay view) {
+        this(model, view, true);
+    }
+
+    /**
+     * Creates an instance of the CalculatorController
+     * @param model the calculator's model
+     * @param view the calculator's view
+     * @param coalesceUpdates true to update the view at most once per display frame, false to update it after every event
+     *                        (for headless views, which are driven from a single thread without an event dispatch thread)
+     */
+    public CalculatorController(CalculatorModel model, CalculatorDisplay view, boolean coalesceUpdates) {
         this.model = model;
         this.view = view;
+        this.updateScheduler = new ViewUpdateScheduler(this::renderView, ViewUpdateScheduler.DEFAULT_FRAME_MILLIS, !coalesceUpdates);
 
-        //Adding ActionListeners to the buttons
+        //Adding ActionListeners to the buttons (through perform(), so clicks can be recorded like keys)
+        CalculatorAction[] actions = CalculatorAction.values();
         for (int i = 0; i<10; i++) {
-            int digit = i;
-            view.getDigitButton(i).addActionListener(_ -> digitButtonClicked(digit));
+            CalculatorAction digit = actions[CalculatorAction.DIGIT_0.ordinal() + i];
+            view.getDigitButton(i).addActionListener(_ -> perform(digit));
         }
 
         for (int i = 0; i<4; i++) {
-            int operation = i;
-            view.getOperatorButton(operation).addActionListener(_ -> operationButtonClicked(view.getOperatorButton(operation).getText()));
+            CalculatorAction operation = actions[CalculatorAction.ADD.ordinal() + i];
+            view.getOperatorButton(i).addActionListener(_ -> perform(operation));
         }
 
-        view.getMiscButton(0).addActionListener(_ -> clearButtonClicked());
-        view.getMiscButton(1).addActionListener(_ -> signButtonClicked());
-        view.getMiscButton(2).addActionListener(_ -> percentageButtonClicked());
-        view.getMiscButton(3).addActionListener(_ -> decimalButtonClicked());
-        view.getMiscButton(4).addActionListener(_ -> equalsButtonClicked());
+        view.getMiscButton(0).addActionListener(_ -> perform(CalculatorAction.CLEAR));
+        view.getMiscButton(1).addActionListener(_ -> perform(CalculatorAction.SIGN));
+        view.getMiscButton(2).addActionListener(_ -> perform(CalculatorAction.PERCENT));
+        view.getMiscButton(3).addActionListener(_ -> perform(CalculatorAction.DECIMAL));
+        view.getMiscButton(4).addActionListener(_ -> perform(CalculatorAction.EQUALS));
         view.addKeyListener(this);
 
+        history.record(model.saveState());
         updateView();
     }
 
@@ -49,8 +125,14 @@ public class CalculatorController implements KeyListener {
      * @param digit the digit value itself
      */
     public void digitButtonClicked(int digit) {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
         model.changeResultField(digit);
-        updateView();
+        modelChanged();
+        metrics.handled(CalculatorMetrics.Handler.DIGIT, allocationStart);
     }
 
     /**
@@ -58,144 +140,501 @@ public class CalculatorController implements KeyListener {
      * @param operation the operator
      */
     public void operationButtonClicked(String operation) {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
         model.changeOperationField(operation);
-        updateView();
+        modelChanged();
+        metrics.handled(CalculatorMetrics.Handler.OPERATION, allocationStart);
+    }
+
+    /**
+     * Applies a unary operation from the OperationRegistry (such as a square root) to the number in the result field.
+     * @param symbol the operation's symbol
+     * @throws IllegalArgumentException if there is no unary operation with that symbol
+     */
+    public void functionClicked(String symbol) throws IllegalArgumentException {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
+        model.applyFunction(symbol);
+        modelChanged();
+        metrics.handled(CalculatorMetrics.Handler.FUNCTION, allocationStart);
+    }
+
+    /**
+     * Performs one of the programmer mode actions: typing a hexadecimal digit, choosing a bitwise operator, inverting the bits,
+     * or changing the radix or word size. Does nothing unless the model is a ProgrammerCalculatorModel.
+     * @param action the action (one of the Programmer group of CalculatorAction)
+     */
+    public void programmerActionClicked(CalculatorAction action) {
+        if (pasting || !(model instanceof ProgrammerCalculatorModel)) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
+        KeystrokeInterpreter.applyAction(model, action);
+
+        //Changing the radix only changes how the value is shown, so there's nothing to add to the history
+        if (action == CalculatorAction.RADIX_BIN || action == CalculatorAction.RADIX_OCT || action == CalculatorAction.RADIX_DEC
+                || action == CalculatorAction.RADIX_HEX) {
+            updateView();
+        } else {
+            modelChanged();
+        }
+        metrics.handled(CalculatorMetrics.Handler.PROGRAMMER, allocationStart);
     }
 
     /**
      * Updates the view when the clear button is clicked.
      */
     public void clearButtonClicked() {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
         model.clearResultField();
-        updateView();
+        modelChanged();
+        metrics.handled(CalculatorMetrics.Handler.CLEAR, allocationStart);
     }
 
     /**
      * Updates the view when the sign button is clicked.
      */
     public void signButtonClicked() {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
         model.changeSign();
-        updateView();
+        modelChanged();
+        metrics.handled(CalculatorMetrics.Handler.SIGN, allocationStart);
     }
 
     /**
      * Updates the view when the percent button is clicked.
      */
     public void percentageButtonClicked() {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
         model.changeToPercent();
-        updateView();
+        modelChanged();
+        metrics.handled(CalculatorMetrics.Handler.PERCENT, allocationStart);
     }
 
     /**
      * Updates the view when the decimal button is clicked.
      */
     public void decimalButtonClicked() {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
         model.addDecimalPoint();
-        updateView();
+        modelChanged();
+        metrics.handled(CalculatorMetrics.Handler.DECIMAL, allocationStart);
     }
 
     /**
      * Updates the view when the equals button is clicked.
      */
     public void equalsButtonClicked() {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
         model.calculate();
+        modelChanged();
+        metrics.handled(CalculatorMetrics.Handler.EQUALS, allocationStart);
+    }
+
+    /**
+     * Undoes the last change to the model.
+     */
+    public void undo() {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
+        CalculatorState state = history.undo();
+        if (state != null) {
+            model.restoreState(state);
+            shownStatistic = -1;
+            updateView();
+        }
+        metrics.handled(CalculatorMetrics.Handler.UNDO, allocationStart);
+    }
+
+    /**
+     * Redoes the last undone change to the model.
+     */
+    public void redo() {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
+        CalculatorState state = history.redo();
+        if (state != null) {
+            model.restoreState(state);
+            shownStatistic = -1;
+            updateView();
+        }
+        metrics.handled(CalculatorMetrics.Handler.REDO, allocationStart);
+    }
+
+    /**
+     * Adds the number in the result field to the statistics, and shows how many values have been added.
+     * Does nothing if the result field doesn't hold a number (in ERROR mode).
+     */
+    public void statisticsAddClicked() {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
+        double value = NumberParser.parse(model.getCurrentResultField());
+        if (value == value && statistics.add(value)) {
+            model.endEntry();
+            showStatistic(0);
+        }
+        metrics.handled(CalculatorMetrics.Handler.STATISTICS, allocationStart);
+    }
+
+    /**
+     * Shows the next statistic of the values added (cycling through the count, sum, mean, standard deviation, minimum,
+     * maximum and percentiles), with its label in place of the operation.
+     */
+    public void statisticsShowClicked() {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
+        //Only the count is shown until there are values
+        showStatistic(statistics.getCount() == 0 ? 0 : (shownStatistic + 1) % STATISTIC_LABELS.length);
+        metrics.handled(CalculatorMetrics.Handler.STATISTICS, allocationStart);
+    }
+
+    /**
+     * Removes every value from the statistics.
+     */
+    public void statisticsClearClicked() {
+        if (pasting) {
+            return;
+        }
+
+        long allocationStart = metrics.allocationStart();
+        statistics.clear();
+        showStatistic(0);
+        metrics.handled(CalculatorMetrics.Handler.STATISTICS, allocationStart);
+    }
+
+    /**
+     * Shows a statistic in the result field, with its label in place of the operation.
+     * @param index the index of the statistic in STATISTIC_LABELS
+     */
+    private void showStatistic(int index) {
+        double value = switch (index) {
+            case 0 -> statistics.getCount();
+            case 1 -> statistics.getSum();
+            case 2 -> statistics.getMean();
+            case 3 -> statistics.getStandardDeviation();
+            case 4 -> statistics.getMin();
+            case 5 -> statistics.getMax();
+            case 6 -> statistics.getPercentile(50);
+            case 7 -> statistics.getPercentile(90);
+            default -> statistics.getPercentile(99);
+        };
+
+        model.showValue(value);
+        history.record(model.saveState());
+        shownStatistic = index;
         updateView();
     }
 
     /**
-     * Updates the view using the model's current data.
+     * Records the model's new state in the history and updates the view.
+     */
+    private void modelChanged() {
+        shownStatistic = -1;
+        history.record(model.saveState());
+        updateView();
+    }
+
+    /**
+     * Updates the view using the model's current data. The update is coalesced with any others in the same display frame.
      */
     public void updateView() {
-        view.getResultArea().setText(model.getCurrentResultField());
-        view.getOperatorArea().setText(model.getOperationField());
+        if (unshownKeyNanos == 0) {
+            unshownKeyNanos = keyNanos;
+        }
+        updateScheduler.requestUpdate();
     }
 
-    //Keyboard support
-    @Override
-    public void keyTyped(KeyEvent e) {
-        switch (e.getKeyChar()) {
+    /**
+     * Shows the model's current data in the view (or the label of the statistic being shown in place of the operation, or in
+     * programmer mode, the radix and word size when there is no operation), only touching the text fields whose text has changed.
+     */
+    private void renderView() {
+        String result = model.getCurrentResultField();
+        String operation = shownStatistic >= 0 ? STATISTIC_LABELS[shownStatistic] : model.getOperationField();
+        if (operation.isEmpty() && model instanceof ProgrammerCalculatorModel programmer) {
+            operation = programmer.getModeLabel();
+        }
+
+        if (!result.equals(shownResult)) {
+            if (model instanceof ProgrammerCalculatorModel programmer) {
+                view.getResultArea().setRadix(programmer.getRadix());
+            }
+            view.getResultArea().setText(result);
+            shownResult = result;
+        }
+        if (!operation.equals(shownOperation)) {
+            view.getOperatorArea().setText(operation);
+            shownOperation = operation;
+        }
+
+        if (unshownKeyNanos != 0) {
+            metrics.viewUpdated(unshownKeyNanos);
+            unshownKeyNanos = 0;
+        }
+    }
+
+    /**
+     * Performs an action (as if its button or key was pressed), recording it if a recorder is set.
+     * @param action the action
+     */
+    public void perform(CalculatorAction action) {
+        //Input ignored while pasting isn't recorded either, as replays don't paste
+        if (recorder != null && !pasting) {
+            recorder.record(action);
+        }
+
+        switch (action) {
             //Digits
-            case '0':
-                digitButtonClicked(0);
-                break;
-            case '1':
-                digitButtonClicked(1);
-                break;
-            case '2':
-                digitButtonClicked(2);
-                break;
-            case '3':
-                digitButtonClicked(3);
-                break;
-            case '4':
-                digitButtonClicked(4);
-                break;
-            case '5':
-                digitButtonClicked(5);
-                break;
-            case '6':
-                digitButtonClicked(6);
-                break;
-            case '7':
-                digitButtonClicked(7);
-                break;
-            case '8':
-                digitButtonClicked(8);
-                break;
-            case '9':
-                digitButtonClicked(9);
+            case DIGIT_0: case DIGIT_1: case DIGIT_2: case DIGIT_3: case DIGIT_4:
+            case DIGIT_5: case DIGIT_6: case DIGIT_7: case DIGIT_8: case DIGIT_9:
+                digitButtonClicked(action.ordinal() - CalculatorAction.DIGIT_0.ordinal());
                 break;
 
             //Operations
-            case '+':
+            case ADD:
                 operationButtonClicked("+");
                 break;
-            case '-':
+            case SUBTRACT:
                 operationButtonClicked("-");
                 break;
-            case '*':
+            case MULTIPLY:
                 operationButtonClicked("×");
                 break;
-            case '/':
+            case DIVIDE:
                 operationButtonClicked("÷");
                 break;
 
             //Misc
-            case 'C':
-            case 'c':
+            case CLEAR:
                 clearButtonClicked();
                 break;
-            case '%':
+            case SIGN:
+                signButtonClicked();
+                break;
+            case PERCENT:
                 percentageButtonClicked();
                 break;
-            case '.':
+            case DECIMAL:
                 decimalButtonClicked();
                 break;
-            case '=':
+            case EQUALS:
                 equalsButtonClicked();
                 break;
+
+            //Editing
+            case PASTE:
+                pasteFromClipboard();
+                break;
+            case UNDO:
+                undo();
+                break;
+            case REDO:
+                redo();
+                break;
+
+            //Statistics
+            case STAT_ADD:
+                statisticsAddClicked();
+                break;
+            case STAT_SHOW:
+                statisticsShowClicked();
+                break;
+            case STAT_CLEAR:
+                statisticsClearClicked();
+                break;
+
+            //Scientific
+            case SQRT:
+                functionClicked("√");
+                break;
+            case POWER:
+                operationButtonClicked("^");
+                break;
+            case EXP:
+                functionClicked("exp");
+                break;
+            case LN:
+                functionClicked("ln");
+                break;
+            case LOG10:
+                functionClicked("log");
+                break;
+            case SIN:
+                functionClicked("sin");
+                break;
+            case COS:
+                functionClicked("cos");
+                break;
+            case TAN:
+                functionClicked("tan");
+                break;
+
+            //Programmer
+            case HEX_A: case HEX_B: case HEX_C: case HEX_D: case HEX_E: case HEX_F:
+            case AND: case OR: case XOR: case NOT: case SHIFT_LEFT: case SHIFT_RIGHT: case ROTATE_LEFT: case ROTATE_RIGHT:
+            case RADIX_BIN: case RADIX_OCT: case RADIX_DEC: case RADIX_HEX: case WORD_SIZE:
+                programmerActionClicked(action);
+                break;
+
+            //Windows
+            case NEW_WINDOW:
+                if (windowOpener != null) {
+                    windowOpener.run();
+                }
+                break;
+        }
+    }
+
+    /**
+     * Performs the action of a key event, timing how long it takes for its result to be shown.
+     * @param action the action
+     */
+    private void performKeyAction(CalculatorAction action) {
+        keyNanos = System.nanoTime();
+        try {
+            perform(action);
+        } finally {
+            keyNanos = 0;
+        }
+    }
+
+    /**
+     * Starts or stops recording every action performed (from buttons, keys or perform()).
+     * @param recorder the recorder, or null to stop recording
+     */
+    public void setRecorder(KeystrokeRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Sets what opens a new calculator window when NEW_WINDOW is performed.
+     * @param windowOpener opens the window, or null to ignore NEW_WINDOW
+     */
+    public void setWindowOpener(Runnable windowOpener) {
+        this.windowOpener = windowOpener;
+    }
+
+    /**
+     * Changes the key bindings.
+     * @param keyMap the new bindings
+     */
+    public void setKeyMap(KeyMap keyMap) {
+        keyDispatcher.setKeyMap(keyMap);
+    }
+
+    //Keyboard support (see KeyMap for the bindings)
+    @Override
+    public void keyTyped(KeyEvent e) {
+        CalculatorAction action = keyDispatcher.typed(e);
+        if (action != null) {
+            performKeyAction(action);
         }
     }
 
     @Override
     public void keyPressed(KeyEvent e) {
-        //Nothing
+        CalculatorAction action = keyDispatcher.pressed(e);
+        if (action != null) {
+            performKeyAction(action);
+        }
+    }
+
+    /**
+     * Pastes the text on the system clipboard (if there is any) as keystrokes.
+     */
+    public void pasteFromClipboard() {
+        try {
+            Object contents = Toolkit.getDefaultToolkit().getSystemClipboard().getData(DataFlavor.stringFlavor);
+            paste((String) contents);
+
+        //Nothing to paste if the clipboard doesn't hold text or is in use by another application
+        } catch (UnsupportedFlavorException | IOException | IllegalStateException e) {
+            //Ignore
+        }
+    }
+
+    /**
+     * Applies pasted text to the model as a sequence of keystrokes (see KeystrokeInterpreter). The keystrokes are applied on a
+     * background thread so long pastes don't freeze the window, other input is ignored until they are done, and the view is
+     * updated once at the end. Must be called on the event dispatch thread.
+     * @param text the pasted text
+     */
+    public void paste(String text) {
+        if (pasting || text.isEmpty()) {
+            return;
+        }
+
+        //Render anything still pending now, so the view doesn't read the model while the worker is changing it
+        updateScheduler.flush();
+        pasting = true;
+        metrics.handled(CalculatorMetrics.Handler.PASTE, -1);
+
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                KeystrokeInterpreter.apply(model, text, 0, text.length());
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                pasting = false;
+                modelChanged();
+
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException("Failed to apply pasted keystrokes.", e);
+                }
+            }
+        }.execute();
     }
 
     @Override
     public void keyReleased(KeyEvent e) {
-        //Misc
-        switch (e.getKeyCode()) {
-            case KeyEvent.VK_ENTER:
-                equalsButtonClicked();
-                break;
-            case KeyEvent.VK_BACK_SPACE:
-            case KeyEvent.VK_DELETE:
-                clearButtonClicked();
-                break;
-            case KeyEvent.VK_SHIFT:
-                signButtonClicked();
-                break;
+        CalculatorAction action = keyDispatcher.released(e);
+        if (action != null) {
+            performKeyAction(action);
         }
     }
 }
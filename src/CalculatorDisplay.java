@@ -0,0 +1,46 @@
+import javax.swing.*;
+import java.awt.event.KeyListener;
+
+/**
+ * The parts of the calculator's view that the controller works with.
+ */
+public interface CalculatorDisplay {
+    /**
+     * Returns the instance of a specified digit button.
+     * @param digit the digit button index (corresponds to the actual digit itself)
+     * @return the specified digit button.
+     */
+    CalculatorButton getDigitButton(int digit);
+
+    /**
+     * Returns the instance of a specified operator button.
+     * @param operator the operator button index
+     * @return the specified operator button.
+     */
+    CalculatorButton getOperatorButton(int operator);
+
+    /**
+     * Returns the instance of a specified miscellaneous button (not digit nor operator)
+     * @param misc the misc button index
+     * @return the specified misc button.
+     */
+    CalculatorButton getMiscButton(int misc);
+
+    /**
+     * Returns the instance of the result renderer.
+     * @return the result renderer
+     */
+    ResultRenderer getResultArea();
+
+    /**
+     * Returns the instance of the operator text field.
+     * @return the operator text field
+     */
+    JTextField getOperatorArea();
+
+    /**
+     * Adds a listener for keyboard input.
+     * @param listener the listener to add
+     */
+    void addKeyListener(KeyListener listener);
+}
@@ -0,0 +1,43 @@
+/**
+ * The causes of the calculator going into ERROR mode, with the message each one shows in the result field.
+ */
+public enum CalculatorError {
+    /**
+     * Dividing by zero.
+     */
+    DIVIDE_BY_ZERO("ERROR"),
+    /**
+     * Applying a function or operation to numbers it isn't defined for (such as the square root of a negative number), or an
+     * operation that doesn't exist.
+     */
+    UNDEFINED("ERROR"),
+    /**
+     * An operand that isn't a number, such as one that overflowed to infinity (shown as a sign NumberParser doesn't accept).
+     */
+    INVALID_NUMBER("ERROR"),
+    /**
+     * A result too long for the display.
+     */
+    OVERFLOW("OVERFLOW ERROR");
+
+    /**
+     * The message shown in the result field.
+     */
+    private final String message;
+
+    /**
+     * Creates an error cause.
+     * @param message the message shown in the result field
+     */
+    CalculatorError(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Gets the message shown in the result field.
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+}
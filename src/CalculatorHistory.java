@@ -0,0 +1,259 @@
+/**
+ * The undo/redo history of a calculator: a sequence of CalculatorState snapshots with a cursor at the current one.
+ * Snapshots are stored field by field in parallel arrays used as a ring, so recording, undoing and redoing all take constant
+ * time however long the history gets. Each step costs three references and a byte of flags, plus whichever fields changed:
+ * fields equal to the previous step's share its String, but a keystroke usually changes the result field, so most steps
+ * also keep a String of their own (around 40 to 60 bytes). The ring grows as needed up to its capacity, after which the
+ * oldest steps are forgotten.
+ */
+public class CalculatorHistory {
+    /**
+     * The number of steps kept when no capacity is given (around a megabyte of typing).
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+    /**
+     * The flag bit marking that the next digit replaces the result field.
+     */
+    private static final byte FIRST = 1;
+    /**
+     * The flag bit marking ERROR mode.
+     */
+    private static final byte ERROR_MODE = 2;
+
+    /**
+     * The most steps the ring will grow to (a power of two).
+     */
+    private final int maxCapacity;
+    /**
+     * The result field of each step.
+     */
+    private String[] currentResultFields;
+    /**
+     * The first operand of each step.
+     */
+    private String[] prevResultFields;
+    /**
+     * The operation field of each step.
+     */
+    private String[] operationFields;
+    /**
+     * The FIRST and ERROR_MODE flags of each step.
+     */
+    private byte[] flags;
+    /**
+     * The index in the arrays of the oldest step.
+     */
+    private int start;
+    /**
+     * The number of steps held (undoable, current and redoable).
+     */
+    private int size;
+    /**
+     * The position of the current step, counted from the oldest (-1 when empty).
+     */
+    private int position = -1;
+
+    /**
+     * Creates a history that keeps up to DEFAULT_CAPACITY steps.
+     */
+    public CalculatorHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a history.
+     * @param capacity the most steps to keep (rounded up to a power of two)
+     */
+    public CalculatorHistory(int capacity) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("The capacity must be between 2 and 2^30.");
+        }
+
+        this.maxCapacity = Integer.highestOneBit(capacity - 1) << 1;
+        allocate(Math.min(64, maxCapacity));
+    }
+
+    /**
+     * Records a new current step, discarding any steps that could have been redone. Does nothing if the state is the same as
+     * the current step's.
+     * @param state the new state
+     */
+    public void record(CalculatorState state) {
+        if (position >= 0 && matches(position, state)) {
+            return;
+        }
+
+        //Recording after undoing drops the redoable steps (cleared so they can be collected)
+        for (int i = position + 1; i < size; i++) {
+            set(i, null, null, null, (byte) 0);
+        }
+        size = position + 1;
+
+        if (size == flags.length) {
+            if (flags.length < maxCapacity) {
+                grow();
+            } else {
+                //Forget the oldest step
+                start = (start + 1) & (flags.length - 1);
+                size--;
+            }
+        }
+
+        String currentResultField = state.getCurrentResultField();
+        String prevResultField = state.getPrevResultField();
+        String operationField = state.getOperationField();
+        if (size > 0) {
+            //Fields that didn't change share the previous step's Strings, even when the model made equal ones anew
+            int previous = (start + size - 1) & (flags.length - 1);
+            currentResultField = share(currentResultField, currentResultFields[previous]);
+            prevResultField = share(prevResultField, prevResultFields[previous]);
+            operationField = share(operationField, operationFields[previous]);
+        }
+
+        set(size, currentResultField, prevResultField, operationField,
+                (byte) ((state.isFirst() ? FIRST : 0) | (state.isErrorMode() ? ERROR_MODE : 0)));
+        size++;
+        position = size - 1;
+    }
+
+    /**
+     * Moves back one step.
+     * @return the state to go back to, or null if there is nothing to undo
+     */
+    public CalculatorState undo() {
+        if (!canUndo()) {
+            return null;
+        }
+        return get(--position);
+    }
+
+    /**
+     * Moves forward one step.
+     * @return the state to go forward to, or null if there is nothing to redo
+     */
+    public CalculatorState redo() {
+        if (!canRedo()) {
+            return null;
+        }
+        return get(++position);
+    }
+
+    /**
+     * Checks whether there is a step to go back to.
+     * @return true if undo() would return a state
+     */
+    public boolean canUndo() {
+        return position > 0;
+    }
+
+    /**
+     * Checks whether there is a step to go forward to.
+     * @return true if redo() would return a state
+     */
+    public boolean canRedo() {
+        return position < size - 1;
+    }
+
+    /**
+     * Gets the number of steps held (undoable, current and redoable).
+     * @return the number of steps
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forgets every step.
+     */
+    public void clear() {
+        allocate(Math.min(64, maxCapacity));
+        start = 0;
+        size = 0;
+        position = -1;
+    }
+
+    /**
+     * Checks whether a step holds the same state as a snapshot.
+     * @param step the step's position
+     * @param state the snapshot
+     * @return true if they are the same
+     */
+    private boolean matches(int step, CalculatorState state) {
+        int index = (start + step) & (flags.length - 1);
+        byte stateFlags = (byte) ((state.isFirst() ? FIRST : 0) | (state.isErrorMode() ? ERROR_MODE : 0));
+
+        return flags[index] == stateFlags
+                && currentResultFields[index].equals(state.getCurrentResultField())
+                && prevResultFields[index].equals(state.getPrevResultField())
+                && operationFields[index].equals(state.getOperationField());
+    }
+
+    /**
+     * Picks the String to store for a field.
+     * @param field the field's text
+     * @param previous the previous step's text of the same field
+     * @return previous if the texts are equal, otherwise field
+     */
+    private static String share(String field, String previous) {
+        return field.equals(previous) ? previous : field;
+    }
+
+    /**
+     * Rebuilds the snapshot of a step.
+     * @param step the step's position
+     * @return the snapshot
+     */
+    private CalculatorState get(int step) {
+        int index = (start + step) & (flags.length - 1);
+        return new CalculatorState(currentResultFields[index], prevResultFields[index], operationFields[index],
+                (flags[index] & FIRST) != 0, (flags[index] & ERROR_MODE) != 0);
+    }
+
+    /**
+     * Stores a step.
+     * @param step the step's position
+     * @param currentResultField the result field
+     * @param prevResultField the first operand
+     * @param operationField the operation field
+     * @param stepFlags the step's flags
+     */
+    private void set(int step, String currentResultField, String prevResultField, String operationField, byte stepFlags) {
+        int index = (start + step) & (flags.length - 1);
+        currentResultFields[index] = currentResultField;
+        prevResultFields[index] = prevResultField;
+        operationFields[index] = operationField;
+        flags[index] = stepFlags;
+    }
+
+    /**
+     * Doubles the ring, moving the oldest step to the start of the arrays.
+     */
+    private void grow() {
+        String[] oldCurrent = currentResultFields;
+        String[] oldPrev = prevResultFields;
+        String[] oldOperation = operationFields;
+        byte[] oldFlags = flags;
+        int oldCapacity = oldFlags.length;
+
+        allocate(oldCapacity * 2);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) & (oldCapacity - 1);
+            currentResultFields[i] = oldCurrent[index];
+            prevResultFields[i] = oldPrev[index];
+            operationFields[i] = oldOperation[index];
+            flags[i] = oldFlags[index];
+        }
+        start = 0;
+    }
+
+    /**
+     * Replaces the arrays with empty ones.
+     * @param capacity the new capacity (a power of two)
+     */
+    private void allocate(int capacity) {
+        currentResultFields = new String[capacity];
+        prevResultFields = new String[capacity];
+        operationFields = new String[capacity];
+        flags = new byte[capacity];
+    }
+}
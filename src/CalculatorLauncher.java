@@ -0,0 +1,199 @@
+import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts any number of calculator windows in one process. Each window has its own model, view and controller, and closing one
+ * leaves the others running (the process exits once the last one has closed). Everything immutable is shared between them: the
+ * fonts, colours and icon (CalculatorTheme), the formatter, the operation registry and the expression cache, and the loaded and
+ * compiled code itself, so a new window costs a few components instead of a whole JVM.
+ * <p>
+ * New windows are opened with shortcut+N (NEW_WINDOW) in any window, and by launching the calculator again: a plain launch first
+ * hands its window off to the calculator already running, over a loopback socket whose port (and a secret every request must
+ * carry) is kept in HANDOFF_FILE, and only starts a process of its own if there is none.
+ */
+public final class CalculatorLauncher {
+    /**
+     * The file a running calculator keeps its handoff port and secret in.
+     */
+    private static final Path HANDOFF_FILE = Path.of(System.getProperty("user.home"), ".calculator", "launcher.properties");
+    /**
+     * How long a launch waits for the running calculator to accept its window before starting its own process, in milliseconds.
+     */
+    private static final int HANDOFF_TIMEOUT_MILLIS = 500;
+    /**
+     * The number of random bytes in the secret.
+     */
+    private static final int SECRET_BYTES = 16;
+
+    /**
+     * Whether windows are built the quicker way (see CalculatorView(boolean)).
+     */
+    private final boolean fastStart;
+    /**
+     * The number of windows open.
+     */
+    private final AtomicInteger openWindows = new AtomicInteger();
+
+    /**
+     * Creates a launcher.
+     * @param fastStart true to build windows the quicker way (see CalculatorView(boolean))
+     */
+    public CalculatorLauncher(boolean fastStart) {
+        this.fastStart = fastStart;
+    }
+
+    /**
+     * Opens a calculator window. New windows opened from it (with NEW_WINDOW) get the same kind of model and the same key
+     * bindings, but not its history, tape or recorder.
+     * @param model the window's model
+     * @param keyMap the window's key bindings
+     * @return the window's controller
+     */
+    public CalculatorController openWindow(CalculatorModel model, KeyMap keyMap) {
+        CalculatorView view = new CalculatorView(fastStart);
+        CalculatorController controller = new CalculatorController(model, view);
+        controller.setKeyMap(keyMap);
+        controller.setWindowOpener(() -> openWindow(newModel(model), keyMap));
+
+        openWindows.incrementAndGet();
+        view.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                if (openWindows.decrementAndGet() == 0) {
+                    System.exit(0);
+                }
+            }
+        });
+        return controller;
+    }
+
+    /**
+     * Creates a new model of the same kind as another.
+     * @param model the other model
+     * @return the new model
+     */
+    private static CalculatorModel newModel(CalculatorModel model) {
+        return model instanceof ProgrammerCalculatorModel ? new ProgrammerCalculatorModel() : new CalculatorModel();
+    }
+
+    /**
+     * Opens the windows of later launches in this process until it exits (call on a background thread, as it blocks). If the
+     * handoff socket can't be set up, later launches simply start processes of their own.
+     */
+    public void acceptHandoffs() {
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            byte[] random = new byte[SECRET_BYTES];
+            new SecureRandom().nextBytes(random);
+            String secretText = HexFormat.of().formatHex(random);
+            byte[] secret = secretText.getBytes(StandardCharsets.UTF_8);
+            writeHandoffFile(serverSocket.getLocalPort(), secretText);
+
+            while (true) {
+                try (Socket socket = serverSocket.accept()) {
+                    socket.setSoTimeout(HANDOFF_TIMEOUT_MILLIS);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+
+                    //Requests are "<secret> OPEN", or "<secret> OPEN programmer" for a programmer mode window
+                    String request = in.readLine();
+                    String[] parts = request == null ? new String[0] : request.split(" ");
+                    boolean valid = parts.length >= 2 && parts.length <= 3 && parts[1].equals("OPEN")
+                            && (parts.length == 2 || parts[2].equals("programmer"))
+                            && MessageDigest.isEqual(parts[0].getBytes(StandardCharsets.UTF_8), secret);
+
+                    if (valid) {
+                        boolean programmer = parts.length == 3;
+                        SwingUtilities.invokeLater(() -> openWindow(
+                                programmer ? new ProgrammerCalculatorModel() : new CalculatorModel(),
+                                programmer ? KeyMap.getProgrammer() : KeyMap.getDefault()));
+                    }
+                    out.write(valid ? "OK\n" : "ERR\n");
+                    out.flush();
+
+                } catch (IOException e) {
+                    //The launch that asked starts its own process instead
+                }
+            }
+
+        } catch (IOException e) {
+            //Later launches start processes of their own
+        }
+    }
+
+    /**
+     * Writes the handoff file, readable only by the user where the file system allows it (so other users can't open windows).
+     * @param port the handoff port
+     * @param secret the secret requests must carry
+     * @throws IOException if the file can't be written
+     */
+    private static void writeHandoffFile(int port, String secret) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("port", Integer.toString(port));
+        properties.setProperty("secret", secret);
+
+        //Written to a temporary file and moved into place, so a launch never reads half of it
+        Files.createDirectories(HANDOFF_FILE.getParent());
+        Path temporary = Files.createTempFile(HANDOFF_FILE.getParent(), "launcher", ".tmp");
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.setPosixFilePermissions(temporary, PosixFilePermissions.fromString("rw-------"));
+        }
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            properties.store(out, "The calculator running now (new launches open their windows in it)");
+        }
+        Files.move(temporary, HANDOFF_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Asks the calculator already running (if there is one) to open a window, so this launch doesn't need a process of its own.
+     * @param programmer true for a programmer mode window
+     * @return true if the running calculator opened the window, false if there is none (or it didn't answer in time)
+     */
+    public static boolean handOff(boolean programmer) {
+        if (!Files.isRegularFile(HANDOFF_FILE)) {
+            return false;
+        }
+
+        try (InputStream in = Files.newInputStream(HANDOFF_FILE); Socket socket = new Socket()) {
+            Properties properties = new Properties();
+            properties.load(in);
+            int port = Integer.parseInt(properties.getProperty("port", ""));
+
+            //A calculator that has exited leaves its file behind, so nothing (or something else) may be on the port
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), HANDOFF_TIMEOUT_MILLIS);
+            socket.setSoTimeout(HANDOFF_TIMEOUT_MILLIS);
+
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(properties.getProperty("secret", "") + (programmer ? " OPEN programmer\n" : " OPEN\n"));
+            out.flush();
+
+            BufferedReader reply = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            return "OK".equals(reply.readLine());
+
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
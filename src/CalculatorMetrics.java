@@ -0,0 +1,284 @@
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics for the calculator's hot paths, shared by every model and controller in the process and exposed over JMX
+ * (see CalculatorMetricsMXBean). All counters are lock-free (LongAdders), so they can be updated from any number of threads.
+ * To keep the cost negligible, calculations (which take less time than reading the clock) are timed on a random sample of
+ * 1 in CALCULATION_SAMPLE_RATE, and the memory allocated by each operation is only measured while allocation tracking is turned on.
+ */
+public final class CalculatorMetrics implements CalculatorMetricsMXBean {
+    /**
+     * The name the metrics are registered under.
+     */
+    public static final String OBJECT_NAME = "calculator:type=Metrics";
+    /**
+     * One in this many calculations (picked at random) is timed and has its allocations measured.
+     */
+    public static final int CALCULATION_SAMPLE_RATE = 16;
+
+    /**
+     * The CalculatorController handlers that are counted.
+     */
+    public enum Handler {
+        DIGIT, OPERATION, CLEAR, SIGN, PERCENT, DECIMAL, EQUALS, UNDO, REDO, PASTE, STATISTICS, FUNCTION, PROGRAMMER
+    }
+
+    /**
+     * Every handler, by ordinal.
+     */
+    private static final Handler[] HANDLERS = Handler.values();
+    /**
+     * Every error cause, by ordinal.
+     */
+    private static final CalculatorError[] ERRORS = CalculatorError.values();
+    /**
+     * The metrics shared by the whole process.
+     */
+    private static final CalculatorMetrics INSTANCE = new CalculatorMetrics();
+
+    /**
+     * Measures the memory allocated by threads (looked up when allocation tracking is first turned on, as loading it takes a while).
+     */
+    private com.sun.management.ThreadMXBean threads;
+    /**
+     * The number of times each handler has run, by ordinal.
+     */
+    private final LongAdder[] handlerCounts = newAdders(HANDLERS.length);
+    /**
+     * The bytes allocated by each handler while allocation tracking was on, by ordinal.
+     */
+    private final LongAdder[] handlerAllocatedBytes = newAdders(HANDLERS.length);
+    /**
+     * The number of times each handler has run while allocation tracking was on, by ordinal.
+     */
+    private final LongAdder[] handlerAllocationCounts = newAdders(HANDLERS.length);
+    /**
+     * The number of times each error cause has occurred, by ordinal.
+     */
+    private final LongAdder[] errorCounts = newAdders(ERRORS.length);
+    /**
+     * The latencies of calculate().
+     */
+    private final LatencyHistogram calculateLatency = new LatencyHistogram();
+    /**
+     * The latencies from key events to view updates.
+     */
+    private final LatencyHistogram keyToViewLatency = new LatencyHistogram();
+    /**
+     * The bytes allocated by calculate() while allocation tracking was on.
+     */
+    private final LongAdder calculationAllocatedBytes = new LongAdder();
+    /**
+     * The number of calculations while allocation tracking was on.
+     */
+    private final LongAdder calculationAllocationCount = new LongAdder();
+    /**
+     * Whether the memory allocated by each operation is being measured.
+     */
+    private volatile boolean allocationTracking;
+
+    /**
+     * Creates the metrics.
+     */
+    private CalculatorMetrics() {
+    }
+
+    /**
+     * Gets the metrics shared by the whole process.
+     * @return the metrics
+     */
+    public static CalculatorMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under OBJECT_NAME (does nothing if they already are).
+     * Creating the MBean server takes a while, so this is best called off the event dispatch thread.
+     */
+    public static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            //Already registered
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register the calculator metrics.", e);
+        }
+    }
+
+    /**
+     * Decides whether a calculation is one of the sample that is timed.
+     * @return true if the calculation should be timed and passed to calculated()
+     */
+    public boolean sampleCalculation() {
+        return (ThreadLocalRandom.current().nextInt() & (CALCULATION_SAMPLE_RATE - 1)) == 0;
+    }
+
+    /**
+     * Starts measuring the memory an operation allocates on the current thread.
+     * @return the value to pass to handled() or calculated() when the operation is done (-1 if allocation tracking is off)
+     */
+    public long allocationStart() {
+        if (!allocationTracking) {
+            return -1;
+        }
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Counts a CalculatorController handler having run.
+     * @param handler the handler
+     * @param allocationStart the value allocationStart() returned when the handler started
+     */
+    public void handled(Handler handler, long allocationStart) {
+        handlerCounts[handler.ordinal()].increment();
+
+        if (allocationStart >= 0) {
+            handlerAllocatedBytes[handler.ordinal()].add(threads.getCurrentThreadAllocatedBytes() - allocationStart);
+            handlerAllocationCounts[handler.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Records a sampled calculation having been performed.
+     * @param startNanos System.nanoTime() when the calculation started
+     * @param allocationStart the value allocationStart() returned when the calculation started
+     */
+    public void calculated(long startNanos, long allocationStart) {
+        calculateLatency.record(System.nanoTime() - startNanos);
+
+        if (allocationStart >= 0) {
+            calculationAllocatedBytes.add(threads.getCurrentThreadAllocatedBytes() - allocationStart);
+            calculationAllocationCount.increment();
+        }
+    }
+
+    /**
+     * Records the view having been updated with the result of a key event.
+     * @param keyNanos System.nanoTime() when the key event was handled
+     */
+    public void viewUpdated(long keyNanos) {
+        keyToViewLatency.record(System.nanoTime() - keyNanos);
+    }
+
+    /**
+     * Counts the calculator having gone into ERROR mode.
+     * @param error the cause
+     */
+    public void errorEntered(CalculatorError error) {
+        errorCounts[error.ordinal()].increment();
+    }
+
+    @Override
+    public Map<String, Long> getHandlerCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Handler handler : HANDLERS) {
+            counts.put(handler.name(), handlerCounts[handler.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (CalculatorError error : ERRORS) {
+            counts.put(error.name(), errorCounts[error.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getCalculateLatency() {
+        return calculateLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getKeyToViewLatency() {
+        return keyToViewLatency.snapshot();
+    }
+
+    @Override
+    public boolean isAllocationTracking() {
+        return allocationTracking;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UnsupportedOperationException if the JVM can't measure the memory allocated by threads
+     */
+    @Override
+    public synchronized void setAllocationTracking(boolean allocationTracking) throws UnsupportedOperationException {
+        if (allocationTracking && threads == null) {
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            if (!(threadBean instanceof com.sun.management.ThreadMXBean allocationBean) || !allocationBean.isThreadAllocatedMemorySupported()) {
+                throw new UnsupportedOperationException("This JVM can't measure the memory allocated by threads.");
+            }
+            allocationBean.setThreadAllocatedMemoryEnabled(true);
+            threads = allocationBean;
+        }
+
+        //Written after threads, so any thread that sees tracking on also sees threads
+        this.allocationTracking = allocationTracking;
+    }
+
+    @Override
+    public Map<String, Long> getAllocatedBytesPerHandler() {
+        Map<String, Long> bytes = new LinkedHashMap<>();
+        for (Handler handler : HANDLERS) {
+            bytes.put(handler.name(), mean(handlerAllocatedBytes[handler.ordinal()], handlerAllocationCounts[handler.ordinal()]));
+        }
+        return bytes;
+    }
+
+    @Override
+    public long getAllocatedBytesPerCalculation() {
+        return mean(calculationAllocatedBytes, calculationAllocationCount);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < HANDLERS.length; i++) {
+            handlerCounts[i].reset();
+            handlerAllocatedBytes[i].reset();
+            handlerAllocationCounts[i].reset();
+        }
+        for (LongAdder count : errorCounts) {
+            count.reset();
+        }
+        calculateLatency.reset();
+        keyToViewLatency.reset();
+        calculationAllocatedBytes.reset();
+        calculationAllocationCount.reset();
+    }
+
+    /**
+     * Divides one sum by another.
+     * @param total the sum to divide
+     * @param count the sum to divide by
+     * @return the mean (0 if count is 0)
+     */
+    private static long mean(LongAdder total, LongAdder count) {
+        long n = count.sum();
+        return n == 0 ? 0 : total.sum() / n;
+    }
+
+    /**
+     * Creates an array of zeroed LongAdders.
+     * @param length the array's length
+     * @return the array
+     */
+    private static LongAdder[] newAdders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
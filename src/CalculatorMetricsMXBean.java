@@ -0,0 +1,59 @@
+import java.util.Map;
+
+/**
+ * The management interface of CalculatorMetrics, as shown over JMX (eg. in JConsole or VisualVM under calculator:type=Metrics).
+ */
+public interface CalculatorMetricsMXBean {
+    /**
+     * Gets how many times each CalculatorController handler has run.
+     * @return the counts, by handler name
+     */
+    Map<String, Long> getHandlerCounts();
+
+    /**
+     * Gets how many times the calculator has gone into ERROR mode, by cause.
+     * @return the counts, by CalculatorError name
+     */
+    Map<String, Long> getErrorCounts();
+
+    /**
+     * Gets the latencies of a random sample of CalculatorModel.calculate() calls (1 in CalculatorMetrics.CALCULATION_SAMPLE_RATE).
+     * @return a snapshot of the latencies
+     */
+    LatencyHistogram.Snapshot getCalculateLatency();
+
+    /**
+     * Gets the latencies from a key event being handled to the view being updated with its result.
+     * @return a snapshot of the latencies
+     */
+    LatencyHistogram.Snapshot getKeyToViewLatency();
+
+    /**
+     * Gets whether the memory allocated by each operation is being measured.
+     * @return true if allocations are being measured
+     */
+    boolean isAllocationTracking();
+
+    /**
+     * Turns measuring the memory allocated by each operation on or off (it costs more than the other metrics, so it is off by default).
+     * @param allocationTracking true to measure allocations
+     */
+    void setAllocationTracking(boolean allocationTracking);
+
+    /**
+     * Gets the mean number of bytes allocated by each CalculatorController handler, while allocation tracking was on.
+     * @return the mean bytes per run, by handler name
+     */
+    Map<String, Long> getAllocatedBytesPerHandler();
+
+    /**
+     * Gets the mean number of bytes allocated by the sampled CalculatorModel.calculate() calls, while allocation tracking was on.
+     * @return the mean bytes per calculation
+     */
+    long getAllocatedBytesPerCalculation();
+
+    /**
+     * Sets every metric back to zero.
+     */
+    void reset();
+}
@@ -1,13 +1,19 @@
-import java.text.DecimalFormat;
-
 /**
  * The model of the calculator.
  */
 public class CalculatorModel {
+    /**
+     * The max length of the string in the result text area (for code that works without a model, such as StreamingCalculator).
+     */
+    public static final int MAX_DIGITS = 22;
     /**
      * The max length of the string in the result text area.
      */
-    private final int maxDigits = 22;
+    protected final int maxDigits = MAX_DIGITS;
+    /**
+     * The smallest magnitude whose integer digits alone don't fit in MAX_DIGITS (a 1 followed by MAX_DIGITS zeros).
+     */
+    private static final double MIN_TOO_LONG = 1e22;
     /**
      * Text representing the current number in the result text area.
      */
@@ -23,11 +29,19 @@ public class CalculatorModel {
     /**
      * A boolean value marking whether currentResultField is to be replaced with or concatenated with the next digit entered.
      */
-    private boolean isFirst;
+    protected boolean isFirst;
     /**
      * A boolean value marking whether or not the calculator is in ERROR mode.
      */
-    private boolean errorMode;
+    protected boolean errorMode;
+    /**
+     * The runtime metrics calculations and errors are counted in.
+     */
+    private static final CalculatorMetrics metrics = CalculatorMetrics.getInstance();
+    /**
+     * Notified of every calculation performed (null if nothing is listening).
+     */
+    private CalculationListener calculationListener;
 
     /**
      * Creates a new instance of the Calculator model.
@@ -76,96 +90,252 @@ public class CalculatorModel {
     }
 
     /**
-     * Performs the calculation.
+     * Performs the calculation, notifying the calculation listener (if there is one) when an operation was applied.
      */
     public void calculate() {
+        //Only a sample of calculations is timed, as reading the clock costs more than many calculations
+        if (!metrics.sampleCalculation()) {
+            calculateAndNotify();
+            return;
+        }
+
+        long start = System.nanoTime();
+        long allocationStart = metrics.allocationStart();
+        calculateAndNotify();
+        metrics.calculated(start, allocationStart);
+    }
+
+    /**
+     * Performs the calculation and notifies the calculation listener (if there is one) when an operation was applied.
+     */
+    private void calculateAndNotify() {
+        if (calculationListener == null) {
+            performCalculation();
+            return;
+        }
+
+        String firstOperand = getPrevResultField();
+        String secondOperand = getCurrentResultField();
+        String operation = getOperationField();
+        boolean wasErrorMode = this.errorMode;
+
+        performCalculation();
+
+        if (!wasErrorMode && !operation.isEmpty()) {
+            calculationListener.calculated(firstOperand, operation.charAt(0), secondOperand, getCurrentResultField());
+        }
+    }
+
+    /**
+     * Performs the calculation itself (called by calculate()).
+     */
+    protected void performCalculation() {
         //Does not allow calculations if in error mode
         if (!this.errorMode) {
-            Double firstOperand;
-            Double secondOperand;
+            double firstOperand = NumberParser.parse(getPrevResultField());
+            double secondOperand = NumberParser.parse(getCurrentResultField());
 
-            try {
-                firstOperand = Double.parseDouble(getPrevResultField());
-                secondOperand = Double.parseDouble(getCurrentResultField());
-
-            //Account for overflow error if number reaches infinity
-            } catch (NumberFormatException e) {
-                this.errorMode = true;
-                setCurrentResultField("ERROR");
-                setOperationField("");
+            //Account for overflow error if number reaches infinity (it's shown as a sign that isn't a number)
+            if (firstOperand != firstOperand || secondOperand != secondOperand) {
+                enterErrorMode(CalculatorError.INVALID_NUMBER);
                 return;
             }
 
             //Check first if there is an operation in the operation field (gets priority)
             if (!getOperationField().isEmpty()) {
-                char operation = getOperationField().charAt(0);
-
-                try {
-                    String result = calculateResult(firstOperand, secondOperand, operation);
-
-                    //Show new result (truncated to max digits allowed)
-                    if (result.length() > this.maxDigits) {
-                        this.errorMode = true;
-                        setCurrentResultField("OVERFLOW ERROR");
-                        setOperationField("");
-                        return;
-
-                    } else {
-                        setCurrentResultField(result);
-                    }
-
-                    setOperationField("");
-                    this.isFirst = true; //To not add on to result (user enters new number)
-
-                //Go into ERROR mode if division by zero occurs (can only be removed by clearing)
-                } catch (ArithmeticException e) {
-                    this.errorMode = true;
-                    setCurrentResultField("ERROR");
-                    setOperationField("");
+                double result = applyOperation(firstOperand, secondOperand, getOperationField().charAt(0));
+
+                //Go into ERROR mode if division by zero occurs, or the result is undefined (can only be removed by clearing)
+                if (result != result) {
+                    enterErrorMode(getOperationError(secondOperand, getOperationField().charAt(0)));
+                    return;
+                }
+
+                //Show new result (truncated to max digits allowed)
+                if (isTooLong(result)) {
+                    enterErrorMode(CalculatorError.OVERFLOW);
+                    return;
+                }
+                String text = ResultFormatter.getInstance().format(result);
+                if (text.length() > this.maxDigits) {
+                    enterErrorMode(CalculatorError.OVERFLOW);
+                    return;
                 }
+
+                setCurrentResultField(text);
+                setOperationField("");
+                this.isFirst = true; //To not add on to result (user enters new number)
             }
         }
     }
 
     /**
-     * Performs the actual calculation of two numbers and an operator.
+     * Checks whether a result is certainly too long for the display, without formatting it (which is slow for large numbers,
+     * and pointless when the text would be thrown away). Results that pass may still turn out too long once formatted.
+     * @param result the result
+     * @return true if the result's integer digits alone don't fit (always true for infinity, so an operation that overflows
+     *         ends in an OVERFLOW ERROR instead of showing ∞)
+     */
+    protected static boolean isTooLong(double result) {
+        return Math.abs(result) >= MIN_TOO_LONG;
+    }
+
+    /**
+     * Performs the actual calculation of two numbers and an operator (see ColumnArithmetic for whole columns of numbers at once).
      * @param firstOperand the first operand
      * @param secondOperand the second operand
      * @param operation the operation to be performed
      * @return the result of the operation
-     * @throws ArithmeticException when attempting to divide by zero
+     * @throws ArithmeticException when attempting to divide by zero, or the result is undefined
      */
-    public String calculateResult(Double firstOperand, Double secondOperand, char operation) throws ArithmeticException {
-        Double result;
+    public String calculateResult(double firstOperand, double secondOperand, char operation) throws ArithmeticException {
+        double result = applyOperation(firstOperand, secondOperand, operation);
+        if (result != result) {
+            throw new ArithmeticException(getOperationError(secondOperand, operation) == CalculatorError.DIVIDE_BY_ZERO
+                    ? "Can't divide by zero." : "Undefined result.");
+        }
+        return ResultFormatter.getInstance().format(result);
+    }
 
+    /**
+     * Applies an operator to two numbers, without formatting the result. Errors are returned rather than thrown, so that
+     * calculations that fail cost no more than ones that succeed: the result is NaN when dividing by zero, when the operation
+     * doesn't exist, or when its result is undefined (a NaN result can't come from operands that are numbers any other way).
+     * @param firstOperand the first operand
+     * @param secondOperand the second operand
+     * @param operation the operation to be performed
+     * @return the result of the operation, or NaN if it failed
+     */
+    protected static double applyOperation(double firstOperand, double secondOperand, char operation) {
         //Calculate based on given operand
         switch (operation) {
             case '+':
-                result = firstOperand + secondOperand;
-                break;
+                return firstOperand + secondOperand;
 
             case '-':
-                result = firstOperand - secondOperand;
-                break;
+                return firstOperand - secondOperand;
 
             case '×':
-                result = firstOperand * secondOperand;
-                break;
+                return firstOperand * secondOperand;
 
             case '÷':
-                if (secondOperand == 0) {
-                    throw new ArithmeticException("Can't divide by zero.");
-                } else {
-                    result = firstOperand / secondOperand;
-                    break;
-                }
+                return secondOperand == 0 ? Double.NaN : firstOperand / secondOperand;
 
+            //Binary operations from the registry (such as ^)
             default:
-                throw new ArithmeticException("Invalid operation.");
+                CalculatorOperation registered = OperationRegistry.getDefault().getBinary(operation);
+                return registered == null ? Double.NaN : OperationRegistry.apply(registered, firstOperand, secondOperand);
         }
+    }
 
-        DecimalFormat format = new DecimalFormat("#.#####");
-        return format.format(result);
+    /**
+     * Gives the cause of a binary operation failing (applyOperation() returning NaN).
+     * @param secondOperand the second operand
+     * @param operation the operation that failed
+     * @return DIVIDE_BY_ZERO when dividing by zero, or UNDEFINED when the operation doesn't exist or its result is undefined
+     *         (such as (-8)^0.5)
+     */
+    protected static CalculatorError getOperationError(double secondOperand, char operation) {
+        return operation == '÷' && secondOperand == 0 ? CalculatorError.DIVIDE_BY_ZERO : CalculatorError.UNDEFINED;
+    }
+
+    /**
+     * Applies a unary operation from the OperationRegistry (such as a square root) to the number in the result field,
+     * showing its result like pressing equals would.
+     * @param symbol the operation's symbol
+     * @throws IllegalArgumentException if there is no unary operation with that symbol
+     */
+    public void applyFunction(String symbol) throws IllegalArgumentException {
+        CalculatorOperation function = OperationRegistry.getDefault().get(symbol);
+        if (function == null || !function.isUnary()) {
+            throw new IllegalArgumentException("Unknown function: " + symbol);
+        }
+        applyFunction(function);
+    }
+
+    /**
+     * Applies a unary operation (such as one from the OperationRegistry, or a unit conversion from ConversionRates) to the
+     * number in the result field, showing its result like pressing equals would.
+     * @param function the operation
+     * @throws IllegalArgumentException if the operation isn't unary
+     */
+    public void applyFunction(CalculatorOperation function) throws IllegalArgumentException {
+        if (!function.isUnary()) {
+            throw new IllegalArgumentException("Not a unary operation: " + function.getSymbol());
+        }
+
+        if (!this.errorMode) {
+            double operand = NumberParser.parse(getCurrentResultField());
+            if (operand != operand) {
+                enterErrorMode(CalculatorError.INVALID_NUMBER);
+                return;
+            }
+
+            double result = OperationRegistry.apply(function, operand, 0);
+            if (Double.isNaN(result)) {
+                enterErrorMode(CalculatorError.UNDEFINED);
+            } else if (Double.isInfinite(result)) {
+                enterErrorMode(CalculatorError.OVERFLOW);
+            } else {
+                showValue(result);
+            }
+        }
+    }
+
+    /**
+     * Evaluates a whole infix expression (with operator precedence and parentheses) and shows its result, like pressing equals.
+     * Expressions are compiled once and cached in the shared ExpressionCache.
+     * @param expression the expression to evaluate (it must not contain variables)
+     * @throws IllegalArgumentException if the expression is invalid or contains variables
+     */
+    public void evaluateExpression(String expression) throws IllegalArgumentException {
+        if (!this.errorMode) {
+            Expression compiled = ExpressionCache.getShared().get(expression);
+            if (!compiled.getVariables().isEmpty()) {
+                throw new IllegalArgumentException("Expression contains variables: " + compiled.getVariables());
+            }
+
+            try {
+                double result = compiled.evaluate();
+                setOperationField("");
+                showValue(result);
+
+            //Go into ERROR mode if division by zero occurs (can only be removed by clearing)
+            } catch (ArithmeticException e) {
+                enterErrorMode(CalculatorError.DIVIDE_BY_ZERO);
+            }
+        }
+    }
+
+    /**
+     * Puts the calculator into ERROR mode (which can only be removed by clearing) and shows the error's message in the result field.
+     * @param error the cause of the error
+     */
+    protected void enterErrorMode(CalculatorError error) {
+        metrics.errorEntered(error);
+        this.errorMode = true;
+        setCurrentResultField(error.getMessage());
+        setOperationField("");
+    }
+
+    /**
+     * Takes a snapshot of the model's state (for undo and redo).
+     * @return the snapshot
+     */
+    public CalculatorState saveState() {
+        return new CalculatorState(getCurrentResultField(), getPrevResultField(), getOperationField(), this.isFirst, this.errorMode);
+    }
+
+    /**
+     * Puts the model back into a state taken with saveState().
+     * @param state the snapshot to restore
+     */
+    public void restoreState(CalculatorState state) {
+        setCurrentResultField(state.getCurrentResultField());
+        setPrevResultField(state.getPrevResultField());
+        setOperationField(state.getOperationField());
+        this.isFirst = state.isFirst();
+        this.errorMode = state.isErrorMode();
     }
 
     /**
@@ -179,6 +349,14 @@ public class CalculatorModel {
         this.errorMode = false;
     }
 
+    /**
+     * Resets the model back to the state of a newly created instance (unlike clearing, this also resets isFirst).
+     */
+    public void reset() {
+        clearResultField();
+        this.isFirst = true;
+    }
+
     /**
      * Adds a decimal point dot (.) to the text field. Does not add one if a dot already has been added.
      */
@@ -201,8 +379,14 @@ public class CalculatorModel {
                 setCurrentResultField("0");
 
             } else {
-                Double newResult = Double.parseDouble(getCurrentResultField()) / 100;
-                setCurrentResultField(String.valueOf(newResult));
+                //Go into ERROR mode if the number isn't one (such as an infinity sign pasted in)
+                double operand = NumberParser.parse(getCurrentResultField());
+                if (operand != operand) {
+                    enterErrorMode(CalculatorError.INVALID_NUMBER);
+                    return;
+                }
+
+                setCurrentResultField(String.valueOf(operand / 100));
             }
 
             //Mimic the behaviour of the iPhone calculator
@@ -226,6 +410,49 @@ public class CalculatorModel {
         }
     }
 
+    /**
+     * Ends the entry of the number in the result field, so the next digit starts a new number (eg. once it has been added to
+     * the statistics).
+     */
+    public void endEntry() {
+        this.isFirst = true;
+    }
+
+    /**
+     * Shows a value in the result field, like the result of a calculation (so the next digit starts a new number).
+     * @param value the value (eg. a statistic)
+     */
+    public void showValue(double value) {
+        if (!this.errorMode) {
+            //The same checks as the result of a calculation (eg. an expression that overflows, or ∞ - ∞)
+            if (value != value) {
+                enterErrorMode(CalculatorError.UNDEFINED);
+                return;
+            }
+            if (isTooLong(value)) {
+                enterErrorMode(CalculatorError.OVERFLOW);
+                return;
+            }
+
+            String result = ResultFormatter.getInstance().format(value);
+            if (result.length() > this.maxDigits) {
+                enterErrorMode(CalculatorError.OVERFLOW);
+                return;
+            }
+
+            setCurrentResultField(result);
+            this.isFirst = true;
+        }
+    }
+
+    /**
+     * Sets the listener notified of every calculation performed.
+     * @param calculationListener the listener, or null to stop notifying
+     */
+    public void setCalculationListener(CalculationListener calculationListener) {
+        this.calculationListener = calculationListener;
+    }
+
     /**
      * Gets the current value of the result string.
      * @return the String representing the current number in the result text field
@@ -0,0 +1,30 @@
+/**
+ * An operation the calculator can perform besides its built-in +, -, × and ÷, held in an OperationRegistry.
+ * Unary operations (functions such as square roots) are applied to the number in the result field straight away, while binary
+ * ones are entered like the built-in operators and applied when equals is pressed.
+ * <p>
+ * Operations are provided by OperationProviders, which are discovered with ServiceLoader, so new ones can be added by putting
+ * a jar with a provider on the class path.
+ */
+public interface CalculatorOperation {
+    /**
+     * Gets the symbol the operation is shown and looked up by. The symbol of a binary operation must be a single character
+     * (so calculations can be recorded and replayed one character per operator, like the built-in operators).
+     * @return the symbol (eg. "√" or "^")
+     */
+    String getSymbol();
+
+    /**
+     * Gets whether the operation takes one operand or two.
+     * @return true if it takes one operand (the number in the result field)
+     */
+    boolean isUnary();
+
+    /**
+     * Applies the operation.
+     * @param first the operand (or the first operand, for binary operations)
+     * @param second the second operand (ignored by unary operations)
+     * @return the result (NaN if the operation isn't defined for the operands)
+     */
+    double apply(double first, double second);
+}
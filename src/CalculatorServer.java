@@ -0,0 +1,618 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serves calculator sessions over a local (loopback) socket, so many clients can each use their own calculator.
+ * Every connection runs on its own virtual thread, and sessions are kept in a concurrent map (they can be shared by several
+ * connections, and outlive them) until they have been idle for longer than the idle timeout. Only NEW creates sessions, and
+ * only up to a maximum number, so clients can't make the server hold an unbounded number of them.
+ * <p>
+ * The protocol is line based (UTF-8), with one reply line for every request line:
+ * <ul>
+ *   <li><b>NEW</b> starts a new session and makes it current, replying <code>OK &lt;id&gt;</code> (or <code>ERR Too many
+ *       sessions.</code> when the server already holds its maximum)</li>
+ *   <li><b>SESSION &lt;id&gt;</b> makes a session started with NEW current (eg. from another connection), replying
+ *       <code>OK &lt;id&gt;</code></li>
+ *   <li><b>KEYS &lt;keys&gt;</b> applies keystrokes to the current session (see KeystrokeInterpreter), replying with its state</li>
+ *   <li><b>EXPR &lt;expression&gt;</b> evaluates an expression in the current session (see ExpressionParser), replying with its state</li>
+ *   <li><b>GET</b> replies with the state of the current session</li>
+ *   <li><b>CONVERT &lt;from&gt; &lt;to&gt;</b> converts the number shown in the current session between two units (see
+ *       ConversionRates, when the server has rates), replying with its state</li>
+ *   <li><b>END</b> removes the current session, replying <code>OK &lt;id&gt;</code></li>
+ *   <li><b>QUIT</b> closes the connection (without a reply)</li>
+ * </ul>
+ * A session's state is sent as <code>RESULT &lt;result field&gt; &lt;operation field&gt;</code> (the operation field may be empty).
+ * Failed requests are answered with <code>ERR &lt;message&gt;</code>, and a line longer than MAX_LINE_LENGTH chars with
+ * <code>ERR Line too long.</code> before the connection is closed. A session that was ended, or removed for being idle, is
+ * never started again under the same id: requests for it are answered with <code>ERR Session expired.</code>, so a client
+ * can't carry on with a fresh calculator without noticing it lost its state.
+ */
+public class CalculatorServer implements Closeable {
+    /**
+     * The port used when none is given.
+     */
+    public static final int DEFAULT_PORT = 5225;
+    /**
+     * How long a session may go unused before it is removed when no timeout is given, in milliseconds.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * The most sessions held at once when no maximum is given.
+     */
+    public static final int DEFAULT_MAX_SESSIONS = 100_000;
+    /**
+     * The longest request line read, in chars. A longer one is answered with <code>ERR Line too long.</code> and closes the
+     * connection, so a client can't make the server hold an unbounded line.
+     */
+    public static final int MAX_LINE_LENGTH = 8192;
+    /**
+     * The size of each connection's read and write buffers in chars (small, since there can be tens of thousands of connections).
+     */
+    private static final int BUFFER_SIZE = 512;
+
+    /**
+     * The sessions, by id.
+     */
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    /**
+     * The number of sessions, counted separately from the map so the maximum is never exceeded by sessions started at once.
+     */
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    /**
+     * The sockets of the open connections.
+     */
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    /**
+     * Creates the model of every new session.
+     */
+    private final Supplier<? extends CalculatorModel> modelFactory;
+    /**
+     * How long a session may go unused before it is removed, in milliseconds.
+     */
+    private final long idleTimeoutMillis;
+    /**
+     * The most sessions held at once.
+     */
+    private final int maxSessions;
+    /**
+     * Numbers the sessions started with NEW (the number of sessions started so far).
+     */
+    private final AtomicLong nextSessionId = new AtomicLong();
+    /**
+     * A random tag ending the id of every session this server starts, so it can tell the ids it gave out (and has since
+     * removed) from ones it never did, without remembering them.
+     */
+    private final String instanceTag = Long.toHexString(new SecureRandom().nextLong());
+    /**
+     * Runs every connection on its own virtual thread.
+     */
+    private final ExecutorService connectionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    /**
+     * Periodically removes idle sessions.
+     */
+    private final ScheduledExecutorService evictionExecutor;
+    /**
+     * The listening socket.
+     */
+    private final ServerSocket serverSocket;
+    /**
+     * The rates CONVERT requests use (null if the server has none).
+     */
+    private volatile ConversionRates conversionRates;
+
+    /**
+     * A calculator session. Its model may only be used while holding its lock (a ReentrantLock rather than synchronized, so a
+     * virtual thread waiting for it doesn't pin its carrier thread).
+     */
+    private static final class Session {
+        /**
+         * The session's calculator.
+         */
+        private final CalculatorModel model;
+        /**
+         * Guards the model.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+        /**
+         * When the session was last used (System.nanoTime()).
+         */
+        private volatile long lastAccess;
+
+        /**
+         * Creates a session.
+         * @param model the session's calculator
+         */
+        private Session(CalculatorModel model) {
+            this.model = model;
+            this.lastAccess = System.nanoTime();
+        }
+    }
+
+    /**
+     * Reads a connection's request lines like BufferedReader.readLine() (ending at \n, \r or \r\n), but stops reading a line
+     * once it is longer than MAX_LINE_LENGTH.
+     */
+    private static final class LineReader {
+        /**
+         * The connection's input.
+         */
+        private final BufferedReader in;
+        /**
+         * The line being read.
+         */
+        private final StringBuilder line = new StringBuilder();
+        /**
+         * Whether the last line ended with \r, so a \n right after it is part of the same line end.
+         */
+        private boolean skipLineFeed;
+
+        /**
+         * Creates a reader.
+         * @param in the connection's input
+         */
+        private LineReader(BufferedReader in) {
+            this.in = in;
+        }
+
+        /**
+         * Reads a line.
+         * @return the line without its line end (MAX_LINE_LENGTH + 1 chars long if it is too long, the rest left unread), or
+         *         null at the end of the input
+         * @throws IOException if the input can't be read
+         */
+        private String readLine() throws IOException {
+            line.setLength(0);
+            int c;
+            while ((c = in.read()) >= 0) {
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (c == '\n') {
+                        continue;
+                    }
+                }
+                if (c == '\n' || c == '\r') {
+                    skipLineFeed = c == '\r';
+                    return line.toString();
+                }
+
+                line.append((char) c);
+                if (line.length() > MAX_LINE_LENGTH) {
+                    return line.toString();
+                }
+            }
+            return line.isEmpty() ? null : line.toString();
+        }
+
+        /**
+         * Checks whether another line has (at least partly) arrived, so reading it won't block until the client sends more.
+         * @return true if there are chars to read
+         * @throws IOException if the input can't be read
+         */
+        private boolean ready() throws IOException {
+            //A \n ending the last line doesn't start another one
+            if (skipLineFeed && in.ready()) {
+                in.mark(1);
+                if (in.read() == '\n') {
+                    skipLineFeed = false;
+                } else {
+                    in.reset();
+                }
+            }
+            return in.ready();
+        }
+    }
+
+    /**
+     * Creates a server listening on the loopback address, holding at most DEFAULT_MAX_SESSIONS sessions. Call start() to begin
+     * accepting connections.
+     * @param port the port to listen on (0 for any free port)
+     * @param idleTimeoutMillis how long a session may go unused before it is removed, in milliseconds
+     * @param modelFactory creates the model of every new session
+     * @throws IOException if the port can't be bound
+     */
+    public CalculatorServer(int port, long idleTimeoutMillis, Supplier<? extends CalculatorModel> modelFactory) throws IOException {
+        this(port, idleTimeoutMillis, DEFAULT_MAX_SESSIONS, modelFactory);
+    }
+
+    /**
+     * Creates a server listening on the loopback address. Call start() to begin accepting connections.
+     * @param port the port to listen on (0 for any free port)
+     * @param idleTimeoutMillis how long a session may go unused before it is removed, in milliseconds
+     * @param maxSessions the most sessions held at once
+     * @param modelFactory creates the model of every new session
+     * @throws IOException if the port can't be bound
+     */
+    public CalculatorServer(int port, long idleTimeoutMillis, int maxSessions, Supplier<? extends CalculatorModel> modelFactory)
+            throws IOException {
+        if (idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("The idle timeout must be positive.");
+        }
+        if (maxSessions <= 0) {
+            throw new IllegalArgumentException("The maximum number of sessions must be positive.");
+        }
+
+        this.modelFactory = modelFactory;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxSessions = maxSessions;
+        this.serverSocket = new ServerSocket(port, 4096, InetAddress.getLoopbackAddress());
+        this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("session-eviction").factory());
+    }
+
+    /**
+     * Starts accepting connections and evicting idle sessions.
+     */
+    public void start() {
+        long sweepMillis = Math.max(1, idleTimeoutMillis / 2);
+        evictionExecutor.scheduleWithFixedDelay(this::evictIdleSessions, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+
+        //A platform (non-daemon) thread, so a standalone server keeps running
+        Thread.ofPlatform().name("calculator-server-accept").start(this::acceptConnections);
+    }
+
+    /**
+     * Sets the rates CONVERT requests use.
+     * @param conversionRates the rates, or null to refuse CONVERT requests
+     */
+    public void setConversionRates(ConversionRates conversionRates) {
+        this.conversionRates = conversionRates;
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     * @return the port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Gets the number of live sessions.
+     * @return the number of sessions
+     */
+    public int getSessionCount() {
+        return sessionCount.get();
+    }
+
+    /**
+     * Gets the number of open connections.
+     * @return the number of connections
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Stops the server, closing every open connection.
+     * @throws IOException if the listening socket can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        evictionExecutor.shutdownNow();
+
+        for (Socket socket : connections) {
+            socket.close();
+        }
+        connectionExecutor.shutdownNow();
+    }
+
+    /**
+     * Accepts connections until the server is closed, handing each one to its own virtual thread.
+     */
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                connectionExecutor.execute(() -> serve(socket));
+
+            //Stop once the server socket is closed, but keep going after failures of a single connection (eg. running out of file handles)
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves one connection until the client quits or disconnects.
+     * @param socket the connection's socket
+     */
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            LineReader lines = new LineReader(in);
+            String sessionId = null;
+            String line;
+
+            while ((line = lines.readLine()) != null) {
+                if (line.length() > MAX_LINE_LENGTH) {
+                    out.write("ERR Line too long.\n");
+                    out.flush();
+                    break;
+                }
+
+                int space = line.indexOf(' ');
+                String command = space < 0 ? line : line.substring(0, space);
+                String argument = space < 0 ? "" : line.substring(space + 1);
+
+                if (command.equals("QUIT")) {
+                    break;
+                }
+
+                try {
+                    switch (command) {
+                        case "NEW":
+                            String newId = newSession();
+                            if (newId == null) {
+                                out.write("ERR Too many sessions.");
+                            } else {
+                                sessionId = newId;
+                                out.write("OK " + sessionId);
+                            }
+                            break;
+
+                        case "SESSION":
+                            if (argument.isEmpty() || argument.indexOf(' ') >= 0) {
+                                out.write("ERR Invalid session id.");
+                            } else if (session(argument) != null) {
+                                sessionId = argument;
+                                out.write("OK " + sessionId);
+                            } else {
+                                out.write(wasStarted(argument) ? "ERR Session expired." : "ERR Unknown session.");
+                            }
+                            break;
+
+                        case "END":
+                            if (sessionId == null) {
+                                out.write("ERR No session.");
+                            } else if (sessions.remove(sessionId) == null) {
+                                out.write("ERR Session expired.");
+                            } else {
+                                sessionCount.decrementAndGet();
+                                out.write("OK " + sessionId);
+                                sessionId = null;
+                            }
+                            break;
+
+                        case "KEYS":
+                        case "EXPR":
+                        case "GET":
+                        case "CONVERT":
+                            Session session = sessionId == null ? null : session(sessionId);
+                            if (session == null) {
+                                out.write(sessionId == null ? "ERR No session." : "ERR Session expired.");
+                            } else if (command.equals("CONVERT")) {
+                                out.write(convert(session, argument));
+                            } else {
+                                out.write(apply(session, command, argument));
+                            }
+                            break;
+
+                        default:
+                            out.write("ERR Unknown command.");
+                            break;
+                    }
+                } catch (RuntimeException e) {
+                    //A request that fails unexpectedly (eg. a bug in a model) is answered like any other failure, so the
+                    //connection and its session stay usable
+                    out.write("ERR Internal error.");
+                }
+                out.write('\n');
+
+                //Only flush once every pipelined request has been answered
+                if (!lines.ready()) {
+                    out.flush();
+                }
+            }
+
+        //The client disconnected, or the server is shutting down
+        } catch (IOException e) {
+            //Ignore
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Starts a new session, unless the server already holds its maximum.
+     * @return the new session's id, or null if there are too many sessions
+     */
+    private String newSession() {
+        //A place is reserved before the session is added, so sessions started at once can't take the count past the maximum
+        int count;
+        do {
+            count = sessionCount.get();
+            if (count >= maxSessions) {
+                return null;
+            }
+        } while (!sessionCount.compareAndSet(count, count + 1));
+
+        String id = Long.toString(nextSessionId.incrementAndGet(), 36) + "-" + instanceTag;
+        sessions.put(id, new Session(modelFactory.get()));
+        return id;
+    }
+
+    /**
+     * Gets a session and marks it as used.
+     * @param id the session's id
+     * @return the session, or null if it doesn't exist (any more)
+     */
+    private Session session(String id) {
+        Session session = sessions.get(id);
+        if (session != null) {
+            session.lastAccess = System.nanoTime();
+        }
+        return session;
+    }
+
+    /**
+     * Checks whether an id is one this server gave to a session it started (which may since have been removed).
+     * @param id the id
+     * @return true if this server started a session with the id
+     */
+    private boolean wasStarted(String id) {
+        int dash = id.lastIndexOf('-');
+        if (dash <= 0 || !id.substring(dash + 1).equals(instanceTag)) {
+            return false;
+        }
+
+        try {
+            long number = Long.parseLong(id, 0, dash, 36);
+            return number > 0 && number <= nextSessionId.get();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs a KEYS, EXPR or GET request against a session.
+     * @param session the session
+     * @param command the request's command
+     * @param argument the request's argument
+     * @return the reply
+     */
+    private static String apply(Session session, String command, String argument) {
+        session.lock.lock();
+        try {
+            CalculatorModel model = session.model;
+
+            if (command.equals("KEYS")) {
+                KeystrokeInterpreter.apply(model, argument, 0, argument.length());
+            } else if (command.equals("EXPR")) {
+                try {
+                    model.evaluateExpression(argument);
+                } catch (IllegalArgumentException e) {
+                    return "ERR " + e.getMessage();
+                }
+            }
+
+            return "RESULT " + model.getCurrentResultField() + " " + model.getOperationField();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Runs a CONVERT request against a session.
+     * @param session the session
+     * @param argument the request's argument (the units converted from and to)
+     * @return the reply
+     */
+    private String convert(Session session, String argument) {
+        ConversionRates rates = conversionRates;
+        String[] units = argument.split(" ");
+        if (rates == null) {
+            return "ERR No conversion rates.";
+        }
+        if (units.length != 2) {
+            return "ERR Expected CONVERT <from> <to>.";
+        }
+        if (Double.isNaN(rates.getTable().getRate(units[0], units[1]))) {
+            return "ERR No rate from " + units[0] + " to " + units[1] + ".";
+        }
+
+        session.lock.lock();
+        try {
+            CalculatorModel model = session.model;
+            model.applyFunction(rates.getOperation(units[0], units[1]));
+            return "RESULT " + model.getCurrentResultField() + " " + model.getOperationField();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every session that hasn't been used within the idle timeout.
+     */
+    private void evictIdleSessions() {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+            if (entry.getValue().lastAccess - cutoff < 0 && sessions.remove(entry.getKey(), entry.getValue())) {
+                sessionCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Runs the server until the process is stopped.
+     * Usage: --server [--primitive | --decimal] [--rates &lt;rate file&gt;] [--max-sessions &lt;sessions&gt;] [port] [idle timeout in seconds]
+     * @param args the command line arguments
+     * @throws IOException if the port can't be bound, or the rate file can't be loaded
+     */
+    public static void main(String[] args) throws IOException {
+        Supplier<CalculatorModel> modelFactory = CalculatorModel::new;
+        Path ratesPath = null;
+        String maxSessionsText = null;
+        int first = 0;
+
+        for (; first < args.length && args[first].startsWith("--"); first++) {
+            if (args[first].equals("--primitive")) {
+                modelFactory = PrimitiveCalculatorModel::new;
+            } else if (args[first].equals("--decimal")) {
+                modelFactory = DecimalCalculatorModel::new;
+            } else if (args[first].equals("--rates") && first + 1 < args.length) {
+                ratesPath = Path.of(args[++first]);
+            } else if (args[first].equals("--max-sessions") && first + 1 < args.length) {
+                maxSessionsText = args[++first];
+            } else {
+                break;
+            }
+        }
+
+        int port = DEFAULT_PORT;
+        long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+        int maxSessions = DEFAULT_MAX_SESSIONS;
+
+        try {
+            if (args.length > first) {
+                port = Integer.parseInt(args[first]);
+            }
+            if (args.length > first + 1) {
+                idleTimeoutMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(args[first + 1]));
+            }
+            if (maxSessionsText != null) {
+                maxSessions = Integer.parseInt(maxSessionsText);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: --server [--primitive | --decimal] [--rates <rate file>] [--max-sessions <sessions>] [port] "
+                    + "[idle timeout in seconds]");
+            System.exit(1);
+        }
+
+        CalculatorServer server = new CalculatorServer(port, idleTimeoutMillis, maxSessions, modelFactory);
+        if (ratesPath != null) {
+            //Reloaded whenever the file changes, without holding up the conversions in progress
+            ConversionRates rates = new ConversionRates(ratesPath);
+            rates.watch(ConversionRates.DEFAULT_POLL_MILLIS);
+            server.setConversionRates(rates);
+        }
+        server.start();
+        System.out.println("Calculator server listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+    }
+}
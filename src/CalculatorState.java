@@ -0,0 +1,82 @@
+/**
+ * An immutable snapshot of a CalculatorModel's state. The text fields are Strings, so consecutive snapshots share
+ * whatever didn't change between them instead of copying it.
+ */
+public final class CalculatorState {
+    /**
+     * The text of the result field.
+     */
+    private final String currentResultField;
+    /**
+     * The text of the first operand.
+     */
+    private final String prevResultField;
+    /**
+     * The text of the operation field.
+     */
+    private final String operationField;
+    /**
+     * Whether the next digit replaces the result field instead of being added to it.
+     */
+    private final boolean first;
+    /**
+     * Whether the calculator is in ERROR mode.
+     */
+    private final boolean errorMode;
+
+    /**
+     * Creates a snapshot.
+     * @param currentResultField the text of the result field
+     * @param prevResultField the text of the first operand
+     * @param operationField the text of the operation field
+     * @param first whether the next digit replaces the result field instead of being added to it
+     * @param errorMode whether the calculator is in ERROR mode
+     */
+    public CalculatorState(String currentResultField, String prevResultField, String operationField, boolean first, boolean errorMode) {
+        this.currentResultField = currentResultField;
+        this.prevResultField = prevResultField;
+        this.operationField = operationField;
+        this.first = first;
+        this.errorMode = errorMode;
+    }
+
+    /**
+     * Gets the text of the result field.
+     * @return the text of the result field
+     */
+    public String getCurrentResultField() {
+        return currentResultField;
+    }
+
+    /**
+     * Gets the text of the first operand.
+     * @return the text of the first operand
+     */
+    public String getPrevResultField() {
+        return prevResultField;
+    }
+
+    /**
+     * Gets the text of the operation field.
+     * @return the text of the operation field
+     */
+    public String getOperationField() {
+        return operationField;
+    }
+
+    /**
+     * Gets whether the next digit replaces the result field instead of being added to it.
+     * @return true if the next digit replaces the result field
+     */
+    public boolean isFirst() {
+        return first;
+    }
+
+    /**
+     * Gets whether the calculator is in ERROR mode.
+     * @return true if the calculator is in ERROR mode
+     */
+    public boolean isErrorMode() {
+        return errorMode;
+    }
+}
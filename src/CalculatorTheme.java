@@ -0,0 +1,92 @@
+import java.awt.*;
+
+/**
+ * The fonts, colours and icon of the calculator's windows. They are immutable, so every window in the process shares the same
+ * instances instead of creating (and, for the font and icon, looking up and decoding) its own.
+ */
+public final class CalculatorTheme {
+    /**
+     * The colour of the text on dark buttons.
+     */
+    public static final Color TEXT_COLOR_PRIMARY = new Color(255, 255, 255);
+    /**
+     * The colour of the text on light buttons and in the text fields.
+     */
+    public static final Color TEXT_COLOR_SECONDARY = new Color(0, 0, 0);
+    /**
+     * The colour of the window's background.
+     */
+    public static final Color BACKGROUND_COLOR = new Color(21, 21, 21);
+    /**
+     * The colour of the text fields.
+     */
+    public static final Color TEXT_AREA_COLOR = new Color(255, 255, 255);
+    /**
+     * The colour of the digit buttons.
+     */
+    public static final Color DIGIT_COLOR = new Color(60, 60, 60);
+    /**
+     * The colour of the digit buttons while clicked.
+     */
+    public static final Color DIGIT_COLOR_CLICKED = new Color(89, 89, 89);
+    /**
+     * The colour of the operation buttons.
+     */
+    public static final Color OPERATION_COLOR = new Color(200, 95, 38);
+    /**
+     * The colour of the operation buttons while clicked.
+     */
+    public static final Color OPERATION_COLOR_CLICKED = new Color(228, 125, 72);
+    /**
+     * The colour of the other buttons.
+     */
+    public static final Color MISC_COLOR = new Color(172, 172, 172);
+    /**
+     * The colour of the other buttons while clicked.
+     */
+    public static final Color MISC_COLOR_CLICKED = new Color(209, 209, 209);
+
+    /**
+     * The family of the text font.
+     */
+    private static final String FONT_FAMILY = "Microsoft JhengHei UI Light";
+    /**
+     * The point size of the text font.
+     */
+    private static final int FONT_SIZE = 21;
+
+    /**
+     * The text font (created by the first window).
+     */
+    private static Font font;
+    /**
+     * The window icon (loaded by the first window to ask for it).
+     */
+    private static Image icon;
+
+    private CalculatorTheme() {
+    }
+
+    /**
+     * Gets the font of the buttons and text fields.
+     * @param fastStart true to resolve the font through the FontCache (only matters for the first window, which creates it)
+     * @return the font
+     */
+    public static synchronized Font getFont(boolean fastStart) {
+        if (font == null) {
+            font = fastStart ? FontCache.getFont(FONT_FAMILY, Font.PLAIN, FONT_SIZE) : new Font(FONT_FAMILY, Font.PLAIN, FONT_SIZE);
+        }
+        return font;
+    }
+
+    /**
+     * Gets the window icon.
+     * @return the icon
+     */
+    public static synchronized Image getIcon() {
+        if (icon == null) {
+            icon = Toolkit.getDefaultToolkit().getImage(CalculatorTheme.class.getResource("calculator.png"));
+        }
+        return icon;
+    }
+}
@@ -4,7 +4,7 @@ import java.awt.*;
 /**
  * A class that represents the view part of the MVC calculator.
  */
-public class CalculatorView extends JFrame {
+public class CalculatorView extends JFrame implements CalculatorDisplay {
     /**
      * An array of JButtons representing the digits 0-9.
      */
@@ -20,7 +20,7 @@ public class CalculatorView extends JFrame {
     /**
      * Holds the result text.
      */
-    private JTextField resultArea;
+    private ResultRenderer resultArea;
     /**
      * Holds the operator text.
      */
@@ -29,12 +29,21 @@ public class CalculatorView extends JFrame {
      * Holds the result area text field (for overflow).
      */
     private JScrollPane resultOperatorScrollPane;
+    /**
+     * Whether the window is built the quicker way (see CalculatorView(boolean)).
+     */
+    private final boolean fastStart;
+    /**
+     * Whether the window has been painted yet.
+     */
+    private boolean painted;
 
     /**
      * Returns the instance of a specified digit button.
      * @param digit the digit button index (corresponds to the actual digit itself)
      * @return the specified digit button.
      */
+    @Override
     public CalculatorButton getDigitButton(int digit) {
         return digitButtons[digit];
     }
@@ -43,15 +52,17 @@ public class CalculatorView extends JFrame {
      * Returns the instance of the operator text field.
      * @return the operator text field
      */
+    @Override
     public JTextField getOperatorArea() {
         return operatorArea;
     }
 
     /**
-     * Returns the instance of the result text field.
-     * @return the result text field
+     * Returns the instance of the result renderer.
+     * @return the result renderer
      */
-    public JTextField getResultArea() {
+    @Override
+    public ResultRenderer getResultArea() {
         return resultArea;
     }
 
@@ -68,6 +79,7 @@ public class CalculatorView extends JFrame {
      * @param operator the operator button index
      * @return the specified operator button.
      */
+    @Override
     public CalculatorButton getOperatorButton(int operator) {
         return operatorButtons[operator];
     }
@@ -77,6 +89,7 @@ public class CalculatorView extends JFrame {
      * @param misc the misc button index
      * @return the specified misc button.
      */
+    @Override
     public CalculatorButton getMiscButton(int misc) {
         return miscButtons[misc];
     }
@@ -85,19 +98,69 @@ public class CalculatorView extends JFrame {
      * Initializes the calculator GUI and makes it visible to the user.
      */
     public CalculatorView(){
+        this(false);
+    }
+
+    /**
+     * Initializes the calculator GUI and makes it visible to the user.
+     * @param fastStart true to start quicker: the buttons are placed directly instead of through a GroupLayout (in the same
+     *                  positions), the font is resolved through the FontCache, and the window icon is only loaded after the
+     *                  first frame has been painted
+     */
+    public CalculatorView(boolean fastStart) {
+        this.fastStart = fastStart;
+
         createUIComponents();
-        organizeUIComponents();
+        StartupTimer.mark("components");
+
+        if (fastStart) {
+            organizeUIComponentsFast();
+        } else {
+            organizeUIComponents();
+        }
+        StartupTimer.mark("layout");
+
         setVisible(true);
         setFocusable(true);
+        StartupTimer.mark("visible");
+    }
+
+    /**
+     * Creates the root pane, which reports the first frame painted to the StartupTimer (and loads anything left for later).
+     * @return the root pane
+     */
+    @Override
+    protected JRootPane createRootPane() {
+        JRootPane rootPane = new JRootPane() {
+            @Override
+            public void paint(Graphics g) {
+                super.paint(g);
+
+                if (!CalculatorView.this.painted) {
+                    CalculatorView.this.painted = true;
+                    StartupTimer.firstFramePainted();
+                    if (CalculatorView.this.fastStart) {
+                        SwingUtilities.invokeLater(CalculatorView.this::loadIcon);
+                    }
+                }
+            }
+        };
+        rootPane.setOpaque(true);
+        return rootPane;
+    }
+
+    /**
+     * Loads the window icon (shared by every window).
+     */
+    private void loadIcon() {
+        setIconImage(CalculatorTheme.getIcon());
     }
 
     /**
      * Initializes all the JComponents and alters the colour/font scheme.
      */
     private void createUIComponents() {
-        resultArea = new JTextField();
-        resultArea.setHorizontalAlignment(SwingConstants.RIGHT); //Right-aligned text
-        resultArea.setEditable(false);
+        resultArea = new ResultRenderer(); //Right-aligned, and only draws the digits in view (so very long results stay fast)
         resultArea.setFocusable(false);
 
         operatorArea = new JTextField();
@@ -105,7 +168,8 @@ public class CalculatorView extends JFrame {
         operatorArea.setEditable(false);
         operatorArea.setFocusable(false);
 
-        resultOperatorScrollPane = new JScrollPane(resultArea);
+        resultOperatorScrollPane = new JScrollPane(resultArea, ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER,
+                                                   ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
 
         digitButtons = new CalculatorButton[]{new CalculatorButton("             0"), new CalculatorButton("1"), new CalculatorButton("2"),
                                               new CalculatorButton("3"), new CalculatorButton("4"), new CalculatorButton("5"),
@@ -119,42 +183,27 @@ public class CalculatorView extends JFrame {
         miscButtons = new CalculatorButton[]{new CalculatorButton("C"), new CalculatorButton("+/-"), new CalculatorButton("%"),
                                              new CalculatorButton("."), new CalculatorButton("=")};
 
-        //Fonts and colour changes
-        Font textFont = new Font("Microsoft JhengHei UI Light", Font.PLAIN, 21);
-        Color textColorPrimary = new Color(255, 255, 255);
-        Color textColorSecondary = new Color(0, 0, 0);
-
-        Color bgColor = new Color(21, 21, 21);
-        Color textAreaColor = new Color(255, 255, 255);
+        //Fonts and colour changes (shared by every window)
+        Font textFont = CalculatorTheme.getFont(fastStart);
 
-        Color digitColor = new Color(60, 60, 60);
-        Color digitColorClicked = new Color(89, 89, 89);
-
-        Color operationColor = new Color(200, 95, 38);
-        Color operationColorClicked = new Color(228, 125, 72);
-
-        Color miscColor = new Color(172, 172, 172);
-        Color miscColorClicked = new Color(209, 209, 209);
-
-        getContentPane().setBackground(bgColor);
+        getContentPane().setBackground(CalculatorTheme.BACKGROUND_COLOR);
 
         resultArea.setFont(textFont);
-        resultArea.setBackground(textAreaColor);
-        resultArea.setCaretColor(textAreaColor);
-        resultArea.setForeground(textColorSecondary);
+        resultArea.setBackground(CalculatorTheme.TEXT_AREA_COLOR);
+        resultArea.setForeground(CalculatorTheme.TEXT_COLOR_SECONDARY);
         resultOperatorScrollPane.setBorder(BorderFactory.createEmptyBorder());
 
         operatorArea.setFont(textFont);
-        operatorArea.setBackground(textAreaColor);
-        operatorArea.setCaretColor(textAreaColor);
-        operatorArea.setForeground(textColorSecondary);
+        operatorArea.setBackground(CalculatorTheme.TEXT_AREA_COLOR);
+        operatorArea.setCaretColor(CalculatorTheme.TEXT_AREA_COLOR);
+        operatorArea.setForeground(CalculatorTheme.TEXT_COLOR_SECONDARY);
         operatorArea.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         for (CalculatorButton button : digitButtons) {
             button.setFont(textFont);
-            button.setBackground(digitColor);
-            button.setBackgroundColorClicked(digitColorClicked);
-            button.setForeground(textColorPrimary);
+            button.setBackground(CalculatorTheme.DIGIT_COLOR);
+            button.setBackgroundColorClicked(CalculatorTheme.DIGIT_COLOR_CLICKED);
+            button.setForeground(CalculatorTheme.TEXT_COLOR_PRIMARY);
             button.setBorder(null);
             button.setFocusable(false);
         }
@@ -162,33 +211,36 @@ public class CalculatorView extends JFrame {
 
         for (CalculatorButton button : operatorButtons) {
             button.setFont(textFont);
-            button.setBackground(operationColor);
-            button.setBackgroundColorClicked(operationColorClicked);
-            button.setForeground(textColorPrimary);
+            button.setBackground(CalculatorTheme.OPERATION_COLOR);
+            button.setBackgroundColorClicked(CalculatorTheme.OPERATION_COLOR_CLICKED);
+            button.setForeground(CalculatorTheme.TEXT_COLOR_PRIMARY);
             button.setBorder(null);
             button.setFocusable(false);
         }
 
         for (CalculatorButton button : miscButtons) {
             button.setFont(textFont);
-            button.setBackground(miscColor);
-            button.setBackgroundColorClicked(miscColorClicked);
-            button.setForeground(textColorSecondary);
+            button.setBackground(CalculatorTheme.MISC_COLOR);
+            button.setBackgroundColorClicked(CalculatorTheme.MISC_COLOR_CLICKED);
+            button.setForeground(CalculatorTheme.TEXT_COLOR_SECONDARY);
             button.setBorder(null);
             button.setFocusable(false);
         }
 
         //Special tweaks for the decimal and equals buttons
-        miscButtons[3].setBackground(digitColor); miscButtons[3].setBackgroundColorClicked(digitColorClicked); miscButtons[3].setForeground(textColorPrimary);
-        miscButtons[4].setBackground(operationColor); miscButtons[4].setBackgroundColorClicked(operationColorClicked); miscButtons[4].setForeground(textColorPrimary);
+        miscButtons[3].setBackground(CalculatorTheme.DIGIT_COLOR); miscButtons[3].setBackgroundColorClicked(CalculatorTheme.DIGIT_COLOR_CLICKED); miscButtons[3].setForeground(CalculatorTheme.TEXT_COLOR_PRIMARY);
+        miscButtons[4].setBackground(CalculatorTheme.OPERATION_COLOR); miscButtons[4].setBackgroundColorClicked(CalculatorTheme.OPERATION_COLOR_CLICKED); miscButtons[4].setForeground(CalculatorTheme.TEXT_COLOR_PRIMARY);
 
         setLocationByPlatform(true);
         setResizable(false);
 
         setTitle("Calculator");
-        setIconImage(Toolkit.getDefaultToolkit().getImage(getClass().getResource("calculator.png")));
+        if (!fastStart) {
+            loadIcon();
+        }
 
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        //Closing a window only closes that calculator (see CalculatorLauncher)
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
     }
 
     /**
@@ -330,4 +382,54 @@ public class CalculatorView extends JFrame {
 
         pack();
     }
+
+    /**
+     * Places all GUI components directly in the same positions organizeUIComponents() gives them: a grid of 80x60 cells with
+     * gaps of 15 and a border of 12 (15 at the bottom), with the 0 button two cells wide and the result area three cells wide.
+     */
+    private void organizeUIComponentsFast() {
+        Container contentPane = getContentPane();
+        contentPane.setLayout(null);
+
+        //The top row, then the buttons by row and column
+        placeComponent(resultOperatorScrollPane, 0, 0, 3);
+        placeComponent(operatorArea, 3, 0, 1);
+
+        placeComponent(miscButtons[0], 0, 1, 1);
+        placeComponent(miscButtons[1], 1, 1, 1);
+        placeComponent(miscButtons[2], 2, 1, 1);
+        placeComponent(operatorButtons[3], 3, 1, 1);
+
+        for (int digit = 1; digit <= 9; digit++) {
+            placeComponent(digitButtons[digit], (digit - 1) % 3, 4 - (digit - 1) / 3, 1);
+        }
+        placeComponent(operatorButtons[2], 3, 2, 1);
+        placeComponent(operatorButtons[1], 3, 3, 1);
+        placeComponent(operatorButtons[0], 3, 4, 1);
+
+        placeComponent(digitButtons[0], 0, 5, 2);
+        placeComponent(miscButtons[3], 2, 5, 1);
+        placeComponent(miscButtons[4], 3, 5, 1);
+
+        contentPane.setPreferredSize(new Dimension(12 * 2 + 4 * 80 + 3 * 15, 12 + 6 * 60 + 5 * 15 + 15));
+        pack();
+    }
+
+    /**
+     * Places a component in a cell of the fast layout's grid.
+     * @param component the component
+     * @param column the cell's column
+     * @param row the cell's row
+     * @param columns the number of columns it spans
+     */
+    private void placeComponent(Component component, int column, int row, int columns) {
+        int cellWidth = 80;
+        int cellHeight = 60;
+        int gapSize = 15;
+        int border = 12;
+
+        getContentPane().add(component);
+        component.setBounds(border + column * (cellWidth + gapSize), border + row * (cellHeight + gapSize),
+                columns * cellWidth + (columns - 1) * gapSize, cellHeight);
+    }
 }
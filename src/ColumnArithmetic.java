@@ -0,0 +1,316 @@
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * Applies the calculator's operators (+, -, × and ÷) element-wise to whole columns of numbers, held in double arrays or in
+ * DoubleBuffers (including direct, off-heap ones). Each element gets the same result CalculatorModel.applyOperation() would give
+ * (NaN for a division by zero), and the bit of each element that couldn't be calculated is set in an error mask, so one bad
+ * element doesn't stop the rest of the column. The mask has one bit per element, with element i at bit (i % 64) of word i / 64.
+ * <p>
+ * The work is done in plain counted loops over arrays, all indexed alike and without branches, which the JIT compiles to SIMD
+ * instructions (falling back to scalar code on CPUs without them), so whole columns run close to memory bandwidth.
+ * Operations may be done in place (the result can be the same array or buffer as either operand).
+ */
+public final class ColumnArithmetic {
+    /**
+     * The number of elements whose division errors are collected into each word of the error mask.
+     */
+    private static final int WORD_SIZE = 64;
+    /**
+     * The number of elements copied at a time when direct buffers are staged through the heap.
+     */
+    private static final int STAGE_SIZE = 4096;
+
+    /**
+     * Each thread's heap staging arrays for direct buffers (the first operand, the second operand and the result).
+     */
+    private static final ThreadLocal<double[][]> stages = ThreadLocal.withInitial(() -> new double[3][STAGE_SIZE]);
+
+    private ColumnArithmetic() {
+    }
+
+    /**
+     * Creates an error mask big enough for a column.
+     * @param length the number of elements in the column
+     * @return the error mask
+     */
+    public static long[] newErrorMask(int length) {
+        return new long[wordCount(length)];
+    }
+
+    /**
+     * Checks whether an element's bit is set in an error mask.
+     * @param errors the error mask
+     * @param index the element's index
+     * @return true if the element couldn't be calculated
+     */
+    public static boolean isError(long[] errors, int index) {
+        return (errors[index / WORD_SIZE] & (1L << index)) != 0;
+    }
+
+    /**
+     * Applies an operator to every pair of elements of two columns: result[i] = first[i] operation second[i].
+     * @param first the first operands
+     * @param second the second operands (as long as first)
+     * @param operation the operator (+, -, × or ÷)
+     * @param result receives the results (as long as first)
+     * @param errors receives the error mask (at least newErrorMask(first.length) long), with a bit set for each division by zero
+     * @return the number of elements that couldn't be calculated
+     * @throws IllegalArgumentException if the operator is invalid or the columns have different lengths
+     */
+    public static int apply(double[] first, double[] second, char operation, double[] result, long[] errors) throws IllegalArgumentException {
+        checkLengths(first.length, second.length, result.length, errors);
+        return apply(first, second, operation, result, 0, first.length, errors, 0);
+    }
+
+    /**
+     * Applies an operator with the same second operand to every element of a column: result[i] = first[i] operation second.
+     * @param first the first operands
+     * @param second the second operand
+     * @param operation the operator (+, -, × or ÷)
+     * @param result receives the results (as long as first)
+     * @param errors receives the error mask (at least newErrorMask(first.length) long), with every bit set if second is zero
+     *               and the operator is ÷
+     * @return the number of elements that couldn't be calculated
+     * @throws IllegalArgumentException if the operator is invalid or the columns have different lengths
+     */
+    public static int apply(double[] first, double second, char operation, double[] result, long[] errors) throws IllegalArgumentException {
+        int length = first.length;
+        checkLengths(length, length, result.length, errors);
+        int words = wordCount(length);
+
+        switch (operation) {
+            case '+':
+                for (int i = 0; i < length; i++) {
+                    result[i] = first[i] + second;
+                }
+                break;
+
+            case '-':
+                for (int i = 0; i < length; i++) {
+                    result[i] = first[i] - second;
+                }
+                break;
+
+            case '×':
+                for (int i = 0; i < length; i++) {
+                    result[i] = first[i] * second;
+                }
+                break;
+
+            case '÷':
+                if (second == 0) {
+                    Arrays.fill(result, Double.NaN);
+                    Arrays.fill(errors, 0, words, -1L);
+                    //Bits past the end of the column stay clear (shifting only uses the low 6 bits of length)
+                    if (length % WORD_SIZE != 0) {
+                        errors[words - 1] = (1L << length) - 1;
+                    }
+                    return length;
+                }
+
+                for (int i = 0; i < length; i++) {
+                    result[i] = first[i] / second;
+                }
+                break;
+
+            default:
+                throw invalidOperation(operation);
+        }
+
+        Arrays.fill(errors, 0, words, 0);
+        return 0;
+    }
+
+    /**
+     * Applies an operator to every pair of elements of two buffers: result[i] = first[i] operation second[i].
+     * The elements used are those from each buffer's position up to its limit, and the buffers' positions aren't changed.
+     * Heap buffers lined up on their arrays are calculated directly on the arrays; other buffers (such as direct ones) are
+     * copied through the heap a block at a time.
+     * @param first the first operands
+     * @param second the second operands (as many remaining as first)
+     * @param operation the operator (+, -, × or ÷)
+     * @param result receives the results (as many remaining as first)
+     * @param errors receives the error mask (at least newErrorMask(first.remaining()) long), with a bit set for each division by zero
+     * @return the number of elements that couldn't be calculated
+     * @throws IllegalArgumentException if the operator is invalid or the buffers have different numbers of elements remaining
+     * @throws java.nio.ReadOnlyBufferException if the result buffer is read-only
+     */
+    public static int apply(DoubleBuffer first, DoubleBuffer second, char operation, DoubleBuffer result, long[] errors) throws IllegalArgumentException {
+        int length = first.remaining();
+        checkLengths(length, second.remaining(), result.remaining(), errors);
+
+        if (first.hasArray() && second.hasArray() && result.hasArray()) {
+            int from = first.arrayOffset() + first.position();
+            if (second.arrayOffset() + second.position() == from && result.arrayOffset() + result.position() == from) {
+                return apply(first.array(), second.array(), operation, result.array(), from, from + length, errors, 0);
+            }
+        }
+
+        //Stages are whole mask words long, so each block of errors lands on word boundaries
+        double[][] stage = stages.get();
+        int errorCount = 0;
+
+        for (int start = 0; start < length; start += STAGE_SIZE) {
+            int count = Math.min(STAGE_SIZE, length - start);
+            first.get(first.position() + start, stage[0], 0, count);
+            second.get(second.position() + start, stage[1], 0, count);
+            errorCount += apply(stage[0], stage[1], operation, stage[2], 0, count, errors, start / WORD_SIZE);
+            result.put(result.position() + start, stage[2], 0, count);
+        }
+
+        return errorCount;
+    }
+
+    /**
+     * Applies an operator to every pair of elements in the same range of two arrays. The arrays are all indexed alike (rather
+     * than each from its own offset), which keeps the loops simple enough for the JIT to use SIMD instructions.
+     * @param first the first operands
+     * @param second the second operands
+     * @param operation the operator (+, -, × or ÷)
+     * @param result receives the results
+     * @param from the index of the first element
+     * @param to the index after the last element
+     * @param errors receives the error mask
+     * @param errorsOffset the index of the word of errors the first element's bit is in
+     * @return the number of elements that couldn't be calculated
+     * @throws IllegalArgumentException if the operator is invalid
+     */
+    private static int apply(double[] first, double[] second, char operation, double[] result, int from, int to,
+                             long[] errors, int errorsOffset) throws IllegalArgumentException {
+        switch (operation) {
+            case '+':
+                for (int i = from; i < to; i++) {
+                    result[i] = first[i] + second[i];
+                }
+                break;
+
+            case '-':
+                for (int i = from; i < to; i++) {
+                    result[i] = first[i] - second[i];
+                }
+                break;
+
+            case '×':
+                for (int i = from; i < to; i++) {
+                    result[i] = first[i] * second[i];
+                }
+                break;
+
+            case '÷':
+                return divide(first, second, result, from, to, errors, errorsOffset);
+
+            default:
+                throw invalidOperation(operation);
+        }
+
+        Arrays.fill(errors, errorsOffset, errorsOffset + wordCount(to - from), 0);
+        return 0;
+    }
+
+    /**
+     * Divides every pair of elements in the same range of two arrays, marking divisions by zero in the error mask.
+     * The work is done a mask word (64 elements) at a time. A zero divisor always gives an infinite or NaN quotient, and
+     * quotient - quotient is NaN for exactly those, so summing it while dividing (which the JIT still compiles to SIMD
+     * instructions) finds the words that may hold a division by zero; only their divisors are checked one by one. When the
+     * result is the divisors' array, the divisors are summed the same way (before the quotients overwrite them) instead.
+     * @param first the dividends
+     * @param second the divisors
+     * @param result receives the quotients
+     * @param from the index of the first element
+     * @param to the index after the last element
+     * @param errors receives the error mask
+     * @param errorsOffset the index of the word of errors the first element's bit is in
+     * @return the number of divisions by zero
+     */
+    private static int divide(double[] first, double[] second, double[] result, int from, int to, long[] errors, int errorsOffset) {
+        int errorCount = 0;
+        int word = errorsOffset;
+
+        for (int start = from; start < to; start += WORD_SIZE, word++) {
+            int end = Math.min(start + WORD_SIZE, to);
+
+            long bits;
+            if (result == second) {
+                //|divisor| × ∞ is NaN for a zero (or NaN) divisor, and ∞ otherwise
+                double zeroOrNaN = 0;
+                for (int i = start; i < end; i++) {
+                    zeroOrNaN += Math.abs(second[i]) * Double.POSITIVE_INFINITY;
+                }
+                bits = zeroOrNaN == zeroOrNaN ? 0 : zeroMask(second, start, end);
+                for (int i = start; i < end; i++) {
+                    result[i] = first[i] / second[i];
+                }
+            } else {
+                //Also NaN for a word that overflows or has NaN operands, which the check then clears
+                double nonFinite = 0;
+                for (int i = start; i < end; i++) {
+                    double quotient = first[i] / second[i];
+                    result[i] = quotient;
+                    nonFinite += quotient - quotient;
+                }
+                bits = nonFinite == 0 ? 0 : zeroMask(second, start, end);
+            }
+
+            errors[word] = bits;
+            if (bits != 0) {
+                for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+                    result[start + Long.numberOfTrailingZeros(remaining)] = Double.NaN;
+                }
+                errorCount += Long.bitCount(bits);
+            }
+        }
+
+        return errorCount;
+    }
+
+    /**
+     * Finds the zero divisors among up to a mask word's worth of elements, without branching on each one.
+     * @param column the divisors
+     * @param start the index of the first element (its bit is the lowest)
+     * @param end the index after the last element
+     * @return the mask word, with a bit set for each zero
+     */
+    private static long zeroMask(double[] column, int start, int end) {
+        long bits = 0;
+        for (int i = start; i < end; i++) {
+            bits |= (column[i] == 0 ? 1L : 0L) << (i - start);
+        }
+        return bits;
+    }
+
+    /**
+     * Checks that the operands, the result and the error mask are big enough for each other.
+     * @param firstLength the number of first operands
+     * @param secondLength the number of second operands
+     * @param resultLength the number of results
+     * @param errors the error mask
+     * @throws IllegalArgumentException if they aren't
+     */
+    private static void checkLengths(int firstLength, int secondLength, int resultLength, long[] errors) throws IllegalArgumentException {
+        if (secondLength != firstLength || resultLength != firstLength) {
+            throw new IllegalArgumentException("Columns have different lengths: " + firstLength + ", " + secondLength + " and " + resultLength + ".");
+        }
+        if (errors.length < wordCount(firstLength)) {
+            throw new IllegalArgumentException("The error mask is too short for " + firstLength + " elements.");
+        }
+    }
+
+    /**
+     * Gets the number of error mask words a column needs.
+     * @param length the number of elements in the column
+     * @return the number of words
+     */
+    private static int wordCount(int length) {
+        return (length + WORD_SIZE - 1) / WORD_SIZE;
+    }
+
+    /**
+     * Creates the exception thrown for an invalid operator.
+     * @param operation the operator
+     * @return the exception
+     */
+    private static IllegalArgumentException invalidOperation(char operation) {
+        return new IllegalArgumentException("Invalid operation: " + operation);
+    }
+}
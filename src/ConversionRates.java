@@ -0,0 +1,216 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The conversion rates of a rate file (see ConversionTable), reloaded whenever the file changes.
+ * <p>
+ * A reload builds a whole new table and then swaps it in atomically, so conversions never wait for a reload (or see half of
+ * one): each conversion reads the current table once and uses it throughout, and a conversion already running when a reload
+ * finishes completes with the old table, which is only freed once nothing uses it any more. If the changed file can't be loaded,
+ * the old table stays in use. Replace the file by moving a new one into place, so a reload never reads half-written rates.
+ * <p>
+ * Conversions are applied to a model as unary operations (see getOperation()), like the scientific functions.
+ */
+public final class ConversionRates implements Closeable {
+    /**
+     * How often the rate file is checked for changes when no interval is given, in milliseconds.
+     */
+    public static final long DEFAULT_POLL_MILLIS = 1000;
+
+    /**
+     * The rate file.
+     */
+    private final Path path;
+    /**
+     * The current table.
+     */
+    private final AtomicReference<ConversionTable> table = new AtomicReference<>();
+    /**
+     * Checks the rate file for changes (null if it isn't being watched).
+     */
+    private ScheduledExecutorService watcher;
+    /**
+     * When the loaded rate file was last modified.
+     */
+    private FileTime loadedModifiedTime;
+    /**
+     * The size of the loaded rate file in bytes.
+     */
+    private long loadedSize;
+    /**
+     * The number of times the table has been loaded.
+     */
+    private volatile long loadCount;
+    /**
+     * The error that stopped the last reload (null if it succeeded).
+     */
+    private volatile IOException failure;
+
+    /**
+     * Loads the rates of a rate file.
+     * @param path the rate file
+     * @throws IOException if the file can't be read, or a line isn't a valid rate
+     */
+    public ConversionRates(Path path) throws IOException {
+        this.path = path;
+        reload();
+
+        IOException error = failure;
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Starts reloading the rates whenever the rate file changes, checking it on a background thread.
+     * @param pollMillis how often to check the file, in milliseconds
+     */
+    public synchronized void watch(long pollMillis) {
+        if (pollMillis <= 0) {
+            throw new IllegalArgumentException("Invalid poll interval: " + pollMillis);
+        }
+        if (watcher == null) {
+            watcher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("conversion-reload").factory());
+            watcher.scheduleWithFixedDelay(this::reloadIfChanged, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops watching the rate file.
+     */
+    @Override
+    public synchronized void close() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Reloads the rates if the rate file's modification time or size has changed since it was last loaded.
+     */
+    private synchronized void reloadIfChanged() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.lastModifiedTime().equals(loadedModifiedTime) || attributes.size() != loadedSize) {
+                reload();
+            }
+        } catch (IOException e) {
+            //The file is being replaced (or was removed), so keep the current rates and check again later
+            failure = e;
+        }
+    }
+
+    /**
+     * Reloads the rates now. Conversions carry on with the old rates until the new ones are ready (and keep them if loading
+     * fails, see getFailure()).
+     */
+    public synchronized void reload() {
+        try {
+            //Read before loading, so a change made while loading is picked up by the next check
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            ConversionTable loaded = ConversionTable.load(path);
+
+            table.set(loaded);
+            loadedModifiedTime = attributes.lastModifiedTime();
+            loadedSize = attributes.size();
+            loadCount++;
+            failure = null;
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Gets the current table.
+     * @return the table
+     */
+    public ConversionTable getTable() {
+        return table.get();
+    }
+
+    /**
+     * Converts a value from one unit to another with the current rates.
+     * @param value the value
+     * @param from the unit converted from
+     * @param to the unit converted to
+     * @return the converted value, or NaN if there is no rate between the units
+     */
+    public double convert(double value, String from, String to) {
+        return table.get().convert(value, from, to);
+    }
+
+    /**
+     * Gets a conversion as a unary operation, for CalculatorModel.applyFunction(). The operation always uses the current
+     * rates, so it can be kept across reloads.
+     * @param from the unit converted from
+     * @param to the unit converted to
+     * @return the operation (its result is NaN, which the model shows as an error, if there is no rate between the units)
+     */
+    public CalculatorOperation getOperation(String from, String to) {
+        return new Conversion(from, to);
+    }
+
+    /**
+     * Gets the number of times the rates have been loaded (including the first time).
+     * @return the number of loads
+     */
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * Gets the error that stopped the last reload.
+     * @return the error, or null if the last reload succeeded
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * A conversion between two units, as a unary operation.
+     */
+    private final class Conversion implements CalculatorOperation {
+        /**
+         * The unit converted from.
+         */
+        private final String from;
+        /**
+         * The unit converted to.
+         */
+        private final String to;
+
+        /**
+         * Creates a conversion.
+         * @param from the unit converted from
+         * @param to the unit converted to
+         */
+        private Conversion(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public String getSymbol() {
+            return from + "→" + to;
+        }
+
+        @Override
+        public boolean isUnary() {
+            return true;
+        }
+
+        @Override
+        public double apply(double first, double second) {
+            return convert(first, from, to);
+        }
+    }
+}
@@ -0,0 +1,490 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * An immutable table of conversion rates between units (or currencies), loaded from a text file into a compact binary form that
+ * is memory-mapped rather than held on the heap, and looked up in constant time by unit pair.
+ * <p>
+ * The text file has one rate per line: <code>&lt;from&gt; &lt;to&gt; &lt;rate&gt;</code> (eg. <code>km mi 0.621371</code> or
+ * <code>USD EUR 0.92</code>), meaning one <i>from</i> is <i>rate</i> of <i>to</i>. Units are case-sensitive words, blank lines
+ * and lines starting with # are ignored, and a later line for the same pair replaces an earlier one. A rate also converts the
+ * other way (by dividing) unless that direction has a line of its own.
+ * <p>
+ * The binary form is kept next to the text file, in a file named after it with ".table" added (see getCompiledPath()), and
+ * records the size and CRC-32C checksum of the text file it was built from. Loading maps that file instead of parsing the text
+ * again while they still match (eg. when a server restarts, or reloads a file that hasn't changed); otherwise the table is
+ * built again and the file replaced. The contents are compared rather than the modification time, which copies often keep
+ * (eg. <code>cp -p</code> or <code>rsync -a</code>) even when a rate changed and the size didn't. If the text file's directory
+ * can't be written to, the table is built in a direct buffer instead (off the heap too, but built on every load). After a
+ * header, it holds two open-addressing hash tables with linear probing, each at most half full:
+ * <ul>
+ *   <li>the unit slots: one int per slot, the index of a unit plus one (0 for an empty slot), hashed by the unit's name</li>
+ *   <li>the units: the offset and length of each unit's name in the names (two ints per unit)</li>
+ *   <li>the pair slots: the indexes of a pair's units (-1 for an empty slot) and its rate (two ints and a double per slot),
+ *       hashed by the two indexes</li>
+ *   <li>the names: every unit's name as UTF-16 chars, so looking one up compares chars and allocates nothing</li>
+ * </ul>
+ */
+public final class ConversionTable {
+    /**
+     * Marks the start of a binary table ("CONV").
+     */
+    private static final int MAGIC = 0x434F4E56;
+    /**
+     * The version of the binary form.
+     */
+    private static final int VERSION = 3;
+    /**
+     * The size of the header in bytes: the magic number, version, unit count, unit slot count, pair count, pair slot count and
+     * name char count as ints, padding, and the text file's checksum and size as longs.
+     */
+    private static final int HEADER_SIZE = 48;
+    /**
+     * The offset in the header of the text file's CRC-32C checksum.
+     */
+    private static final int HEADER_SOURCE_CHECKSUM = 32;
+    /**
+     * The offset in the header of the text file's size.
+     */
+    private static final int HEADER_SOURCE_SIZE = 40;
+    /**
+     * The size of a pair slot in bytes.
+     */
+    private static final int PAIR_SLOT_SIZE = 16;
+    /**
+     * The largest number of units or pairs in a table (so the slot counts stay within an int).
+     */
+    private static final int MAX_ENTRIES = 1 << 26;
+
+    /**
+     * The table in its binary form (never written to once built).
+     */
+    private final ByteBuffer buffer;
+    /**
+     * The number of units.
+     */
+    private final int unitCount;
+    /**
+     * The number of unit slots (a power of two).
+     */
+    private final int unitSlotCount;
+    /**
+     * The number of pairs with a rate.
+     */
+    private final int pairCount;
+    /**
+     * The number of pair slots (a power of two).
+     */
+    private final int pairSlotCount;
+    /**
+     * The index of the first unit in the buffer.
+     */
+    private final int unitsOffset;
+    /**
+     * The index of the first pair slot in the buffer.
+     */
+    private final int pairSlotsOffset;
+    /**
+     * The index of the first char of the names in the buffer.
+     */
+    private final int namesOffset;
+
+    /**
+     * Creates a table from its binary form.
+     * @param buffer the table in its binary form
+     */
+    private ConversionTable(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.unitCount = buffer.getInt(8);
+        this.unitSlotCount = buffer.getInt(12);
+        this.pairCount = buffer.getInt(16);
+        this.pairSlotCount = buffer.getInt(20);
+        this.unitsOffset = HEADER_SIZE + unitSlotCount * Integer.BYTES;
+        this.pairSlotsOffset = unitsOffset + unitCount * 2 * Integer.BYTES;
+        this.namesOffset = pairSlotsOffset + pairSlotCount * PAIR_SLOT_SIZE;
+    }
+
+    /**
+     * Loads a table from a text file of rates, mapping the binary form built from it before if the file hasn't changed since.
+     * @param path the file
+     * @return the table
+     * @throws IOException if the file can't be read, or a line isn't a valid rate
+     */
+    public static ConversionTable load(Path path) throws IOException {
+        //Read once, so the checksum is of the very rates parsed even if the file changes meanwhile
+        byte[] source = Files.readAllBytes(path);
+        CRC32C checksum = new CRC32C();
+        checksum.update(source);
+        long sourceChecksum = checksum.getValue();
+        long sourceSize = source.length;
+
+        Path compiled = getCompiledPath(path);
+        ConversionTable table = mapCompiled(compiled, sourceChecksum, sourceSize);
+        if (table != null) {
+            return table;
+        }
+
+        Map<String, Integer> units = new LinkedHashMap<>();
+        Map<Long, Double> rates = new HashMap<>();
+
+        //A decoder of its own reports malformed UTF-8, like Files.newBufferedReader() does
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(source),
+                StandardCharsets.UTF_8.newDecoder()))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.strip();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = trimmed.split("\\s+");
+                double rate = fields.length == 3 ? NumberParser.parse(fields[2]) : Double.NaN;
+                if (!(rate > 0) || rate == Double.POSITIVE_INFINITY) {
+                    throw new IOException(path + ":" + lineNumber + ": expected <from> <to> <positive rate>, found \"" + trimmed + "\"");
+                }
+                if (units.size() >= MAX_ENTRIES - 1 || rates.size() >= MAX_ENTRIES) {
+                    throw new IOException(path + " has too many units or rates.");
+                }
+
+                int from = units.computeIfAbsent(fields[0], _ -> units.size());
+                int to = units.computeIfAbsent(fields[1], _ -> units.size());
+                rates.put(pairKey(from, to), rate);
+            }
+        }
+
+        return build(units, rates, compiled, sourceChecksum, sourceSize);
+    }
+
+    /**
+     * Gets the file the binary form of a text file of rates is kept in.
+     * @param path the text file
+     * @return the file holding its binary form (the text file's name with ".table" added)
+     */
+    public static Path getCompiledPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".table");
+    }
+
+    /**
+     * Maps the binary form of a table, if it was built from the text file as it is now.
+     * @param compiled the file holding the binary form
+     * @param sourceChecksum the text file's CRC-32C checksum
+     * @param sourceSize the text file's size
+     * @return the table, or null if the file doesn't exist, is out of date or isn't a table of this version
+     * @throws IOException if the file exists but can't be read
+     */
+    private static ConversionTable mapCompiled(Path compiled, long sourceChecksum, long sourceSize) throws IOException {
+        if (!Files.isRegularFile(compiled)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(compiled, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getLong(HEADER_SOURCE_CHECKSUM) != sourceChecksum || buffer.getLong(HEADER_SOURCE_SIZE) != sourceSize
+                    || tableSize(buffer.getInt(8), buffer.getInt(12), buffer.getInt(20), buffer.getInt(24)) != size) {
+                return null;
+            }
+            return new ConversionTable(buffer);
+        }
+    }
+
+    /**
+     * Builds the binary form of a table, keeping it in the file for the text file's binary form (or in a direct buffer if that
+     * can't be written).
+     * @param units the index of every unit, by name (indexes are 0 to the number of units - 1)
+     * @param rates the rate of every pair, by pairKey()
+     * @param compiled the file to keep the binary form in
+     * @param sourceChecksum the text file's CRC-32C checksum
+     * @param sourceSize the text file's size
+     * @return the table
+     * @throws IOException if the table is too large
+     */
+    private static ConversionTable build(Map<String, Integer> units, Map<Long, Double> rates, Path compiled, long sourceChecksum,
+                                         long sourceSize) throws IOException {
+        int unitSlotCount = slotCount(units.size());
+        int pairSlotCount = slotCount(rates.size());
+        long nameChars = 0;
+        for (String name : units.keySet()) {
+            nameChars += name.length();
+        }
+
+        long size = tableSize(units.size(), unitSlotCount, pairSlotCount, nameChars);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The conversion table is too large to map.");
+        }
+
+        //Built in a temporary file next to the final one, and moved into place once complete, so a table being loaded elsewhere
+        //is never read half written
+        Path file = null;
+        ByteBuffer buffer;
+        try {
+            file = Files.createTempFile(compiled.toAbsolutePath().getParent(), compiled.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        } catch (IOException e) {
+            if (file != null) {
+                Files.deleteIfExists(file);
+                file = null;
+            }
+            buffer = ByteBuffer.allocateDirect((int) size);
+        }
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, units.size());
+        buffer.putInt(12, unitSlotCount);
+        buffer.putInt(16, rates.size());
+        buffer.putInt(20, pairSlotCount);
+        buffer.putInt(24, (int) nameChars);
+        buffer.putLong(HEADER_SOURCE_CHECKSUM, sourceChecksum);
+        buffer.putLong(HEADER_SOURCE_SIZE, sourceSize);
+        ConversionTable table = new ConversionTable(buffer);
+
+        //Units, and the slots pointing to them (a new file or direct buffer is all zeros, so every slot starts empty)
+        int nameOffset = 0;
+        for (Map.Entry<String, Integer> unit : units.entrySet()) {
+            String name = unit.getKey();
+            int index = unit.getValue();
+
+            int slot = mix(name.hashCode()) & (unitSlotCount - 1);
+            while (buffer.getInt(HEADER_SIZE + slot * Integer.BYTES) != 0) {
+                slot = (slot + 1) & (unitSlotCount - 1);
+            }
+            buffer.putInt(HEADER_SIZE + slot * Integer.BYTES, index + 1);
+
+            buffer.putInt(table.unitsOffset + index * 2 * Integer.BYTES, nameOffset);
+            buffer.putInt(table.unitsOffset + index * 2 * Integer.BYTES + Integer.BYTES, name.length());
+            for (int i = 0; i < name.length(); i++) {
+                buffer.putChar(table.namesOffset + (nameOffset + i) * Character.BYTES, name.charAt(i));
+            }
+            nameOffset += name.length();
+        }
+
+        //Pairs
+        for (int slot = 0; slot < pairSlotCount; slot++) {
+            buffer.putInt(table.pairSlotsOffset + slot * PAIR_SLOT_SIZE, -1);
+        }
+        for (Map.Entry<Long, Double> rate : rates.entrySet()) {
+            int from = (int) (rate.getKey() >>> 32);
+            int to = (int) (long) rate.getKey();
+
+            int slot = pairSlot(from, to, pairSlotCount);
+            while (buffer.getInt(table.pairSlotsOffset + slot * PAIR_SLOT_SIZE) != -1) {
+                slot = (slot + 1) & (pairSlotCount - 1);
+            }
+            int offset = table.pairSlotsOffset + slot * PAIR_SLOT_SIZE;
+            buffer.putInt(offset, from);
+            buffer.putInt(offset + Integer.BYTES, to);
+            buffer.putDouble(offset + 2 * Integer.BYTES, rate.getValue());
+        }
+
+        if (file != null) {
+            ((MappedByteBuffer) buffer).force();
+            try {
+                Files.move(file, compiled, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                //The table stays valid (it is mapped), it just has to be built again next time
+                Files.deleteIfExists(file);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Gets the size of a table's binary form.
+     * @param unitCount the number of units
+     * @param unitSlotCount the number of unit slots
+     * @param pairSlotCount the number of pair slots
+     * @param nameChars the number of chars in the units' names
+     * @return the size in bytes
+     */
+    private static long tableSize(int unitCount, int unitSlotCount, int pairSlotCount, long nameChars) {
+        return HEADER_SIZE + (long) unitSlotCount * Integer.BYTES + (long) unitCount * 2 * Integer.BYTES
+                + (long) pairSlotCount * PAIR_SLOT_SIZE + nameChars * Character.BYTES;
+    }
+
+    /**
+     * Gets the rate converting one unit to another.
+     * @param from the unit converted from
+     * @param to the unit converted to
+     * @return the rate (1 if the units are the same), or NaN if the table has no rate between them
+     */
+    public double getRate(String from, String to) {
+        int fromIndex = indexOf(from);
+        int toIndex = indexOf(to);
+        if (fromIndex < 0 || toIndex < 0) {
+            return Double.NaN;
+        }
+        if (fromIndex == toIndex) {
+            return 1;
+        }
+
+        double rate = findRate(fromIndex, toIndex);
+        if (rate == rate) {
+            return rate;
+        }
+        return 1 / findRate(toIndex, fromIndex);
+    }
+
+    /**
+     * Converts a value from one unit to another.
+     * @param value the value
+     * @param from the unit converted from
+     * @param to the unit converted to
+     * @return the converted value, or NaN if the table has no rate between the units
+     */
+    public double convert(double value, String from, String to) {
+        return value * getRate(from, to);
+    }
+
+    /**
+     * Checks whether the table has a unit.
+     * @param unit the unit's name
+     * @return true if it has
+     */
+    public boolean hasUnit(String unit) {
+        return indexOf(unit) >= 0;
+    }
+
+    /**
+     * Gets the number of units.
+     * @return the number of units
+     */
+    public int getUnitCount() {
+        return unitCount;
+    }
+
+    /**
+     * Gets the number of rates (pairs listed in the file, not counting the other way around).
+     * @return the number of rates
+     */
+    public int getRateCount() {
+        return pairCount;
+    }
+
+    /**
+     * Looks up a unit.
+     * @param name the unit's name
+     * @return the unit's index, or -1 if the table doesn't have it
+     */
+    private int indexOf(String name) {
+        int slot = mix(name.hashCode()) & (unitSlotCount - 1);
+        while (true) {
+            int entry = buffer.getInt(HEADER_SIZE + slot * Integer.BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            if (nameEquals(entry - 1, name)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & (unitSlotCount - 1);
+        }
+    }
+
+    /**
+     * Checks whether a unit has a name.
+     * @param index the unit's index
+     * @param name the name
+     * @return true if it has
+     */
+    private boolean nameEquals(int index, String name) {
+        int offset = buffer.getInt(unitsOffset + index * 2 * Integer.BYTES);
+        int length = buffer.getInt(unitsOffset + index * 2 * Integer.BYTES + Integer.BYTES);
+        if (length != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.getChar(namesOffset + (offset + i) * Character.BYTES) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Looks up the rate of a pair, in the direction it was listed.
+     * @param from the index of the unit converted from
+     * @param to the index of the unit converted to
+     * @return the rate, or NaN if the pair wasn't listed in that direction
+     */
+    private double findRate(int from, int to) {
+        int slot = pairSlot(from, to, pairSlotCount);
+        while (true) {
+            int offset = pairSlotsOffset + slot * PAIR_SLOT_SIZE;
+            int slotFrom = buffer.getInt(offset);
+            if (slotFrom == -1) {
+                return Double.NaN;
+            }
+            if (slotFrom == from && buffer.getInt(offset + Integer.BYTES) == to) {
+                return buffer.getDouble(offset + 2 * Integer.BYTES);
+            }
+            slot = (slot + 1) & (pairSlotCount - 1);
+        }
+    }
+
+    /**
+     * Gets the number of slots for a hash table, so it is at most half full.
+     * @param entries the number of entries
+     * @return the number of slots (a power of two, at least 2)
+     */
+    private static int slotCount(int entries) {
+        return Integer.highestOneBit(Math.max(1, entries) * 2 - 1) * 2;
+    }
+
+    /**
+     * Gets the key of a pair while building a table.
+     * @param from the index of the unit converted from
+     * @param to the index of the unit converted to
+     * @return the key
+     */
+    private static long pairKey(int from, int to) {
+        return (long) from << 32 | to;
+    }
+
+    /**
+     * Gets the slot a pair's probe starts at.
+     * @param from the index of the unit converted from
+     * @param to the index of the unit converted to
+     * @param slotCount the number of pair slots
+     * @return the slot
+     */
+    private static int pairSlot(int from, int to, int slotCount) {
+        return mix(from * 0x9E3779B9 + to) & (slotCount - 1);
+    }
+
+    /**
+     * Spreads the bits of a hash code, so the low bits used to pick a slot depend on all of them (the finalizer of MurmurHash3).
+     * @param hash the hash code
+     * @return the mixed hash code
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,128 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * A calculator model that does exact decimal arithmetic instead of binary floating point, so results like 0.1+0.2 or
+ * 12345678901234567890+1 come out exactly. Calculations run on ScaledDecimal, which stays on fast long arithmetic and
+ * only falls back to BigDecimal (rounded with the given MathContext) when a value no longer fits.
+ * Results that are too long for the display have fraction digits rounded away instead of causing an OVERFLOW ERROR;
+ * only results whose integer part doesn't fit still overflow.
+ */
+public class DecimalCalculatorModel extends CalculatorModel {
+    /**
+     * The first operand of a calculation.
+     */
+    private final ScaledDecimal firstOperand;
+    /**
+     * The second operand of a calculation (and the result, once calculated).
+     */
+    private final ScaledDecimal secondOperand;
+
+    /**
+     * Creates an exact decimal model that rounds to 34 significant digits when it has to.
+     */
+    public DecimalCalculatorModel() {
+        this(MathContext.DECIMAL128);
+    }
+
+    /**
+     * Creates an exact decimal model.
+     * @param mathContext the precision and rounding used when results can't be represented exactly
+     */
+    public DecimalCalculatorModel(MathContext mathContext) {
+        this.firstOperand = new ScaledDecimal(mathContext);
+        this.secondOperand = new ScaledDecimal(mathContext);
+    }
+
+    @Override
+    protected void performCalculation() {
+        //Does not allow calculations if in error mode
+        if (!this.errorMode) {
+            if (!firstOperand.parse(getPrevResultField()) || !secondOperand.parse(getCurrentResultField())) {
+                enterErrorMode(CalculatorError.INVALID_NUMBER);
+                return;
+            }
+
+            //Check first if there is an operation in the operation field (gets priority)
+            if (!getOperationField().isEmpty()) {
+                ScaledDecimal result = applyOperation(firstOperand, secondOperand, getOperationField().charAt(0));
+
+                //Go into ERROR mode if division by zero occurs, or the result is undefined (can only be removed by clearing)
+                if (result == null) {
+                    enterErrorMode(getOperationField().charAt(0) == '÷' ? CalculatorError.DIVIDE_BY_ZERO : CalculatorError.UNDEFINED);
+                    return;
+                }
+
+                String text = result.toDisplayString(this.maxDigits);
+                if (text == null) {
+                    enterErrorMode(CalculatorError.OVERFLOW);
+                    return;
+                }
+
+                setCurrentResultField(text);
+                setOperationField("");
+                this.isFirst = true; //To not add on to result (user enters new number)
+            }
+        }
+    }
+
+    @Override
+    public void changeToPercent() {
+        if (!this.errorMode) {
+            //If it equals 0, it's still 0
+            if (!getCurrentResultField().equals("0")) {
+                if (!secondOperand.parse(getCurrentResultField())) {
+                    enterErrorMode(CalculatorError.INVALID_NUMBER);
+                    return;
+                }
+
+                String text = secondOperand.percent().toDisplayString(this.maxDigits);
+                if (text == null) {
+                    enterErrorMode(CalculatorError.OVERFLOW);
+                    return;
+                }
+                setCurrentResultField(text);
+            }
+
+            //Mimic the behaviour of the iPhone calculator
+            this.isFirst = true;
+        }
+    }
+
+    /**
+     * Applies an operator to two decimals, storing the result in the first. Errors are returned rather than thrown (see
+     * CalculatorModel.applyOperation()).
+     * @param first the first operand (replaced by the result)
+     * @param second the second operand
+     * @param operation the operation to be performed
+     * @return the first operand, now holding the result, or null when attempting to divide by zero, the operation is invalid,
+     *         or its result is undefined
+     */
+    private static ScaledDecimal applyOperation(ScaledDecimal first, ScaledDecimal second, char operation) {
+        switch (operation) {
+            case '+':
+                return first.add(second);
+
+            case '-':
+                return first.subtract(second);
+
+            case '×':
+                return first.multiply(second);
+
+            case '÷':
+                return second.signum() == 0 ? null : first.divide(second);
+
+            //Operations from the registry (such as ^) are only defined on doubles
+            default:
+                double result = CalculatorModel.applyOperation(first.doubleValue(), second.doubleValue(), operation);
+                if (Double.isNaN(result)) {
+                    return null;
+                }
+                //An overflow becomes the largest double, which is too long for the display too (an OVERFLOW ERROR, as in the other models)
+                if (Double.isInfinite(result)) {
+                    result = Math.copySign(Double.MAX_VALUE, result);
+                }
+                return first.set(BigDecimal.valueOf(result));
+        }
+    }
+}
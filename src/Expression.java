@@ -0,0 +1,177 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compiled infix expression, ready to be evaluated any number of times with different variable values.
+ * The expression is stored as a compact postfix program (an int per instruction plus a table of constants), so evaluating it
+ * doesn't walk a tree or create any objects. Instances are immutable and can be shared between threads.
+ */
+public final class Expression {
+    /**
+     * Pushes a constant (operand is the index into the constant table).
+     */
+    static final int PUSH_CONSTANT = 0;
+    /**
+     * Pushes a variable's value (operand is the index of the variable).
+     */
+    static final int PUSH_VARIABLE = 1;
+    /**
+     * Pops two values and pushes their sum.
+     */
+    static final int ADD = 2;
+    /**
+     * Pops two values and pushes their difference.
+     */
+    static final int SUBTRACT = 3;
+    /**
+     * Pops two values and pushes their product.
+     */
+    static final int MULTIPLY = 4;
+    /**
+     * Pops two values and pushes their quotient.
+     */
+    static final int DIVIDE = 5;
+    /**
+     * Negates the top value.
+     */
+    static final int NEGATE = 6;
+    /**
+     * Divides the top value by 100.
+     */
+    static final int PERCENT = 7;
+    /**
+     * The number of bits the operand of an instruction is shifted by.
+     */
+    static final int OPERAND_SHIFT = 8;
+
+    /**
+     * Per-thread evaluation stacks.
+     */
+    private static final ThreadLocal<double[]> STACKS = ThreadLocal.withInitial(() -> new double[16]);
+
+    /**
+     * The source text the expression was compiled from.
+     */
+    private final String source;
+    /**
+     * The instructions, each an opcode in the low 8 bits and an operand above them.
+     */
+    private final int[] code;
+    /**
+     * The constants used by PUSH_CONSTANT.
+     */
+    private final double[] constants;
+    /**
+     * The names of the variables, in the order their values are passed to evaluate.
+     */
+    private final String[] variables;
+    /**
+     * The deepest the evaluation stack gets.
+     */
+    private final int maxStackDepth;
+
+    /**
+     * Creates a compiled expression (see ExpressionParser).
+     * @param source the source text
+     * @param code the instructions
+     * @param constants the constant table
+     * @param variables the variable names
+     * @param maxStackDepth the deepest the evaluation stack gets
+     */
+    Expression(String source, int[] code, double[] constants, String[] variables, int maxStackDepth) {
+        this.source = source;
+        this.code = code;
+        this.constants = constants;
+        this.variables = variables;
+        this.maxStackDepth = maxStackDepth;
+    }
+
+    /**
+     * Evaluates the expression.
+     * @param values the value of each variable, in the order given by getVariables()
+     * @return the result
+     * @throws ArithmeticException when attempting to divide by zero
+     */
+    public double evaluate(double... values) throws ArithmeticException {
+        if (values.length < variables.length) {
+            throw new IllegalArgumentException("Expected " + variables.length + " variable values but got " + values.length + ".");
+        }
+
+        double[] stack = STACKS.get();
+        if (stack.length < maxStackDepth) {
+            stack = new double[maxStackDepth];
+            STACKS.set(stack);
+        }
+
+        int top = -1;
+
+        for (int instruction : code) {
+            switch (instruction & 0xFF) {
+                case PUSH_CONSTANT:
+                    stack[++top] = constants[instruction >>> OPERAND_SHIFT];
+                    break;
+                case PUSH_VARIABLE:
+                    stack[++top] = values[instruction >>> OPERAND_SHIFT];
+                    break;
+                case ADD:
+                    top--;
+                    stack[top] = stack[top] + stack[top + 1];
+                    break;
+                case SUBTRACT:
+                    top--;
+                    stack[top] = stack[top] - stack[top + 1];
+                    break;
+                case MULTIPLY:
+                    top--;
+                    stack[top] = stack[top] * stack[top + 1];
+                    break;
+                case DIVIDE:
+                    top--;
+                    if (stack[top + 1] == 0) {
+                        throw new ArithmeticException("Can't divide by zero.");
+                    }
+                    stack[top] = stack[top] / stack[top + 1];
+                    break;
+                case NEGATE:
+                    stack[top] = -stack[top];
+                    break;
+                case PERCENT:
+                    stack[top] = stack[top] / 100;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown instruction " + instruction + ".");
+            }
+        }
+
+        return stack[0];
+    }
+
+    /**
+     * Gets the source text the expression was compiled from.
+     * @return the source text
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the names of the variables, in the order their values are passed to evaluate.
+     * @return the variable names
+     */
+    public List<String> getVariables() {
+        return List.of(variables);
+    }
+
+    /**
+     * Gets the number of instructions in the compiled program.
+     * @return the program length
+     */
+    public int getCodeLength() {
+        return code.length;
+    }
+
+    @Override
+    public String toString() {
+        return source + " " + Arrays.toString(code);
+    }
+}
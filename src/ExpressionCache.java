@@ -0,0 +1,100 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of compiled expressions keyed by their source text,
+ * so expressions that are evaluated over and over are only parsed once. Safe to use from multiple threads.
+ */
+public class ExpressionCache {
+    /**
+     * The default number of expressions kept.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+    /**
+     * The cache shared by the whole application.
+     */
+    private static final ExpressionCache SHARED = new ExpressionCache(DEFAULT_CAPACITY);
+
+    /**
+     * The cached expressions, in least-recently-used order.
+     */
+    private final LinkedHashMap<String, Expression> expressions;
+
+    /**
+     * Creates an empty cache.
+     * @param capacity the maximum number of expressions kept
+     */
+    public ExpressionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+
+        this.expressions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the cache shared by the whole application.
+     * @return the shared cache
+     */
+    public static ExpressionCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets the compiled form of an expression, compiling and caching it if it isn't cached yet.
+     * @param source the text of the expression
+     * @return the compiled expression
+     * @throws IllegalArgumentException if the text is not a valid expression
+     */
+    public Expression get(String source) throws IllegalArgumentException {
+        synchronized (expressions) {
+            Expression expression = expressions.get(source);
+            if (expression != null) {
+                return expression;
+            }
+        }
+
+        //Compile outside the lock so a slow parse doesn't hold up other threads
+        Expression compiled = ExpressionParser.compile(source);
+
+        synchronized (expressions) {
+            Expression existing = expressions.putIfAbsent(source, compiled);
+            return existing != null ? existing : compiled;
+        }
+    }
+
+    /**
+     * Compiles (or fetches) and evaluates an expression.
+     * @param source the text of the expression
+     * @param values the value of each variable, in order of first appearance in the text
+     * @return the result
+     * @throws ArithmeticException when attempting to divide by zero
+     */
+    public double evaluate(String source, double... values) throws ArithmeticException {
+        return get(source).evaluate(values);
+    }
+
+    /**
+     * Gets the number of cached expressions.
+     * @return the number of cached expressions
+     */
+    public int size() {
+        synchronized (expressions) {
+            return expressions.size();
+        }
+    }
+
+    /**
+     * Removes every cached expression.
+     */
+    public void clear() {
+        synchronized (expressions) {
+            expressions.clear();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles infix expressions such as "2+3×4" or "(price - discount) * 1.13" into an Expression.
+ * Multiplication and division (× * ÷ /) bind tighter than addition and subtraction, parentheses group, a leading - or + is a sign,
+ * a trailing % divides by 100 (like the % button), and names are variables whose values are given when evaluating.
+ * Constant parts of the expression are folded while compiling.
+ */
+public final class ExpressionParser {
+    /**
+     * The text being parsed.
+     */
+    private final String source;
+    /**
+     * The index of the next character to read.
+     */
+    private int position;
+    /**
+     * The instructions emitted so far.
+     */
+    private int[] code = new int[16];
+    /**
+     * The number of instructions emitted so far.
+     */
+    private int codeLength;
+    /**
+     * The constant table.
+     */
+    private final List<Double> constants = new ArrayList<>();
+    /**
+     * The variables, mapped to their index.
+     */
+    private final Map<String, Integer> variables = new LinkedHashMap<>();
+    /**
+     * The current depth of the evaluation stack.
+     */
+    private int stackDepth;
+    /**
+     * The deepest the evaluation stack gets.
+     */
+    private int maxStackDepth;
+
+    /**
+     * Creates a parser for some text.
+     * @param source the text to parse
+     */
+    private ExpressionParser(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Compiles an expression.
+     * @param source the text of the expression
+     * @return the compiled expression
+     * @throws IllegalArgumentException if the text is not a valid expression
+     */
+    public static Expression compile(String source) throws IllegalArgumentException {
+        ExpressionParser parser = new ExpressionParser(source);
+        parser.parseSum();
+        parser.skipWhitespace();
+
+        if (parser.position < source.length()) {
+            throw parser.unexpected();
+        }
+
+        double[] constants = new double[parser.constants.size()];
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = parser.constants.get(i);
+        }
+
+        return new Expression(source, Arrays.copyOf(parser.code, parser.codeLength), constants,
+                parser.variables.keySet().toArray(new String[0]), parser.maxStackDepth);
+    }
+
+    /**
+     * Parses terms joined by + and -.
+     */
+    private void parseSum() {
+        parseProduct();
+
+        while (true) {
+            char c = peek();
+            if (c == '+') {
+                position++;
+                parseProduct();
+                emitBinary(Expression.ADD);
+            } else if (c == '-') {
+                position++;
+                parseProduct();
+                emitBinary(Expression.SUBTRACT);
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parses factors joined by × * ÷ and /.
+     */
+    private void parseProduct() {
+        parseFactor();
+
+        while (true) {
+            char c = peek();
+            if (c == '×' || c == '*') {
+                position++;
+                parseFactor();
+                emitBinary(Expression.MULTIPLY);
+            } else if (c == '÷' || c == '/') {
+                position++;
+                parseFactor();
+                emitBinary(Expression.DIVIDE);
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parses a signed value with any number of trailing %.
+     */
+    private void parseFactor() {
+        char c = peek();
+
+        if (c == '-') {
+            position++;
+            parseFactor();
+            emitUnary(Expression.NEGATE);
+            return;
+        } else if (c == '+') {
+            position++;
+            parseFactor();
+            return;
+        }
+
+        parsePrimary();
+
+        while (peek() == '%') {
+            position++;
+            emitUnary(Expression.PERCENT);
+        }
+    }
+
+    /**
+     * Parses a number, a variable or a parenthesized expression.
+     */
+    private void parsePrimary() {
+        char c = peek();
+
+        if (c == '(') {
+            position++;
+            parseSum();
+            if (peek() != ')') {
+                throw unexpected();
+            }
+            position++;
+
+        } else if ((c >= '0' && c <= '9') || c == '.') {
+            int start = position;
+            while (position < source.length() && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+                position++;
+            }
+
+            try {
+                emitConstant(Double.parseDouble(source.substring(start, position)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number \"" + source.substring(start, position) + "\" at position " + start + ".");
+            }
+
+        } else if (Character.isLetter(c) || c == '_') {
+            int start = position;
+            while (position < source.length() && (Character.isLetterOrDigit(source.charAt(position)) || source.charAt(position) == '_')) {
+                position++;
+            }
+
+            Integer index = variables.computeIfAbsent(source.substring(start, position), _ -> variables.size());
+            emit(Expression.PUSH_VARIABLE, index);
+            push();
+
+        } else {
+            throw unexpected();
+        }
+    }
+
+    /**
+     * Emits a constant, adding it to the constant table.
+     * @param value the constant
+     */
+    private void emitConstant(double value) {
+        constants.add(value);
+        emit(Expression.PUSH_CONSTANT, constants.size() - 1);
+        push();
+    }
+
+    /**
+     * Emits a binary operator, folding it if both operands are constants.
+     * @param opcode the operator
+     */
+    private void emitBinary(int opcode) {
+        if (codeLength >= 2 && isConstant(codeLength - 2) && isConstant(codeLength - 1)) {
+            double first = constant(codeLength - 2);
+            double second = constant(codeLength - 1);
+
+            //Division by zero is left for evaluation so it fails the same way every time
+            if (opcode != Expression.DIVIDE || second != 0) {
+                double result = switch (opcode) {
+                    case Expression.ADD -> first + second;
+                    case Expression.SUBTRACT -> first - second;
+                    case Expression.MULTIPLY -> first * second;
+                    default -> first / second;
+                };
+
+                removeLastConstant();
+                removeLastConstant();
+                stackDepth -= 2;
+                emitConstant(result);
+                return;
+            }
+        }
+
+        emit(opcode, 0);
+        stackDepth--;
+    }
+
+    /**
+     * Emits a unary operator, folding it if the operand is a constant.
+     * @param opcode the operator
+     */
+    private void emitUnary(int opcode) {
+        if (codeLength >= 1 && isConstant(codeLength - 1)) {
+            double value = constant(codeLength - 1);
+            removeLastConstant();
+            stackDepth--;
+            emitConstant(opcode == Expression.NEGATE ? -value : value / 100);
+            return;
+        }
+
+        emit(opcode, 0);
+    }
+
+    /**
+     * Checks whether an instruction pushes a constant.
+     * @param index the index of the instruction
+     * @return true if it is a PUSH_CONSTANT
+     */
+    private boolean isConstant(int index) {
+        return (code[index] & 0xFF) == Expression.PUSH_CONSTANT;
+    }
+
+    /**
+     * Gets the constant pushed by an instruction.
+     * @param index the index of the instruction
+     * @return the constant
+     */
+    private double constant(int index) {
+        return constants.get(code[index] >>> Expression.OPERAND_SHIFT);
+    }
+
+    /**
+     * Removes the last instruction, which must push the most recently added constant.
+     */
+    private void removeLastConstant() {
+        codeLength--;
+        constants.remove(constants.size() - 1);
+    }
+
+    /**
+     * Appends an instruction.
+     * @param opcode the opcode
+     * @param operand the operand
+     */
+    private void emit(int opcode, int operand) {
+        if (codeLength == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[codeLength++] = opcode | (operand << Expression.OPERAND_SHIFT);
+    }
+
+    /**
+     * Records a push onto the evaluation stack.
+     */
+    private void push() {
+        stackDepth++;
+        maxStackDepth = Math.max(maxStackDepth, stackDepth);
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it.
+     * @return the next character, or 0 at the end of the text
+     */
+    private char peek() {
+        skipWhitespace();
+        return position < source.length() ? source.charAt(position) : 0;
+    }
+
+    /**
+     * Skips any whitespace at the current position.
+     */
+    private void skipWhitespace() {
+        while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+            position++;
+        }
+    }
+
+    /**
+     * Creates the exception for an unexpected character (or end of text) at the current position.
+     * @return the exception to throw
+     */
+    private IllegalArgumentException unexpected() {
+        if (position >= source.length()) {
+            return new IllegalArgumentException("Unexpected end of expression.");
+        }
+        return new IllegalArgumentException("Unexpected '" + source.charAt(position) + "' at position " + position + ".");
+    }
+}
@@ -0,0 +1,322 @@
+/**
+ * Fast approximations of the scientific functions, used by ScientificOperations when the registry's accuracy is FAST.
+ * Exponentials and logarithms are table-driven (a small table narrows the argument down so a short polynomial is enough),
+ * the trigonometric functions reduce the argument to within π/4 and use minimax polynomials, and powers with small whole
+ * exponents are done by repeated squaring. Results are within 4 ulps of the Math functions' (measured over millions of
+ * arguments: 1 ulp for ln, 2 for exp, sin and cos, 3 for log10 and 4 for tan and powers). Arguments outside the ranges the
+ * approximations handle, special values such as NaN, infinities and zeros, and powers with other exponents (which the Math
+ * function already does faster than e^(y ln(x)) would) or results that aren't normal numbers are passed to the Math functions.
+ */
+public final class FastMath {
+    /**
+     * The number of bits of the exponential's table index.
+     */
+    private static final int EXP_TABLE_BITS = 6;
+    /**
+     * The number of entries in the exponential's table.
+     */
+    private static final int EXP_TABLE_SIZE = 1 << EXP_TABLE_BITS;
+    /**
+     * 2^(i / EXP_TABLE_SIZE) for each entry i.
+     */
+    private static final double[] EXP_TABLE = new double[EXP_TABLE_SIZE];
+    /**
+     * EXP_TABLE_SIZE / ln(2).
+     */
+    private static final double EXP_SCALE = EXP_TABLE_SIZE / Math.log(2);
+    /**
+     * The high bits of ln(2) / EXP_TABLE_SIZE (with enough trailing zeros that multiplying it by a table index is exact).
+     */
+    private static final double EXP_LN2_HI = 6.93147180369123816490e-01 / EXP_TABLE_SIZE;
+    /**
+     * The rest of ln(2) / EXP_TABLE_SIZE.
+     */
+    private static final double EXP_LN2_LO = 1.90821492927058770002e-10 / EXP_TABLE_SIZE;
+    /**
+     * The largest magnitude the exponential approximates (beyond it, results overflow or are subnormal).
+     */
+    private static final double EXP_LIMIT = 708;
+
+    /**
+     * The number of entries of the logarithm's table per unit of mantissa.
+     */
+    private static final int LOG_STEPS = 1024;
+    /**
+     * The number of entries in the logarithm's table (covering mantissas from 0.75 up to 1.5).
+     */
+    private static final int LOG_TABLE_SIZE = LOG_STEPS * 3 / 4;
+    /**
+     * The lower bound of each entry's range of mantissas: 0.75 + i / LOG_STEPS.
+     */
+    private static final double[] LOG_BASE = new double[LOG_TABLE_SIZE];
+    /**
+     * The reciprocal of each entry's lower bound.
+     */
+    private static final double[] LOG_INVERSE = new double[LOG_TABLE_SIZE];
+    /**
+     * The natural logarithm of each entry's lower bound.
+     */
+    private static final double[] LOG_TABLE = new double[LOG_TABLE_SIZE];
+    /**
+     * The high bits of ln(2) (with enough trailing zeros that multiplying it by an exponent is exact).
+     */
+    private static final double LN2_HI = 6.93147180369123816490e-01;
+    /**
+     * The rest of ln(2).
+     */
+    private static final double LN2_LO = 1.90821492927058770002e-10;
+    /**
+     * 1 / ln(10).
+     */
+    private static final double INVERSE_LN10 = 1 / Math.log(10);
+    /**
+     * How close to 1 arguments of the logarithm are approximated by a series around 1 (where using the table would cancel).
+     */
+    private static final double LOG_NEAR_ONE = 0x1p-5;
+
+    /**
+     * The largest magnitude of whole exponent done by repeated squaring (every multiplication adds to the rounding error, about
+     * 0.75 ulps more for each step of the exponent, so larger ones would no longer be within 4 ulps).
+     */
+    private static final int POW_SQUARING_LIMIT = 4;
+
+    /**
+     * The largest magnitude the trigonometric functions approximate (so the multiple of π/2 taken off is exact).
+     */
+    private static final double TRIG_LIMIT = 1e5;
+    /**
+     * 2 / π.
+     */
+    private static final double TWO_OVER_PI = 6.36619772367581382433e-01;
+    /**
+     * The first 33 bits of π/2.
+     */
+    private static final double PIO2_1 = 1.57079632673412561417e+00;
+    /**
+     * The next 33 bits of π/2.
+     */
+    private static final double PIO2_2 = 6.07710050630396597660e-11;
+    /**
+     * The rest of π/2.
+     */
+    private static final double PIO2_2T = 2.02226624879595063154e-21;
+    /**
+     * The coefficients of the sine polynomial (from fdlibm's __kernel_sin).
+     */
+    private static final double S1 = -1.66666666666666324348e-01, S2 = 8.33333333332248946124e-03,
+            S3 = -1.98412698298579493134e-04, S4 = 2.75573137070700676789e-06,
+            S5 = -2.50507602534068634195e-08, S6 = 1.58969099521155010221e-10;
+    /**
+     * The coefficients of the cosine polynomial (from fdlibm's __kernel_cos).
+     */
+    private static final double C1 = 4.16666666666666019037e-02, C2 = -1.38888888888741095749e-03,
+            C3 = 2.48015872894767294178e-05, C4 = -2.75573143513906633035e-07,
+            C5 = 2.08757232129817482790e-09, C6 = -1.13596475577881948265e-11;
+
+    static {
+        for (int i = 0; i < EXP_TABLE_SIZE; i++) {
+            EXP_TABLE[i] = StrictMath.pow(2, (double) i / EXP_TABLE_SIZE);
+        }
+        for (int i = 0; i < LOG_TABLE_SIZE; i++) {
+            LOG_BASE[i] = 0.75 + (double) i / LOG_STEPS;
+            LOG_INVERSE[i] = 1 / LOG_BASE[i];
+            LOG_TABLE[i] = StrictMath.log(LOG_BASE[i]);
+        }
+    }
+
+    private FastMath() {
+    }
+
+    /**
+     * Approximates e raised to a power: x is split into k ln(2) / 64 + r, so e^x = 2^(k / 64) e^r, where 2^(k / 64) is a
+     * power of two times a table entry and e^r (with |r| at most ln(2) / 128) is a short polynomial.
+     * @param x the power
+     * @return e^x
+     */
+    public static double exp(double x) {
+        if (!(Math.abs(x) < EXP_LIMIT)) {
+            return Math.exp(x);
+        }
+
+        double kd = Math.rint(x * EXP_SCALE);
+        int k = (int) kd;
+        double r = (x - kd * EXP_LN2_HI) - kd * EXP_LN2_LO;
+
+        //e^r - 1
+        double p = r + r * r * (0.5 + r * (1.0 / 6 + r * (1.0 / 24 + r * (1.0 / 120 + r * (1.0 / 720)))));
+
+        double entry = EXP_TABLE[k & (EXP_TABLE_SIZE - 1)];
+        double scale = Double.longBitsToDouble((long) ((k >> EXP_TABLE_BITS) + 1023) << 52);
+        return (entry + entry * p) * scale;
+    }
+
+    /**
+     * Approximates the natural logarithm: x is split into 2^e m with m in [0.75, 1.5), and m into c (1 + r) where c is the table
+     * entry just below m, so ln(x) = e ln(2) + ln(c) + ln(1 + r), where ln(c) comes from the table and ln(1 + r) (with r below
+     * 1/768) is a short polynomial. Keeping m around 1 means e ln(2) and ln(c) never cancel, and arguments close to 1 (where
+     * ln(c) and ln(1 + r) could) use a longer series instead.
+     * @param x the argument
+     * @return ln(x)
+     */
+    public static double log(double x) {
+        if (!(x >= Double.MIN_NORMAL && x < Double.POSITIVE_INFINITY)) {
+            return Math.log(x);
+        }
+
+        //Exact, as x is close to 1
+        double r = x - 1;
+        if (Math.abs(r) < LOG_NEAR_ONE) {
+            return r - r * r * (1.0 / 2 - r * (1.0 / 3 - r * (1.0 / 4 - r * (1.0 / 5 - r * (1.0 / 6 - r * (1.0 / 7
+                    - r * (1.0 / 8 - r * (1.0 / 9 - r * (1.0 / 10)))))))));
+        }
+
+        long bits = Double.doubleToRawLongBits(x);
+        int exponent = (int) (bits >>> 52) - 1023;
+        double mantissa = Double.longBitsToDouble((bits & 0x000fffffffffffffL) | 0x3ff0000000000000L);
+        if (mantissa >= 1.5) {
+            mantissa *= 0.5;
+            exponent++;
+        }
+
+        //Both subtractions are exact, as the mantissa is within a factor of two of what it is subtracted from
+        int index = (int) ((mantissa - 0.75) * LOG_STEPS);
+        r = (mantissa - LOG_BASE[index]) * LOG_INVERSE[index];
+        //ln(1 + r), with its terms split in two halves that can be worked out at the same time
+        double z = r * r;
+        double p = r + z * (-1.0 / 2 + r * (1.0 / 3)) + z * z * (-1.0 / 4 + r * (1.0 / 5) - z * (1.0 / 6));
+
+        return exponent * LN2_HI + (LOG_TABLE[index] + (p + exponent * LN2_LO));
+    }
+
+    /**
+     * Approximates the base 10 logarithm.
+     * @param x the argument
+     * @return log10(x)
+     */
+    public static double log10(double x) {
+        if (!(x >= Double.MIN_NORMAL && x < Double.POSITIVE_INFINITY)) {
+            return Math.log10(x);
+        }
+        return log(x) * INVERSE_LN10;
+    }
+
+    /**
+     * Approximates a power. Small whole exponents are done by repeated squaring, and other exponents by Math.pow().
+     * @param x the base
+     * @param y the exponent
+     * @return x^y
+     */
+    public static double pow(double x, double y) {
+        int n = (int) y;
+        if (Math.abs(y) <= POW_SQUARING_LIMIT && n == y && Double.isFinite(x)) {
+            double base = x;
+            double result = 1;
+            for (int bits = Math.abs(n); bits != 0; bits >>>= 1) {
+                if ((bits & 1) != 0) {
+                    result *= base;
+                }
+                base *= base;
+            }
+
+            //A result that overflowed or is subnormal (or whose reciprocal would be) has lost bits, which Math.pow() keeps
+            double magnitude = Math.abs(result);
+            if (magnitude >= Double.MIN_NORMAL && magnitude <= (n < 0 ? 0x1p1022 : Double.MAX_VALUE)) {
+                return n < 0 ? 1 / result : result;
+            }
+        }
+        return Math.pow(x, y);
+    }
+
+    /**
+     * Approximates the sine.
+     * @param x the angle in radians
+     * @return sin(x)
+     */
+    public static double sin(double x) {
+        if (!(Math.abs(x) <= TRIG_LIMIT)) {
+            return Math.sin(x);
+        }
+
+        double kd = Math.rint(x * TWO_OVER_PI);
+        double r = reduce(x, kd);
+        switch ((int) kd & 3) {
+            case 0:
+                return sinKernel(r);
+            case 1:
+                return cosKernel(r);
+            case 2:
+                return -sinKernel(r);
+            default:
+                return -cosKernel(r);
+        }
+    }
+
+    /**
+     * Approximates the cosine.
+     * @param x the angle in radians
+     * @return cos(x)
+     */
+    public static double cos(double x) {
+        if (!(Math.abs(x) <= TRIG_LIMIT)) {
+            return Math.cos(x);
+        }
+
+        double kd = Math.rint(x * TWO_OVER_PI);
+        double r = reduce(x, kd);
+        switch ((int) kd & 3) {
+            case 0:
+                return cosKernel(r);
+            case 1:
+                return -sinKernel(r);
+            case 2:
+                return -cosKernel(r);
+            default:
+                return sinKernel(r);
+        }
+    }
+
+    /**
+     * Approximates the tangent.
+     * @param x the angle in radians
+     * @return tan(x)
+     */
+    public static double tan(double x) {
+        if (!(Math.abs(x) <= TRIG_LIMIT)) {
+            return Math.tan(x);
+        }
+
+        double kd = Math.rint(x * TWO_OVER_PI);
+        double r = reduce(x, kd);
+        return ((int) kd & 1) == 0 ? sinKernel(r) / cosKernel(r) : -cosKernel(r) / sinKernel(r);
+    }
+
+    /**
+     * Takes a multiple of π/2 off an angle (in three parts, so no bits are lost to cancellation).
+     * @param x the angle
+     * @param k the multiple of π/2 nearest the angle
+     * @return the rest of the angle, within π/4 of 0
+     */
+    private static double reduce(double x, double k) {
+        return ((x - k * PIO2_1) - k * PIO2_2) - k * PIO2_2T;
+    }
+
+    /**
+     * Approximates the sine of an angle within π/4 of 0.
+     * @param r the angle
+     * @return sin(r)
+     */
+    private static double sinKernel(double r) {
+        double z = r * r;
+        return r + r * z * (S1 + z * (S2 + z * (S3 + z * (S4 + z * (S5 + z * S6)))));
+    }
+
+    /**
+     * Approximates the cosine of an angle within π/4 of 0.
+     * @param r the angle
+     * @return cos(r)
+     */
+    private static double cosKernel(double r) {
+        double z = r * r;
+        return 1 - 0.5 * z + z * z * (C1 + z * (C2 + z * (C3 + z * (C4 + z * (C5 + z * C6)))));
+    }
+}
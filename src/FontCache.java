@@ -0,0 +1,87 @@
+import java.awt.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Remembers which font families are installed, so a missing font (such as the Windows-only UI font on Linux) is only looked for
+ * once instead of on every start. Requested families are resolved to either themselves or the Dialog font, and the answers are
+ * kept in a properties file in the user's home directory.
+ */
+public final class FontCache {
+    /**
+     * The file the resolved families are kept in.
+     */
+    private static final Path CACHE_FILE = Path.of(System.getProperty("user.home"), ".calculator", "fonts.properties");
+
+    /**
+     * The resolved families, by requested family (loaded from the cache file when first needed).
+     */
+    private static Properties families;
+
+    private FontCache() {
+    }
+
+    /**
+     * Gets a font, falling back to Dialog if its family isn't installed.
+     * @param family the requested font family
+     * @param style the style (eg. Font.PLAIN)
+     * @param size the point size
+     * @return the font
+     */
+    public static synchronized Font getFont(String family, int style, int size) {
+        if (families == null) {
+            families = load();
+        }
+
+        String resolved = families.getProperty(family);
+        if (resolved == null) {
+            //Asking for the family makes Java look the font up, which is the slow part being cached
+            Font font = new Font(family, style, size);
+            resolved = font.getFamily(Locale.ROOT).equalsIgnoreCase(family) ? family : Font.DIALOG;
+            families.setProperty(family, resolved);
+            save(families);
+            return resolved.equals(family) ? font : new Font(resolved, style, size);
+        }
+
+        return new Font(resolved, style, size);
+    }
+
+    /**
+     * Loads the cache file.
+     * @return the resolved families (empty if the file doesn't exist or can't be read)
+     */
+    private static Properties load() {
+        Properties properties = new Properties();
+        if (Files.isRegularFile(CACHE_FILE)) {
+            try (InputStream in = Files.newInputStream(CACHE_FILE)) {
+                properties.load(in);
+            } catch (IOException e) {
+                //Start with an empty cache
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Saves the cache file on a background thread, so startup doesn't wait for the disk.
+     * @param properties the resolved families
+     */
+    private static void save(Properties properties) {
+        Properties copy = (Properties) properties.clone();
+        Thread.ofPlatform().daemon().name("font-cache-save").start(() -> {
+            try {
+                Files.createDirectories(CACHE_FILE.getParent());
+                try (OutputStream out = Files.newOutputStream(CACHE_FILE)) {
+                    copy.store(out, "Font families resolved by the calculator (delete to look them up again)");
+                }
+            } catch (IOException e) {
+                //The fonts are simply looked up again next time
+            }
+        });
+    }
+}
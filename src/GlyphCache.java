@@ -0,0 +1,139 @@
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The glyphs of a font, each laid out once (as a GlyphVector) and then reused, so drawing a character never lays out text.
+ * Caches are shared by every ResultRenderer using the same font, so (apart from get()) they must only be used on the event
+ * dispatch thread, like the components themselves.
+ */
+public final class GlyphCache {
+    /**
+     * The render context the glyphs are laid out in (antialiased, with fractional advances, so they lay out the same at any
+     * scale).
+     */
+    private static final FontRenderContext RENDER_CONTEXT = new FontRenderContext(null, true, true);
+    /**
+     * The caches, by font.
+     */
+    private static final Map<Font, GlyphCache> CACHES = new HashMap<>();
+
+    /**
+     * The font.
+     */
+    private final Font font;
+    /**
+     * The glyphs of the ASCII characters (null until first needed).
+     */
+    private final GlyphVector[] asciiGlyphs = new GlyphVector[128];
+    /**
+     * The advances of the ASCII characters (negative until first needed).
+     */
+    private final float[] asciiAdvances = new float[128];
+    /**
+     * The glyphs of the other characters (such as the infinity sign), by character.
+     */
+    private final Map<Character, GlyphVector> otherGlyphs = new HashMap<>();
+    /**
+     * The advance of the widest digit.
+     */
+    private final float digitAdvance;
+    /**
+     * The font's ascent.
+     */
+    private final float ascent;
+    /**
+     * The font's descent.
+     */
+    private final float descent;
+
+    /**
+     * Creates a cache.
+     * @param font the font
+     */
+    private GlyphCache(Font font) {
+        this.font = font;
+        Arrays.fill(asciiAdvances, -1);
+
+        float widest = 0;
+        for (char digit = '0'; digit <= '9'; digit++) {
+            widest = Math.max(widest, getAdvance(digit));
+        }
+        this.digitAdvance = widest;
+
+        LineMetrics metrics = font.getLineMetrics("0123456789", RENDER_CONTEXT);
+        this.ascent = metrics.getAscent();
+        this.descent = metrics.getDescent();
+    }
+
+    /**
+     * Gets the cache of a font, creating it if it doesn't exist yet.
+     * @param font the font
+     * @return the cache
+     */
+    public static synchronized GlyphCache get(Font font) {
+        return CACHES.computeIfAbsent(font, GlyphCache::new);
+    }
+
+    /**
+     * Gets the glyph of a character.
+     * @param c the character
+     * @return the glyph, laid out at the origin
+     */
+    public GlyphVector getGlyph(char c) {
+        if (c < asciiGlyphs.length) {
+            GlyphVector glyph = asciiGlyphs[c];
+            if (glyph == null) {
+                glyph = font.createGlyphVector(RENDER_CONTEXT, new char[]{c});
+                asciiGlyphs[c] = glyph;
+            }
+            return glyph;
+        }
+        return otherGlyphs.computeIfAbsent(c, _ -> font.createGlyphVector(RENDER_CONTEXT, new char[]{c}));
+    }
+
+    /**
+     * Gets how far a character moves the pen.
+     * @param c the character
+     * @return the advance
+     */
+    public float getAdvance(char c) {
+        if (c < asciiAdvances.length) {
+            float advance = asciiAdvances[c];
+            if (advance < 0) {
+                advance = (float) getGlyph(c).getGlyphPosition(1).getX();
+                asciiAdvances[c] = advance;
+            }
+            return advance;
+        }
+        return (float) getGlyph(c).getGlyphPosition(1).getX();
+    }
+
+    /**
+     * Gets the advance of the widest digit (digits are drawn in cells this wide, so they line up whatever the font).
+     * @return the advance
+     */
+    public float getDigitAdvance() {
+        return digitAdvance;
+    }
+
+    /**
+     * Gets the font's ascent.
+     * @return the ascent
+     */
+    public float getAscent() {
+        return ascent;
+    }
+
+    /**
+     * Gets the font's descent.
+     * @return the descent
+     */
+    public float getDescent() {
+        return descent;
+    }
+}
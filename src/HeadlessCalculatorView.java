@@ -0,0 +1,88 @@
+import javax.swing.*;
+import java.awt.event.KeyListener;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A stand-in for CalculatorView that creates the same buttons and text fields without a window,
+ * so a CalculatorController can be driven headlessly (eg. by benchmarks and replay tools).
+ */
+public class HeadlessCalculatorView implements CalculatorDisplay {
+    /**
+     * An array of buttons representing the digits 0-9.
+     */
+    private final CalculatorButton[] digitButtons = new CalculatorButton[10];
+    /**
+     * An array of buttons representing operations.
+     */
+    private final CalculatorButton[] operatorButtons;
+    /**
+     * An array of buttons not considered operations or digits.
+     */
+    private final CalculatorButton[] miscButtons;
+    /**
+     * Holds the result text.
+     */
+    private final ResultRenderer resultArea = new ResultRenderer();
+    /**
+     * Holds the operator text.
+     */
+    private final JTextField operatorArea = new JTextField();
+    /**
+     * The key listeners added by the controller.
+     */
+    private final List<KeyListener> keyListeners = new ArrayList<>();
+
+    /**
+     * Creates the headless view.
+     */
+    public HeadlessCalculatorView() {
+        for (int i = 0; i < digitButtons.length; i++) {
+            digitButtons[i] = new CalculatorButton(String.valueOf(i));
+        }
+
+        operatorButtons = new CalculatorButton[]{new CalculatorButton("+"), new CalculatorButton("-"), new CalculatorButton("×"),
+                                                 new CalculatorButton("÷")};
+
+        miscButtons = new CalculatorButton[]{new CalculatorButton("C"), new CalculatorButton("+/-"), new CalculatorButton("%"),
+                                             new CalculatorButton("."), new CalculatorButton("=")};
+    }
+
+    @Override
+    public CalculatorButton getDigitButton(int digit) {
+        return digitButtons[digit];
+    }
+
+    @Override
+    public CalculatorButton getOperatorButton(int operator) {
+        return operatorButtons[operator];
+    }
+
+    @Override
+    public CalculatorButton getMiscButton(int misc) {
+        return miscButtons[misc];
+    }
+
+    @Override
+    public ResultRenderer getResultArea() {
+        return resultArea;
+    }
+
+    @Override
+    public JTextField getOperatorArea() {
+        return operatorArea;
+    }
+
+    @Override
+    public void addKeyListener(KeyListener listener) {
+        keyListeners.add(listener);
+    }
+
+    /**
+     * Gets the key listeners that were added, so key events can be delivered to them directly.
+     * @return the key listeners
+     */
+    public List<KeyListener> getKeyListeners() {
+        return keyListeners;
+    }
+}
@@ -0,0 +1,98 @@
+import java.awt.event.KeyEvent;
+
+/**
+ * Resolves key events to actions using a KeyMap, keeping track of which keys are held down so repeated key presses and
+ * modifier keys tapped on their own can be told apart. Every window needs its own dispatcher, but they can share a KeyMap.
+ */
+public class KeyDispatcher {
+    /**
+     * The bindings.
+     */
+    private KeyMap keyMap;
+    /**
+     * Which keys are held down, by key code.
+     */
+    private final boolean[] held = new boolean[KeyMap.KEY_CODES];
+    /**
+     * The code of the last key pressed.
+     */
+    private int lastPressed = KeyEvent.VK_UNDEFINED;
+    /**
+     * Whether the last key press was a repeat from a key being held down (characters typed by it are repeats too).
+     */
+    private boolean repeating;
+
+    /**
+     * Creates a dispatcher.
+     * @param keyMap the bindings
+     */
+    public KeyDispatcher(KeyMap keyMap) {
+        this.keyMap = keyMap;
+    }
+
+    /**
+     * Changes the bindings.
+     * @param keyMap the new bindings
+     */
+    public void setKeyMap(KeyMap keyMap) {
+        this.keyMap = keyMap;
+    }
+
+    /**
+     * Resolves a key typed event.
+     * @param e the event
+     * @return the action to perform, or null if there is none
+     */
+    public CalculatorAction typed(KeyEvent e) {
+        return keyMap.typedAction(e.getKeyChar(), repeating);
+    }
+
+    /**
+     * Resolves a key pressed event.
+     * @param e the event
+     * @return the action to perform, or null if there is none
+     */
+    public CalculatorAction pressed(KeyEvent e) {
+        int keyCode = e.getKeyCode();
+        boolean tracked = keyCode >= 0 && keyCode < KeyMap.KEY_CODES;
+
+        repeating = tracked && held[keyCode];
+        if (tracked) {
+            held[keyCode] = true;
+        }
+        lastPressed = keyCode;
+
+        return keyMap.pressedAction(keyCode, KeyMap.modifiers(e.getModifiersEx()), repeating);
+    }
+
+    /**
+     * Resolves a key released event.
+     * @param e the event
+     * @return the action to perform, or null if there is none
+     */
+    public CalculatorAction released(KeyEvent e) {
+        int keyCode = e.getKeyCode();
+        boolean tapped = keyCode == lastPressed;
+
+        if (keyCode >= 0 && keyCode < KeyMap.KEY_CODES) {
+            held[keyCode] = false;
+        }
+        repeating = false;
+
+        //A modifier only counts on its own if no other key was pressed while it was held (eg. Shift used to type + or %)
+        if (!tapped && isModifier(keyCode)) {
+            return null;
+        }
+        return keyMap.releasedAction(keyCode, KeyMap.modifiers(e.getModifiersEx()));
+    }
+
+    /**
+     * Checks whether a key is a modifier key.
+     * @param keyCode the key's code
+     * @return true for Shift, Ctrl, Alt, AltGr and Meta
+     */
+    private static boolean isModifier(int keyCode) {
+        return keyCode == KeyEvent.VK_SHIFT || keyCode == KeyEvent.VK_CONTROL || keyCode == KeyEvent.VK_ALT
+                || keyCode == KeyEvent.VK_ALT_GRAPH || keyCode == KeyEvent.VK_META;
+    }
+}
@@ -0,0 +1,345 @@
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Key bindings: which CalculatorAction each key performs. Bindings are compiled into flat lookup tables, so resolving a key
+ * takes one array read (and no allocation) however many bindings there are. A KeyMap is immutable and can be shared; the
+ * state needed to tell repeated and tapped keys apart is kept by a KeyDispatcher.
+ * <p>
+ * Bindings are loaded from a properties file, with one of these keys per binding:
+ * <ul>
+ *   <li><b>typed.&lt;character&gt;</b> for a character being typed (eg. <code>typed.+</code>, with <code>typed.\=</code> and <code>typed.\:</code> escaped)</li>
+ *   <li><b>pressed.&lt;chord&gt;</b> for a key being pressed, eg. <code>pressed.shortcut+Z</code></li>
+ *   <li><b>released.&lt;chord&gt;</b> for a key being released, eg. <code>released.ENTER</code></li>
+ * </ul>
+ * A chord is any of the modifiers shift, ctrl, alt, meta and shortcut (Ctrl, or Cmd on macOS) followed by a key name from
+ * KeyEvent without its VK_ prefix, all joined by +. The value is the action's name, optionally followed by <b>repeat</b> or
+ * <b>norepeat</b> to choose whether holding the key down repeats the action (typed bindings repeat by default, others don't).
+ * A binding for releasing a modifier key on its own (such as <code>released.SHIFT</code>) only fires if no other key was
+ * pressed while it was held.
+ */
+public final class KeyMap {
+    /**
+     * The name of the resource holding the default bindings.
+     */
+    public static final String DEFAULT_RESOURCE = "default-keymap.properties";
+    /**
+     * The name of the resource holding the programmer mode bindings (which are added to, and replace some of, the defaults).
+     */
+    public static final String PROGRAMMER_RESOURCE = "programmer-keymap.properties";
+    /**
+     * One more than the highest key code that can be bound.
+     */
+    public static final int KEY_CODES = 1024;
+    /**
+     * The bit of a modifier mask for Shift.
+     */
+    public static final int SHIFT = 1;
+    /**
+     * The bit of a modifier mask for Ctrl.
+     */
+    public static final int CTRL = 2;
+    /**
+     * The bit of a modifier mask for Alt.
+     */
+    public static final int ALT = 4;
+    /**
+     * The bit of a modifier mask for Meta (Cmd on macOS).
+     */
+    public static final int META = 8;
+    /**
+     * The number of different modifier masks.
+     */
+    private static final int MODIFIER_COMBINATIONS = 16;
+    /**
+     * The bit of a table entry marking that the binding repeats while the key is held down.
+     */
+    private static final int REPEAT = 0x80;
+    /**
+     * The bits of a table entry holding the action's ordinal plus one (0 for no binding).
+     */
+    private static final int ACTION_MASK = 0x7F;
+    /**
+     * Every action, by ordinal.
+     */
+    private static final CalculatorAction[] ACTIONS = CalculatorAction.values();
+
+    /**
+     * The default bindings, loaded when first needed.
+     */
+    private static KeyMap defaultKeyMap;
+    /**
+     * The programmer mode bindings, loaded when first needed.
+     */
+    private static KeyMap programmerKeyMap;
+
+    /**
+     * The bindings for typed characters, indexed by character.
+     */
+    private final byte[] typed = new byte[Character.MAX_VALUE + 1];
+    /**
+     * The bindings for pressed keys, indexed by modifier mask * KEY_CODES + key code.
+     */
+    private final byte[] pressed = new byte[MODIFIER_COMBINATIONS * KEY_CODES];
+    /**
+     * The bindings for released keys, indexed by modifier mask * KEY_CODES + key code.
+     */
+    private final byte[] released = new byte[MODIFIER_COMBINATIONS * KEY_CODES];
+
+    /**
+     * Creates a key map from bindings.
+     * @param bindings the bindings (see the class description for the format)
+     * @throws IllegalArgumentException if a binding is invalid
+     */
+    public KeyMap(Properties bindings) throws IllegalArgumentException {
+        int shortcut = shortcutModifier();
+
+        for (String name : bindings.stringPropertyNames()) {
+            byte entry = parseEntry(name, bindings.getProperty(name).trim(), name.startsWith("typed."));
+
+            if (name.startsWith("typed.")) {
+                String character = name.substring("typed.".length());
+                if (character.length() != 1) {
+                    throw new IllegalArgumentException("Invalid key binding \"" + name + "\": expected a single character.");
+                }
+                typed[character.charAt(0)] = entry;
+
+            } else if (name.startsWith("pressed.")) {
+                pressed[parseChord(name, name.substring("pressed.".length()), shortcut)] = entry;
+
+            } else if (name.startsWith("released.")) {
+                released[parseChord(name, name.substring("released.".length()), shortcut)] = entry;
+
+            } else {
+                throw new IllegalArgumentException("Invalid key binding \"" + name + "\": expected typed., pressed. or released.");
+            }
+        }
+    }
+
+    /**
+     * Gets the default key map (the bindings in DEFAULT_RESOURCE).
+     * @return the default key map
+     */
+    public static synchronized KeyMap getDefault() {
+        if (defaultKeyMap == null) {
+            defaultKeyMap = new KeyMap(loadResource(DEFAULT_RESOURCE, new Properties()));
+        }
+        return defaultKeyMap;
+    }
+
+    /**
+     * Gets the programmer mode key map (the bindings in DEFAULT_RESOURCE, with those in PROGRAMMER_RESOURCE added on top).
+     * @return the programmer mode key map
+     */
+    public static synchronized KeyMap getProgrammer() {
+        if (programmerKeyMap == null) {
+            programmerKeyMap = new KeyMap(loadResource(PROGRAMMER_RESOURCE, loadResource(DEFAULT_RESOURCE, new Properties())));
+        }
+        return programmerKeyMap;
+    }
+
+    /**
+     * Loads bindings from a resource (in UTF-8).
+     * @param name the name of the resource
+     * @param defaults the bindings the resource's are added to (which it may replace)
+     * @return the bindings
+     */
+    private static Properties loadResource(String name, Properties defaults) {
+        Properties bindings = new Properties();
+        bindings.putAll(defaults);
+
+        try (InputStream in = KeyMap.class.getResourceAsStream("/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource " + name + ".");
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                bindings.load(reader);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load " + name + ".", e);
+        }
+        return bindings;
+    }
+
+    /**
+     * Loads a key map from a properties file.
+     * @param path the file
+     * @return the key map
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if a binding is invalid
+     */
+    public static KeyMap load(Path path) throws IOException, IllegalArgumentException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return load(in);
+        }
+    }
+
+    /**
+     * Loads a key map from properties (in UTF-8).
+     * @param in the properties
+     * @return the key map
+     * @throws IOException if the properties can't be read
+     * @throws IllegalArgumentException if a binding is invalid
+     */
+    public static KeyMap load(InputStream in) throws IOException, IllegalArgumentException {
+        Properties bindings = new Properties();
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            bindings.load(reader);
+        }
+        return new KeyMap(bindings);
+    }
+
+    /**
+     * Gets the action bound to a typed character.
+     * @param c the character
+     * @param repeat whether the character comes from a key being held down
+     * @return the action, or null if there is none (or it doesn't repeat)
+     */
+    public CalculatorAction typedAction(char c, boolean repeat) {
+        return action(typed[c], repeat);
+    }
+
+    /**
+     * Gets the action bound to pressing a key.
+     * @param keyCode the key's code
+     * @param modifiers the modifier mask (see modifiers())
+     * @param repeat whether the key is being held down
+     * @return the action, or null if there is none (or it doesn't repeat)
+     */
+    public CalculatorAction pressedAction(int keyCode, int modifiers, boolean repeat) {
+        if (keyCode < 0 || keyCode >= KEY_CODES) {
+            return null;
+        }
+        return action(pressed[modifiers * KEY_CODES + keyCode], repeat);
+    }
+
+    /**
+     * Gets the action bound to releasing a key.
+     * @param keyCode the key's code
+     * @param modifiers the modifier mask (see modifiers())
+     * @return the action, or null if there is none
+     */
+    public CalculatorAction releasedAction(int keyCode, int modifiers) {
+        if (keyCode < 0 || keyCode >= KEY_CODES) {
+            return null;
+        }
+        return action(released[modifiers * KEY_CODES + keyCode], false);
+    }
+
+    /**
+     * Converts the extended modifiers of an input event to a modifier mask.
+     * @param modifiersEx the event's extended modifiers (InputEvent.getModifiersEx())
+     * @return the modifier mask
+     */
+    public static int modifiers(int modifiersEx) {
+        return ((modifiersEx & InputEvent.SHIFT_DOWN_MASK) != 0 ? SHIFT : 0)
+                | ((modifiersEx & InputEvent.CTRL_DOWN_MASK) != 0 ? CTRL : 0)
+                | ((modifiersEx & InputEvent.ALT_DOWN_MASK) != 0 ? ALT : 0)
+                | ((modifiersEx & InputEvent.META_DOWN_MASK) != 0 ? META : 0);
+    }
+
+    /**
+     * Decodes a table entry.
+     * @param entry the entry
+     * @param repeat whether the key is being held down
+     * @return the action, or null if there is none (or it doesn't repeat)
+     */
+    private static CalculatorAction action(byte entry, boolean repeat) {
+        int action = entry & ACTION_MASK;
+        if (action == 0 || (repeat && (entry & REPEAT) == 0)) {
+            return null;
+        }
+        return ACTIONS[action - 1];
+    }
+
+    /**
+     * Parses the value of a binding into a table entry.
+     * @param name the binding's name (for error messages)
+     * @param value the binding's value
+     * @param repeatByDefault whether the binding repeats if neither repeat nor norepeat is given
+     * @return the table entry
+     */
+    private static byte parseEntry(String name, String value, boolean repeatByDefault) {
+        String[] parts = value.split("\\s+");
+        if (parts.length > 2 || (parts.length == 2 && !parts[1].equals("repeat") && !parts[1].equals("norepeat"))) {
+            throw new IllegalArgumentException("Invalid key binding \"" + name + "\": expected an action optionally followed by repeat or norepeat.");
+        }
+
+        CalculatorAction action;
+        try {
+            action = CalculatorAction.valueOf(parts[0]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid key binding \"" + name + "\": unknown action " + parts[0] + ".");
+        }
+
+        boolean repeat = parts.length == 2 ? parts[1].equals("repeat") : repeatByDefault;
+        return (byte) ((action.ordinal() + 1) | (repeat ? REPEAT : 0));
+    }
+
+    /**
+     * Parses a chord into its index in the pressed and released tables.
+     * @param name the binding's name (for error messages)
+     * @param chord the chord, eg. "shortcut+Z"
+     * @param shortcut the modifier bit used for "shortcut"
+     * @return the table index
+     */
+    private static int parseChord(String name, String chord, int shortcut) {
+        String[] parts = chord.split("\\+");
+        int modifiers = 0;
+
+        for (int i = 0; i < parts.length - 1; i++) {
+            switch (parts[i].toLowerCase()) {
+                case "shift":
+                    modifiers |= SHIFT;
+                    break;
+                case "ctrl":
+                    modifiers |= CTRL;
+                    break;
+                case "alt":
+                    modifiers |= ALT;
+                    break;
+                case "meta":
+                    modifiers |= META;
+                    break;
+                case "shortcut":
+                    modifiers |= shortcut;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid key binding \"" + name + "\": unknown modifier " + parts[i] + ".");
+            }
+        }
+
+        int keyCode;
+        try {
+            keyCode = KeyEvent.class.getField("VK_" + parts[parts.length - 1]).getInt(null);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Invalid key binding \"" + name + "\": unknown key " + parts[parts.length - 1] + ".");
+        }
+        if (keyCode >= KEY_CODES) {
+            throw new IllegalArgumentException("Invalid key binding \"" + name + "\": " + parts[parts.length - 1] + " can't be bound.");
+        }
+
+        return modifiers * KEY_CODES + keyCode;
+    }
+
+    /**
+     * Gets the modifier bit of the platform's menu shortcut key (Ctrl, or Meta on macOS).
+     * @return the modifier bit
+     */
+    private static int shortcutModifier() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return CTRL;
+        }
+        return modifiers(Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx());
+    }
+}
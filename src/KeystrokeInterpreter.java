@@ -0,0 +1,299 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Applies sequences of calculator keystrokes to a CalculatorModel without going through the GUI.
+ * Understands the same keys as the keyboard controls (digits, + - * / × ÷, = . % and C), plus "+/-" for changing the sign
+ * and the symbols of the binary operations in the OperationRegistry (such as ^).
+ * Any other character (such as whitespace) is ignored.
+ */
+public final class KeystrokeInterpreter {
+    private KeystrokeInterpreter() {
+    }
+
+    /**
+     * Applies a sequence of keystrokes to a model.
+     * @param model the model to apply the keystrokes to
+     * @param keys the keystrokes
+     * @param start the index of the first keystroke (inclusive)
+     * @param end the index of the last keystroke (exclusive)
+     */
+    public static void apply(CalculatorModel model, CharSequence keys, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char key = keys.charAt(i);
+
+            //"+/-" is the only keystroke made up of more than one character
+            if (key == '+' && i + 2 < end && keys.charAt(i + 1) == '/' && keys.charAt(i + 2) == '-') {
+                model.changeSign();
+                i += 2;
+            } else {
+                applyKey(model, key);
+            }
+        }
+    }
+
+    /**
+     * Applies a sequence of UTF-8 encoded keystrokes to a model, reading them with absolute gets so the buffer can be shared
+     * between threads. Characters are decoded as they are read, so × and ÷ mean the same as they do in a String. Bytes that
+     * aren't valid UTF-8 put the model into ERROR mode (and the rest of the sequence is ignored), rather than being dropped
+     * and leaving a wrong number.
+     * @param model the model to apply the keystrokes to
+     * @param keys the buffer holding the keystrokes
+     * @param start the index of the first keystroke (inclusive)
+     * @param end the index of the last keystroke (exclusive)
+     */
+    public static void apply(CalculatorModel model, ByteBuffer keys, int start, int end) {
+        for (int i = start; i < end; i++) {
+            int first = keys.get(i);
+
+            //ASCII, the common case
+            if (first >= 0) {
+                if (first == '+' && i + 2 < end && keys.get(i + 1) == '/' && keys.get(i + 2) == '-') {
+                    model.changeSign();
+                    i += 2;
+                } else {
+                    applyKey(model, (char) first);
+                }
+                continue;
+            }
+
+            //The lead byte gives the length of the sequence, and the bits of the character it holds
+            int length;
+            int character;
+            int smallest;
+            if ((first & 0xE0) == 0xC0) {
+                length = 2;
+                character = first & 0x1F;
+                smallest = 0x80;
+            } else if ((first & 0xF0) == 0xE0) {
+                length = 3;
+                character = first & 0x0F;
+                smallest = 0x800;
+            } else if ((first & 0xF8) == 0xF0) {
+                length = 4;
+                character = first & 0x07;
+                smallest = 0x10000;
+            } else {
+                model.enterErrorMode(CalculatorError.INVALID_NUMBER);
+                return;
+            }
+
+            if (i + length > end) {
+                model.enterErrorMode(CalculatorError.INVALID_NUMBER);
+                return;
+            }
+            for (int j = 1; j < length; j++) {
+                int next = keys.get(i + j);
+                if ((next & 0xC0) != 0x80) {
+                    model.enterErrorMode(CalculatorError.INVALID_NUMBER);
+                    return;
+                }
+                character = character << 6 | next & 0x3F;
+            }
+
+            //Overlong encodings (such as a digit in two bytes) aren't valid UTF-8 either
+            if (character < smallest) {
+                model.enterErrorMode(CalculatorError.INVALID_NUMBER);
+                return;
+            }
+            i += length - 1;
+
+            //Characters outside the Basic Multilingual Plane are never keys, so they are ignored like any other unknown character
+            if (length < 4) {
+                applyKey(model, (char) character);
+            }
+        }
+    }
+
+    /**
+     * Applies a single keystroke to a model.
+     * @param model the model to apply the keystroke to
+     * @param key the keystroke
+     * @return true if the key was recognized, false if it was ignored
+     */
+    public static boolean applyKey(CalculatorModel model, char key) {
+        switch (key) {
+            //Digits
+            case '0': case '1': case '2': case '3': case '4':
+            case '5': case '6': case '7': case '8': case '9':
+                model.changeResultField(key - '0');
+                return true;
+
+            //Operations
+            case '+':
+                model.changeOperationField("+");
+                return true;
+            case '-':
+                model.changeOperationField("-");
+                return true;
+            case '*':
+            case '×':
+                model.changeOperationField("×");
+                return true;
+            case '/':
+            case '÷':
+                model.changeOperationField("÷");
+                return true;
+
+            //Misc
+            case 'C':
+            case 'c':
+                model.clearResultField();
+                return true;
+            case '%':
+                model.changeToPercent();
+                return true;
+            case '.':
+                model.addDecimalPoint();
+                return true;
+            case '=':
+                model.calculate();
+                return true;
+
+            //Binary operations from the registry
+            default:
+                if (OperationRegistry.getDefault().getBinary(key) != null) {
+                    model.changeOperationField(String.valueOf(key));
+                    return true;
+                }
+                return false;
+        }
+    }
+
+    /**
+     * Applies an action to a model, the way the controller would.
+     * @param model the model to apply the action to
+     * @param action the action
+     * @return true if the action was applied, false if it only means something to the controller (pasting, undo and redo,
+     *         the statistics and opening windows), or is a programmer mode action and the model isn't a ProgrammerCalculatorModel
+     */
+    public static boolean applyAction(CalculatorModel model, CalculatorAction action) {
+        switch (action) {
+            //Digits
+            case DIGIT_0: case DIGIT_1: case DIGIT_2: case DIGIT_3: case DIGIT_4:
+            case DIGIT_5: case DIGIT_6: case DIGIT_7: case DIGIT_8: case DIGIT_9:
+                model.changeResultField(action.ordinal() - CalculatorAction.DIGIT_0.ordinal());
+                return true;
+
+            //Operations
+            case ADD:
+                model.changeOperationField("+");
+                return true;
+            case SUBTRACT:
+                model.changeOperationField("-");
+                return true;
+            case MULTIPLY:
+                model.changeOperationField("×");
+                return true;
+            case DIVIDE:
+                model.changeOperationField("÷");
+                return true;
+            case POWER:
+                model.changeOperationField("^");
+                return true;
+
+            //Misc
+            case CLEAR:
+                model.clearResultField();
+                return true;
+            case SIGN:
+                model.changeSign();
+                return true;
+            case PERCENT:
+                model.changeToPercent();
+                return true;
+            case DECIMAL:
+                model.addDecimalPoint();
+                return true;
+            case EQUALS:
+                model.calculate();
+                return true;
+
+            //Scientific
+            case SQRT:
+                model.applyFunction("√");
+                return true;
+            case EXP:
+                model.applyFunction("exp");
+                return true;
+            case LN:
+                model.applyFunction("ln");
+                return true;
+            case LOG10:
+                model.applyFunction("log");
+                return true;
+            case SIN:
+                model.applyFunction("sin");
+                return true;
+            case COS:
+                model.applyFunction("cos");
+                return true;
+            case TAN:
+                model.applyFunction("tan");
+                return true;
+
+            default:
+                return model instanceof ProgrammerCalculatorModel programmer && applyProgrammerAction(programmer, action);
+        }
+    }
+
+    /**
+     * Applies a programmer mode action to a model.
+     * @param model the model to apply the action to
+     * @param action the action
+     * @return true if the action was applied, false if it isn't a programmer mode action
+     */
+    private static boolean applyProgrammerAction(ProgrammerCalculatorModel model, CalculatorAction action) {
+        switch (action) {
+            //Hexadecimal digits (ignored in the other radixes)
+            case HEX_A: case HEX_B: case HEX_C: case HEX_D: case HEX_E: case HEX_F:
+                model.changeResultField(10 + action.ordinal() - CalculatorAction.HEX_A.ordinal());
+                return true;
+
+            //Bitwise operations
+            case AND:
+                model.changeOperationField(String.valueOf(ProgrammerCalculatorModel.AND));
+                return true;
+            case OR:
+                model.changeOperationField(String.valueOf(ProgrammerCalculatorModel.OR));
+                return true;
+            case XOR:
+                model.changeOperationField(String.valueOf(ProgrammerCalculatorModel.XOR));
+                return true;
+            case SHIFT_LEFT:
+                model.changeOperationField(String.valueOf(ProgrammerCalculatorModel.SHIFT_LEFT));
+                return true;
+            case SHIFT_RIGHT:
+                model.changeOperationField(String.valueOf(ProgrammerCalculatorModel.SHIFT_RIGHT));
+                return true;
+            case ROTATE_LEFT:
+                model.changeOperationField(String.valueOf(ProgrammerCalculatorModel.ROTATE_LEFT));
+                return true;
+            case ROTATE_RIGHT:
+                model.changeOperationField(String.valueOf(ProgrammerCalculatorModel.ROTATE_RIGHT));
+                return true;
+            case NOT:
+                model.not();
+                return true;
+
+            //Radix and word size
+            case RADIX_BIN:
+                model.setRadix(2);
+                return true;
+            case RADIX_OCT:
+                model.setRadix(8);
+                return true;
+            case RADIX_DEC:
+                model.setRadix(10);
+                return true;
+            case RADIX_HEX:
+                model.setRadix(16);
+                return true;
+            case WORD_SIZE:
+                model.setWordSize(model.getWordSize() == 64 ? 8 : model.getWordSize() * 2);
+                return true;
+
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records every action performed on a CalculatorController (see CalculatorController.setRecorder()), with when it happened, to a
+ * compact binary file that KeystrokeRecording reads back and KeystrokeReplayer replays. Key presses are recorded as the action
+ * they are bound to, so a recording replays the same under any key map.
+ * <p>
+ * The file starts with a HEADER_SIZE byte header (MAGIC, VERSION and the epoch milliseconds the recording started at), followed
+ * by one event after another. Each event is one or two bytes: the top two bits of the first byte say how the time since the
+ * previous event is stored, and the other six hold the action's ordinal (so actions must only ever be added to the end of
+ * CalculatorAction, and there can be at most 64 of them).
+ * <ul>
+ *   <li>SAME_TICK: one byte, less than a tick after the previous event</li>
+ *   <li>FINE_DELAY: a second byte holds the delay in ticks (1 to 255)</li>
+ *   <li>COARSE_DELAY: a second byte holds the delay in units of COARSE_TICKS ticks (up to about 4 seconds)</li>
+ *   <li>PAUSE: no action; the six bits and a second byte hold a pause of up to 16383 units of COARSE_TICKS ticks before the
+ *   next event (longer pauses take several)</li>
+ * </ul>
+ * Whatever is lost to rounding a delay down to a whole number of coarse units is carried over to the next event, so times never
+ * drift by more than COARSE_TICKS ticks however long the recording is.
+ */
+public class KeystrokeRecorder implements Closeable {
+    /**
+     * Identifies keystroke recordings ("CKEY").
+     */
+    public static final int MAGIC = 0x434B4559;
+    /**
+     * The version of the file format.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The size of the file header in bytes.
+     */
+    public static final int HEADER_SIZE = 16;
+    /**
+     * The length of a tick in nanoseconds (one millisecond).
+     */
+    public static final long TICK_NANOS = 1_000_000;
+    /**
+     * The number of ticks in a coarse unit.
+     */
+    public static final int COARSE_TICKS = 16;
+
+    /**
+     * The kind of event that happened less than a tick after the previous one.
+     */
+    static final int SAME_TICK = 0;
+    /**
+     * The kind of event whose delay is a number of ticks.
+     */
+    static final int FINE_DELAY = 1;
+    /**
+     * The kind of event whose delay is a number of coarse units.
+     */
+    static final int COARSE_DELAY = 2;
+    /**
+     * The kind of event that is a pause with no action.
+     */
+    static final int PAUSE = 3;
+    /**
+     * The longest pause a single PAUSE event holds, in coarse units.
+     */
+    static final int MAX_PAUSE = (1 << 14) - 1;
+    /**
+     * The size of the write buffer in bytes.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The recording file.
+     */
+    private final FileChannel channel;
+    /**
+     * The events not written to the file yet.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    /**
+     * System.nanoTime() when the recording started.
+     */
+    private final long startNanos;
+    /**
+     * The ticks since the start that the events recorded so far add up to.
+     */
+    private long recordedTicks;
+    /**
+     * The number of actions recorded.
+     */
+    private long eventCount;
+    /**
+     * The error that stopped the recording (null if there was none).
+     */
+    private IOException failure;
+
+    /**
+     * Starts a recording, replacing the file if it already exists.
+     * @param path the recording file
+     * @throws IOException if the file can't be created
+     */
+    public KeystrokeRecorder(Path path) throws IOException {
+        if (CalculatorAction.values().length > 64) {
+            throw new IllegalStateException("Too many actions to record in six bits.");
+        }
+
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        this.startNanos = System.nanoTime();
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(System.currentTimeMillis());
+    }
+
+    /**
+     * Records an action as happening now. If writing to the file fails, recording stops and the error is thrown by flush()
+     * and close() instead, so the calculator carries on working.
+     * @param action the action
+     */
+    public synchronized void record(CalculatorAction action) {
+        if (failure != null) {
+            return;
+        }
+
+        try {
+            long delay = (System.nanoTime() - startNanos) / TICK_NANOS - recordedTicks;
+
+            //Clocks only go forwards, but rounding never makes a delay negative either
+            if (delay <= 0) {
+                put(SAME_TICK, action.ordinal());
+            } else if (delay <= 0xFF) {
+                put(FINE_DELAY, action.ordinal(), (int) delay);
+                recordedTicks += delay;
+            } else {
+                long units = delay / COARSE_TICKS;
+                while (units > 0xFF) {
+                    long pause = Math.min(units - 0xFF, MAX_PAUSE);
+                    put(PAUSE, (int) (pause >>> 8), (int) pause & 0xFF);
+                    units -= pause;
+                }
+                put(COARSE_DELAY, action.ordinal(), (int) units);
+                recordedTicks += delay - delay % COARSE_TICKS;
+            }
+            eventCount++;
+
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Appends a one byte event.
+     * @param kind the kind of event
+     * @param bits the low six bits of the event
+     * @throws IOException if the buffer had to be written out, and that failed
+     */
+    private void put(int kind, int bits) throws IOException {
+        if (buffer.remaining() < 1) {
+            writeBuffer();
+        }
+        buffer.put((byte) (kind << 6 | bits));
+    }
+
+    /**
+     * Appends a two byte event.
+     * @param kind the kind of event
+     * @param bits the low six bits of the first byte
+     * @param second the second byte
+     * @throws IOException if the buffer had to be written out, and that failed
+     */
+    private void put(int kind, int bits, int second) throws IOException {
+        if (buffer.remaining() < 2) {
+            writeBuffer();
+        }
+        buffer.put((byte) (kind << 6 | bits));
+        buffer.put((byte) second);
+    }
+
+    /**
+     * Writes the buffered events to the file.
+     * @throws IOException if writing fails
+     */
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Gets the number of actions recorded.
+     * @return the number of actions
+     */
+    public synchronized long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Writes every action recorded so far to the file.
+     * @throws IOException if writing fails, or failed while recording
+     */
+    public synchronized void flush() throws IOException {
+        if (failure == null) {
+            try {
+                writeBuffer();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes every action recorded so far and closes the file.
+     * @throws IOException if writing fails, or failed while recording
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
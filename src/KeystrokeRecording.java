@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A recording written by KeystrokeRecorder, decoded into memory: the action of each event and when it happened.
+ */
+public final class KeystrokeRecording {
+    /**
+     * The action of each event.
+     */
+    private final CalculatorAction[] actions;
+    /**
+     * The milliseconds from the start of the recording to each event.
+     */
+    private final long[] times;
+    /**
+     * The epoch milliseconds the recording started at.
+     */
+    private final long startTime;
+
+    /**
+     * Creates a recording.
+     * @param actions the action of each event
+     * @param times the milliseconds from the start of the recording to each event
+     * @param startTime the epoch milliseconds the recording started at
+     */
+    private KeystrokeRecording(CalculatorAction[] actions, long[] times, long startTime) {
+        this.actions = actions;
+        this.times = times;
+        this.startTime = startTime;
+    }
+
+    /**
+     * Reads a recording.
+     * @param path the recording file
+     * @return the recording
+     * @throws IOException if the file can't be read, isn't a recording, or is damaged
+     */
+    public static KeystrokeRecording read(Path path) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (bytes.remaining() < KeystrokeRecorder.HEADER_SIZE || bytes.getInt() != KeystrokeRecorder.MAGIC) {
+            throw new IOException(path + " is not a keystroke recording.");
+        }
+        if (bytes.getInt() != KeystrokeRecorder.VERSION) {
+            throw new IOException(path + " was written by an unsupported version.");
+        }
+        long startTime = bytes.getLong();
+
+        //There are at most as many events as bytes left
+        CalculatorAction[] allActions = CalculatorAction.values();
+        CalculatorAction[] actions = new CalculatorAction[bytes.remaining()];
+        long[] times = new long[bytes.remaining()];
+        int count = 0;
+        long ticks = 0;
+
+        while (bytes.hasRemaining()) {
+            int first = bytes.get() & 0xFF;
+            int kind = first >>> 6;
+            int bits = first & 0x3F;
+
+            if (kind != KeystrokeRecorder.SAME_TICK) {
+                if (!bytes.hasRemaining()) {
+                    throw new IOException(path + " ends in the middle of an event.");
+                }
+                int second = bytes.get() & 0xFF;
+
+                if (kind == KeystrokeRecorder.PAUSE) {
+                    ticks += (long) (bits << 8 | second) * KeystrokeRecorder.COARSE_TICKS;
+                    continue;
+                }
+                ticks += kind == KeystrokeRecorder.FINE_DELAY ? second : (long) second * KeystrokeRecorder.COARSE_TICKS;
+            }
+
+            if (bits >= allActions.length) {
+                throw new IOException(path + " holds an unknown action (" + bits + ").");
+            }
+            actions[count] = allActions[bits];
+            times[count++] = ticks * KeystrokeRecorder.TICK_NANOS / 1_000_000;
+        }
+
+        return new KeystrokeRecording(Arrays.copyOf(actions, count), Arrays.copyOf(times, count), startTime);
+    }
+
+    /**
+     * Gets the number of events.
+     * @return the number of events
+     */
+    public int size() {
+        return actions.length;
+    }
+
+    /**
+     * Gets the action of an event.
+     * @param index the index of the event
+     * @return the action
+     */
+    public CalculatorAction getAction(int index) {
+        return actions[index];
+    }
+
+    /**
+     * Gets when an event happened.
+     * @param index the index of the event
+     * @return the milliseconds from the start of the recording to the event
+     */
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    /**
+     * Gets when the recording started.
+     * @return the epoch milliseconds the recording started at
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+}
@@ -0,0 +1,307 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Replays a KeystrokeRecording into a controller (on a HeadlessCalculatorView) or straight into a model, either at the pace it
+ * was recorded at or at a fixed rate, and measures how long each event takes.
+ * <p>
+ * Every event is due at a fixed time from the start of the replay, whatever happened to the ones before it. Latency is measured
+ * from when an event was due rather than from when it was sent, so when the calculator falls behind, the time events spent
+ * waiting for it counts too (instead of the replay quietly slowing down to match, hiding the queueing). Service time is just the
+ * time spent handling each event, and lag is how far behind schedule the replay is when each event is sent.
+ * <p>
+ * PASTE events are skipped, as the text pasted isn't recorded.
+ */
+public class KeystrokeReplayer {
+    /**
+     * How long before an event is due the replay stops parking the thread and spins instead, in nanoseconds (parking can
+     * overshoot by about this much).
+     */
+    private static final long SPIN_NANOS = 50_000;
+
+    /**
+     * The recording to replay.
+     */
+    private final KeystrokeRecording recording;
+    /**
+     * The events to replay per second (0 to replay at the recorded pace, or infinity to replay as fast as possible).
+     */
+    private final double rate;
+    /**
+     * The number of times the recording is replayed, one after the other.
+     */
+    private final int repeat;
+
+    /**
+     * Creates a replayer.
+     * @param recording the recording to replay
+     * @param rate the events to replay per second, 0 to replay them at the pace they were recorded at, or infinity to replay
+     *             them as fast as possible
+     * @param repeat the number of times to replay the recording, one after the other
+     */
+    public KeystrokeReplayer(KeystrokeRecording recording, double rate, int repeat) {
+        if (!(rate >= 0)) {
+            throw new IllegalArgumentException("Invalid rate: " + rate);
+        }
+        if (repeat <= 0) {
+            throw new IllegalArgumentException("The recording must be replayed at least once.");
+        }
+
+        this.recording = recording;
+        this.rate = rate;
+        this.repeat = repeat;
+    }
+
+    /**
+     * Replays the recording into a controller on the calling thread.
+     * @param controller the controller (which should update its view synchronously)
+     * @return the measurements
+     */
+    public Report replay(CalculatorController controller) {
+        return replay(controller::perform);
+    }
+
+    /**
+     * Replays the recording straight into a model on the calling thread. Actions that only mean something to the controller
+     * (such as undo) are skipped, but still count as events.
+     * @param model the model
+     * @return the measurements
+     */
+    public Report replay(CalculatorModel model) {
+        return replay(action -> KeystrokeInterpreter.applyAction(model, action));
+    }
+
+    /**
+     * Replays the recording into whatever performs the actions, on the calling thread.
+     * @param target performs each action
+     * @return the measurements
+     */
+    private Report replay(Consumer<CalculatorAction> target) {
+        Report report = new Report();
+        int size = recording.size();
+        if (size == 0) {
+            return report;
+        }
+
+        //At the recorded pace, each repetition starts where the last one ended
+        long recordedNanos = recording.getTime(size - 1) * 1_000_000;
+        double intervalNanos = rate == 0 ? 0 : 1e9 / rate;
+        long start = System.nanoTime();
+        long lag = 0;
+
+        for (int r = 0; r < repeat; r++) {
+            for (int i = 0; i < size; i++) {
+                CalculatorAction action = recording.getAction(i);
+                if (action == CalculatorAction.PASTE) {
+                    continue;
+                }
+
+                long due = start + (rate == 0
+                        ? r * recordedNanos + recording.getTime(i) * 1_000_000
+                        : (long) (((long) r * size + i) * intervalNanos));
+                long sent = waitUntil(due);
+                lag = sent - due;
+
+                target.accept(action);
+                long done = System.nanoTime();
+
+                report.latency.add(done - due);
+                report.serviceTime.add(done - sent);
+                report.maxLagNanos = Math.max(report.maxLagNanos, lag);
+                report.events++;
+            }
+        }
+
+        report.elapsedNanos = System.nanoTime() - start;
+        report.finalLagNanos = lag;
+        return report;
+    }
+
+    /**
+     * Waits until a given time (parking the thread until shortly before it, then spinning).
+     * @param due the System.nanoTime() to wait for
+     * @return the System.nanoTime() the wait ended at
+     */
+    private static long waitUntil(long due) {
+        long now;
+        while ((now = System.nanoTime()) < due) {
+            if (due - now > SPIN_NANOS) {
+                LockSupport.parkNanos(due - now - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        return now;
+    }
+
+    /**
+     * The measurements of a replay. Percentiles are estimates (within QuantileSketch.DEFAULT_RELATIVE_ACCURACY).
+     */
+    public static final class Report {
+        /**
+         * The latency of each event in nanoseconds, from when it was due until it was handled.
+         */
+        private final QuantileSketch latency = new QuantileSketch();
+        /**
+         * The time spent handling each event in nanoseconds.
+         */
+        private final QuantileSketch serviceTime = new QuantileSketch();
+        /**
+         * The number of events replayed.
+         */
+        private long events;
+        /**
+         * How long the replay took in nanoseconds.
+         */
+        private long elapsedNanos;
+        /**
+         * How far behind schedule the replay fell at worst, in nanoseconds.
+         */
+        private long maxLagNanos;
+        /**
+         * How far behind schedule the last event was sent, in nanoseconds.
+         */
+        private long finalLagNanos;
+
+        private Report() {
+        }
+
+        /**
+         * Gets the number of events replayed.
+         * @return the number of events
+         */
+        public long getEvents() {
+            return events;
+        }
+
+        /**
+         * Gets how long the replay took.
+         * @return the time in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Gets the rate the events were actually replayed at.
+         * @return the events per second
+         */
+        public double getAchievedRate() {
+            return elapsedNanos == 0 ? 0 : events * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Estimates a percentile of the latencies (from when each event was due until it was handled).
+         * @param percentile the percentile, from 0 to 100 (eg. 99)
+         * @return the latency in nanoseconds (NaN if no events were replayed)
+         */
+        public double getLatencyPercentile(double percentile) {
+            return latency.getQuantile(percentile / 100);
+        }
+
+        /**
+         * Estimates a percentile of the service times (the time spent handling each event).
+         * @param percentile the percentile, from 0 to 100 (eg. 99)
+         * @return the service time in nanoseconds (NaN if no events were replayed)
+         */
+        public double getServiceTimePercentile(double percentile) {
+            return serviceTime.getQuantile(percentile / 100);
+        }
+
+        /**
+         * Gets how far behind schedule the replay fell at worst.
+         * @return the lag in nanoseconds
+         */
+        public long getMaxLagNanos() {
+            return maxLagNanos;
+        }
+
+        /**
+         * Gets how far behind schedule the last event was sent (if it is large, the target rate couldn't be kept up).
+         * @return the lag in nanoseconds
+         */
+        public long getFinalLagNanos() {
+            return finalLagNanos;
+        }
+    }
+
+    /**
+     * Replays a recording headlessly and prints the measurements.
+     * Usage: --replay-keys [--rate &lt;events per second&gt;] [--repeat &lt;times&gt;] [--warmup &lt;times&gt;] [--model]
+     * [--primitive | --decimal | --programmer] &lt;recording file&gt;
+     * @param args the command line arguments
+     * @throws IOException if the recording can't be read or is damaged
+     */
+    public static void main(String[] args) throws IOException {
+        Supplier<CalculatorModel> modelFactory = CalculatorModel::new;
+        double rate = 0;
+        int repeat = 1;
+        int warmup = 0;
+        boolean modelOnly = false;
+        int i = 0;
+
+        try {
+            for (; i < args.length - 1; i++) {
+                if (args[i].equals("--rate") && i + 1 < args.length - 1) {
+                    rate = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("--repeat") && i + 1 < args.length - 1) {
+                    repeat = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--warmup") && i + 1 < args.length - 1) {
+                    warmup = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--model")) {
+                    modelOnly = true;
+                } else if (args[i].equals("--primitive")) {
+                    modelFactory = PrimitiveCalculatorModel::new;
+                } else if (args[i].equals("--decimal")) {
+                    modelFactory = DecimalCalculatorModel::new;
+                } else if (args[i].equals("--programmer")) {
+                    modelFactory = ProgrammerCalculatorModel::new;
+                } else {
+                    break;
+                }
+            }
+        } catch (NumberFormatException e) {
+            rate = -1;
+        }
+
+        if (i != args.length - 1 || !(rate >= 0) || repeat <= 0 || warmup < 0) {
+            System.err.println("Usage: --replay-keys [--rate <events per second>] [--repeat <times>] [--warmup <times>] "
+                    + "[--model] [--primitive | --decimal | --programmer] <recording file>");
+            System.exit(1);
+        }
+
+        KeystrokeRecording recording = KeystrokeRecording.read(Path.of(args[i]));
+        CalculatorModel model = modelFactory.get();
+        CalculatorController controller = modelOnly ? null : new CalculatorController(model, new HeadlessCalculatorView(), false);
+
+        //Replaying as fast as possible first lets the JIT compiler finish, so its pauses don't show up in the measurements
+        if (warmup > 0) {
+            KeystrokeReplayer warmupReplayer = new KeystrokeReplayer(recording, Double.POSITIVE_INFINITY, warmup);
+            if (modelOnly) {
+                warmupReplayer.replay(model);
+            } else {
+                warmupReplayer.replay(controller);
+            }
+        }
+
+        KeystrokeReplayer replayer = new KeystrokeReplayer(recording, rate, repeat);
+        Report report = modelOnly ? replayer.replay(model) : replayer.replay(controller);
+
+        System.out.printf("Replayed %d events in %d ms (%.0f events/s, target %s)%n", report.getEvents(),
+                report.getElapsedNanos() / 1_000_000, report.getAchievedRate(),
+                rate == 0 ? "the recorded pace" : String.format("%.0f events/s", rate));
+        System.out.printf("latency  p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f us%n",
+                report.getLatencyPercentile(50) / 1e3, report.getLatencyPercentile(90) / 1e3,
+                report.getLatencyPercentile(99) / 1e3, report.getLatencyPercentile(99.9) / 1e3,
+                report.getLatencyPercentile(100) / 1e3);
+        System.out.printf("service  p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f us%n",
+                report.getServiceTimePercentile(50) / 1e3, report.getServiceTimePercentile(90) / 1e3,
+                report.getServiceTimePercentile(99) / 1e3, report.getServiceTimePercentile(99.9) / 1e3,
+                report.getServiceTimePercentile(100) / 1e3);
+        System.out.printf("lag      max %.3f ms, at the end %.3f ms%n", report.getMaxLagNanos() / 1e6,
+                report.getFinalLagNanos() / 1e6);
+    }
+}
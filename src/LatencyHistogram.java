@@ -0,0 +1,208 @@
+import javax.management.ConstructorParameters;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds, with one bucket per power of two (bucket i counts latencies from 2^(i-1)
+ * up to 2^i - 1, and bucket 0 counts latencies of 0). Recording is a couple of uncontended adds, so it can be done on every
+ * operation from any number of threads; percentiles are only accurate to within a factor of two.
+ */
+public final class LatencyHistogram {
+    /**
+     * The number of buckets (enough for any long).
+     */
+    public static final int BUCKETS = 64;
+
+    /**
+     * The number of latencies in each bucket.
+     */
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    /**
+     * The sum of all latencies recorded.
+     */
+    private final LongAdder total = new LongAdder();
+    /**
+     * The longest latency recorded.
+     */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a latency.
+     * @param nanos the latency in nanoseconds (negative latencies, from a clock going backwards, are counted as 0)
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Empties the histogram. Latencies recorded while it is being reset may or may not be kept.
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        total.reset();
+        max.reset();
+    }
+
+    /**
+     * Takes a snapshot of the histogram. The snapshot is consistent only if nothing is being recorded at the same time,
+     * otherwise it may be off by the latencies being recorded.
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+
+        return new Snapshot(count, count == 0 ? 0 : total.sum() / count, percentile(counts, count, 0.5),
+                percentile(counts, count, 0.9), percentile(counts, count, 0.99), max.get(), counts);
+    }
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket it falls in.
+     * @param counts the bucket counts
+     * @param count the sum of the bucket counts
+     * @param fraction the percentile as a fraction (eg. 0.99)
+     * @return the estimate in nanoseconds (0 if the histogram is empty)
+     */
+    private static long percentile(long[] counts, long count, double fraction) {
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return i == 0 ? 0 : i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * A snapshot of a histogram (shown as a composite value over JMX).
+     */
+    public static final class Snapshot {
+        /**
+         * The number of latencies recorded.
+         */
+        private final long count;
+        /**
+         * The mean latency in nanoseconds.
+         */
+        private final long meanNanos;
+        /**
+         * The estimated median latency in nanoseconds.
+         */
+        private final long p50Nanos;
+        /**
+         * The estimated 90th percentile latency in nanoseconds.
+         */
+        private final long p90Nanos;
+        /**
+         * The estimated 99th percentile latency in nanoseconds.
+         */
+        private final long p99Nanos;
+        /**
+         * The longest latency in nanoseconds.
+         */
+        private final long maxNanos;
+        /**
+         * The number of latencies in each bucket.
+         */
+        private final long[] buckets;
+
+        /**
+         * Creates a snapshot.
+         * @param count the number of latencies recorded
+         * @param meanNanos the mean latency in nanoseconds
+         * @param p50Nanos the estimated median latency in nanoseconds
+         * @param p90Nanos the estimated 90th percentile latency in nanoseconds
+         * @param p99Nanos the estimated 99th percentile latency in nanoseconds
+         * @param maxNanos the longest latency in nanoseconds
+         * @param buckets the number of latencies in each bucket
+         */
+        @ConstructorParameters({"count", "meanNanos", "p50Nanos", "p90Nanos", "p99Nanos", "maxNanos", "buckets"})
+        public Snapshot(long count, long meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos, long[] buckets) {
+            this.count = count;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets.clone();
+        }
+
+        /**
+         * Gets the number of latencies recorded.
+         * @return the number of latencies
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the mean latency.
+         * @return the mean latency in nanoseconds
+         */
+        public long getMeanNanos() {
+            return meanNanos;
+        }
+
+        /**
+         * Gets the estimated median latency.
+         * @return the median latency in nanoseconds (rounded up to a power of two minus one)
+         */
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        /**
+         * Gets the estimated 90th percentile latency.
+         * @return the 90th percentile latency in nanoseconds (rounded up to a power of two minus one)
+         */
+        public long getP90Nanos() {
+            return p90Nanos;
+        }
+
+        /**
+         * Gets the estimated 99th percentile latency.
+         * @return the 99th percentile latency in nanoseconds (rounded up to a power of two minus one)
+         */
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        /**
+         * Gets the longest latency.
+         * @return the longest latency in nanoseconds
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Gets the number of latencies in each bucket (bucket i counts latencies from 2^(i-1) up to 2^i - 1 nanoseconds).
+         * @return the bucket counts
+         */
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+    }
+}
@@ -1,6 +1,110 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
 public class Main {
     //Starts application
-    public static void main(String[] args) {
-        CalculatorController controller = new CalculatorController(new CalculatorModel(), new CalculatorView());
+    public static void main(String[] args) throws Exception {
+        List<String> options = Arrays.asList(args);
+        StartupTimer.start(options.contains("--startup-timing"), options.contains("--exit-after-first-frame"));
+
+        //Exposes the runtime metrics over JMX (in the background, as starting the MBean server takes a while)
+        Thread.ofPlatform().daemon().name("metrics-register").start(CalculatorMetrics::register);
+
+        //Headless batch mode: --batch <input file> <output file>
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchEvaluator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        //Headless server mode: --server [--rates <rate file>] [--max-sessions <sessions>] [port] [idle timeout in seconds]
+        if (args.length > 0 && args[0].equals("--server")) {
+            CalculatorServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        //Headless statistics mode: --stats [--parallelism threads] <input file>
+        if (args.length > 0 && args[0].equals("--stats")) {
+            StatisticsAggregator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        //Replays a calculation tape: --replay <tape file> [checkpoint]
+        if (args.length > 0 && args[0].equals("--replay")) {
+            CalculationTapeReader.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        //Replays a keystroke recording headlessly: --replay-keys [--rate n] [--repeat n] [--warmup n] [--model] <recording file>
+        if (args.length > 0 && args[0].equals("--replay-keys")) {
+            KeystrokeReplayer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        //Headless streaming mode: --stream [--batch-size n] [--flush-ms n] [input file or named pipe] (standard input by default)
+        if (args.length > 0 && args[0].equals("--stream")) {
+            StreamingCalculator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        //Programmer mode: --programmer (64-bit integers in binary, octal, decimal or hexadecimal, with bitwise operations)
+        boolean programmer = options.contains("--programmer");
+        CalculatorModel model = programmer ? new ProgrammerCalculatorModel() : new CalculatorModel();
+        KeyMap keyMap = programmer ? KeyMap.getProgrammer() : KeyMap.getDefault();
+
+        //A plain launch opens its window in the calculator already running (if there is one) instead of starting another JVM
+        boolean plain = options.stream().allMatch(option -> option.equals("--programmer") || option.equals("--fast-start"));
+        if (plain && CalculatorLauncher.handOff(programmer)) {
+            return;
+        }
+
+        //Window options: --tape <tape file> records every calculation, --record-keys <file> records every button and key
+        //action, --keymap <properties file> changes the key bindings,
+        //--fast-start builds the window quicker, --startup-timing prints how long starting took,
+        //--exit-after-first-frame exits as soon as the window has been painted, and --fast-math uses the faster, slightly
+        //less accurate scientific functions (-Dcalculator.accuracy=fast does the same for every mode)
+        boolean fastStart = false;
+        KeystrokeRecorder recorder = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--tape") && i + 1 < args.length) {
+                CalculationTape tape = new CalculationTape(Path.of(args[++i]));
+                model.setCalculationListener(tape);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        tape.close();
+                    } catch (IOException e) {
+                        //Nothing left to do while exiting
+                    }
+                }));
+            } else if (args[i].equals("--record-keys") && i + 1 < args.length) {
+                KeystrokeRecorder keys = new KeystrokeRecorder(Path.of(args[++i]));
+                recorder = keys;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        keys.close();
+                    } catch (IOException e) {
+                        //Nothing left to do while exiting
+                    }
+                }));
+            } else if (args[i].equals("--keymap") && i + 1 < args.length) {
+                keyMap = KeyMap.load(Path.of(args[++i]));
+            } else if (args[i].equals("--fast-start")) {
+                fastStart = true;
+            } else if (args[i].equals("--fast-math")) {
+                OperationRegistry.setDefault(OperationRegistry.load(OperationRegistry.Accuracy.FAST));
+            }
+        }
+        StartupTimer.mark("options");
+
+        //Every window (shortcut+N opens more) shares this process, and closing one leaves the others open
+        CalculatorLauncher launcher = new CalculatorLauncher(fastStart);
+        CalculatorController controller = launcher.openWindow(model, keyMap);
+        controller.setRecorder(recorder);
+        StartupTimer.mark("controller");
+
+        if (plain) {
+            Thread.ofPlatform().daemon().name("launcher-handoff").start(launcher::acceptHandoffs);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,101 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams a file as a series of memory-mapped chunks that always end on a line boundary,
+ * so large files can be processed without ever being read into the heap all at once.
+ */
+public class MappedChunkReader implements Closeable {
+    /**
+     * The default size of each mapped chunk in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+    /**
+     * The channel of the file being read.
+     */
+    private final FileChannel channel;
+    /**
+     * The preferred size of each mapped chunk in bytes.
+     */
+    private final int chunkSize;
+    /**
+     * The total size of the file in bytes.
+     */
+    private final long size;
+    /**
+     * The file offset at which the next chunk starts.
+     */
+    private long position;
+
+    /**
+     * Opens a file for chunked reading.
+     * @param path the file to read
+     * @param chunkSize the preferred size of each chunk in bytes (a chunk grows past this only if a single line is longer)
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedChunkReader(Path path, int chunkSize) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.chunkSize = chunkSize;
+        this.size = channel.size();
+        this.position = 0;
+    }
+
+    /**
+     * Maps the next chunk of the file. The returned buffer's limit is just after the last complete line in the chunk
+     * (or at the end of the file for the final chunk).
+     * @return the next chunk, or null if the whole file has been read
+     * @throws IOException if the file cannot be mapped
+     */
+    public MappedByteBuffer nextChunk() throws IOException {
+        if (position >= size) {
+            return null;
+        }
+
+        long window = Math.min(chunkSize, size - position);
+
+        while (true) {
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+
+            //The last chunk of the file does not need to end on a newline
+            if (position + window == size) {
+                position = size;
+                return chunk;
+            }
+
+            for (int i = (int) window - 1; i >= 0; i--) {
+                if (chunk.get(i) == '\n') {
+                    chunk.limit(i + 1);
+                    position += i + 1;
+                    return chunk;
+                }
+            }
+
+            //A single line is longer than the window, so map a bigger one
+            if (window == Integer.MAX_VALUE) {
+                throw new IOException("Line at offset " + position + " is too long to be mapped.");
+            }
+            window = Math.min(Math.min(window * 2, Integer.MAX_VALUE), size - position);
+        }
+    }
+
+    /**
+     * Gets the total size of the file being read.
+     * @return the size of the file in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
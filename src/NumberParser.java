@@ -0,0 +1,206 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses numbers the same way Double.parseDouble() does, but returns NaN for text that isn't a number instead of throwing a
+ * NumberFormatException. Error messages such as "ERROR", and the infinity sign a result that overflowed is shown as, end up
+ * being parsed on every calculation made after them, and filling in a stack trace for each one costs far more than the
+ * calculation itself.
+ */
+public final class NumberParser {
+    /**
+     * The powers of ten that are exactly representable as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    /**
+     * The number of digits that always fit in a long.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private NumberParser() {
+    }
+
+    /**
+     * Parses a number.
+     * @param text the text to parse
+     * @return the number, or NaN if the text isn't a number (or is "NaN", which the calculator treats the same way)
+     */
+    public static double parse(CharSequence text) {
+        //The text is only handed to Double.parseDouble() once it's known to be valid, so it never throws
+        return isNumber(text) ? Double.parseDouble(text.toString()) : Double.NaN;
+    }
+
+    /**
+     * Parses a number. Plain decimals with at most 15 or so significant digits (the usual case) are parsed directly from the
+     * bytes: their digits make an exact long, which divided by an exact power of ten gives the correctly rounded double, just
+     * like Double.parseDouble(). Anything else (such as exponents or longer numbers) is checked and parsed as text.
+     * @param chunk the buffer holding the number (as ASCII)
+     * @param start the index of the start of the number (inclusive)
+     * @param end the index of the end of the number (exclusive)
+     * @return the number, or NaN if the text isn't a number
+     */
+    public static double parse(ByteBuffer chunk, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        byte first = chunk.get(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+
+        for (; i < end; i++) {
+            byte b = chunk.get(i);
+
+            if (b >= '0' && b <= '9') {
+                if (++digits > MAX_LONG_DIGITS) {
+                    return parseSlowly(chunk, start, end);
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (point) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                return parseSlowly(chunk, start, end);
+            }
+        }
+
+        //Both the mantissa and the power of ten must be exact for the quotient to be correctly rounded
+        if (digits == 0 || mantissa >= 1L << 53 || fractionDigits >= POWERS_OF_TEN.length) {
+            return parseSlowly(chunk, start, end);
+        }
+
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a number from bytes as text.
+     * @param chunk the buffer holding the number (as ASCII)
+     * @param start the index of the start of the number (inclusive)
+     * @param end the index of the end of the number (exclusive)
+     * @return the number, or NaN if the text isn't a number
+     */
+    private static double parseSlowly(ByteBuffer chunk, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        chunk.get(start, bytes);
+        return parse(new String(bytes, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Checks whether some text is a number Double.parseDouble() accepts: an optionally signed decimal or hexadecimal
+     * floating point number (with an optional exponent and type suffix), NaN or Infinity, with any surrounding whitespace.
+     * @param text the text to check
+     * @return true if the text is a number
+     */
+    public static boolean isNumber(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+
+        //Double.parseDouble() trims the text first
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        if (start < end && (text.charAt(start) == '+' || text.charAt(start) == '-')) {
+            start++;
+        }
+        if (equals(text, start, end, "NaN") || equals(text, start, end, "Infinity")) {
+            return true;
+        }
+
+        boolean hex = end - start > 1 && text.charAt(start) == '0' && (text.charAt(start + 1) | 0x20) == 'x';
+        int i = hex ? scan(text, start + 2, end, 16) : scan(text, start, end, 10);
+        if (i < 0) {
+            return false;
+        }
+
+        if (i < end && "fFdD".indexOf(text.charAt(i)) >= 0) {
+            i++;
+        }
+        return i == end;
+    }
+
+    /**
+     * Checks whether some text is a plain decimal number, as accepted by new BigDecimal(String): optionally signed digits with
+     * an optional decimal point and exponent, and nothing else.
+     * @param text the text to check
+     * @return true if the text is a decimal number
+     */
+    public static boolean isDecimal(CharSequence text) {
+        int start = text.length() > 0 && (text.charAt(0) == '+' || text.charAt(0) == '-') ? 1 : 0;
+        return scan(text, start, text.length(), 10) == text.length();
+    }
+
+    /**
+     * Scans the unsigned part of a floating point number: digits with an optional point, followed by an exponent (a decimal
+     * exponent marked with e, which is optional, or for hexadecimal a binary exponent marked with p, which is required).
+     * @param text the text
+     * @param start the index to start scanning at
+     * @param end the index to stop scanning at
+     * @param radix 10 or 16
+     * @return the index after the number, or -1 if the text doesn't start with a number
+     */
+    private static int scan(CharSequence text, int start, int end, int radix) {
+        int i = start;
+        int digits = 0;
+
+        for (; i < end && RadixFormatter.digit(text.charAt(i), radix) >= 0; i++) {
+            digits++;
+        }
+        if (i < end && text.charAt(i) == '.') {
+            for (i++; i < end && RadixFormatter.digit(text.charAt(i), radix) >= 0; i++) {
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return -1;
+        }
+
+        if (i < end && (text.charAt(i) | 0x20) == (radix == 16 ? 'p' : 'e')) {
+            i++;
+            if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                i++;
+            }
+
+            int exponentStart = i;
+            while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                i++;
+            }
+            return i == exponentStart ? -1 : i;
+        }
+        return radix == 16 ? -1 : i;
+    }
+
+    /**
+     * Checks whether part of some text is exactly a word.
+     * @param text the text
+     * @param start the index of the start of the part (inclusive)
+     * @param end the index of the end of the part (exclusive)
+     * @param word the word
+     * @return true if the part is the word
+     */
+    private static boolean equals(CharSequence text, int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (text.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
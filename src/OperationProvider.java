@@ -0,0 +1,14 @@
+import java.util.List;
+
+/**
+ * Provides operations to the OperationRegistry. Providers are discovered with ServiceLoader, so each one is listed (by its
+ * class name) in a META-INF/services/OperationProvider file on the class path, and must have a public no-argument constructor.
+ */
+public interface OperationProvider {
+    /**
+     * Gets the operations this provider adds.
+     * @param accuracy whether the operations should be exact to the last bit or may trade some accuracy for speed
+     * @return the operations
+     */
+    List<CalculatorOperation> getOperations(OperationRegistry.Accuracy accuracy);
+}
@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * The operations the calculator can perform besides its built-in +, -, × and ÷, by symbol. The default registry holds every
+ * operation of every OperationProvider found with ServiceLoader (including the built-in ScientificOperations), at the accuracy
+ * given by the calculator.accuracy system property ("strict", the default, or "fast").
+ * <p>
+ * The built-in operators never go through the registry (CalculatorModel switches on them directly), and the built-in
+ * scientific operations are called directly rather than through the CalculatorOperation interface, so the one interface call
+ * site in apply() is only ever reached by plugins and doesn't become megamorphic on the hot path.
+ * Registries can't be changed once created, so they are safe to use from multiple threads.
+ */
+public final class OperationRegistry {
+    /**
+     * How accurate the operations are.
+     */
+    public enum Accuracy {
+        /**
+         * Results are as accurate as the Math functions (within an ulp or so of the exact result).
+         */
+        STRICT,
+        /**
+         * Results may be a few ulps less accurate than the Math functions, for faster table-driven and polynomial
+         * approximations (see FastMath).
+         */
+        FAST
+    }
+
+    /**
+     * The system property choosing the accuracy of the default registry.
+     */
+    public static final String ACCURACY_PROPERTY = "calculator.accuracy";
+    /**
+     * The symbols of the built-in operators, which can't be registered.
+     */
+    private static final String BUILT_IN_SYMBOLS = "+-×÷";
+
+    /**
+     * The registry used by the models, loaded when it is first needed.
+     */
+    private static volatile OperationRegistry defaultRegistry;
+
+    /**
+     * How accurate the operations are.
+     */
+    private final Accuracy accuracy;
+    /**
+     * Every operation, in the order they were registered.
+     */
+    private final List<CalculatorOperation> operations;
+    /**
+     * Every operation, by symbol.
+     */
+    private final Map<String, CalculatorOperation> operationsBySymbol = new HashMap<>();
+    /**
+     * The symbols of the binary operations (searched linearly, as there are only a few).
+     */
+    private final char[] binarySymbols;
+    /**
+     * The binary operations, in the same order as binarySymbols.
+     */
+    private final CalculatorOperation[] binaryOperations;
+
+    /**
+     * Creates a registry.
+     * @param accuracy how accurate the operations are
+     * @param operations the operations
+     * @throws IllegalArgumentException if two operations have the same symbol, a symbol is empty or is a built-in operator,
+     *                                  or a binary operation's symbol isn't a single character
+     */
+    public OperationRegistry(Accuracy accuracy, List<CalculatorOperation> operations) throws IllegalArgumentException {
+        this.accuracy = accuracy;
+        this.operations = List.copyOf(operations);
+
+        int binaryCount = 0;
+        for (CalculatorOperation operation : this.operations) {
+            String symbol = operation.getSymbol();
+
+            if (symbol.isEmpty() || (symbol.length() == 1 && BUILT_IN_SYMBOLS.indexOf(symbol.charAt(0)) >= 0)) {
+                throw new IllegalArgumentException("Invalid operation symbol: \"" + symbol + "\"");
+            }
+            if (!operation.isUnary() && symbol.length() != 1) {
+                throw new IllegalArgumentException("Binary operation symbols must be a single character: \"" + symbol + "\"");
+            }
+            if (operationsBySymbol.putIfAbsent(symbol, operation) != null) {
+                throw new IllegalArgumentException("Operation symbol registered twice: \"" + symbol + "\"");
+            }
+
+            if (!operation.isUnary()) {
+                binaryCount++;
+            }
+        }
+
+        this.binarySymbols = new char[binaryCount];
+        this.binaryOperations = new CalculatorOperation[binaryCount];
+        int i = 0;
+        for (CalculatorOperation operation : this.operations) {
+            if (!operation.isUnary()) {
+                binarySymbols[i] = operation.getSymbol().charAt(0);
+                binaryOperations[i++] = operation;
+            }
+        }
+    }
+
+    /**
+     * Creates a registry of the operations of every OperationProvider on the class path.
+     * @param accuracy how accurate the operations should be
+     * @return the registry
+     * @throws IllegalArgumentException if two operations have the same symbol, or a symbol is invalid
+     * @throws java.util.ServiceConfigurationError if a provider can't be loaded
+     */
+    public static OperationRegistry load(Accuracy accuracy) throws IllegalArgumentException {
+        List<CalculatorOperation> operations = new ArrayList<>();
+        for (OperationProvider provider : ServiceLoader.load(OperationProvider.class)) {
+            operations.addAll(provider.getOperations(accuracy));
+        }
+        return new OperationRegistry(accuracy, operations);
+    }
+
+    /**
+     * Gets the registry used by the models, loading it (at the accuracy given by the calculator.accuracy system property)
+     * if it hasn't been loaded or set yet.
+     * @return the default registry
+     */
+    public static OperationRegistry getDefault() {
+        OperationRegistry registry = defaultRegistry;
+        if (registry != null) {
+            return registry;
+        }
+
+        synchronized (OperationRegistry.class) {
+            if (defaultRegistry == null) {
+                boolean fast = "fast".equalsIgnoreCase(System.getProperty(ACCURACY_PROPERTY));
+                defaultRegistry = load(fast ? Accuracy.FAST : Accuracy.STRICT);
+            }
+            return defaultRegistry;
+        }
+    }
+
+    /**
+     * Changes the registry used by the models.
+     * @param registry the new default registry
+     */
+    public static synchronized void setDefault(OperationRegistry registry) {
+        defaultRegistry = registry;
+    }
+
+    /**
+     * Gets how accurate the operations are.
+     * @return the accuracy
+     */
+    public Accuracy getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * Gets every operation.
+     * @return the operations, in the order they were registered
+     */
+    public List<CalculatorOperation> getOperations() {
+        return operations;
+    }
+
+    /**
+     * Looks up an operation.
+     * @param symbol the operation's symbol
+     * @return the operation, or null if there is none with that symbol
+     */
+    public CalculatorOperation get(String symbol) {
+        return operationsBySymbol.get(symbol);
+    }
+
+    /**
+     * Looks up a binary operation.
+     * @param symbol the operation's symbol
+     * @return the operation, or null if there is no binary operation with that symbol
+     */
+    public CalculatorOperation getBinary(char symbol) {
+        for (int i = 0; i < binarySymbols.length; i++) {
+            if (binarySymbols[i] == symbol) {
+                return binaryOperations[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies an operation. Built-in operations are called directly, so only plugins go through the interface call.
+     * @param operation the operation
+     * @param first the operand (or the first operand, for binary operations)
+     * @param second the second operand (ignored by unary operations)
+     * @return the result (NaN if the operation isn't defined for the operands)
+     */
+    public static double apply(CalculatorOperation operation, double first, double second) {
+        if (operation instanceof ScientificOperations.Operation builtIn) {
+            return builtIn.apply(first, second);
+        }
+        return operation.apply(first, second);
+    }
+}
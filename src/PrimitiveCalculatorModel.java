@@ -0,0 +1,416 @@
+/**
+ * A calculator model that behaves exactly like CalculatorModel, but holds its state as primitives instead of Strings.
+ * The result field is kept in a reusable digit buffer that keystrokes are accumulated into, and the operands are kept as doubles
+ * that are only parsed from that buffer when a calculation needs them. The display Strings are only built when the getters are called.
+ */
+public final class PrimitiveCalculatorModel extends CalculatorModel {
+    /**
+     * Exact powers of ten used for parsing decimals (10^22 is the largest power of ten that is exact as a double).
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * The characters of the number in the result field.
+     */
+    private char[] current = new char[32];
+    /**
+     * The number of characters used in current.
+     */
+    private int currentLength;
+    /**
+     * The cached String of the result field, or null if it has to be rebuilt.
+     */
+    private String currentText;
+    /**
+     * True if the result field is the String form of currentValue that hasn't been written into current yet.
+     */
+    private boolean currentPending;
+    /**
+     * The numeric value of the result field (only meaningful if currentValid is true).
+     */
+    private double currentValue;
+    /**
+     * True if currentValue matches the result field.
+     */
+    private boolean currentValid;
+    /**
+     * True if the result field cannot be parsed as a number (only meaningful if currentValid is true).
+     */
+    private boolean currentUnparseable;
+
+    /**
+     * The characters of the temporary variable holding the first operand.
+     */
+    private char[] prev = new char[32];
+    /**
+     * The number of characters used in prev.
+     */
+    private int prevLength;
+    /**
+     * The cached String of the first operand, or null if it has to be rebuilt.
+     */
+    private String prevText;
+    /**
+     * The numeric value of the first operand.
+     */
+    private double prevValue;
+    /**
+     * True if the first operand cannot be parsed as a number.
+     */
+    private boolean prevUnparseable;
+
+    /**
+     * Scratch buffer that results are formatted into before being checked against maxDigits.
+     */
+    private final char[] formatted = new char[ResultFormatter.MAX_LENGTH];
+
+    /**
+     * The current operation selected.
+     */
+    private String operation;
+
+    /**
+     * Creates a new instance of the primitive calculator model.
+     */
+    public PrimitiveCalculatorModel() {
+        reset();
+    }
+
+    @Override
+    public void changeResultField(int n) {
+        if (!this.errorMode) {
+            materialize();
+
+            //Case: digit replaces existing text OR number in result field is already 0
+            if (isFirst || isZero()) {
+                currentLength = 0;
+                appendCurrent((char) ('0' + n));
+                this.isFirst = false;
+
+            //Case: digit is concatenated after existing text
+            } else if (currentLength < maxDigits) {
+                appendCurrent((char) ('0' + n));
+            }
+        }
+    }
+
+    @Override
+    public void changeOperationField(String operation) {
+        if (!this.errorMode) {
+            calculate();
+
+            //Hold the current value for later, copying the digits instead of creating a String
+            materialize();
+            parseCurrent();
+            if (prev.length < currentLength) {
+                prev = new char[current.length];
+            }
+            System.arraycopy(current, 0, prev, 0, currentLength);
+            prevLength = currentLength;
+            prevText = currentText;
+            prevValue = currentValue;
+            prevUnparseable = currentUnparseable;
+
+            this.operation = operation;
+            this.isFirst = true;
+        }
+    }
+
+    @Override
+    protected void performCalculation() {
+        if (!this.errorMode) {
+            parseCurrent();
+
+            //Account for overflow error if number reaches infinity
+            if (prevUnparseable || currentUnparseable) {
+                enterErrorMode(CalculatorError.INVALID_NUMBER);
+                return;
+            }
+
+            if (!operation.isEmpty()) {
+                double result = applyOperation(prevValue, currentValue, operation.charAt(0));
+
+                //Go into ERROR mode if division by zero occurs, or the result is undefined (can only be removed by clearing)
+                if (result != result) {
+                    enterErrorMode(getOperationError(currentValue, operation.charAt(0)));
+                    return;
+                }
+
+                if (isTooLong(result)) {
+                    enterErrorMode(CalculatorError.OVERFLOW);
+                    return;
+                }
+                int length = ResultFormatter.getInstance().format(result, formatted, 0);
+                if (length > this.maxDigits) {
+                    enterErrorMode(CalculatorError.OVERFLOW);
+                    return;
+                }
+
+                System.arraycopy(formatted, 0, current, 0, length);
+                currentLength = length;
+                currentText = null;
+                currentPending = false;
+                currentValid = false;
+                this.operation = "";
+                this.isFirst = true;
+            }
+        }
+    }
+
+    @Override
+    public void clearResultField() {
+        setCurrentResultField("0");
+        setPrevResultField("0");
+        this.operation = "";
+        this.errorMode = false;
+    }
+
+    @Override
+    public void reset() {
+        clearResultField();
+        this.isFirst = true;
+    }
+
+    @Override
+    public void addDecimalPoint() {
+        if (!this.errorMode) {
+            materialize();
+
+            if (currentLength < maxDigits && indexOfCurrent('.') < 0) {
+                appendCurrent('.');
+            }
+        }
+    }
+
+    @Override
+    public void changeToPercent() {
+        if (!this.errorMode) {
+            materialize();
+
+            //If it equals 0, it's still 0
+            if (!isZero()) {
+                parseCurrent();
+                if (currentUnparseable) {
+                    enterErrorMode(CalculatorError.INVALID_NUMBER);
+                    return;
+                }
+
+                //The text is only built if something needs it (usually the next digit replaces it anyway)
+                currentValue = currentValue / 100;
+                currentPending = true;
+                currentText = null;
+            }
+
+            //Mimic the behaviour of the iPhone calculator
+            this.isFirst = true;
+        }
+    }
+
+    @Override
+    public void changeSign() {
+        if (!this.errorMode) {
+            materialize();
+
+            //If the number is positive add a - sign, otherwise remove it
+            if (current[0] != '-') {
+                ensureCurrentCapacity(currentLength + 1);
+                System.arraycopy(current, 0, current, 1, currentLength);
+                current[0] = '-';
+                currentLength++;
+            } else {
+                System.arraycopy(current, 1, current, 0, currentLength - 1);
+                currentLength--;
+            }
+
+            currentText = null;
+            currentValid = false;
+        }
+    }
+
+    @Override
+    public String getCurrentResultField() {
+        materialize();
+        if (currentText == null) {
+            currentText = new String(current, 0, currentLength);
+        }
+        return currentText;
+    }
+
+    @Override
+    public void setCurrentResultField(String currentResultField) {
+        ensureCurrentCapacity(currentResultField.length());
+        currentResultField.getChars(0, currentResultField.length(), current, 0);
+        currentLength = currentResultField.length();
+        currentText = currentResultField;
+        currentPending = false;
+        currentValid = false;
+    }
+
+    @Override
+    public String getPrevResultField() {
+        if (prevText == null) {
+            prevText = new String(prev, 0, prevLength);
+        }
+        return prevText;
+    }
+
+    @Override
+    public void setPrevResultField(String prevResultField) {
+        if (prev.length < prevResultField.length()) {
+            prev = new char[prevResultField.length()];
+        }
+        prevResultField.getChars(0, prevResultField.length(), prev, 0);
+        prevLength = prevResultField.length();
+        prevText = prevResultField;
+
+        prevValue = parse(prev, prevLength);
+        prevUnparseable = prevValue != prevValue;
+    }
+
+    @Override
+    public String getOperationField() {
+        return operation;
+    }
+
+    @Override
+    public void setOperationField(String operationField) {
+        this.operation = operationField;
+    }
+
+    /**
+     * Checks whether the result field is exactly "0".
+     * @return true if the result field is "0"
+     */
+    private boolean isZero() {
+        return currentLength == 1 && current[0] == '0';
+    }
+
+    /**
+     * Finds a character in the result field.
+     * @param c the character to look for
+     * @return the index of the character, or -1 if it isn't there
+     */
+    private int indexOfCurrent(char c) {
+        for (int i = 0; i < currentLength; i++) {
+            if (current[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Appends a character to the result field.
+     * @param c the character to append
+     */
+    private void appendCurrent(char c) {
+        ensureCurrentCapacity(currentLength + 1);
+        current[currentLength++] = c;
+        currentText = null;
+        currentValid = false;
+    }
+
+    /**
+     * Makes sure the result field buffer can hold a number of characters.
+     * @param capacity the number of characters needed
+     */
+    private void ensureCurrentCapacity(int capacity) {
+        if (current.length < capacity) {
+            char[] grown = new char[Math.max(capacity, current.length * 2)];
+            System.arraycopy(current, 0, grown, 0, currentLength);
+            current = grown;
+        }
+    }
+
+    /**
+     * Writes a pending value into the result field buffer, the same way String.valueOf(double) would.
+     */
+    private void materialize() {
+        if (currentPending) {
+            String text = String.valueOf(currentValue);
+            setCurrentResultField(text);
+
+            //The text round-trips, so the value doesn't need to be parsed again
+            currentValid = true;
+            currentUnparseable = false;
+        }
+    }
+
+    /**
+     * Parses the result field into currentValue if it has changed since it was last parsed.
+     */
+    private void parseCurrent() {
+        if (!currentValid) {
+            currentValue = parse(current, currentLength);
+            currentUnparseable = currentValue != currentValue;
+            currentValid = true;
+        }
+    }
+
+    /**
+     * Parses a number the same way NumberParser does. Plain decimals with up to 15 significant digits
+     * (everything that can be typed in) are parsed exactly without allocating; anything else falls back to Double.parseDouble.
+     * @param chars the characters of the number
+     * @param length the number of characters
+     * @return the parsed value, or NaN if the text is not a number
+     */
+    private static double parse(char[] chars, int length) {
+        int i = 0;
+        boolean negative = false;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDot = false;
+        boolean seenDigit = false;
+
+        if (length > 0 && (chars[0] == '-' || chars[0] == '+')) {
+            negative = chars[0] == '-';
+            i++;
+        }
+
+        for (; i < length; i++) {
+            char c = chars[i];
+
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenDot) {
+                    scale++;
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                return parseSlow(chars, length);
+            }
+
+            if (digits > 15 || scale >= POWERS_OF_TEN.length) {
+                return parseSlow(chars, length);
+            }
+        }
+
+        //"", "-", "." and "-." are not numbers
+        if (!seenDigit) {
+            return Double.NaN;
+        }
+
+        //Both the mantissa and the power of ten are exact, so a single division is correctly rounded
+        double value = (double) mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a number with NumberParser (which doesn't throw for text that isn't a number, such as an error message).
+     * @param chars the characters of the number
+     * @param length the number of characters
+     * @return the parsed value, or NaN if the text is not a number
+     */
+    private static double parseSlow(char[] chars, int length) {
+        return NumberParser.parse(new String(chars, 0, length));
+    }
+}
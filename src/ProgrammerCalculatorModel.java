@@ -0,0 +1,618 @@
+/**
+ * A calculator model for programmers: values are whole numbers held as longs (never parsed from or formatted to text while
+ * calculating), wrapped to a word of 8, 16, 32 or 64 bits like a register, and shown in binary, octal, decimal or hexadecimal.
+ * Changing the radix only changes how the value is shown, so it is instant and exact.
+ * <p>
+ * Besides the usual operators (÷ divides whole numbers, dropping the remainder, and ^ raises to whole powers) there are the
+ * bitwise operators AND, OR and XOR, logical shifts and rotations within the word, and NOT (see not()). Values are signed two's
+ * complement numbers: decimal shows them with a sign, and the other radixes show the word's bits (so -1 in a 16-bit word is FFFF).
+ * There are no fractions, so the decimal point and percent do nothing, and functions (such as √) drop the fraction of their
+ * results.
+ */
+public class ProgrammerCalculatorModel extends CalculatorModel {
+    /**
+     * The bitwise AND operator.
+     */
+    public static final char AND = '&';
+    /**
+     * The bitwise OR operator.
+     */
+    public static final char OR = '|';
+    /**
+     * The bitwise exclusive OR operator.
+     */
+    public static final char XOR = '⊕';
+    /**
+     * Shifts the first operand left by the second.
+     */
+    public static final char SHIFT_LEFT = '«';
+    /**
+     * Shifts the first operand's bits right by the second, filling in zeros.
+     */
+    public static final char SHIFT_RIGHT = '»';
+    /**
+     * Rotates the first operand's bits left within the word by the second.
+     */
+    public static final char ROTATE_LEFT = '↺';
+    /**
+     * Rotates the first operand's bits right within the word by the second.
+     */
+    public static final char ROTATE_RIGHT = '↻';
+    /**
+     * The label of each combination of radix and word size (eg. "hex32"), by radix (binary, octal, decimal and hexadecimal)
+     * and then word size (8, 16, 32 and 64 bits).
+     */
+    private static final String[][] MODE_LABELS = new String[4][4];
+
+    static {
+        String[] radixes = {"bin", "oct", "dec", "hex"};
+        for (int r = 0; r < radixes.length; r++) {
+            for (int w = 0; w < 4; w++) {
+                MODE_LABELS[r][w] = radixes[r] + (8 << w);
+            }
+        }
+    }
+
+    /**
+     * The number of bits in a word.
+     */
+    private int wordSize = 64;
+    /**
+     * The radix values are shown in.
+     */
+    private int radix = 10;
+
+    /**
+     * The value of the result field (sign-extended from the word).
+     */
+    private long current;
+    /**
+     * The text of the result field, or null if it has to be formatted from current.
+     */
+    private String currentText;
+    /**
+     * True if the result field isn't a number (such as an error message), so currentText is all there is.
+     */
+    private boolean currentUnparseable;
+    /**
+     * The value of the first operand (sign-extended from the word).
+     */
+    private long prev;
+    /**
+     * The text of the first operand, or null if it has to be formatted from prev.
+     */
+    private String prevText;
+    /**
+     * True if the first operand isn't a number, so prevText is all there is.
+     */
+    private boolean prevUnparseable;
+    /**
+     * The current operation selected.
+     */
+    private String operation = "";
+    /**
+     * Scratch buffer that values are formatted into.
+     */
+    private final char[] formatted = new char[RadixFormatter.MAX_LENGTH];
+
+    /**
+     * Creates a programmer model with 64-bit words, showing values in decimal.
+     */
+    public ProgrammerCalculatorModel() {
+    }
+
+    @Override
+    public void changeResultField(int n) {
+        if (!this.errorMode && !currentUnparseable && n >= 0 && n < radix) {
+            long value = isFirst ? 0 : current;
+            long mask = mask(wordSize);
+
+            //Digits that don't fit in the word are ignored, like digits past maxDigits in the other models
+            if (radix == 10) {
+                long max = mask >>> 1;
+                if (value >= 0 ? value > (max - n) / 10 : value < (-max - 1 + n) / 10) {
+                    return;
+                }
+                value = value >= 0 ? value * 10 + n : value * 10 - n;
+            } else {
+                long bits = value & mask;
+                if (Long.compareUnsigned(bits, Long.divideUnsigned(mask - n, radix)) > 0) {
+                    return;
+                }
+                value = bits * radix + n;
+            }
+
+            setCurrent(value);
+            this.isFirst = false;
+        }
+    }
+
+    @Override
+    public void changeOperationField(String operation) {
+        if (!this.errorMode) {
+            calculate();
+
+            //Hold the current value for later
+            prev = current;
+            prevText = currentText;
+            prevUnparseable = currentUnparseable;
+
+            this.operation = operation;
+            this.isFirst = true;
+        }
+    }
+
+    @Override
+    protected void performCalculation() {
+        if (!this.errorMode) {
+            if (prevUnparseable || currentUnparseable) {
+                enterErrorMode(CalculatorError.INVALID_NUMBER);
+                return;
+            }
+
+            if (!operation.isEmpty()) {
+                //Go into ERROR mode if division by zero occurs (can only be removed by clearing)
+                CalculatorError error = checkOperation(current, operation.charAt(0));
+                if (error != null) {
+                    enterErrorMode(error);
+                    return;
+                }
+
+                setCurrent(applyOperation(prev, current, operation.charAt(0), wordSize));
+                this.operation = "";
+                this.isFirst = true;
+            }
+        }
+    }
+
+    /**
+     * Checks whether an operator can be applied, so that errors are found without applyOperation() throwing an exception.
+     * @param second the second operand
+     * @param operation the operation to be performed
+     * @return null if the operation can be applied, DIVIDE_BY_ZERO when dividing by zero, or UNDEFINED when shifting by a
+     *         negative amount, raising to a negative power, or the operation doesn't exist
+     */
+    public static CalculatorError checkOperation(long second, char operation) {
+        switch (operation) {
+            case '+': case '-': case '×': case AND: case OR: case XOR: case ROTATE_LEFT: case ROTATE_RIGHT:
+                return null;
+            case '÷':
+                return second == 0 ? CalculatorError.DIVIDE_BY_ZERO : null;
+            case '^': case SHIFT_LEFT: case SHIFT_RIGHT:
+                return second < 0 ? CalculatorError.UNDEFINED : null;
+            default:
+                return CalculatorError.UNDEFINED;
+        }
+    }
+
+    /**
+     * Applies an operator to two whole numbers, wrapping the result to the word.
+     * @param first the first operand
+     * @param second the second operand
+     * @param operation the operation to be performed
+     * @param wordSize the number of bits in the word
+     * @return the result, sign-extended from the word
+     * @throws ArithmeticException if checkOperation() reports an error (when dividing by zero, shifting by a negative amount,
+     *                             raising to a negative power, or the operation doesn't exist)
+     */
+    public static long applyOperation(long first, long second, char operation, int wordSize) throws ArithmeticException {
+        long mask = mask(wordSize);
+
+        switch (operation) {
+            case '+':
+                return signExtend(first + second, wordSize);
+            case '-':
+                return signExtend(first - second, wordSize);
+            case '×':
+                return signExtend(first * second, wordSize);
+            case '÷':
+                if (second == 0) {
+                    throw new ArithmeticException("Can't divide by zero.");
+                }
+                return signExtend(first / second, wordSize);
+            case '^':
+                return signExtend(power(first, second), wordSize);
+
+            case AND:
+                return first & second;
+            case OR:
+                return first | second;
+            case XOR:
+                return first ^ second;
+
+            case SHIFT_LEFT:
+                checkShift(second);
+                return second >= wordSize ? 0 : signExtend(first << second, wordSize);
+            case SHIFT_RIGHT:
+                checkShift(second);
+                return second >= wordSize ? 0 : signExtend((first & mask) >>> second, wordSize);
+
+            case ROTATE_LEFT:
+            case ROTATE_RIGHT:
+                int distance = Math.floorMod(second, wordSize);
+                if (operation == ROTATE_RIGHT) {
+                    distance = (wordSize - distance) % wordSize;
+                }
+                long bits = first & mask;
+                return distance == 0 ? first : signExtend(bits << distance | bits >>> (wordSize - distance), wordSize);
+
+            default:
+                throw new ArithmeticException("Invalid operation.");
+        }
+    }
+
+    /**
+     * Raises a whole number to a power by repeated squaring, wrapping on overflow.
+     * @param base the base
+     * @param exponent the exponent
+     * @return the power (modulo 2^64)
+     * @throws ArithmeticException if the exponent is negative
+     */
+    private static long power(long base, long exponent) throws ArithmeticException {
+        if (exponent < 0) {
+            throw new ArithmeticException("Negative exponent.");
+        }
+
+        long result = 1;
+        for (; exponent != 0; exponent >>>= 1) {
+            if ((exponent & 1) != 0) {
+                result *= base;
+            }
+            base *= base;
+        }
+        return result;
+    }
+
+    /**
+     * Checks the distance of a shift.
+     * @param distance the number of bits to shift by
+     * @throws ArithmeticException if it is negative
+     */
+    private static void checkShift(long distance) throws ArithmeticException {
+        if (distance < 0) {
+            throw new ArithmeticException("Negative shift distance.");
+        }
+    }
+
+    /**
+     * Gets the mask of a word's bits.
+     * @param wordSize the number of bits in the word
+     * @return the mask
+     */
+    private static long mask(int wordSize) {
+        return wordSize == 64 ? -1L : (1L << wordSize) - 1;
+    }
+
+    /**
+     * Wraps a value to a word, copying the word's top bit into the bits above it.
+     * @param value the value
+     * @param wordSize the number of bits in the word
+     * @return the wrapped value
+     */
+    private static long signExtend(long value, int wordSize) {
+        return value << (64 - wordSize) >> (64 - wordSize);
+    }
+
+    @Override
+    public void clearResultField() {
+        //Leave error mode first, or the zero would be kept as text like an error message
+        this.errorMode = false;
+        super.clearResultField();
+    }
+
+    /**
+     * Inverts every bit of the number in the result field.
+     */
+    public void not() {
+        if (!this.errorMode && !currentUnparseable) {
+            setCurrent(~current);
+            this.isFirst = true;
+        }
+    }
+
+    @Override
+    public void changeSign() {
+        if (!this.errorMode && !currentUnparseable) {
+            setCurrent(signExtend(-current, wordSize));
+        }
+    }
+
+    /**
+     * Does nothing, as there are no fractions in programmer mode.
+     */
+    @Override
+    public void addDecimalPoint() {
+    }
+
+    /**
+     * Does nothing, as there are no fractions in programmer mode.
+     */
+    @Override
+    public void changeToPercent() {
+    }
+
+    /**
+     * Applies a unary operation (such as a square root) to the number in the result field, dropping the fraction of the result.
+     * @param function the operation
+     * @throws IllegalArgumentException if the operation isn't unary
+     */
+    @Override
+    public void applyFunction(CalculatorOperation function) throws IllegalArgumentException {
+        if (!function.isUnary()) {
+            throw new IllegalArgumentException("Not a unary operation: " + function.getSymbol());
+        }
+
+        if (!this.errorMode) {
+            if (currentUnparseable) {
+                enterErrorMode(CalculatorError.INVALID_NUMBER);
+                return;
+            }
+
+            double result = OperationRegistry.apply(function, current, 0);
+            if (Double.isNaN(result)) {
+                enterErrorMode(CalculatorError.UNDEFINED);
+            } else {
+                showValue(result);
+            }
+        }
+    }
+
+    /**
+     * Shows a value in the result field, dropping its fraction (so the next digit starts a new number).
+     * @param value the value (eg. a statistic)
+     */
+    @Override
+    public void showValue(double value) {
+        if (!this.errorMode) {
+            if (value != value) {
+                enterErrorMode(CalculatorError.UNDEFINED);
+                return;
+            }
+
+            double limit = Math.scalb(1.0, wordSize - 1);
+            if (!(value > -limit - 1 && value < limit)) {
+                enterErrorMode(CalculatorError.OVERFLOW);
+                return;
+            }
+
+            setCurrent((long) value);
+            this.isFirst = true;
+        }
+    }
+
+    /**
+     * Sets the number of bits in a word, wrapping the values held to it.
+     * @param wordSize 8, 16, 32 or 64
+     * @throws IllegalArgumentException if the word size isn't one of those
+     */
+    public void setWordSize(int wordSize) throws IllegalArgumentException {
+        if (wordSize != 8 && wordSize != 16 && wordSize != 32 && wordSize != 64) {
+            throw new IllegalArgumentException("Invalid word size: " + wordSize);
+        }
+
+        this.wordSize = wordSize;
+        if (!currentUnparseable) {
+            setCurrent(current);
+        }
+        if (!prevUnparseable) {
+            prev = signExtend(prev, wordSize);
+            prevText = null;
+        }
+    }
+
+    /**
+     * Gets the number of bits in a word.
+     * @return 8, 16, 32 or 64
+     */
+    public int getWordSize() {
+        return wordSize;
+    }
+
+    /**
+     * Changes the radix values are shown in. The values themselves don't change, so nothing is parsed again.
+     * @param radix 2, 8, 10 or 16
+     * @throws IllegalArgumentException if the radix isn't one of those
+     */
+    public void setRadix(int radix) throws IllegalArgumentException {
+        if (radix != 2 && radix != 8 && radix != 10 && radix != 16) {
+            throw new IllegalArgumentException("Invalid radix: " + radix);
+        }
+
+        this.radix = radix;
+        if (!currentUnparseable) {
+            currentText = null;
+        }
+        if (!prevUnparseable) {
+            prevText = null;
+        }
+    }
+
+    /**
+     * Gets the radix values are shown in.
+     * @return 2, 8, 10 or 16
+     */
+    public int getRadix() {
+        return radix;
+    }
+
+    /**
+     * Gets a short label of the radix and word size being used, such as "hex32".
+     * @return the label
+     */
+    public String getModeLabel() {
+        int r = radix == 2 ? 0 : radix == 8 ? 1 : radix == 10 ? 2 : 3;
+        return MODE_LABELS[r][Integer.numberOfTrailingZeros(wordSize) - 3];
+    }
+
+    /**
+     * Gets the number in the result field.
+     * @return the value, sign-extended from the word (0 if the result field isn't a number)
+     */
+    public long getValue() {
+        return currentUnparseable ? 0 : current;
+    }
+
+    /**
+     * Sets the number in the result field, wrapping it to the word.
+     * @param value the value
+     */
+    private void setCurrent(long value) {
+        current = signExtend(value, wordSize);
+        currentText = null;
+        currentUnparseable = false;
+    }
+
+    /**
+     * Takes a snapshot of the model's state, with the values in decimal so they are restored correctly whatever radix is
+     * being shown by then.
+     * @return the snapshot
+     */
+    @Override
+    public CalculatorState saveState() {
+        return new CalculatorState(currentUnparseable ? currentText : Long.toString(current),
+                prevUnparseable ? prevText : Long.toString(prev), operation, this.isFirst, this.errorMode);
+    }
+
+    @Override
+    public void restoreState(CalculatorState state) {
+        //Values saved with a larger word size wrap to the current one
+        setCurrentResultField(state.getCurrentResultField(), 10, 64);
+        setPrevResultField(state.getPrevResultField(), 10, 64);
+        this.operation = state.getOperationField();
+        this.isFirst = state.isFirst();
+        this.errorMode = state.isErrorMode();
+    }
+
+    @Override
+    public String getCurrentResultField() {
+        if (currentText == null) {
+            currentText = new String(formatted, 0, RadixFormatter.format(current, radix, wordSize, formatted, 0));
+        }
+        return currentText;
+    }
+
+    @Override
+    public void setCurrentResultField(String currentResultField) {
+        //Error messages could look like numbers in hexadecimal
+        if (this.errorMode) {
+            current = 0;
+            currentText = currentResultField;
+            currentUnparseable = true;
+        } else {
+            setCurrentResultField(currentResultField, radix, wordSize);
+        }
+    }
+
+    /**
+     * Sets the result field from text in a given radix, wrapping it to the word.
+     * @param text the text
+     * @param radix the radix it is in
+     * @param wordSize the number of bits in the word the text must fit in
+     */
+    private void setCurrentResultField(String text, int radix, int wordSize) {
+        if (fits(text, radix, wordSize)) {
+            setCurrent(parse(text, radix, wordSize));
+        } else {
+            current = 0;
+            currentText = text;
+            currentUnparseable = true;
+        }
+    }
+
+    @Override
+    public String getPrevResultField() {
+        if (prevText == null) {
+            prevText = new String(formatted, 0, RadixFormatter.format(prev, radix, wordSize, formatted, 0));
+        }
+        return prevText;
+    }
+
+    @Override
+    public void setPrevResultField(String prevResultField) {
+        setPrevResultField(prevResultField, radix, wordSize);
+    }
+
+    /**
+     * Sets the first operand from text in a given radix, wrapping it to the word.
+     * @param text the text
+     * @param radix the radix it is in
+     * @param wordSize the number of bits in the word the text must fit in
+     */
+    private void setPrevResultField(String text, int radix, int wordSize) {
+        if (fits(text, radix, wordSize)) {
+            prev = signExtend(parse(text, radix, wordSize), this.wordSize);
+            prevText = null;
+            prevUnparseable = false;
+        } else {
+            prev = 0;
+            prevText = text;
+            prevUnparseable = true;
+        }
+    }
+
+    @Override
+    public String getOperationField() {
+        return operation;
+    }
+
+    @Override
+    public void setOperationField(String operationField) {
+        this.operation = operationField;
+    }
+
+    /**
+     * Checks whether some text is a number that fits in a word, the way it is shown (signed in decimal, the word's bits in the
+     * other radixes). Error messages fail this check instead of making parse() throw an exception.
+     * @param text the text
+     * @param radix the radix it is in
+     * @param wordSize the number of bits in the word it must fit in
+     * @return true if parse() can parse the text
+     */
+    private static boolean fits(String text, int radix, int wordSize) {
+        int length = text.length();
+        int start = length > 0 && (text.charAt(0) == '+' || radix == 10 && text.charAt(0) == '-') ? 1 : 0;
+        if (start == length) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            if (RadixFormatter.digit(text.charAt(i), radix) < 0) {
+                return false;
+            }
+        }
+
+        //Leading zeros don't take up any room
+        while (start < length - 1 && text.charAt(start) == '0') {
+            start++;
+        }
+
+        if (radix != 10) {
+            int bits = (length - start - 1) * Integer.numberOfTrailingZeros(radix)
+                    + 32 - Integer.numberOfLeadingZeros(RadixFormatter.digit(text.charAt(start), radix));
+            return bits <= wordSize;
+        }
+
+        //Compare the digits with those of the largest magnitude the word holds with the same sign
+        long largest = text.charAt(0) == '-' ? 1L << (wordSize - 1) : (1L << (wordSize - 1)) - 1;
+        String limit = Long.toUnsignedString(largest);
+        if (length - start != limit.length()) {
+            return length - start < limit.length();
+        }
+        for (int i = 0; i < limit.length(); i++) {
+            if (text.charAt(start + i) != limit.charAt(i)) {
+                return text.charAt(start + i) < limit.charAt(i);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a number the way it is shown (signed in decimal, the word's bits in the other radixes).
+     * @param text the text, which must fit in the word (see fits())
+     * @param radix the radix it is in
+     * @param wordSize the number of bits in the word it fits in
+     * @return the value, sign-extended from the word
+     */
+    private static long parse(String text, int radix, int wordSize) {
+        return radix == 10 ? Long.parseLong(text) : signExtend(Long.parseUnsignedLong(text, radix), wordSize);
+    }
+}
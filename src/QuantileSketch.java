@@ -0,0 +1,353 @@
+import java.util.Arrays;
+
+/**
+ * A streaming sketch of a distribution of values, which estimates any quantile to within a fixed relative error while using
+ * bounded memory however many values are added (the DDSketch algorithm). Values are counted in buckets whose bounds grow
+ * geometrically (each is gamma times the last, with gamma = (1 + a) / (1 - a) for relative accuracy a), so a quantile is
+ * estimated from the bucket it falls in. Positive and negative values are counted in separate sets of buckets by magnitude.
+ * Each set keeps at most a fixed number of buckets: if the values span more, the buckets of the smallest magnitudes are
+ * collapsed together, so only quantiles among the very smallest magnitudes lose accuracy (with the default 4096 buckets and
+ * 1% accuracy, that only happens when values span more than 35 orders of magnitude).
+ * <p>
+ * Sketches can be merged, and merging gives exactly the same buckets whatever order the values were added in, so sketches
+ * built in parallel give the same quantiles as one built sequentially. Sketches are not thread-safe.
+ */
+public final class QuantileSketch {
+    /**
+     * The default relative accuracy of the quantiles.
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    /**
+     * The default maximum number of buckets for each sign.
+     */
+    public static final int DEFAULT_MAX_BUCKETS = 4096;
+
+    /**
+     * The relative accuracy of the quantiles.
+     */
+    private final double relativeAccuracy;
+    /**
+     * The ratio between the bounds of consecutive buckets.
+     */
+    private final double gamma;
+    /**
+     * The natural logarithm of gamma.
+     */
+    private final double logGamma;
+    /**
+     * The smallest magnitude counted in a bucket (smaller values are counted as zero).
+     */
+    private final double minIndexable;
+    /**
+     * The buckets of the positive values.
+     */
+    private final BucketStore positive;
+    /**
+     * The buckets of the negative values (by magnitude).
+     */
+    private final BucketStore negative;
+    /**
+     * The number of values counted as zero.
+     */
+    private long zeroCount;
+    /**
+     * The smallest value added.
+     */
+    private double min = Double.POSITIVE_INFINITY;
+    /**
+     * The largest value added.
+     */
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Creates an empty sketch with the default accuracy and maximum number of buckets.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    /**
+     * Creates an empty sketch.
+     * @param relativeAccuracy the relative accuracy of the quantiles (eg. 0.01 for 1%)
+     * @param maxBuckets the maximum number of buckets for each sign
+     * @throws IllegalArgumentException if the accuracy isn't between 0 and 1 or there are fewer than two buckets
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) throws IllegalArgumentException {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1.");
+        }
+        if (maxBuckets < 2) {
+            throw new IllegalArgumentException("There must be at least two buckets.");
+        }
+
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.minIndexable = Double.MIN_NORMAL * gamma;
+        this.positive = new BucketStore(maxBuckets);
+        this.negative = new BucketStore(maxBuckets);
+    }
+
+    /**
+     * Adds a value to the sketch.
+     * @param value the value (NaN and infinite values are ignored)
+     */
+    public void add(double value) {
+        if (!Double.isFinite(value)) {
+            return;
+        }
+
+        if (value > minIndexable) {
+            positive.add(index(value), 1);
+        } else if (value < -minIndexable) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds every value of another sketch to this one.
+     * @param other the other sketch (which must have the same accuracy, and isn't changed)
+     * @throws IllegalArgumentException if the sketches have different accuracies
+     */
+    public void merge(QuantileSketch other) throws IllegalArgumentException {
+        if (other.gamma != gamma) {
+            throw new IllegalArgumentException("Sketches with different accuracies can't be merged.");
+        }
+
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Removes every value from the sketch.
+     */
+    public void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Gets the number of values added.
+     * @return the number of values
+     */
+    public long getCount() {
+        return positive.total + negative.total + zeroCount;
+    }
+
+    /**
+     * Gets the relative accuracy of the quantiles.
+     * @return the relative accuracy
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Estimates a quantile of the values added.
+     * @param quantile the quantile, from 0 (the smallest value) to 1 (the largest)
+     * @return the estimate, within the relative accuracy of the true value (NaN if no values have been added)
+     * @throws IllegalArgumentException if the quantile isn't between 0 and 1
+     */
+    public double getQuantile(double quantile) throws IllegalArgumentException {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+        }
+
+        long count = getCount();
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        //The value of this rank (counting from 0) is the estimate, and the smallest and largest values are known exactly
+        long rank = (long) (quantile * (count - 1));
+        if (rank == 0) {
+            return min;
+        }
+        if (rank == count - 1) {
+            return max;
+        }
+
+        double estimate;
+
+        if (rank < negative.total) {
+            //Negative values are ranked from the largest magnitude down
+            estimate = -value(negative.indexOfRank(negative.total - 1 - rank));
+        } else if (rank < negative.total + zeroCount) {
+            estimate = 0;
+        } else {
+            estimate = value(positive.indexOfRank(rank - negative.total - zeroCount));
+        }
+
+        return Math.max(min, Math.min(max, estimate));
+    }
+
+    /**
+     * Gets the bucket a positive value is counted in (bucket i holds values from gamma^(i-1) up to gamma^i).
+     * @param value the value
+     * @return the bucket's index
+     */
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * Gets the value that represents a bucket, which is within the relative accuracy of every value in it.
+     * @param index the bucket's index
+     * @return the value
+     */
+    private double value(int index) {
+        return Math.exp(index * logGamma) * 2 / (gamma + 1);
+    }
+
+    /**
+     * The counts of a contiguous range of buckets, held in an array that grows up to a maximum number of buckets.
+     */
+    private static final class BucketStore {
+        /**
+         * The initial number of buckets in the array.
+         */
+        private static final int INITIAL_CAPACITY = 64;
+
+        /**
+         * The maximum number of buckets.
+         */
+        private final int maxBuckets;
+        /**
+         * The count of each bucket, starting with bucket offset (null until something is added).
+         */
+        private long[] counts;
+        /**
+         * The index of the bucket counted in counts[0].
+         */
+        private int offset;
+        /**
+         * The index of the lowest bucket in use.
+         */
+        private int minIndex = Integer.MAX_VALUE;
+        /**
+         * The index of the highest bucket in use.
+         */
+        private int maxIndex = Integer.MIN_VALUE;
+        /**
+         * The sum of the counts.
+         */
+        private long total;
+
+        /**
+         * Creates an empty store.
+         * @param maxBuckets the maximum number of buckets
+         */
+        private BucketStore(int maxBuckets) {
+            this.maxBuckets = maxBuckets;
+        }
+
+        /**
+         * Adds to the count of a bucket.
+         * @param index the bucket's index
+         * @param count the amount to add
+         */
+        private void add(int index, long count) {
+            if (index < minIndex || index > maxIndex) {
+                index = extendRange(index);
+            }
+            counts[index - offset] += count;
+            total += count;
+        }
+
+        /**
+         * Adds the counts of another store to this one.
+         * @param other the other store
+         */
+        private void merge(BucketStore other) {
+            for (int index = other.minIndex; index <= other.maxIndex; index++) {
+                long count = other.counts[index - other.offset];
+                if (count != 0) {
+                    add(index, count);
+                }
+            }
+        }
+
+        /**
+         * Removes every count (keeping the array for reuse).
+         */
+        private void clear() {
+            if (counts != null) {
+                Arrays.fill(counts, 0);
+            }
+            minIndex = Integer.MAX_VALUE;
+            maxIndex = Integer.MIN_VALUE;
+            total = 0;
+        }
+
+        /**
+         * Finds the bucket a rank falls in.
+         * @param rank the rank, counting from 0 (less than total)
+         * @return the bucket's index
+         */
+        private int indexOfRank(long rank) {
+            long seen = 0;
+            for (int index = minIndex; index < maxIndex; index++) {
+                seen += counts[index - offset];
+                if (seen > rank) {
+                    return index;
+                }
+            }
+            return maxIndex;
+        }
+
+        /**
+         * Extends the range of buckets in use to take in a bucket outside it, moving the buckets to a bigger array or to the
+         * middle of the array if they no longer fit where they are. If the range would then be wider than the maximum, the lowest
+         * buckets are collapsed into the lowest one that is kept.
+         * @param index the bucket's index
+         * @return the index of the bucket to count in (which is higher than the given one if it has been collapsed)
+         */
+        private int extendRange(int index) {
+            int low = Math.min(index, minIndex);
+            int high = Math.max(index, maxIndex);
+            if ((long) high - low >= maxBuckets) {
+                low = high - maxBuckets + 1;
+            }
+
+            int capacity = counts == null ? INITIAL_CAPACITY : counts.length;
+            while (capacity < high - low + 1) {
+                capacity *= 2;
+            }
+            capacity = Math.min(capacity, maxBuckets);
+
+            if (counts == null || capacity != counts.length || low < offset || high >= offset + capacity) {
+                //Centre the range, leaving room to grow both ways
+                int newOffset = low - (capacity - (high - low + 1)) / 2;
+                long[] newCounts = new long[capacity];
+                for (int i = minIndex; i <= maxIndex; i++) {
+                    newCounts[Math.max(i, low) - newOffset] += counts[i - offset];
+                }
+                counts = newCounts;
+                offset = newOffset;
+
+            } else if (low > minIndex) {
+                long collapsed = 0;
+                for (int i = minIndex; i < low; i++) {
+                    collapsed += counts[i - offset];
+                    counts[i - offset] = 0;
+                }
+                counts[low - offset] += collapsed;
+            }
+
+            minIndex = low;
+            maxIndex = high;
+            return Math.max(index, low);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Formats integers in binary, octal, decimal or hexadecimal straight into a caller supplied char buffer, without allocating
+ * (unlike Long.toString(), Long.toHexString() and friends, which each build a new String). Decimal is signed, and the other
+ * radixes show the two's complement bits of the value's word (so -1 in a 16-bit word is FFFF in hexadecimal), the way
+ * programmers' calculators and debuggers do.
+ */
+public final class RadixFormatter {
+    /**
+     * The longest text format can write (64 binary digits).
+     */
+    public static final int MAX_LENGTH = 64;
+    /**
+     * The digits, by value (hexadecimal digits are upper case).
+     */
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private RadixFormatter() {
+    }
+
+    /**
+     * Formats a value into a buffer.
+     * @param value the value (sign-extended from its word)
+     * @param radix 2, 8, 10 or 16
+     * @param wordSize the number of bits in the value's word (from 1 to 64)
+     * @param buffer the buffer to write into (it must have room for MAX_LENGTH characters after the offset)
+     * @param offset the index to start writing at
+     * @return the number of characters written
+     */
+    public static int format(long value, int radix, int wordSize, char[] buffer, int offset) {
+        //Digits are written backwards from the end of the longest possible text, then moved to the offset
+        int end = offset + MAX_LENGTH;
+        int position = end;
+
+        if (radix == 10) {
+            //Worked on as a negative number, as -Long.MIN_VALUE doesn't fit in a long
+            long negative = value < 0 ? value : -value;
+            do {
+                buffer[--position] = DIGITS[(int) -(negative % 10)];
+                negative /= 10;
+            } while (negative != 0);
+            if (value < 0) {
+                buffer[--position] = '-';
+            }
+
+        } else {
+            int shift = Integer.numberOfTrailingZeros(radix);
+            int mask = radix - 1;
+            long bits = wordSize == 64 ? value : value & ((1L << wordSize) - 1);
+            do {
+                buffer[--position] = DIGITS[(int) bits & mask];
+                bits >>>= shift;
+            } while (bits != 0);
+        }
+
+        int length = end - position;
+        System.arraycopy(buffer, position, buffer, offset, length);
+        return length;
+    }
+
+    /**
+     * Gets the value of a digit.
+     * @param c the digit (hexadecimal digits can be upper or lower case)
+     * @param radix 2, 8, 10 or 16
+     * @return the value, or -1 if the character isn't a digit in that radix
+     */
+    public static int digit(char c, int radix) {
+        int value = c >= '0' && c <= '9' ? c - '0'
+                : c >= 'A' && c <= 'F' ? c - 'A' + 10
+                : c >= 'a' && c <= 'f' ? c - 'a' + 10
+                : -1;
+        return value < radix ? value : -1;
+    }
+}
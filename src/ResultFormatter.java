@@ -0,0 +1,256 @@
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formats calculation results exactly like new DecimalFormat("#.#####") (at most 5 fraction digits, rounded HALF_EVEN),
+ * but writes straight into a caller supplied char buffer instead of allocating a new formatter, StringBuffer and String each time.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class ResultFormatter {
+    /**
+     * The pattern whose output this formatter reproduces.
+     */
+    public static final String PATTERN = "#.#####";
+    /**
+     * The longest text format can write (the integer digits of Double.MAX_VALUE, a sign, a separator and 5 fraction digits, with room for affixes).
+     */
+    public static final int MAX_LENGTH = 330;
+    /**
+     * The shared formatter for the default locale.
+     */
+    private static final ResultFormatter INSTANCE = new ResultFormatter(Locale.getDefault(Locale.Category.FORMAT));
+
+    /**
+     * 2^32: non-integers below this are formatted on the fast path.
+     */
+    private static final double FAST_FRACTION_LIMIT = 0x1p32;
+    /**
+     * 2^53: integers below this are formatted on the fast path.
+     */
+    private static final double FAST_INTEGER_LIMIT = 0x1p53;
+    /**
+     * 10^5, the scale of the 5 fraction digits.
+     */
+    private static final double FRACTION_SCALE = 1e5;
+
+    /**
+     * The localized digit zero.
+     */
+    private final char zeroDigit;
+    /**
+     * The localized decimal separator.
+     */
+    private final char decimalSeparator;
+    /**
+     * The text before a negative number.
+     */
+    private final char[] negativePrefix;
+    /**
+     * The text after a negative number.
+     */
+    private final char[] negativeSuffix;
+    /**
+     * The text for infinity (without a sign).
+     */
+    private final char[] infinity;
+    /**
+     * The text for NaN.
+     */
+    private final char[] nan;
+    /**
+     * The locale this formatter was made for.
+     */
+    private final Locale locale;
+    /**
+     * DecimalFormat instances for the rare values that aren't handled on the fast path (DecimalFormat isn't thread-safe).
+     */
+    private final ThreadLocal<DecimalFormat> fallback;
+    /**
+     * Scratch buffers for format(double).
+     */
+    private final ThreadLocal<char[]> buffers = ThreadLocal.withInitial(() -> new char[MAX_LENGTH]);
+
+    /**
+     * Creates a formatter matching DecimalFormat's output for a locale.
+     * @param locale the locale whose symbols are used
+     */
+    public ResultFormatter(Locale locale) {
+        this.locale = locale;
+        this.fallback = ThreadLocal.withInitial(() -> new DecimalFormat(PATTERN, DecimalFormatSymbols.getInstance(this.locale)));
+
+        //Take every symbol from what DecimalFormat itself produces, so the output always matches
+        DecimalFormat format = new DecimalFormat(PATTERN, DecimalFormatSymbols.getInstance(locale));
+        String zero = format.format(0);
+        String half = format.format(0.5);
+        String negativeOne = format.format(-1);
+        String one = format.format(1);
+        int oneIndex = negativeOne.indexOf(one);
+
+        this.zeroDigit = zero.charAt(zero.length() - 1);
+        this.decimalSeparator = half.charAt(half.length() - 2);
+        this.negativePrefix = negativeOne.substring(0, oneIndex).toCharArray();
+        this.negativeSuffix = negativeOne.substring(oneIndex + one.length()).toCharArray();
+        this.infinity = format.format(Double.POSITIVE_INFINITY).toCharArray();
+        this.nan = format.format(Double.NaN).toCharArray();
+    }
+
+    /**
+     * Gets the shared formatter for the default locale.
+     * @return the shared formatter
+     */
+    public static ResultFormatter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Formats a value into a String.
+     * @param value the value to format
+     * @return the formatted text
+     */
+    public String format(double value) {
+        char[] buffer = buffers.get();
+        int length = format(value, buffer, 0);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Formats a value into a char buffer.
+     * @param value the value to format
+     * @param dest the buffer to write to (MAX_LENGTH characters from offset are always enough)
+     * @param offset the index to start writing at
+     * @return the number of characters written
+     */
+    public int format(double value, char[] dest, int offset) {
+        if (value != value) {
+            return put(nan, dest, offset);
+        }
+
+        boolean negative = Double.doubleToRawLongBits(value) < 0; //Includes -0.0, which DecimalFormat shows as "-0"
+        double magnitude = Math.abs(value);
+        int end = offset;
+
+        if (magnitude == Double.POSITIVE_INFINITY) {
+            if (negative) {
+                end += put(negativePrefix, dest, end);
+            }
+            end += put(infinity, dest, end);
+            if (negative) {
+                end += put(negativeSuffix, dest, end);
+            }
+            return end - offset;
+        }
+
+        if (magnitude >= FAST_INTEGER_LIMIT) {
+            return formatSlow(value, dest, offset);
+        }
+
+        long integerPart = (long) magnitude;
+        double fractionPart = magnitude - integerPart; //Exact, since it only removes the high bits
+        long fraction = 0;
+
+        if (fractionPart != 0) {
+            if (magnitude >= FAST_FRACTION_LIMIT) {
+                return formatSlow(value, dest, offset);
+            }
+
+            //The exact value of fractionPart * 10^5 is scaled + error
+            double scaled = fractionPart * FRACTION_SCALE;
+            double error = Math.fma(fractionPart, FRACTION_SCALE, -scaled);
+            double floor = Math.floor(scaled);
+            double remainder = scaled - floor;
+            fraction = (long) floor;
+
+            if (remainder > 0.75) {
+                fraction++;
+            } else if (remainder >= 0.25) {
+                double distance = (remainder - 0.5) + error;
+
+                //Too close to a tie to be sure how DecimalFormat's shortest-digits rounding breaks it
+                if (Math.abs(distance) <= Math.ulp(magnitude) * FRACTION_SCALE) {
+                    return formatSlow(value, dest, offset);
+                }
+                if (distance > 0) {
+                    fraction++;
+                }
+            }
+
+            if (fraction == (long) FRACTION_SCALE) {
+                integerPart++;
+                fraction = 0;
+            }
+        }
+
+        if (negative) {
+            end += put(negativePrefix, dest, end);
+        }
+
+        end += putDigits(integerPart, dest, end);
+
+        if (fraction != 0) {
+            dest[end++] = decimalSeparator;
+
+            //Write all 5 digits, then drop the trailing zeros
+            for (int i = 4; i >= 0; i--) {
+                dest[end + i] = (char) (zeroDigit + fraction % 10);
+                fraction /= 10;
+            }
+            end += 5;
+            while (dest[end - 1] == zeroDigit) {
+                end--;
+            }
+        }
+
+        if (negative) {
+            end += put(negativeSuffix, dest, end);
+        }
+
+        return end - offset;
+    }
+
+    /**
+     * Formats a value with DecimalFormat, for the values the fast path can't be sure to match.
+     * @param value the value to format
+     * @param dest the buffer to write to
+     * @param offset the index to start writing at
+     * @return the number of characters written
+     */
+    private int formatSlow(double value, char[] dest, int offset) {
+        String text = fallback.get().format(value);
+        text.getChars(0, text.length(), dest, offset);
+        return text.length();
+    }
+
+    /**
+     * Writes the digits of a non-negative number.
+     * @param number the number
+     * @param dest the buffer to write to
+     * @param offset the index to start writing at
+     * @return the number of characters written
+     */
+    private int putDigits(long number, char[] dest, int offset) {
+        int length = 1;
+        for (long n = number / 10; n != 0; n /= 10) {
+            length++;
+        }
+
+        for (int i = offset + length - 1; i >= offset; i--) {
+            dest[i] = (char) (zeroDigit + number % 10);
+            number /= 10;
+        }
+
+        return length;
+    }
+
+    /**
+     * Copies some characters into a buffer.
+     * @param chars the characters
+     * @param dest the buffer to write to
+     * @param offset the index to start writing at
+     * @return the number of characters written
+     */
+    private static int put(char[] chars, char[] dest, int offset) {
+        System.arraycopy(chars, 0, dest, offset, chars.length);
+        return chars.length;
+    }
+}
@@ -0,0 +1,338 @@
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Shows the result, right-aligned, like a read-only text field, but built for very long numbers (tens of thousands of digits):
+ * only the characters inside the area being painted are drawn, each from a GlyphCache, so painting costs the same however long
+ * the text is. Scrolled through a JScrollPane (it implements Scrollable), scrolling by one digit at a time.
+ * <p>
+ * Digits are drawn in cells as wide as the widest digit, and the integer digits are grouped (in threes, or fours for other
+ * radixes) by a small gap instead of a separator character. Setting the text keeps a reference to it instead of copying it,
+ * and finds where each character goes with a single scan that only remembers the few characters that aren't digits, so the
+ * position of any character, and the character at any position, are found in O(log n) without laying out the text.
+ */
+public final class ResultRenderer extends JComponent implements Scrollable {
+    /**
+     * The version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * The number of digits in a group for decimal numbers.
+     */
+    public static final int DECIMAL_GROUP_SIZE = 3;
+    /**
+     * The number of digits in a group for numbers in the other radixes.
+     */
+    public static final int RADIX_GROUP_SIZE = 4;
+    /**
+     * The width of the gap between groups, as a fraction of the width of a digit.
+     */
+    private static final float GROUP_GAP = 0.3f;
+    /**
+     * The space left and right of the text.
+     */
+    private static final int PADDING = 5;
+
+    /**
+     * The text shown.
+     */
+    private String text = "";
+    /**
+     * The radix the digits are in.
+     */
+    private int radix = 10;
+    /**
+     * The glyphs of the font (not serialized, as they are looked up again from the font).
+     */
+    private transient GlyphCache glyphs;
+    /**
+     * The index of the first integer digit that is grouped (after the sign).
+     */
+    private int groupStart;
+    /**
+     * The index after the last integer digit that is grouped (0 if the text isn't a number).
+     */
+    private int groupEnd;
+    /**
+     * The indexes of the characters that aren't digits, in order.
+     */
+    private int[] unevenIndexes = new int[8];
+    /**
+     * How much wider than a digit the characters that aren't digits are, in total, before each of unevenIndexes (and after
+     * the last of them, at unevenCount).
+     */
+    private float[] unevenOffsets = new float[9];
+    /**
+     * The number of characters that aren't digits.
+     */
+    private int unevenCount;
+    /**
+     * Whether a scroll to the end of the text is waiting for the new size to be laid out.
+     */
+    private boolean scrollToEndPending;
+
+    /**
+     * Creates an empty renderer.
+     */
+    public ResultRenderer() {
+        setOpaque(true);
+        Font font = UIManager.getFont("TextField.font");
+        setFont(font != null ? font : new Font(Font.DIALOG, Font.PLAIN, 12));
+    }
+
+    /**
+     * Changes the text shown, and scrolls to its end (the digits least significant, like a text field's caret would).
+     * @param text the text
+     */
+    public void setText(String text) {
+        this.text = text == null ? "" : text;
+        layoutText();
+        revalidate();
+        repaint();
+
+        //Scrolled after the revalidation (which is also run later) has given the component its new size
+        if (!scrollToEndPending) {
+            scrollToEndPending = true;
+            SwingUtilities.invokeLater(() -> {
+                scrollToEndPending = false;
+                scrollRectToVisible(new Rectangle(getWidth() - 1, 0, 1, getHeight()));
+            });
+        }
+    }
+
+    /**
+     * Gets the text shown.
+     * @return the text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Changes the radix of the numbers shown, which decides what counts as a digit and how digits are grouped.
+     * @param radix the radix (2 to 36)
+     */
+    public void setRadix(int radix) {
+        if (radix < Character.MIN_RADIX || radix > Character.MAX_RADIX) {
+            throw new IllegalArgumentException("Invalid radix: " + radix);
+        }
+        if (radix != this.radix) {
+            this.radix = radix;
+            layoutText();
+            revalidate();
+            repaint();
+        }
+    }
+
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        if (font == null) {
+            return;
+        }
+        glyphs = GlyphCache.get(font);
+        layoutText();
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Restores a serialized renderer, looking up the glyphs of its font again.
+     * @param in the stream to read from
+     * @throws IOException if the stream can't be read
+     * @throws ClassNotFoundException if the class of a serialized object can't be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        glyphs = GlyphCache.get(getFont());
+    }
+
+    /**
+     * Finds the integer digits to group and the characters that aren't digits (the only ones that don't fill a cell exactly).
+     */
+    private void layoutText() {
+        int length = text.length();
+
+        //Only the integer part of something that looks like a number is grouped (so error messages aren't)
+        groupStart = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+        groupEnd = groupStart;
+        while (groupEnd < length && Character.digit(text.charAt(groupEnd), radix) >= 0) {
+            groupEnd++;
+        }
+        if (groupEnd < length && text.charAt(groupEnd) != '.' && (radix != 10 || (text.charAt(groupEnd) | 0x20) != 'e')) {
+            groupEnd = 0;
+        }
+
+        float digitAdvance = glyphs.getDigitAdvance();
+        float offset = 0;
+        unevenCount = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                continue;
+            }
+
+            if (unevenCount == unevenIndexes.length) {
+                unevenIndexes = Arrays.copyOf(unevenIndexes, unevenCount * 2);
+                unevenOffsets = Arrays.copyOf(unevenOffsets, unevenCount * 2 + 1);
+            }
+            unevenIndexes[unevenCount] = i;
+            unevenOffsets[unevenCount] = offset;
+            unevenCount++;
+            offset += glyphs.getAdvance(c) - digitAdvance;
+        }
+        unevenOffsets[unevenCount] = offset;
+    }
+
+    /**
+     * Gets the number of gaps between groups before a character.
+     * @param index the character's index
+     * @return the number of gaps
+     */
+    private int gapsBefore(int index) {
+        int groupSize = radix == 10 ? DECIMAL_GROUP_SIZE : RADIX_GROUP_SIZE;
+        if (groupEnd - groupStart <= groupSize || index <= groupStart) {
+            return 0;
+        }
+
+        //A gap comes before every digit (other than the first) that has a multiple of groupSize digits from it to the end
+        int total = (groupEnd - groupStart - 1) / groupSize;
+        if (index >= groupEnd) {
+            return total;
+        }
+        int after = (groupEnd - index + groupSize - 1) / groupSize;
+        return Math.max(0, total - after + 1);
+    }
+
+    /**
+     * Gets where a character starts, from the start of the text.
+     * @param index the character's index (the length of the text for the end of the text)
+     * @return the position
+     */
+    private float offsetOf(int index) {
+        //Characters that aren't digits before the index shift it by how much wider than a digit they are
+        int uneven = Arrays.binarySearch(unevenIndexes, 0, unevenCount, index);
+        if (uneven < 0) {
+            uneven = -uneven - 1;
+        }
+        return index * glyphs.getDigitAdvance() + unevenOffsets[uneven] + gapsBefore(index) * glyphs.getDigitAdvance() * GROUP_GAP;
+    }
+
+    /**
+     * Finds the character at a position.
+     * @param offset the position, from the start of the text
+     * @return the index of the character (0 before the text, the length of the text after it)
+     */
+    private int indexAt(float offset) {
+        int low = 0;
+        int high = text.length();
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsetOf(middle) <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets where the text starts in the component (right-aligned when it is narrower than the component).
+     * @return the x coordinate
+     */
+    private float textStart() {
+        Insets insets = getInsets();
+        float available = getWidth() - insets.left - insets.right - 2 * PADDING;
+        return insets.left + PADDING + Math.max(0, available - offsetOf(text.length()));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            if (isOpaque()) {
+                g2.setColor(getBackground());
+                g2.fillRect(0, 0, getWidth(), getHeight());
+            }
+
+            Object hints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+            if (hints instanceof Map<?, ?> map) {
+                g2.addRenderingHints(map);
+            } else {
+                g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            }
+            g2.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            g2.setColor(getForeground());
+
+            //Only the characters inside the clip are drawn
+            Rectangle clip = g2.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
+            }
+            float start = textStart();
+            int first = Math.max(0, indexAt(clip.x - start) - 1);
+            int last = Math.min(text.length(), indexAt(clip.x + clip.width - start) + 1);
+
+            Insets insets = getInsets();
+            float textHeight = glyphs.getAscent() + glyphs.getDescent();
+            float baseline = insets.top + (getHeight() - insets.top - insets.bottom - textHeight) / 2 + glyphs.getAscent();
+            float digitAdvance = glyphs.getDigitAdvance();
+
+            for (int i = first; i < last; i++) {
+                char c = text.charAt(i);
+                float x = start + offsetOf(i);
+
+                //Digits are centred in their cells
+                if (c >= '0' && c <= '9') {
+                    x += (digitAdvance - glyphs.getAdvance(c)) / 2;
+                }
+                g2.drawGlyphVector(glyphs.getGlyph(c), x, baseline);
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet()) {
+            return super.getPreferredSize();
+        }
+        Insets insets = getInsets();
+        int width = (int) Math.ceil(offsetOf(text.length())) + 2 * PADDING + insets.left + insets.right;
+        int height = (int) Math.ceil(glyphs.getAscent() + glyphs.getDescent()) + 2 * PADDING + insets.top + insets.bottom;
+        return new Dimension(width, height);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.HORIZONTAL ? Math.max(1, Math.round(glyphs.getDigitAdvance())) : 1;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        int digit = getScrollableUnitIncrement(visibleRect, orientation, direction);
+        return orientation == SwingConstants.HORIZONTAL ? Math.max(digit, visibleRect.width - digit) : visibleRect.height;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        //Fills the viewport while the text fits (so it can be right-aligned), and scrolls once it doesn't
+        return getParent() instanceof JViewport viewport && viewport.getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return true;
+    }
+}
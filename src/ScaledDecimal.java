@@ -0,0 +1,607 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * A mutable exact decimal number for calculator arithmetic.
+ * While the value fits, it is kept as a scaled long (unscaled × 10^-scale) and add, subtract, multiply and divide run as plain
+ * long arithmetic without allocating. A quotient that doesn't terminate is rounded with long division too, as long as the
+ * configured MathContext's precision fits in a long (18 digits or fewer). Only when an operation would overflow 64 bits, need
+ * more than 18 fraction digits, or give a quotient that doesn't terminate and has to be rounded to more digits than that, does
+ * it switch to BigDecimal (rounded with the configured MathContext), and it switches back to the long form as soon as the
+ * value fits again.
+ */
+public final class ScaledDecimal {
+    /**
+     * The most fraction digits kept on the long fast path.
+     */
+    public static final int MAX_SCALE = 18;
+    /**
+     * Powers of ten that fit in a long.
+     */
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    /**
+     * The precision and rounding used when falling back to BigDecimal.
+     */
+    private final MathContext mathContext;
+    /**
+     * The unscaled value on the fast path.
+     */
+    private long unscaled;
+    /**
+     * The number of fraction digits on the fast path (may be negative after rounding to a small precision).
+     */
+    private int scale;
+    /**
+     * The value when it doesn't fit the fast path, otherwise null.
+     */
+    private BigDecimal big;
+
+    /**
+     * Creates a decimal with the value zero.
+     * @param mathContext the precision and rounding used when results have to be rounded
+     */
+    public ScaledDecimal(MathContext mathContext) {
+        this.mathContext = mathContext;
+    }
+
+    /**
+     * Sets the value to unscaled × 10^-scale.
+     * @param unscaled the unscaled value
+     * @param scale the number of fraction digits
+     * @return this decimal
+     */
+    public ScaledDecimal set(long unscaled, int scale) {
+        if (unscaled == Long.MIN_VALUE || scale > MAX_SCALE || scale < -MAX_SCALE) {
+            return set(BigDecimal.valueOf(unscaled, scale));
+        }
+
+        this.unscaled = unscaled;
+        this.scale = scale;
+        this.big = null;
+        return this;
+    }
+
+    /**
+     * Sets the value to a BigDecimal, using the fast path if it fits.
+     * @param value the new value
+     * @return this decimal
+     */
+    public ScaledDecimal set(BigDecimal value) {
+        if (value.precision() <= MAX_SCALE && value.scale() <= MAX_SCALE && value.scale() >= -MAX_SCALE) {
+            this.unscaled = value.unscaledValue().longValue();
+            this.scale = value.scale();
+            this.big = null;
+        } else {
+            this.big = value;
+        }
+        return this;
+    }
+
+    /**
+     * Copies the value of another decimal.
+     * @param other the decimal to copy
+     * @return this decimal
+     */
+    public ScaledDecimal set(ScaledDecimal other) {
+        this.unscaled = other.unscaled;
+        this.scale = other.scale;
+        this.big = other.big;
+        return this;
+    }
+
+    /**
+     * Parses a plain decimal number such as "-12.50" (anything BigDecimal accepts is also understood, but more slowly).
+     * @param text the text to parse
+     * @return true if the text was a number, false if it wasn't (the value is then unchanged)
+     */
+    public boolean parse(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        boolean seenDot = false;
+        boolean seenDigit = false;
+        long value = 0;
+        int fractionDigits = 0;
+        int digits = 0;
+
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i++;
+        }
+
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (value != 0 || c != '0') {
+                    digits++;
+                }
+                if (digits > MAX_SCALE) {
+                    return parseSlow(text);
+                }
+                value = value * 10 + (c - '0');
+                if (seenDot) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                return parseSlow(text);
+            }
+        }
+
+        if (!seenDigit || fractionDigits > MAX_SCALE) {
+            return seenDigit && parseSlow(text);
+        }
+
+        set(negative ? -value : value, fractionDigits);
+        return true;
+    }
+
+    /**
+     * Parses a number with BigDecimal.
+     * @param text the text to parse
+     * @return true if the text was a number
+     */
+    private boolean parseSlow(CharSequence text) {
+        //Text that isn't a number (usually an error message) is turned away without BigDecimal throwing an exception
+        if (!NumberParser.isDecimal(text)) {
+            return false;
+        }
+
+        //Only an exponent too big for BigDecimal gets this far and still throws
+        try {
+            set(new BigDecimal(text.toString()));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds another decimal to this one.
+     * @param other the decimal to add
+     * @return this decimal
+     */
+    public ScaledDecimal add(ScaledDecimal other) {
+        if (big == null && other.big == null) {
+            int resultScale = Math.max(scale, other.scale);
+            long a = rescale(unscaled, resultScale - scale);
+            long b = rescale(other.unscaled, resultScale - other.scale);
+            long sum = a + b;
+
+            //Overflow happened if both operands have a different sign to the result
+            if (a != Long.MIN_VALUE && b != Long.MIN_VALUE && ((a ^ sum) & (b ^ sum)) >= 0) {
+                return set(sum, resultScale).roundToPrecision();
+            }
+        }
+
+        return set(toBigDecimal().add(other.toBigDecimal(), mathContext));
+    }
+
+    /**
+     * Subtracts another decimal from this one.
+     * @param other the decimal to subtract
+     * @return this decimal
+     */
+    public ScaledDecimal subtract(ScaledDecimal other) {
+        if (big == null && other.big == null) {
+            int resultScale = Math.max(scale, other.scale);
+            long a = rescale(unscaled, resultScale - scale);
+            long b = rescale(other.unscaled, resultScale - other.scale);
+            long difference = a - b;
+
+            //Overflow happened if the operands have different signs and the result's sign differs from the first
+            if (a != Long.MIN_VALUE && b != Long.MIN_VALUE && ((a ^ b) & (a ^ difference)) >= 0) {
+                return set(difference, resultScale).roundToPrecision();
+            }
+        }
+
+        return set(toBigDecimal().subtract(other.toBigDecimal(), mathContext));
+    }
+
+    /**
+     * Multiplies this decimal by another one.
+     * @param other the decimal to multiply by
+     * @return this decimal
+     */
+    public ScaledDecimal multiply(ScaledDecimal other) {
+        if (big == null && other.big == null && scale + other.scale <= MAX_SCALE) {
+            long product = unscaled * other.unscaled;
+
+            //The product fits if the high 64 bits are just the sign extension of the low 64 bits
+            if (Math.multiplyHigh(unscaled, other.unscaled) == (product >> 63)) {
+                return set(product, scale + other.scale).roundToPrecision();
+            }
+        }
+
+        return set(toBigDecimal().multiply(other.toBigDecimal(), mathContext));
+    }
+
+    /**
+     * Divides this decimal by another one.
+     * @param other the decimal to divide by
+     * @return this decimal
+     * @throws ArithmeticException when attempting to divide by zero
+     */
+    public ScaledDecimal divide(ScaledDecimal other) throws ArithmeticException {
+        if (other.signum() == 0) {
+            throw new ArithmeticException("Can't divide by zero.");
+        }
+
+        if (big == null && other.big == null) {
+            //When the rounded quotient fits in a long, it is found with long division whether it terminates or not
+            int precision = mathContext.getPrecision();
+            if (precision > 0 && precision <= MAX_SCALE && Math.abs(other.unscaled) <= Long.MAX_VALUE / 10) {
+                return divideRounded(unscaled, scale, other.unscaled, other.scale, precision);
+            }
+
+            long dividend = unscaled;
+            long divisor = other.unscaled;
+
+            //Add fraction digits to the dividend until the quotient terminates (or we run out of room)
+            for (int extra = 0; scale - other.scale + extra <= MAX_SCALE; extra++) {
+                if (dividend % divisor == 0) {
+                    int resultScale = scale - other.scale + extra;
+                    long quotient = dividend / divisor;
+
+                    if (resultScale < 0) {
+                        quotient = rescale(quotient, -resultScale);
+                        resultScale = 0;
+                    }
+                    if (quotient != Long.MIN_VALUE) {
+                        return set(quotient, resultScale).roundToPrecision();
+                    }
+                    break;
+                }
+
+                long next = dividend * 10;
+                if (Math.multiplyHigh(dividend, 10) != (next >> 63)) {
+                    break;
+                }
+                dividend = next;
+            }
+        }
+
+        return set(toBigDecimal().divide(other.toBigDecimal(), mathContext));
+    }
+
+    /**
+     * Sets the value to a quotient rounded to a precision, like BigDecimal.divide(BigDecimal, MathContext), using long division.
+     * @param dividend the dividend's unscaled value
+     * @param dividendScale the dividend's scale
+     * @param divisor the divisor's unscaled value (not zero, and at most Long.MAX_VALUE / 10 in magnitude)
+     * @param divisorScale the divisor's scale
+     * @param precision the number of significant digits (1 to 18)
+     * @return this decimal
+     * @throws ArithmeticException if the rounding mode is UNNECESSARY and the quotient has to be rounded
+     */
+    private ScaledDecimal divideRounded(long dividend, int dividendScale, long divisor, int divisorScale, int precision)
+            throws ArithmeticException {
+        if (dividend == 0) {
+            return set(0, Math.max(0, dividendScale - divisorScale));
+        }
+
+        boolean negative = (dividend < 0) != (divisor < 0);
+        long magnitude = Math.abs(divisor);
+        long quotient = Math.abs(dividend) / magnitude;
+        long remainder = Math.abs(dividend) % magnitude;
+        int resultScale = dividendScale - divisorScale;
+        long limit = POWERS_OF_TEN[precision];
+        int half;
+        boolean inexact;
+
+        if (quotient >= limit) {
+            //Too many integer digits: drop the extra ones, with the remainder standing in for everything after them
+            int drop = digitCount(quotient) - precision;
+            long unit = POWERS_OF_TEN[drop];
+            long dropped = quotient % unit;
+            quotient /= unit;
+            resultScale -= drop;
+
+            half = Long.compare(dropped * 2, unit);
+            if (half == 0 && remainder != 0) {
+                half = 1;
+            }
+            inexact = dropped != 0 || remainder != 0;
+        } else {
+            //The most digits the remainder (less than the divisor) has room for at once
+            int room = 1;
+            while (room < MAX_SCALE && magnitude <= Long.MAX_VALUE / POWERS_OF_TEN[room + 1]) {
+                room++;
+            }
+
+            //Add digits until the quotient has as many as the precision (one at a time while it is still zero, so none too many)
+            while (quotient < limit / 10) {
+                int step = quotient == 0 ? 1 : Math.min(room, precision - digitCount(quotient));
+                long unit = POWERS_OF_TEN[step];
+                remainder *= unit;
+                quotient = quotient * unit + remainder / magnitude;
+                remainder %= magnitude;
+                resultScale += step;
+            }
+
+            half = Long.compare(remainder * 2, magnitude);
+            inexact = remainder != 0;
+        }
+
+        //A quotient that terminates keeps only the fraction digits it needs (and those of the dividend), like BigDecimal's
+        if (!inexact) {
+            int preferredScale = Math.max(0, dividendScale - divisorScale);
+            while (resultScale > preferredScale && quotient % 10 == 0) {
+                quotient /= 10;
+                resultScale--;
+            }
+        }
+
+        if (inexact && roundsAwayFromZero(mathContext.getRoundingMode(), negative, half, (quotient & 1) != 0)) {
+            quotient++;
+
+            //Rounding 999... up adds a digit
+            if (quotient == limit) {
+                quotient /= 10;
+                resultScale--;
+            }
+        }
+
+        return set(negative ? -quotient : quotient, resultScale);
+    }
+
+    /**
+     * Divides this decimal by 100.
+     * @return this decimal
+     */
+    public ScaledDecimal percent() {
+        if (big == null && scale + 2 <= MAX_SCALE) {
+            return set(unscaled, scale + 2);
+        }
+        return set(toBigDecimal().movePointLeft(2));
+    }
+
+    /**
+     * Gets the sign of the value.
+     * @return -1, 0 or 1
+     */
+    public int signum() {
+        return big != null ? big.signum() : Long.signum(unscaled);
+    }
+
+    /**
+     * Checks whether the value is held as a scaled long (rather than a BigDecimal).
+     * @return true if the value is on the fast path
+     */
+    public boolean isCompact() {
+        return big == null;
+    }
+
+    /**
+     * Converts the value to a BigDecimal.
+     * @return the value as a BigDecimal
+     */
+    public BigDecimal toBigDecimal() {
+        return big != null ? big : BigDecimal.valueOf(unscaled, scale);
+    }
+
+    /**
+     * Converts the value to the nearest double.
+     * @return the value as a double
+     */
+    public double doubleValue() {
+        if (big == null && scale >= 0 && Math.abs(unscaled) < (1L << 53) && scale < 23) {
+            //Both parts are exact doubles, so a single division rounds correctly
+            return unscaled / (double) pow10(scale);
+        }
+        return toBigDecimal().doubleValue();
+    }
+
+    /**
+     * Formats the value as plain text without trailing fraction zeros, rounding away fraction digits if needed to fit a maximum length.
+     * @param maxLength the longest text allowed
+     * @return the text, or null if even the integer part doesn't fit
+     */
+    public String toDisplayString(int maxLength) {
+        if (big == null && scale >= 0) {
+            return toDisplayStringCompact(maxLength);
+        }
+
+        BigDecimal value = toBigDecimal().stripTrailingZeros();
+        if (value.scale() < 0) {
+            value = value.setScale(0);
+        }
+
+        String text = value.toPlainString();
+        if (text.length() <= maxLength) {
+            return text;
+        }
+
+        //Drop as many fraction digits as needed, rounding what is left
+        int integerLength = text.indexOf('.') < 0 ? text.length() : text.indexOf('.');
+        int fractionDigits = Math.max(0, maxLength - integerLength - 1);
+        BigDecimal rounded = value.setScale(fractionDigits, mathContext.getRoundingMode()).stripTrailingZeros();
+        if (rounded.scale() < 0) {
+            rounded = rounded.setScale(0);
+        }
+
+        text = rounded.toPlainString();
+        return text.length() <= maxLength ? text : null;
+    }
+
+    /**
+     * Formats a fast path value for toDisplayString using long arithmetic.
+     * @param maxLength the longest text allowed
+     * @return the text, or null if even the integer part doesn't fit
+     */
+    private String toDisplayStringCompact(int maxLength) {
+        long value = unscaled;
+        int fractionDigits = scale;
+
+        while (true) {
+            //Strip trailing fraction zeros
+            while (fractionDigits > 0 && value % 10 == 0) {
+                value /= 10;
+                fractionDigits--;
+            }
+
+            int sign = value < 0 ? 1 : 0;
+            int integerDigits = Math.max(1, digitCount(Math.abs(value)) - fractionDigits);
+            int length = sign + integerDigits + (fractionDigits > 0 ? 1 + fractionDigits : 0);
+
+            if (length <= maxLength) {
+                char[] chars = new char[length];
+                long magnitude = Math.abs(value);
+
+                for (int i = length - 1, written = 0; i >= sign; i--, written++) {
+                    if (fractionDigits > 0 && written == fractionDigits) {
+                        chars[i] = '.';
+                    } else {
+                        chars[i] = (char) ('0' + magnitude % 10);
+                        magnitude /= 10;
+                    }
+                }
+                if (sign == 1) {
+                    chars[0] = '-';
+                }
+                return new String(chars);
+            }
+
+            //Round away as many fraction digits as needed (at least one, so this always makes progress)
+            int allowed = Math.max(0, maxLength - sign - integerDigits - 1);
+            if (fractionDigits == 0) {
+                return null;
+            } else if (allowed >= fractionDigits) {
+                allowed = fractionDigits - 1;
+            }
+
+            value = divideAndRound(value, POWERS_OF_TEN[fractionDigits - allowed], mathContext.getRoundingMode());
+            fractionDigits = allowed;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    /**
+     * Rounds a fast path value to the MathContext's precision, like BigDecimal would.
+     * @return this decimal
+     */
+    private ScaledDecimal roundToPrecision() {
+        int precision = mathContext.getPrecision();
+
+        //A long never has more than 19 digits, so only small precisions need any work
+        if (precision == 0 || precision > MAX_SCALE) {
+            return this;
+        }
+
+        int digits = digitCount(Math.abs(unscaled));
+        while (digits > precision) {
+            int drop = digits - precision;
+            unscaled = divideAndRound(unscaled, POWERS_OF_TEN[drop], mathContext.getRoundingMode());
+            scale -= drop;
+            digits = digitCount(Math.abs(unscaled));
+        }
+
+        return this;
+    }
+
+    /**
+     * Multiplies a value by a power of ten, returning Long.MIN_VALUE if it overflows.
+     * @param value the value
+     * @param exponent the power of ten (0 to 18)
+     * @return the product, or Long.MIN_VALUE on overflow
+     */
+    private static long rescale(long value, int exponent) {
+        if (exponent == 0) {
+            return value;
+        }
+        if (exponent > MAX_SCALE) {
+            return Long.MIN_VALUE;
+        }
+
+        long product = value * POWERS_OF_TEN[exponent];
+        return Math.multiplyHigh(value, POWERS_OF_TEN[exponent]) == (product >> 63) ? product : Long.MIN_VALUE;
+    }
+
+    /**
+     * Gets a power of ten as a long.
+     * @param exponent the exponent (0 to 18)
+     * @return 10^exponent
+     */
+    private static long pow10(int exponent) {
+        return POWERS_OF_TEN[exponent];
+    }
+
+    /**
+     * Counts the decimal digits of a non-negative value.
+     * @param value the value
+     * @return the number of digits (1 for zero)
+     */
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Divides a value by a positive divisor, rounding the way BigDecimal does for the given mode.
+     * @param value the value
+     * @param divisor the divisor
+     * @param mode the rounding mode
+     * @return the rounded quotient
+     * @throws ArithmeticException if the mode is UNNECESSARY and rounding is needed
+     */
+    private static long divideAndRound(long value, long divisor, RoundingMode mode) throws ArithmeticException {
+        long quotient = value / divisor;
+        long remainder = value % divisor;
+
+        if (remainder == 0) {
+            return quotient;
+        }
+
+        int sign = value < 0 ? -1 : 1;
+        long twiceRemainder = Math.abs(remainder) * 2; //Can't overflow since divisor <= 10^18
+        int half = Long.compare(twiceRemainder, divisor);
+
+        return roundsAwayFromZero(mode, sign < 0, half, (quotient & 1) != 0) ? quotient + sign : quotient;
+    }
+
+    /**
+     * Decides which way an inexact value is rounded, the way BigDecimal does for the given mode.
+     * @param mode the rounding mode
+     * @param negative whether the value is negative
+     * @param half how the part rounded away compares to half of the last digit kept (negative, zero or positive)
+     * @param odd whether the last digit kept is odd
+     * @return true if the last digit kept moves away from zero, false if the value is truncated
+     * @throws ArithmeticException if the mode is UNNECESSARY
+     */
+    private static boolean roundsAwayFromZero(RoundingMode mode, boolean negative, int half, boolean odd) throws ArithmeticException {
+        switch (mode) {
+            case UP:
+                return true;
+            case DOWN:
+                return false;
+            case CEILING:
+                return !negative;
+            case FLOOR:
+                return negative;
+            case HALF_UP:
+                return half >= 0;
+            case HALF_DOWN:
+                return half > 0;
+            case HALF_EVEN:
+                return half > 0 || (half == 0 && odd);
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+    }
+}
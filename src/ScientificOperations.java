@@ -0,0 +1,97 @@
+import java.util.List;
+
+/**
+ * The built-in scientific operations: square root (√), powers (^), e^x (exp), natural and base 10 logarithms (ln and log) and
+ * the trigonometric functions (sin, cos and tan, in radians). At STRICT accuracy they use the Math functions, and at FAST
+ * accuracy the FastMath approximations (except the square root, which is a single instruction either way).
+ * Listed in META-INF/services/OperationProvider, so the default OperationRegistry finds it like any other provider.
+ */
+public class ScientificOperations implements OperationProvider {
+    @Override
+    public List<CalculatorOperation> getOperations(OperationRegistry.Accuracy accuracy) {
+        boolean fast = accuracy == OperationRegistry.Accuracy.FAST;
+        return List.of(
+                new Operation(Operation.SQRT, "√", true, fast),
+                new Operation(Operation.POWER, "^", false, fast),
+                new Operation(Operation.EXP, "exp", true, fast),
+                new Operation(Operation.LN, "ln", true, fast),
+                new Operation(Operation.LOG10, "log", true, fast),
+                new Operation(Operation.SIN, "sin", true, fast),
+                new Operation(Operation.COS, "cos", true, fast),
+                new Operation(Operation.TAN, "tan", true, fast));
+    }
+
+    /**
+     * One of the built-in scientific operations. Every one of them is an instance of this class, picking its function with a
+     * switch, so calls to them are never megamorphic.
+     */
+    public static final class Operation implements CalculatorOperation {
+        /**
+         * The ids of the functions.
+         */
+        private static final int SQRT = 0, POWER = 1, EXP = 2, LN = 3, LOG10 = 4, SIN = 5, COS = 6, TAN = 7;
+
+        /**
+         * The id of the function.
+         */
+        private final int function;
+        /**
+         * The symbol the operation is shown and looked up by.
+         */
+        private final String symbol;
+        /**
+         * Whether the operation takes one operand.
+         */
+        private final boolean unary;
+        /**
+         * Whether the FastMath approximations are used instead of the Math functions.
+         */
+        private final boolean fast;
+
+        /**
+         * Creates an operation.
+         * @param function the id of the function
+         * @param symbol the symbol the operation is shown and looked up by
+         * @param unary whether the operation takes one operand
+         * @param fast whether the FastMath approximations are used instead of the Math functions
+         */
+        private Operation(int function, String symbol, boolean unary, boolean fast) {
+            this.function = function;
+            this.symbol = symbol;
+            this.unary = unary;
+            this.fast = fast;
+        }
+
+        @Override
+        public String getSymbol() {
+            return symbol;
+        }
+
+        @Override
+        public boolean isUnary() {
+            return unary;
+        }
+
+        @Override
+        public double apply(double first, double second) {
+            switch (function) {
+                case SQRT:
+                    return Math.sqrt(first);
+                case POWER:
+                    return fast ? FastMath.pow(first, second) : Math.pow(first, second);
+                case EXP:
+                    return fast ? FastMath.exp(first) : Math.exp(first);
+                case LN:
+                    return fast ? FastMath.log(first) : Math.log(first);
+                case LOG10:
+                    return fast ? FastMath.log10(first) : Math.log10(first);
+                case SIN:
+                    return fast ? FastMath.sin(first) : Math.sin(first);
+                case COS:
+                    return fast ? FastMath.cos(first) : Math.cos(first);
+                default:
+                    return fast ? FastMath.tan(first) : Math.tan(first);
+            }
+        }
+    }
+}
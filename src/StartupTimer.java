@@ -0,0 +1,122 @@
+import javax.swing.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Measures how long the calculator takes to start: the time from the JVM starting to main(), to each startup phase marked
+ * along the way, and to the first frame being painted. The times are printed once the first frame has been painted if
+ * reporting is enabled, and the application can be made to exit right then (to measure cold starts in a loop, or to record a
+ * class-data-sharing archive of exactly the classes startup needs).
+ */
+public final class StartupTimer {
+    /**
+     * The most phases that can be marked.
+     */
+    private static final int MAX_PHASES = 16;
+
+    /**
+     * The names of the phases marked.
+     */
+    private static final String[] phases = new String[MAX_PHASES];
+    /**
+     * When each phase was marked (System.nanoTime()).
+     */
+    private static final long[] times = new long[MAX_PHASES];
+    /**
+     * The number of phases marked.
+     */
+    private static int phaseCount;
+    /**
+     * How long the JVM had been running when timing started, in nanoseconds (-1 if unknown).
+     */
+    private static long jvmStartOffset = -1;
+    /**
+     * Whether the times are printed once the first frame is painted.
+     */
+    private static boolean reporting;
+    /**
+     * Whether the application exits once the first frame is painted.
+     */
+    private static boolean exitAfterFirstFrame;
+    /**
+     * Whether the first frame has been painted.
+     */
+    private static boolean firstFramePainted;
+
+    private StartupTimer() {
+    }
+
+    /**
+     * Starts timing (call as early as possible in main()).
+     * @param report true to print the times once the first frame is painted
+     * @param exit true to exit once the first frame is painted
+     */
+    public static synchronized void start(boolean report, boolean exit) {
+        reporting = report;
+        exitAfterFirstFrame = exit;
+        phaseCount = 0;
+
+        if (report) {
+            Instant jvmStart = ProcessHandle.current().info().startInstant().orElse(null);
+            if (jvmStart != null) {
+                jvmStartOffset = Math.max(0, Duration.between(jvmStart, Instant.now()).toNanos());
+            }
+        }
+        mark("main");
+    }
+
+    /**
+     * Marks the end of a startup phase. Does nothing once the first frame has been painted.
+     * @param phase the phase's name
+     */
+    public static synchronized void mark(String phase) {
+        if (!firstFramePainted && phaseCount < MAX_PHASES) {
+            phases[phaseCount] = phase;
+            times[phaseCount] = System.nanoTime();
+            phaseCount++;
+        }
+    }
+
+    /**
+     * Marks the first frame as painted (later calls, and calls before start(), do nothing), then prints the times and exits if asked to.
+     */
+    public static void firstFramePainted() {
+        synchronized (StartupTimer.class) {
+            if (firstFramePainted || phaseCount == 0) {
+                return;
+            }
+            mark("first frame");
+            firstFramePainted = true;
+        }
+
+        if (reporting) {
+            System.err.println(report());
+        }
+        if (exitAfterFirstFrame) {
+            //Let the paint that called this finish first
+            SwingUtilities.invokeLater(() -> System.exit(0));
+        }
+    }
+
+    /**
+     * Describes the times measured so far, eg. "Startup: JVM 85.0 ms, main +0.0 ms (85.0 ms), view +120.3 ms (205.3 ms), ...".
+     * Each phase shows how long it took, and in brackets the total since the JVM started.
+     * @return the description
+     */
+    public static synchronized String report() {
+        StringBuilder report = new StringBuilder("Startup:");
+        long base = jvmStartOffset < 0 ? 0 : jvmStartOffset;
+
+        if (jvmStartOffset >= 0) {
+            report.append(String.format(Locale.ROOT, " JVM %.1f ms,", jvmStartOffset / 1e6));
+        }
+        for (int i = 0; i < phaseCount; i++) {
+            long sincePrevious = i == 0 ? 0 : times[i] - times[i - 1];
+            long total = base + times[i] - times[0];
+            report.append(String.format(Locale.ROOT, " %s +%.1f ms (%.1f ms)%s", phases[i], sincePrevious / 1e6, total / 1e6,
+                    i < phaseCount - 1 ? "," : ""));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Accumulates the statistics of a list of values (count, sum, mean, variance, minimum, maximum and percentiles) one value at a
+ * time, in constant memory. The sum is compensated (Neumaier's variant of Kahan summation), so it stays accurate to the last
+ * bit or so however many values are added and however much their magnitudes differ; the variance is accumulated with Welford's
+ * algorithm, which doesn't lose precision to cancellation like summing squares does; and percentiles are estimated with a
+ * QuantileSketch.
+ * <p>
+ * Accumulators can be merged, so a list can be split into parts that are accumulated in parallel: as long as the parts are
+ * always the same and are merged in the same order, the results are the same to the bit however many threads are used.
+ * Accumulators are not thread-safe.
+ */
+public class StatisticsAccumulator {
+    /**
+     * The number of values added.
+     */
+    private long count;
+    /**
+     * The running sum of the values.
+     */
+    private double sum;
+    /**
+     * The low-order bits lost from the running sum, to be added back at the end.
+     */
+    private double compensation;
+    /**
+     * The running mean of the values (Welford's algorithm).
+     */
+    private double mean;
+    /**
+     * The running sum of the squared differences from the mean (Welford's algorithm).
+     */
+    private double squaredDeviations;
+    /**
+     * The smallest value added.
+     */
+    private double min = Double.POSITIVE_INFINITY;
+    /**
+     * The largest value added.
+     */
+    private double max = Double.NEGATIVE_INFINITY;
+    /**
+     * The number of values rejected (for not being finite numbers).
+     */
+    private long rejectedCount;
+    /**
+     * Estimates the percentiles.
+     */
+    private final QuantileSketch sketch = new QuantileSketch();
+
+    /**
+     * Adds a value.
+     * @param value the value
+     * @return true if it was added, or false if it was rejected for being NaN or infinite
+     */
+    public boolean add(double value) {
+        if (!Double.isFinite(value)) {
+            rejectedCount++;
+            return false;
+        }
+
+        count++;
+        addToSum(value);
+
+        double deviation = value - mean;
+        mean += deviation / count;
+        squaredDeviations += deviation * (value - mean);
+
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sketch.add(value);
+        return true;
+    }
+
+    /**
+     * Adds every value of another accumulator to this one (as if they had been added after this one's values).
+     * @param other the other accumulator (which isn't changed)
+     */
+    public void merge(StatisticsAccumulator other) {
+        if (other.count == 0) {
+            rejectedCount += other.rejectedCount;
+            return;
+        }
+
+        long total = count + other.count;
+        double deviation = other.mean - mean;
+
+        //Chan et al.'s formulas for combining the moments of two parts
+        mean += deviation * ((double) other.count / total);
+        squaredDeviations += other.squaredDeviations + deviation * deviation * ((double) count * other.count / total);
+        count = total;
+
+        addToSum(other.sum);
+        addToSum(other.compensation);
+
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        rejectedCount += other.rejectedCount;
+        sketch.merge(other.sketch);
+    }
+
+    /**
+     * Adds a value to the compensated sum.
+     * @param value the value
+     */
+    private void addToSum(double value) {
+        double newSum = sum + value;
+
+        //Whichever of the two is smaller in magnitude is the one whose low-order bits were lost
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensation += (sum - newSum) + value;
+        } else {
+            compensation += (value - newSum) + sum;
+        }
+        sum = newSum;
+    }
+
+    /**
+     * Removes every value, leaving the accumulator as if it had just been created.
+     */
+    public void clear() {
+        count = 0;
+        sum = 0;
+        compensation = 0;
+        mean = 0;
+        squaredDeviations = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        rejectedCount = 0;
+        sketch.clear();
+    }
+
+    /**
+     * Gets the number of values added.
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the number of values rejected.
+     * @return the number of values
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Gets the sum of the values.
+     * @return the sum (0 if there are none)
+     */
+    public double getSum() {
+        return sum + compensation;
+    }
+
+    /**
+     * Gets the mean of the values.
+     * @return the mean (NaN if there are none)
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : getSum() / count;
+    }
+
+    /**
+     * Gets the sample variance of the values.
+     * @return the variance (0 if there are fewer than two values)
+     */
+    public double getVariance() {
+        return count < 2 ? 0 : squaredDeviations / (count - 1);
+    }
+
+    /**
+     * Gets the sample standard deviation of the values.
+     * @return the standard deviation (0 if there are fewer than two values)
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Gets the smallest value.
+     * @return the smallest value (NaN if there are none)
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Gets the largest value.
+     * @return the largest value (NaN if there are none)
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Estimates a percentile of the values (to within QuantileSketch.DEFAULT_RELATIVE_ACCURACY).
+     * @param percentile the percentile, from 0 to 100 (eg. 50 for the median)
+     * @return the estimate (NaN if there are no values)
+     * @throws IllegalArgumentException if the percentile isn't between 0 and 100
+     */
+    public double getPercentile(double percentile) throws IllegalArgumentException {
+        return sketch.getQuantile(percentile / 100);
+    }
+}
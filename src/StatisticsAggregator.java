@@ -0,0 +1,251 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes the statistics of a file of numbers (one per line) headlessly, with a fork-join pool. The input is streamed through
+ * memory-mapped chunks, and each chunk is split into blocks of about BLOCK_SIZE bytes (on line boundaries) whose statistics
+ * are accumulated in parallel and then merged pairwise up a fixed tree. The blocks only depend on the chunk size, never on
+ * the number of threads, so the results are the same to the bit however many threads are used. Memory use is bounded by the
+ * chunk size and the number of threads, however many lines the file has.
+ * <p>
+ * Blank lines are skipped, and lines that aren't finite numbers are counted as rejected.
+ */
+public class StatisticsAggregator {
+    /**
+     * The size of the blocks each chunk is split into, in bytes (a block grows past this to end on a line boundary).
+     */
+    public static final int BLOCK_SIZE = 1024 * 1024;
+    /**
+     * The number of worker threads.
+     */
+    private final int parallelism;
+    /**
+     * The size of each mapped input chunk in bytes.
+     */
+    private final int chunkSize;
+
+    /**
+     * Creates an aggregator using all available cores and the default chunk size.
+     */
+    public StatisticsAggregator() {
+        this(Runtime.getRuntime().availableProcessors(), MappedChunkReader.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates an aggregator.
+     * @param parallelism the number of worker threads
+     * @param chunkSize the size of each mapped input chunk in bytes (the results only depend on this, not on the parallelism)
+     */
+    public StatisticsAggregator(int parallelism, int chunkSize) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("There must be at least one worker.");
+        }
+
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Computes the statistics of every line of a file.
+     * @param input the file of numbers
+     * @return the statistics
+     * @throws IOException if the file cannot be read
+     */
+    public StatisticsAccumulator aggregate(Path input) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try (MappedChunkReader reader = new MappedChunkReader(input, chunkSize)) {
+            StatisticsAccumulator statistics = new StatisticsAccumulator();
+            ByteBuffer chunk;
+
+            //Chunks are merged in file order
+            while ((chunk = reader.nextChunk()) != null) {
+                int[] blockStarts = splitBlocks(chunk);
+                statistics.merge(pool.invoke(new BlockTask(chunk, blockStarts, 0, blockStarts.length - 1)));
+            }
+            return statistics;
+
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits a chunk into blocks of about BLOCK_SIZE bytes that end on line boundaries.
+     * @param chunk the chunk
+     * @return the index of the start of each block, followed by the chunk's limit
+     */
+    private static int[] splitBlocks(ByteBuffer chunk) {
+        int limit = chunk.limit();
+        int[] starts = new int[limit / BLOCK_SIZE + 2];
+        int blocks = 0;
+        int start = 0;
+
+        while (start < limit) {
+            starts[blocks++] = start;
+            int end = (int) Math.min((long) start + BLOCK_SIZE, limit);
+
+            //Extend the block to the end of the line it stops in
+            while (end < limit && chunk.get(end - 1) != '\n') {
+                end++;
+            }
+            start = end;
+        }
+
+        starts[blocks] = limit;
+        int[] trimmed = new int[blocks + 1];
+        System.arraycopy(starts, 0, trimmed, 0, blocks + 1);
+        return trimmed;
+    }
+
+    /**
+     * Accumulates the statistics of a range of blocks, splitting it in half (always at the same place) until there is one block
+     * per task.
+     */
+    private static final class BlockTask extends RecursiveTask<StatisticsAccumulator> {
+        /**
+         * The version of the serialized form (tasks are never serialized, but ForkJoinTask is Serializable).
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The chunk holding the blocks.
+         */
+        private final transient ByteBuffer chunk;
+        /**
+         * The index of the start of each block in the chunk, followed by the chunk's limit.
+         */
+        private final transient int[] blockStarts;
+        /**
+         * The first block of the range.
+         */
+        private final int from;
+        /**
+         * The block after the last one of the range.
+         */
+        private final int to;
+
+        /**
+         * Creates a task for a range of blocks.
+         * @param chunk the chunk holding the blocks
+         * @param blockStarts the index of the start of each block in the chunk, followed by the chunk's limit
+         * @param from the first block of the range
+         * @param to the block after the last one of the range
+         */
+        private BlockTask(ByteBuffer chunk, int[] blockStarts, int from, int to) {
+            this.chunk = chunk;
+            this.blockStarts = blockStarts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected StatisticsAccumulator compute() {
+            if (to - from <= 1) {
+                StatisticsAccumulator statistics = new StatisticsAccumulator();
+                if (from < to) {
+                    accumulateBlock(chunk, blockStarts[from], blockStarts[to], statistics);
+                }
+                return statistics;
+            }
+
+            int middle = (from + to) >>> 1;
+            BlockTask first = new BlockTask(chunk, blockStarts, from, middle);
+            first.fork();
+            StatisticsAccumulator second = new BlockTask(chunk, blockStarts, middle, to).compute();
+
+            //The first half is always merged with the second, never the other way around
+            StatisticsAccumulator statistics = first.join();
+            statistics.merge(second);
+            return statistics;
+        }
+    }
+
+    /**
+     * Adds every line of a block to an accumulator.
+     * @param chunk the chunk holding the block
+     * @param start the index of the start of the block (inclusive)
+     * @param end the index of the end of the block (exclusive)
+     * @param statistics the accumulator to add to
+     */
+    private static void accumulateBlock(ByteBuffer chunk, int start, int end, StatisticsAccumulator statistics) {
+        int lineStart = start;
+
+        for (int i = start; i < end; i++) {
+            if (chunk.get(i) == '\n') {
+                accumulateLine(chunk, lineStart, i, statistics);
+                lineStart = i + 1;
+            }
+        }
+
+        //The last line of the file might not end with a newline
+        if (lineStart < end) {
+            accumulateLine(chunk, lineStart, end, statistics);
+        }
+    }
+
+    /**
+     * Adds a single line to an accumulator (unless it is blank).
+     * @param chunk the chunk holding the line
+     * @param start the index of the start of the line (inclusive)
+     * @param end the index of the end of the line (exclusive, not including the newline)
+     * @param statistics the accumulator to add to
+     */
+    private static void accumulateLine(ByteBuffer chunk, int start, int end, StatisticsAccumulator statistics) {
+        //Trim spaces, tabs and carriage returns (bytes are signed, so those of multi-byte UTF-8 characters would otherwise count
+        //as whitespace, and "−5" would be read as 5)
+        while (start < end && (chunk.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (chunk.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+
+        if (start < end) {
+            statistics.add(NumberParser.parse(chunk, start, end));
+        }
+    }
+
+    /**
+     * Runs the aggregator from the command line, printing the statistics.
+     * @param args the input file, optionally preceded by --parallelism and the number of worker threads
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int first = 0;
+
+        if (args.length > 1 && args[0].equals("--parallelism")) {
+            try {
+                parallelism = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                parallelism = 0;
+            }
+            first = 2;
+        }
+
+        if (args.length - first != 1 || parallelism <= 0) {
+            System.err.println("Usage: --stats [--parallelism <threads>] <input file>");
+            System.exit(1);
+        }
+
+        StatisticsAccumulator statistics = new StatisticsAggregator(parallelism, MappedChunkReader.DEFAULT_CHUNK_SIZE)
+                .aggregate(Path.of(args[first]));
+
+        //Printed in full (shortest round-trip form), so runs can be compared to the bit
+        System.out.println("count    " + statistics.getCount());
+        System.out.println("rejected " + statistics.getRejectedCount());
+        System.out.println("sum      " + statistics.getSum());
+        System.out.println("mean     " + statistics.getMean());
+        System.out.println("variance " + statistics.getVariance());
+        System.out.println("stddev   " + statistics.getStandardDeviation());
+        System.out.println("min      " + statistics.getMin());
+        System.out.println("max      " + statistics.getMax());
+        System.out.println("p50      " + statistics.getPercentile(50));
+        System.out.println("p90      " + statistics.getPercentile(90));
+        System.out.println("p99      " + statistics.getPercentile(99));
+    }
+}
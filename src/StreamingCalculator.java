@@ -0,0 +1,676 @@
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a running calculation over an unbounded stream of tokens (such as a pipe from a log tail or a sensor feed), writing the
+ * result after every operator and equals sign. Tokens are separated by whitespace:
+ * <ul>
+ *   <li>a number (such as 12, -0.5 or 1e3) becomes the current operand</li>
+ *   <li>+, -, * or ×, / or ÷, or the symbol of a binary operation from the OperationRegistry (such as ^) applies the pending
+ *   operation, like pressing an operator key, and writes the result</li>
+ *   <li>= applies the pending operation and writes the result</li>
+ *   <li>the symbol of a unary operation from the OperationRegistry (such as √ or sin) applies it to the current operand and
+ *   writes the result</li>
+ *   <li>% divides the current operand by 100, and C clears</li>
+ * </ul>
+ * Anything else (including tokens longer than MAX_TOKEN_LENGTH bytes) is skipped and counted as ignored.
+ * <p>
+ * The state machine is the same as CalculatorModel's, on doubles instead of text: results are rounded the way they are shown,
+ * and errors show the same messages and last until C, so feeding it a sequence gives the same results as typing it into the
+ * calculator. Input is read through a channel into a fixed buffer and results are written from another, so memory use is
+ * constant however long the stream runs, and nothing is allocated per token. Results are written once batchSize of them are
+ * waiting or when the output buffer fills up, and also every flush interval (by a background thread, so results still come out
+ * while waiting for more input), or whenever the input read so far has been used up if the interval is 0.
+ */
+public class StreamingCalculator {
+    /**
+     * The size of the input and output buffers in bytes.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * The longest token in bytes (longer ones are skipped).
+     */
+    public static final int MAX_TOKEN_LENGTH = 64;
+    /**
+     * The default number of results written at once.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    /**
+     * The default longest time a result waits to be written, in milliseconds.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+    /**
+     * The size of the shown text buffer in bytes (enough for a token, or a result of MAX_DIGITS characters in UTF-8).
+     */
+    private static final int TEXT_CAPACITY = Math.max(MAX_TOKEN_LENGTH, 3 * CalculatorModel.MAX_DIGITS);
+
+    /**
+     * Where results are written.
+     */
+    private final WritableByteChannel out;
+    /**
+     * The number of results written at once (0 for no limit besides the size of the output buffer).
+     */
+    private final int batchSize;
+    /**
+     * The longest time a result waits to be written in milliseconds (0 to write results as soon as the input read so far is used up).
+     */
+    private final long flushIntervalMillis;
+
+    /**
+     * The input not used yet.
+     */
+    private final ByteBuffer input = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    /**
+     * The results not written yet.
+     */
+    private final ByteBuffer output = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    /**
+     * The text of the result field, in UTF-8.
+     */
+    private final ByteBuffer text = ByteBuffer.allocate(TEXT_CAPACITY);
+    /**
+     * Scratch buffer that results are formatted into.
+     */
+    private final char[] formatted = new char[ResultFormatter.MAX_LENGTH];
+    /**
+     * The unary operations from the OperationRegistry, when the calculator was created.
+     */
+    private final CalculatorOperation[] functions;
+    /**
+     * The symbol of each of the functions, in UTF-8.
+     */
+    private final byte[][] functionSymbols;
+    /**
+     * The binary operations from the OperationRegistry, when the calculator was created.
+     */
+    private final OperationRegistry registry = OperationRegistry.getDefault();
+
+    /**
+     * The value of the result field (NaN if it isn't a number, such as an error message).
+     */
+    private double value;
+    /**
+     * The value of the first operand (NaN if it isn't a number).
+     */
+    private double prevValue;
+    /**
+     * The pending operation (0 if there is none).
+     */
+    private char operation;
+    /**
+     * A boolean value marking whether or not the calculator is in ERROR mode.
+     */
+    private boolean errorMode;
+    /**
+     * True while skipping the rest of a token longer than MAX_TOKEN_LENGTH.
+     */
+    private boolean skipping;
+
+    /**
+     * The number of results waiting in the output buffer.
+     */
+    private int pendingResults;
+    /**
+     * The number of tokens read.
+     */
+    private long tokenCount;
+    /**
+     * The number of tokens skipped.
+     */
+    private long ignoredCount;
+    /**
+     * The number of results written.
+     */
+    private long resultCount;
+    /**
+     * The error that stopped the background thread writing results (null if there was none).
+     */
+    private IOException failure;
+
+    /**
+     * Creates a streaming calculator.
+     * @param out where results are written
+     * @param batchSize the number of results written at once (0 for no limit besides the size of the output buffer)
+     * @param flushIntervalMillis the longest time a result waits to be written in milliseconds (0 to write results as soon as
+     *                            the input read so far has been used up)
+     */
+    public StreamingCalculator(WritableByteChannel out, int batchSize, long flushIntervalMillis) {
+        if (batchSize < 0) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("Invalid flush interval: " + flushIntervalMillis);
+        }
+
+        this.out = out;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+
+        List<CalculatorOperation> unary = new ArrayList<>();
+        for (CalculatorOperation operation : registry.getOperations()) {
+            if (operation.isUnary()) {
+                unary.add(operation);
+            }
+        }
+        this.functions = unary.toArray(new CalculatorOperation[0]);
+        this.functionSymbols = new byte[functions.length][];
+        for (int i = 0; i < functions.length; i++) {
+            functionSymbols[i] = functions[i].getSymbol().getBytes(StandardCharsets.UTF_8);
+        }
+
+        clear();
+    }
+
+    /**
+     * Reads tokens until the end of the input, writing the results (the last ones are written when the input ends).
+     * @param in the input
+     * @throws IOException if reading or writing fails
+     */
+    public void run(ReadableByteChannel in) throws IOException {
+        ScheduledExecutorService flusher = null;
+        if (flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("stream-flush").factory());
+            flusher.scheduleWithFixedDelay(this::flushInBackground, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                //Only this thread uses the input buffer, so reads (which may block for a long time) don't hold the lock
+                endOfInput = in.read(input) < 0;
+                input.flip();
+
+                synchronized (this) {
+                    checkFailure();
+                    applyTokens(endOfInput);
+                    if (flushIntervalMillis == 0 || endOfInput) {
+                        flush();
+                    }
+                }
+                input.compact();
+            }
+
+        } finally {
+            if (flusher != null) {
+                flusher.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Applies every whole token in the input buffer, leaving a token cut off by the end of the buffer for the next read.
+     * @param endOfInput true if there is no more input (so the last token is whole)
+     */
+    private void applyTokens(boolean endOfInput) {
+        int limit = input.limit();
+        int i = input.position();
+
+        while (i < limit) {
+            //Skip whitespace (bytes are signed, so those of multi-byte UTF-8 characters would otherwise count as whitespace)
+            while (i < limit && (input.get(i) & 0xFF) <= ' ') {
+                skipping = false;
+                i++;
+            }
+
+            int start = i;
+            while (i < limit && (input.get(i) & 0xFF) > ' ') {
+                i++;
+            }
+            if (start == i) {
+                break;
+            }
+
+            if (i == limit && !endOfInput && !skipping && i - start <= MAX_TOKEN_LENGTH) {
+                //Wait for the rest of the token
+                i = start;
+                break;
+            }
+
+            if (skipping) {
+                //The rest of a long token that has already been counted
+                continue;
+            } else if (i - start > MAX_TOKEN_LENGTH) {
+                tokenCount++;
+                ignoredCount++;
+                skipping = i == limit;
+            } else {
+                tokenCount++;
+                applyToken(start, i);
+            }
+        }
+
+        input.position(i);
+    }
+
+    /**
+     * Applies a token.
+     * @param start the index of the start of the token in the input buffer (inclusive)
+     * @param end the index of the end of the token (exclusive)
+     */
+    private void applyToken(int start, int end) {
+        byte first = input.get(start);
+        if (first >= '0' && first <= '9' || first == '.' || (first == '-' || first == '+') && end - start > 1) {
+            applyNumber(start, end);
+            return;
+        }
+
+        int c = decodeChar(start, end);
+        switch (c) {
+            case '=':
+                calculate();
+                emit();
+                return;
+            case 'C':
+            case 'c':
+                clear();
+                return;
+            case '%':
+                changeToPercent();
+                return;
+            case '+':
+            case '-':
+                applyOperator((char) c);
+                return;
+            case '*':
+            case '×':
+                applyOperator('×');
+                return;
+            case '/':
+            case '÷':
+                applyOperator('÷');
+                return;
+            default:
+                if (c >= 0 && registry.getBinary((char) c) != null) {
+                    applyOperator((char) c);
+                    return;
+                }
+                for (int i = 0; i < functions.length; i++) {
+                    if (matches(start, end, functionSymbols[i])) {
+                        applyFunction(functions[i]);
+                        return;
+                    }
+                }
+                ignoredCount++;
+        }
+    }
+
+    /**
+     * Makes a number token the current operand (unless it isn't a number, when it is ignored).
+     * @param start the index of the start of the token in the input buffer (inclusive)
+     * @param end the index of the end of the token (exclusive)
+     */
+    private void applyNumber(int start, int end) {
+        double number = NumberParser.parse(input, start, end);
+        if (number != number) {
+            ignoredCount++;
+            return;
+        }
+
+        //Like typing a number, which does nothing in ERROR mode
+        if (!errorMode) {
+            text.clear();
+            text.put(0, input, start, end - start);
+            text.position(end - start);
+            value = number;
+        }
+    }
+
+    /**
+     * Performs the pending operation and holds the result as the first operand of a new one, then writes the result.
+     * @param newOperation the new operation
+     */
+    private void applyOperator(char newOperation) {
+        if (!errorMode) {
+            calculate();
+            prevValue = value;
+            operation = newOperation;
+        }
+        emit();
+    }
+
+    /**
+     * Performs the pending operation.
+     */
+    private void calculate() {
+        if (errorMode) {
+            return;
+        }
+
+        //Account for overflow error if number reaches infinity
+        if (prevValue != prevValue || value != value) {
+            enterErrorMode(CalculatorError.INVALID_NUMBER);
+            return;
+        }
+
+        if (operation != 0) {
+            double result = CalculatorModel.applyOperation(prevValue, value, operation);
+            if (result != result) {
+                enterErrorMode(CalculatorModel.getOperationError(value, operation));
+            } else if (showValue(result)) {
+                operation = 0;
+            }
+        }
+    }
+
+    /**
+     * Applies a unary operation to the current operand, then writes the result.
+     * @param function the operation
+     */
+    private void applyFunction(CalculatorOperation function) {
+        if (!errorMode) {
+            if (value != value) {
+                enterErrorMode(CalculatorError.INVALID_NUMBER);
+            } else {
+                double result = OperationRegistry.apply(function, value, 0);
+                if (Double.isNaN(result)) {
+                    enterErrorMode(CalculatorError.UNDEFINED);
+                } else if (Double.isInfinite(result)) {
+                    enterErrorMode(CalculatorError.OVERFLOW);
+                } else {
+                    showValue(result);
+                }
+            }
+        }
+        emit();
+    }
+
+    /**
+     * Changes the current operand to a percentage of 100 (an operand that isn't a number puts the calculator in ERROR mode, as
+     * in DecimalCalculatorModel).
+     */
+    private void changeToPercent() {
+        if (errorMode || text.position() == 1 && text.get(0) == '0') {
+            return;
+        }
+        if (value != value) {
+            enterErrorMode(CalculatorError.INVALID_NUMBER);
+            return;
+        }
+
+        //Shown the way CalculatorModel shows it (rarely used, so the String is fine)
+        value /= 100;
+        setText(String.valueOf(value));
+    }
+
+    /**
+     * Shows a result, rounded the way the calculator shows it.
+     * @param result the result
+     * @return true if it was shown, or false if it was too long and the calculator went into ERROR mode
+     */
+    private boolean showValue(double result) {
+        int length = CalculatorModel.isTooLong(result) ? Integer.MAX_VALUE
+                : ResultFormatter.getInstance().format(result, formatted, 0);
+        if (length > CalculatorModel.MAX_DIGITS) {
+            enterErrorMode(CalculatorError.OVERFLOW);
+            return false;
+        }
+
+        text.clear();
+        for (int i = 0; i < length; i++) {
+            putChar(formatted[i]);
+        }
+
+        //The value is what is shown, not the unrounded result, like parsing the result field would give
+        value = NumberParser.parse(text, 0, text.position());
+        return true;
+    }
+
+    /**
+     * Clears the calculator.
+     */
+    private void clear() {
+        setText("0");
+        value = 0;
+        prevValue = 0;
+        operation = 0;
+        errorMode = false;
+    }
+
+    /**
+     * Puts the calculator into ERROR mode (which can only be removed by clearing) and shows the error's message.
+     * @param error the cause of the error
+     */
+    private void enterErrorMode(CalculatorError error) {
+        errorMode = true;
+        setText(error.getMessage());
+        value = Double.NaN;
+        operation = 0;
+    }
+
+    /**
+     * Sets the text of the result field.
+     * @param shown the text
+     */
+    private void setText(String shown) {
+        text.clear();
+        for (int i = 0; i < shown.length(); i++) {
+            putChar(shown.charAt(i));
+        }
+    }
+
+    /**
+     * Appends a character to the text of the result field in UTF-8.
+     * @param c the character
+     */
+    private void putChar(char c) {
+        if (c < 0x80) {
+            text.put((byte) c);
+        } else if (c < 0x800) {
+            text.put((byte) (0xC0 | c >>> 6));
+            text.put((byte) (0x80 | c & 0x3F));
+        } else {
+            text.put((byte) (0xE0 | c >>> 12));
+            text.put((byte) (0x80 | c >>> 6 & 0x3F));
+            text.put((byte) (0x80 | c & 0x3F));
+        }
+    }
+
+    /**
+     * Decodes a token that is a single character in UTF-8.
+     * @param start the index of the start of the token in the input buffer (inclusive)
+     * @param end the index of the end of the token (exclusive)
+     * @return the character, or -1 if the token isn't a single character
+     */
+    private int decodeChar(int start, int end) {
+        int first = input.get(start) & 0xFF;
+        switch (end - start) {
+            case 1:
+                return first < 0x80 ? first : -1;
+            case 2:
+                return (first & 0xE0) == 0xC0 && isContinuation(start + 1)
+                        ? (first & 0x1F) << 6 | input.get(start + 1) & 0x3F : -1;
+            case 3:
+                return (first & 0xF0) == 0xE0 && isContinuation(start + 1) && isContinuation(start + 2)
+                        ? (first & 0x0F) << 12 | (input.get(start + 1) & 0x3F) << 6 | input.get(start + 2) & 0x3F : -1;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Checks whether a byte of the input is a UTF-8 continuation byte.
+     * @param index the index of the byte
+     * @return true if it is a continuation byte
+     */
+    private boolean isContinuation(int index) {
+        return (input.get(index) & 0xC0) == 0x80;
+    }
+
+    /**
+     * Checks whether a token is exactly some bytes.
+     * @param start the index of the start of the token in the input buffer (inclusive)
+     * @param end the index of the end of the token (exclusive)
+     * @param bytes the bytes
+     * @return true if the token matches
+     */
+    private boolean matches(int start, int end, byte[] bytes) {
+        if (end - start != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (input.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the text of the result field to the results, writing them once there are batchSize of them.
+     */
+    private void emit() {
+        if (output.remaining() < text.position() + 1) {
+            writeOutput();
+        }
+        output.put(output.position(), text, 0, text.position());
+        output.position(output.position() + text.position());
+        output.put((byte) '\n');
+        resultCount++;
+
+        if (++pendingResults == batchSize) {
+            writeOutput();
+        }
+    }
+
+    /**
+     * Writes the waiting results (unless writing has already failed, when they are dropped and flush() throws the error).
+     */
+    private void writeOutput() {
+        if (failure == null) {
+            try {
+                output.flip();
+                while (output.hasRemaining()) {
+                    out.write(output);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        output.clear();
+        pendingResults = 0;
+    }
+
+    /**
+     * Writes every result so far.
+     * @throws IOException if writing fails, or failed earlier
+     */
+    public synchronized void flush() throws IOException {
+        if (pendingResults > 0) {
+            writeOutput();
+        }
+        checkFailure();
+    }
+
+    /**
+     * Writes every result so far from the background thread (an error is thrown by the reading thread instead).
+     */
+    private synchronized void flushInBackground() {
+        if (pendingResults > 0) {
+            writeOutput();
+        }
+    }
+
+    /**
+     * Throws the error writing failed with, if it has.
+     * @throws IOException the error
+     */
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Gets the number of tokens read.
+     * @return the number of tokens
+     */
+    public synchronized long getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Gets the number of tokens skipped, because they weren't numbers or known operations, or were too long.
+     * @return the number of tokens
+     */
+    public synchronized long getIgnoredCount() {
+        return ignoredCount;
+    }
+
+    /**
+     * Gets the number of results written.
+     * @return the number of results
+     */
+    public synchronized long getResultCount() {
+        return resultCount;
+    }
+
+    /**
+     * Runs a streaming calculation from the command line, reading tokens from standard input (or a file or named pipe) and
+     * writing results to standard output, then prints how many tokens were read to standard error.
+     * Usage: --stream [--batch-size &lt;results&gt;] [--flush-ms &lt;milliseconds&gt;] [&lt;input file or named pipe&gt;]
+     * @param args the command line arguments
+     * @throws IOException if reading or writing fails
+     */
+    public static void main(String[] args) throws IOException {
+        int batchSize = DEFAULT_BATCH_SIZE;
+        long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+        int i = 0;
+
+        try {
+            for (; i < args.length; i++) {
+                if (args[i].equals("--batch-size") && i + 1 < args.length) {
+                    batchSize = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--flush-ms") && i + 1 < args.length) {
+                    flushIntervalMillis = Long.parseLong(args[++i]);
+                } else {
+                    break;
+                }
+            }
+        } catch (NumberFormatException e) {
+            batchSize = -1;
+        }
+
+        if (args.length - i > 1 || batchSize < 0 || flushIntervalMillis < 0) {
+            System.err.println("Usage: --stream [--batch-size <results>] [--flush-ms <milliseconds>] [<input file or named pipe>]");
+            System.exit(1);
+        }
+
+        FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel();
+        StreamingCalculator calculator = new StreamingCalculator(out, batchSize, flushIntervalMillis);
+
+        //Write the results so far if the stream is interrupted (such as by Ctrl+C)
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                calculator.flush();
+            } catch (IOException e) {
+                //Nowhere left to write to
+            }
+        }));
+
+        long start = System.nanoTime();
+        try (FileChannel in = i < args.length ? FileChannel.open(Path.of(args[i]), StandardOpenOption.READ)
+                : new FileInputStream(FileDescriptor.in).getChannel()) {
+            calculator.run(in);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        System.err.printf("%d tokens (%d ignored), %d results in %d ms (%.0f tokens/s)%n", calculator.getTokenCount(),
+                calculator.getIgnoredCount(), calculator.getResultCount(), elapsedNanos / 1_000_000,
+                calculator.getTokenCount() * 1e9 / Math.max(1, elapsedNanos));
+    }
+}
@@ -0,0 +1,100 @@
+import javax.swing.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces requests to update the view, so a burst of input (a held-down key, scripted input) causes at most one update
+ * per display frame instead of one per event. The first request after an idle period is rendered on the very next pass of the
+ * event dispatch thread (after any input events already queued), so a single key press still shows up straight away.
+ */
+public final class ViewUpdateScheduler {
+    /**
+     * The default minimum time between two updates (about 60 frames per second).
+     */
+    public static final int DEFAULT_FRAME_MILLIS = 16;
+
+    /**
+     * Renders the view (always run on the event dispatch thread, unless the scheduler is synchronous).
+     */
+    private final Runnable render;
+    /**
+     * The minimum time between two updates in nanoseconds.
+     */
+    private final long frameNanos;
+    /**
+     * Whether updates are rendered immediately on the calling thread instead of being coalesced.
+     */
+    private final boolean synchronous;
+    /**
+     * Whether an update has been requested but not rendered yet.
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    /**
+     * Fires an update that had to wait for the rest of the current frame.
+     */
+    private final Timer frameTimer;
+    /**
+     * When the last update was rendered (only used on the event dispatch thread).
+     */
+    private long lastRenderNanos;
+
+    /**
+     * Creates a scheduler.
+     * @param render renders the view
+     * @param frameMillis the minimum time between two updates in milliseconds
+     * @param synchronous true to render immediately on every request (for headless use, where there is no display to coalesce for)
+     */
+    public ViewUpdateScheduler(Runnable render, int frameMillis, boolean synchronous) {
+        this.render = render;
+        this.frameNanos = TimeUnit.MILLISECONDS.toNanos(frameMillis);
+        this.synchronous = synchronous;
+        this.lastRenderNanos = System.nanoTime() - frameNanos;
+
+        this.frameTimer = new Timer(frameMillis, _ -> flush());
+        this.frameTimer.setRepeats(false);
+    }
+
+    /**
+     * Marks the view as needing an update. Can be called from any thread; repeated calls before the update is rendered are merged.
+     */
+    public void requestUpdate() {
+        if (synchronous) {
+            render.run();
+            return;
+        }
+
+        //Only the first request since the last update schedules anything
+        if (dirty.compareAndSet(false, true)) {
+            if (SwingUtilities.isEventDispatchThread()) {
+                schedule();
+            } else {
+                SwingUtilities.invokeLater(this::schedule);
+            }
+        }
+    }
+
+    /**
+     * Renders the view now if an update is pending. Must be called on the event dispatch thread.
+     */
+    public void flush() {
+        if (dirty.getAndSet(false)) {
+            frameTimer.stop();
+            lastRenderNanos = System.nanoTime();
+            render.run();
+        }
+    }
+
+    /**
+     * Schedules the pending update for the next pass of the event queue, or for the end of the current frame if one was just rendered.
+     */
+    private void schedule() {
+        long wait = lastRenderNanos + frameNanos - System.nanoTime();
+
+        if (wait <= 0) {
+            SwingUtilities.invokeLater(this::flush);
+        } else {
+            frameTimer.setInitialDelay((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+            frameTimer.restart();
+        }
+    }
+}